@@ -0,0 +1,173 @@
+package com.google.ar.sceneform;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.ar.sceneform.benchmark.SceneformBenchmarkRule;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks the propagation of transform changes through deep and wide trees of nodes. Moving
+ * nodes and reading their world transforms happens every frame, so those benchmarks also fail if
+ * they allocate. The *_transformStore benchmarks repeat the scene benchmarks with {@link
+ * Scene#setTransformStoreEnabled(boolean)}, to compare the two ways of computing world transforms.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NodeTransformBenchmark {
+  private static final int DEPTH = 256;
+  private static final int WIDTH = 1024;
+
+  @Rule public final SceneformBenchmarkRule benchmarkRule = new SceneformBenchmarkRule();
+
+  private final Vector3[] positions = {new Vector3(0, 0, 0), new Vector3(1, 2, 3)};
+  private final Vector3 dest = new Vector3();
+  private int frame;
+
+  @Test
+  public void deepChain_moveRoot_readLeaf() {
+    Node root = new Node();
+    Node leaf = createChain(root, DEPTH);
+
+    benchmarkRule.measureAllocationFree(
+        () -> {
+          root.setLocalPosition(nextPosition());
+          leaf.getWorldPosition(dest);
+        });
+  }
+
+  @Test
+  public void deepChain_unchanged_readLeaf() {
+    Node root = new Node();
+    Node leaf = createChain(root, DEPTH);
+
+    benchmarkRule.measureAllocationFree(() -> leaf.getWorldPosition(dest));
+  }
+
+  @Test
+  public void deepChain_moveLeaf_readLeaf() {
+    Node root = new Node();
+    Node leaf = createChain(root, DEPTH);
+
+    benchmarkRule.measureAllocationFree(
+        () -> {
+          leaf.setLocalPosition(nextPosition());
+          leaf.getWorldPosition(dest);
+        });
+  }
+
+  @Test
+  public void wideTree_moveRoot_readAllChildren() {
+    Node root = new Node();
+    ArrayList<Node> children = createChildren(root, WIDTH);
+
+    benchmarkRule.measureAllocationFree(
+        () -> {
+          root.setLocalPosition(nextPosition());
+          for (int i = 0; i < children.size(); i++) {
+            children.get(i).getWorldPosition(dest);
+          }
+        });
+  }
+
+  @Test
+  public void wideTree_rotateRoot_readOneChild() {
+    Node root = new Node();
+    ArrayList<Node> children = createChildren(root, WIDTH);
+    Node child = children.get(WIDTH / 2);
+    Quaternion[] rotations = {
+      Quaternion.identity(), Quaternion.axisAngle(new Vector3(0, 1, 0), 90.0f)
+    };
+
+    benchmarkRule.measureAllocationFree(
+        () -> {
+          root.setLocalRotation(rotations[frame++ & 1]);
+          child.getWorldPosition(dest);
+        });
+  }
+
+  @Test
+  public void deepChain_inScene_moveRoot_dispatchUpdate() {
+    Node root = new Node();
+    Node leaf = createChain(root, DEPTH);
+
+    measureMoveRootInScene(root, Collections.singletonList(leaf), false);
+  }
+
+  @Test
+  public void deepChain_inScene_moveRoot_dispatchUpdate_transformStore() {
+    Node root = new Node();
+    Node leaf = createChain(root, DEPTH);
+
+    measureMoveRootInScene(root, Collections.singletonList(leaf), true);
+  }
+
+  @Test
+  public void wideTree_inScene_moveRoot_dispatchUpdate() {
+    Node root = new Node();
+    ArrayList<Node> children = createChildren(root, WIDTH);
+
+    measureMoveRootInScene(root, children, false);
+  }
+
+  @Test
+  public void wideTree_inScene_moveRoot_dispatchUpdate_transformStore() {
+    Node root = new Node();
+    ArrayList<Node> children = createChildren(root, WIDTH);
+
+    measureMoveRootInScene(root, children, true);
+  }
+
+  /**
+   * Moves the root of a tree in a scene, updates the scene and then reads the world positions of
+   * the given nodes, like a frame that draws them. With the transform store, the world matrices
+   * are recomputed by the update instead of by the reads.
+   */
+  private void measureMoveRootInScene(
+      Node root, List<Node> nodesToRead, boolean isTransformStoreEnabled) {
+    Scene scene = new Scene();
+    scene.setTransformStoreEnabled(isTransformStoreEnabled);
+    root.setParent(scene);
+    FrameTime frameTime = new FrameTime();
+
+    benchmarkRule.measure(
+        () -> {
+          root.setLocalPosition(nextPosition());
+          frameTime.update(frame * 16_000_000L);
+          scene.dispatchUpdate(frameTime);
+          for (int i = 0; i < nodesToRead.size(); i++) {
+            nodesToRead.get(i).getWorldPosition(dest);
+          }
+        });
+  }
+
+  private Vector3 nextPosition() {
+    return positions[frame++ & 1];
+  }
+
+  private static Node createChain(Node root, int depth) {
+    Node parent = root;
+    for (int i = 0; i < depth; i++) {
+      Node node = new Node();
+      node.setLocalPosition(new Vector3(0, 1, 0));
+      node.setParent(parent);
+      parent = node;
+    }
+    return parent;
+  }
+
+  private static ArrayList<Node> createChildren(Node root, int width) {
+    ArrayList<Node> children = new ArrayList<>();
+    for (int i = 0; i < width; i++) {
+      Node node = new Node();
+      node.setLocalPosition(new Vector3(i, 0, 0));
+      node.setParent(root);
+      children.add(node);
+    }
+    return children;
+  }
+}
@@ -0,0 +1,89 @@
+package com.google.ar.sceneform;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.ar.sceneform.benchmark.SceneformBenchmarkRule;
+import com.google.ar.sceneform.math.Vector3;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Benchmarks {@link Scene#dispatchUpdate(FrameTime)} for a scene of a few thousand nodes. */
+@RunWith(AndroidJUnit4.class)
+public class SceneUpdateBenchmark {
+  private static final int GROUP_COUNT = 64;
+  private static final int NODES_PER_GROUP = 32;
+  // One in this many nodes moves every frame.
+  private static final int MOVING_NODE_INTERVAL = 16;
+
+  @Rule public final SceneformBenchmarkRule benchmarkRule = new SceneformBenchmarkRule();
+
+  private final FrameTime frameTime = new FrameTime();
+  private long frame;
+
+  @Test
+  public void dispatchUpdate_idle() {
+    Scene scene = createScene(false);
+
+    benchmarkRule.measure(() -> update(scene));
+  }
+
+  @Test
+  public void dispatchUpdate_movingNodes() {
+    Scene scene = createScene(true);
+
+    benchmarkRule.measure(() -> update(scene));
+  }
+
+  @Test
+  public void dispatchUpdate_movingNodes_transformStore() {
+    Scene scene = createScene(true);
+    scene.setTransformStoreEnabled(true);
+
+    benchmarkRule.measure(() -> update(scene));
+  }
+
+  @Test
+  public void dispatchUpdate_reparentNode() {
+    Scene scene = createScene(true);
+    Node first = scene.getChildren().get(1);
+    Node second = scene.getChildren().get(2);
+    Node node = new Node();
+
+    benchmarkRule.measure(
+        () -> {
+          node.setParent((frame & 1) == 0 ? first : second);
+          update(scene);
+        });
+  }
+
+  private void update(Scene scene) {
+    frameTime.update(++frame * 16_000_000L);
+    scene.dispatchUpdate(frameTime);
+  }
+
+  private static Scene createScene(boolean withMovingNodes) {
+    Scene scene = new Scene();
+    for (int i = 0; i < GROUP_COUNT; i++) {
+      Node group = new Node();
+      group.setParent(scene);
+      for (int j = 0; j < NODES_PER_GROUP; j++) {
+        boolean isMoving = withMovingNodes && j % MOVING_NODE_INTERVAL == 0;
+        Node node = isMoving ? new MovingNode() : new Node();
+        node.setLocalPosition(new Vector3(i, j, 0));
+        node.setParent(group);
+      }
+    }
+    return scene;
+  }
+
+  /** A node that moves back and forth every frame. */
+  private static final class MovingNode extends Node {
+    private final Vector3[] positions = {new Vector3(0, 0, 0), new Vector3(0, 1, 0)};
+    private int frame;
+
+    @Override
+    public void onUpdate(FrameTime frameTime) {
+      setLocalPosition(positions[frame++ & 1]);
+    }
+  }
+}
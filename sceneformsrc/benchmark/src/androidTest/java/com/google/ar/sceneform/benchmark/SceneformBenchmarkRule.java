@@ -0,0 +1,102 @@
+package com.google.ar.sceneform.benchmark;
+
+import android.os.Bundle;
+import android.os.Debug;
+import android.util.Log;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import com.google.ar.sceneform.utilities.Preconditions;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Measures the time per op of a benchmark with {@link BenchmarkRule}, then counts its allocations
+ * per op. {@link #measureAllocationFree(Runnable)} also fails the benchmark if the op allocates.
+ *
+ * <p>Sceneform checks that the scene graph is used from the UI thread. The benchmarks run on the
+ * instrumentation thread, so the check is disabled while they run.
+ */
+public final class SceneformBenchmarkRule implements TestRule {
+  private static final String TAG = "SceneformBenchmark";
+  private static final int ALLOCATION_COUNT_ITERATIONS = 1000;
+  // The result code used by the benchmark library for its own results.
+  private static final int RESULT_CODE = 2;
+
+  private final BenchmarkRule benchmarkRule = new BenchmarkRule();
+  private String testName = "";
+
+  @Override
+  public Statement apply(Statement base, Description description) {
+    testName = description.getTestClass().getSimpleName() + "." + description.getMethodName();
+    Statement statement =
+        new Statement() {
+          @Override
+          public void evaluate() throws Throwable {
+            AndroidPreconditions.setUnderTesting(true);
+            try {
+              base.evaluate();
+            } finally {
+              AndroidPreconditions.setUnderTesting(false);
+            }
+          }
+        };
+    return benchmarkRule.apply(statement, description);
+  }
+
+  /**
+   * Measures the time per op and the allocations per op of an op. The op must leave the state it
+   * works on ready for the next op.
+   */
+  public void measure(Runnable op) {
+    measureAndCountAllocations(op);
+  }
+
+  /**
+   * Measures an op like {@link #measure(Runnable)}, then fails if the op allocated. Used for the
+   * paths that run every frame, which must not create garbage.
+   */
+  public void measureAllocationFree(Runnable op) {
+    double allocationsPerOp = measureAndCountAllocations(op);
+    if (allocationsPerOp > 0) {
+      throw new AssertionError(
+          String.format("%s allocated %.2f objects/op, expected 0", testName, allocationsPerOp));
+    }
+  }
+
+  private double measureAndCountAllocations(Runnable op) {
+    Preconditions.checkNotNull(op, "Parameter \"op\" was null.");
+
+    BenchmarkState state = benchmarkRule.getState();
+    while (state.keepRunning()) {
+      op.run();
+    }
+
+    double allocationsPerOp = countAllocations(op);
+    reportAllocations(allocationsPerOp);
+    return allocationsPerOp;
+  }
+
+  // Allocation counting is deprecated, but ART still implements it.
+  @SuppressWarnings("deprecation")
+  private static double countAllocations(Runnable op) {
+    Debug.resetThreadAllocCount();
+    Debug.startAllocCounting();
+    for (int i = 0; i < ALLOCATION_COUNT_ITERATIONS; i++) {
+      op.run();
+    }
+    Debug.stopAllocCounting();
+    return (double) Debug.getThreadAllocCount() / ALLOCATION_COUNT_ITERATIONS;
+  }
+
+  private void reportAllocations(double allocationsPerOp) {
+    String result = String.format("%s allocations/op: %.2f", testName, allocationsPerOp);
+    Log.i(TAG, result);
+
+    Bundle status = new Bundle();
+    status.putString(TAG, result);
+    InstrumentationRegistry.getInstrumentation().sendStatus(RESULT_CODE, status);
+  }
+}
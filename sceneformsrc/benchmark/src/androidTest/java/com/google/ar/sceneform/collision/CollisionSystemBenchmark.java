@@ -0,0 +1,121 @@
+package com.google.ar.sceneform.collision;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.ar.sceneform.benchmark.SceneformBenchmarkRule;
+import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks raycasts and overlap tests against a grid of colliders. The raycast benchmarks also
+ * fail if a raycast allocates.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CollisionSystemBenchmark {
+  private static final int GRID_SIZE = 32;
+  private static final float SPACING = 1.0f;
+
+  @Rule public final SceneformBenchmarkRule benchmarkRule = new SceneformBenchmarkRule();
+
+  private final CollisionSystem collisionSystem = new CollisionSystem();
+  private final Ray ray = new Ray();
+  private final RayHit rayHit = new RayHit();
+  private final Vector3 origin = new Vector3();
+  private final Vector3 down = new Vector3(0, -1, 0);
+  private final Vector3[] positions = {new Vector3(3.1f, 0, 5.2f), new Vector3(3.4f, 0, 5.6f)};
+  private int frame;
+  private int resultCount;
+
+  private final Consumer<Collider> countResult = collider -> resultCount++;
+  private final BiConsumer<Collider, Collider> countPair = (lhs, rhs) -> resultCount++;
+
+  @Before
+  public void setUp() {
+    for (int x = 0; x < GRID_SIZE; x++) {
+      for (int z = 0; z < GRID_SIZE; z++) {
+        CollisionShape shape =
+            (x + z) % 2 == 0 ? new Sphere(0.6f) : new Box(new Vector3(1.1f, 1.1f, 1.1f));
+        Collider collider = new Collider(new Transform(x * SPACING, 0, z * SPACING), shape);
+        collider.setAttachedCollisionSystem(collisionSystem);
+      }
+    }
+  }
+
+  @Test
+  public void raycast_hit() {
+    ray.setDirection(down);
+
+    benchmarkRule.measureAllocationFree(
+        () -> {
+          int i = frame++ % (GRID_SIZE * GRID_SIZE);
+          origin.set((i / GRID_SIZE) * SPACING, 10.0f, (i % GRID_SIZE) * SPACING);
+          ray.setOrigin(origin);
+          collisionSystem.raycast(ray, rayHit);
+        });
+  }
+
+  @Test
+  public void raycast_miss() {
+    origin.set(-10.0f, 10.0f, -10.0f);
+    ray.setOrigin(origin);
+    ray.setDirection(down);
+
+    benchmarkRule.measureAllocationFree(() -> collisionSystem.raycast(ray, rayHit));
+  }
+
+  @Test
+  public void raycast_afterMovingCollider() {
+    Transform transform = new Transform(0, 0, 0);
+    Collider moving = new Collider(transform, new Sphere(0.5f));
+    moving.setAttachedCollisionSystem(collisionSystem);
+    origin.set(3.0f, 10.0f, 5.0f);
+    ray.setOrigin(origin);
+    ray.setDirection(down);
+
+    benchmarkRule.measureAllocationFree(
+        () -> {
+          transform.matrix.makeTranslation(positions[frame++ & 1]);
+          moving.markWorldShapeDirty();
+          collisionSystem.raycast(ray, rayHit);
+        });
+  }
+
+  @Test
+  public void intersects() {
+    Collider probe = new Collider(new Transform(15.5f, 0, 15.5f), new Sphere(1.0f));
+
+    benchmarkRule.measure(() -> collisionSystem.intersects(probe));
+  }
+
+  @Test
+  public void intersectsAll() {
+    Collider probe = new Collider(new Transform(15.5f, 0, 15.5f), new Box(new Vector3(4, 4, 4)));
+
+    benchmarkRule.measure(() -> collisionSystem.intersectsAll(probe, countResult));
+  }
+
+  @Test
+  public void intersectsAllPairs() {
+    benchmarkRule.measure(() -> collisionSystem.intersectsAllPairs(countPair));
+  }
+
+  /** A world transform that is set directly by the benchmark. */
+  private static final class Transform implements TransformProvider {
+    private final Matrix matrix = new Matrix();
+
+    Transform(float x, float y, float z) {
+      matrix.makeTranslation(new Vector3(x, y, z));
+    }
+
+    @Override
+    public Matrix getWorldModelMatrix() {
+      return matrix;
+    }
+  }
+}
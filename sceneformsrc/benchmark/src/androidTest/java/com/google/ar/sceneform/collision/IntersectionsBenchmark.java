@@ -0,0 +1,146 @@
+package com.google.ar.sceneform.collision;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.ar.sceneform.benchmark.SceneformBenchmarkRule;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks the box intersection kernels of {@link Intersections} on overlapping and separated
+ * shapes. The *_vertexProjection benchmarks run the reference algorithm that projects the corners
+ * of each box onto the separating axes, which is how the box tests worked before they were
+ * rewritten, so the speedup can be reproduced.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IntersectionsBenchmark {
+  private static final int NUM_TEST_AXES = 15;
+
+  @Rule public final SceneformBenchmarkRule benchmarkRule = new SceneformBenchmarkRule();
+
+  private final Box box = new Box(new Vector3(1.0f, 1.0f, 1.0f));
+  private final Box overlappingBox = new Box(new Vector3(1.0f, 1.0f, 1.0f));
+  private final Box separatedBox = new Box(new Vector3(1.0f, 1.0f, 1.0f));
+  private final Sphere overlappingSphere = new Sphere(0.5f, new Vector3(0.8f, 0.5f, 0.2f));
+  private final Sphere separatedSphere = new Sphere(0.5f, new Vector3(2.0f, 0.5f, 2.0f));
+
+  @Before
+  public void setUp() {
+    box.setRotation(Quaternion.axisAngle(new Vector3(0.0f, 1.0f, 0.0f), 45.0f));
+    overlappingBox.setCenter(new Vector3(0.6f, 0.4f, 0.3f));
+    overlappingBox.setRotation(Quaternion.axisAngle(new Vector3(1.0f, 1.0f, 0.0f), 45.0f));
+    // Only separated along the cross product of two edges, so all 15 axes are tested.
+    separatedBox.setCenter(new Vector3(0.0f, 0.0f, 1.5f));
+    separatedBox.setRotation(Quaternion.axisAngle(new Vector3(1.0f, 0.0f, 0.0f), 45.0f));
+  }
+
+  @Test
+  public void boxBox_overlapping() {
+    benchmarkRule.measure(() -> Intersections.boxBoxIntersection(box, overlappingBox));
+  }
+
+  @Test
+  public void boxBox_separated() {
+    benchmarkRule.measure(() -> Intersections.boxBoxIntersection(box, separatedBox));
+  }
+
+  @Test
+  public void boxBox_overlapping_vertexProjection() {
+    benchmarkRule.measure(() -> boxBoxVertexProjection(box, overlappingBox));
+  }
+
+  @Test
+  public void boxBox_separated_vertexProjection() {
+    benchmarkRule.measure(() -> boxBoxVertexProjection(box, separatedBox));
+  }
+
+  @Test
+  public void sphereBox_overlapping() {
+    benchmarkRule.measure(() -> Intersections.sphereBoxIntersection(overlappingSphere, box));
+  }
+
+  @Test
+  public void sphereBox_separated() {
+    benchmarkRule.measure(() -> Intersections.sphereBoxIntersection(separatedSphere, box));
+  }
+
+  /**
+   * The reference box test. It builds the corners of both boxes and projects them onto each of the
+   * 15 candidate axes.
+   */
+  private static boolean boxBoxVertexProjection(Box box1, Box box2) {
+    List<Vector3> box1Vertices = getVerticesFromBox(box1);
+    List<Vector3> box2Vertices = getVerticesFromBox(box2);
+
+    ArrayList<Vector3> testAxes = new ArrayList<>(NUM_TEST_AXES);
+    for (int i = 0; i < 3; i++) {
+      testAxes.add(extractAxis(box1.getRawRotationMatrix(), i));
+    }
+    for (int i = 0; i < 3; i++) {
+      testAxes.add(extractAxis(box2.getRawRotationMatrix(), i));
+    }
+    for (int i = 0; i < 3; i++) {
+      for (int j = 3; j < 6; j++) {
+        testAxes.add(Vector3.cross(testAxes.get(i), testAxes.get(j)));
+      }
+    }
+
+    for (int i = 0; i < testAxes.size(); i++) {
+      if (!testSeparatingAxis(box1Vertices, box2Vertices, testAxes.get(i))) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean testSeparatingAxis(
+      List<Vector3> vertices1, List<Vector3> vertices2, Vector3 axis) {
+    float min1 = Float.MAX_VALUE;
+    float max1 = -Float.MAX_VALUE;
+    for (int i = 0; i < vertices1.size(); i++) {
+      float projection = Vector3.dot(axis, vertices1.get(i));
+      min1 = Math.min(projection, min1);
+      max1 = Math.max(projection, max1);
+    }
+
+    float min2 = Float.MAX_VALUE;
+    float max2 = -Float.MAX_VALUE;
+    for (int i = 0; i < vertices2.size(); i++) {
+      float projection = Vector3.dot(axis, vertices2.get(i));
+      min2 = Math.min(projection, min2);
+      max2 = Math.max(projection, max2);
+    }
+
+    return min2 <= max1 && min1 <= max2;
+  }
+
+  private static List<Vector3> getVerticesFromBox(Box box) {
+    Vector3 center = box.getCenter();
+    Vector3 extents = box.getExtents();
+    Vector3 xScaled = extractAxis(box.getRawRotationMatrix(), 0).scaled(extents.x);
+    Vector3 yScaled = extractAxis(box.getRawRotationMatrix(), 1).scaled(extents.y);
+    Vector3 zScaled = extractAxis(box.getRawRotationMatrix(), 2).scaled(extents.z);
+
+    ArrayList<Vector3> vertices = new ArrayList<>(8);
+    for (int i = 0; i < 8; i++) {
+      Vector3 vertex = new Vector3(center);
+      vertex = Vector3.add(vertex, (i & 1) == 0 ? xScaled.negated() : xScaled);
+      vertex = Vector3.add(vertex, (i & 2) == 0 ? yScaled.negated() : yScaled);
+      vertex = Vector3.add(vertex, (i & 4) == 0 ? zScaled.negated() : zScaled);
+      vertices.add(vertex);
+    }
+    return vertices;
+  }
+
+  private static Vector3 extractAxis(Matrix rotation, int index) {
+    return new Vector3(
+        rotation.data[index * 4], rotation.data[index * 4 + 1], rotation.data[index * 4 + 2]);
+  }
+}
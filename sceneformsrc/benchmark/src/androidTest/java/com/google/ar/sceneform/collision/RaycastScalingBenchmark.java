@@ -0,0 +1,121 @@
+package com.google.ar.sceneform.collision;
+
+import com.google.ar.sceneform.benchmark.SceneformBenchmarkRule;
+import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Compares the tree backed {@link CollisionSystem#raycast(Ray, RayHit)} with a linear scan that
+ * tests every collider, which is how raycasts worked before the tree, for growing numbers of
+ * colliders. The colliders are scattered at a constant density, so the number of colliders near a
+ * ray stays the same as the scene grows. The collider count where raycast_tree becomes faster than
+ * raycast_linearScan is the crossover point.
+ */
+@RunWith(Parameterized.class)
+public class RaycastScalingBenchmark {
+  private static final int RAY_COUNT = 64;
+  // The volume per collider, in cubic meters.
+  private static final float VOLUME_PER_COLLIDER = 8.0f;
+
+  @Parameterized.Parameters(name = "colliders={0}")
+  public static Collection<Object[]> parameters() {
+    return Arrays.asList(
+        new Object[][] {{4}, {8}, {16}, {32}, {64}, {128}, {256}, {512}, {1024}});
+  }
+
+  @Rule public final SceneformBenchmarkRule benchmarkRule = new SceneformBenchmarkRule();
+
+  private final int colliderCount;
+  private final CollisionSystem collisionSystem = new CollisionSystem();
+  private final ArrayList<Collider> colliders = new ArrayList<>();
+  private final Ray[] rays = new Ray[RAY_COUNT];
+  private final RayHit rayHit = new RayHit();
+  private final RayHit tempHit = new RayHit();
+  private int frame;
+
+  public RaycastScalingBenchmark(int colliderCount) {
+    this.colliderCount = colliderCount;
+  }
+
+  @Before
+  public void setUp() {
+    Random random = new Random(colliderCount);
+    float size = (float) Math.cbrt(colliderCount * VOLUME_PER_COLLIDER);
+
+    for (int i = 0; i < colliderCount; i++) {
+      CollisionShape shape =
+          i % 2 == 0 ? new Sphere(0.5f) : new Box(new Vector3(0.8f, 0.8f, 0.8f));
+      Collider collider = new Collider(new Transform(randomPoint(random, size)), shape);
+      collider.setAttachedCollisionSystem(collisionSystem);
+      colliders.add(collider);
+    }
+
+    // Rays start outside of the volume and point at a random point inside of it.
+    for (int i = 0; i < RAY_COUNT; i++) {
+      Vector3 target = randomPoint(random, size);
+      Vector3 origin = randomPoint(random, size).scaled(3.0f);
+      rays[i] = new Ray(origin, Vector3.subtract(target, origin));
+    }
+  }
+
+  @Test
+  public void raycast_tree() {
+    benchmarkRule.measure(() -> collisionSystem.raycast(rays[frame++ % RAY_COUNT], rayHit));
+  }
+
+  @Test
+  public void raycast_linearScan() {
+    benchmarkRule.measure(() -> raycastLinear(rays[frame++ % RAY_COUNT], rayHit));
+  }
+
+  /** Tests the ray against every collider and keeps the closest hit. */
+  private Collider raycastLinear(Ray ray, RayHit resultHit) {
+    resultHit.reset();
+    Collider result = null;
+    for (int i = 0; i < colliders.size(); i++) {
+      Collider collider = colliders.get(i);
+      CollisionShape collisionShape = collider.getTransformedShape();
+      if (collisionShape == null) {
+        continue;
+      }
+
+      if (collisionShape.rayIntersection(ray, tempHit)
+          && tempHit.getDistance() < resultHit.getDistance()) {
+        resultHit.set(tempHit);
+        result = collider;
+      }
+    }
+    return result;
+  }
+
+  private static Vector3 randomPoint(Random random, float size) {
+    return new Vector3(
+        (random.nextFloat() - 0.5f) * size,
+        (random.nextFloat() - 0.5f) * size,
+        (random.nextFloat() - 0.5f) * size);
+  }
+
+  /** A world transform that is set directly by the benchmark. */
+  private static final class Transform implements TransformProvider {
+    private final Matrix matrix = new Matrix();
+
+    Transform(Vector3 position) {
+      matrix.makeTranslation(position);
+    }
+
+    @Override
+    public Matrix getWorldModelMatrix() {
+      return matrix;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package com.google.ar.sceneform.rendering;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.ar.sceneform.benchmark.SceneformBenchmarkRule;
+import com.google.ar.schemas.lull.ModelDef;
+import com.google.ar.schemas.lull.ModelIndexRange;
+import com.google.ar.schemas.lull.ModelInstanceDef;
+import com.google.ar.schemas.lull.Vec3;
+import com.google.ar.schemas.lull.VertexAttribute;
+import com.google.ar.schemas.lull.VertexAttributeType;
+import com.google.ar.schemas.lull.VertexAttributeUsage;
+import com.google.ar.schemas.sceneform.CollisionShapeType;
+import com.google.ar.schemas.sceneform.SceneformBundleDef;
+import com.google.ar.schemas.sceneform.SuggestedCollisionShapeDef;
+import com.google.ar.schemas.sceneform.VersionDef;
+import com.google.flatbuffers.FlatBufferBuilder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Benchmarks the part of {@link LoadRenderableFromSfbTask} that parses the SFB FlatBuffer and
+ * builds the geometry and collision shape of a model, which doesn't need Filament.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SfbParsingBenchmark {
+  @Rule public final SceneformBenchmarkRule benchmarkRule = new SceneformBenchmarkRule();
+
+  @Test
+  public void parseSfb_smallModel() {
+    measureParse(16, false);
+  }
+
+  @Test
+  public void parseSfb_largeModel() {
+    measureParse(128, false);
+  }
+
+  @Test
+  public void parseSfb_largeModel_collisionHull() {
+    measureParse(128, true);
+  }
+
+  private void measureParse(int segments, boolean isCollisionHullEnabled) {
+    ByteBuffer bundle = createBundle(segments);
+    LoadRenderableFromSfbTask<ModelRenderable> task =
+        new LoadRenderableFromSfbTask<>(ModelRenderable.builder().makeRenderable(), null);
+    task.setCollisionHullEnabled(isCollisionHullEnabled);
+
+    benchmarkRule.measure(
+        () -> {
+          bundle.rewind();
+          task.parseSfb(bundle);
+        });
+  }
+
+  /**
+   * Serializes a model of a sphere with the given number of segments around and from pole to pole,
+   * with positions only and 32 bit indices.
+   */
+  private static ByteBuffer createBundle(int segments) {
+    int rows = segments + 1;
+    int vertexCount = rows * rows;
+    ByteBuffer vertices = ByteBuffer.allocate(vertexCount * 12).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < rows; i++) {
+      double latitude = Math.PI * i / segments;
+      for (int j = 0; j < rows; j++) {
+        double longitude = 2.0 * Math.PI * j / segments;
+        vertices.putFloat((float) (Math.sin(latitude) * Math.cos(longitude)));
+        vertices.putFloat((float) Math.cos(latitude));
+        vertices.putFloat((float) (Math.sin(latitude) * Math.sin(longitude)));
+      }
+    }
+
+    int[] indices = new int[segments * segments * 6];
+    int index = 0;
+    for (int i = 0; i < segments; i++) {
+      for (int j = 0; j < segments; j++) {
+        int corner = i * rows + j;
+        indices[index++] = corner;
+        indices[index++] = corner + rows;
+        indices[index++] = corner + 1;
+        indices[index++] = corner + 1;
+        indices[index++] = corner + rows;
+        indices[index++] = corner + rows + 1;
+      }
+    }
+
+    FlatBufferBuilder builder = new FlatBufferBuilder();
+    int vertexData = ModelInstanceDef.createVertexDataVector(builder, vertices.array());
+    int indices32 = ModelInstanceDef.createIndices32Vector(builder, indices);
+    ModelInstanceDef.startRangesVector(builder, 1);
+    ModelIndexRange.createModelIndexRange(builder, 0, indices.length);
+    int ranges = builder.endVector();
+    ModelInstanceDef.startVertexAttributesVector(builder, 1);
+    VertexAttribute.createVertexAttribute(
+        builder, VertexAttributeUsage.Position, VertexAttributeType.Vec3f);
+    int vertexAttributes = builder.endVector();
+
+    ModelInstanceDef.startModelInstanceDef(builder);
+    ModelInstanceDef.addVertexData(builder, vertexData);
+    ModelInstanceDef.addIndices32(builder, indices32);
+    ModelInstanceDef.addRanges(builder, ranges);
+    ModelInstanceDef.addVertexAttributes(builder, vertexAttributes);
+    ModelInstanceDef.addNumVertices(builder, vertexCount);
+    ModelInstanceDef.addInterleaved(builder, true);
+    int lod = ModelInstanceDef.endModelInstanceDef(builder);
+
+    int lods = ModelDef.createLodsVector(builder, new int[] {lod});
+    ModelDef.startModelDef(builder);
+    ModelDef.addLods(builder, lods);
+    int model = ModelDef.endModelDef(builder);
+
+    SuggestedCollisionShapeDef.startSuggestedCollisionShapeDef(builder);
+    SuggestedCollisionShapeDef.addType(builder, CollisionShapeType.Box);
+    SuggestedCollisionShapeDef.addCenter(builder, Vec3.createVec3(builder, 0, 0, 0));
+    SuggestedCollisionShapeDef.addSize(builder, Vec3.createVec3(builder, 2, 2, 2));
+    int collisionShape = SuggestedCollisionShapeDef.endSuggestedCollisionShapeDef(builder);
+
+    int version =
+        VersionDef.createVersionDef(
+            builder, SceneformBundle.RCB_MAJOR_VERSION, SceneformBundle.RCB_MINOR_VERSION);
+
+    SceneformBundleDef.startSceneformBundleDef(builder);
+    SceneformBundleDef.addVersion(builder, version);
+    SceneformBundleDef.addModel(builder, model);
+    SceneformBundleDef.addSuggestedCollisionShape(builder, collisionShape);
+    int root = SceneformBundleDef.endSceneformBundleDef(builder);
+    SceneformBundleDef.finishSceneformBundleDefBuffer(builder, root);
+
+    // The signature check reads absolute offsets, so the bundle must start at offset 0.
+    return ByteBuffer.wrap(builder.sizedByteArray());
+  }
+}
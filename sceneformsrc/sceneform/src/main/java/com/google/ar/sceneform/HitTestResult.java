@@ -3,6 +3,7 @@ package com.google.ar.sceneform;
 import androidx.annotation.Nullable;
 
 import com.google.ar.sceneform.collision.RayHit;
+import com.google.ar.sceneform.math.Vector3;
 
 /**
  * Stores the results of calls to Scene.hitTest and Scene.hitTestAll. Contains a node that was hit
@@ -10,6 +11,10 @@ import com.google.ar.sceneform.collision.RayHit;
  */
 public class HitTestResult extends RayHit {
   @Nullable private Node node;
+  private int instanceIndex = -1;
+  private int triangleIndex = -1;
+  private float barycentricU;
+  private float barycentricV;
 
   /** @hide */
   @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
@@ -27,10 +32,58 @@ public class HitTestResult extends RayHit {
     return node;
   }
 
+  /** @hide */
+  public void setInstanceIndex(int instanceIndex) {
+    this.instanceIndex = instanceIndex;
+  }
+
+  /**
+   * The index of the instance that was hit when the node is a {@link StaticInstancesNode}.
+   *
+   * @return the index of the hit instance, or -1 if the node itself was hit
+   */
+  public int getInstanceIndex() {
+    return instanceIndex;
+  }
+
+  /** @hide */
+  public void setTriangle(int triangleIndex, float barycentricU, float barycentricV) {
+    this.triangleIndex = triangleIndex;
+    this.barycentricU = barycentricU;
+    this.barycentricV = barycentricV;
+  }
+
+  /**
+   * The index of the triangle of the node's renderable that was hit. Only set by
+   * Scene.hitTestTriangles, and only when the node has a renderable with triangle data.
+   *
+   * @return the index of the hit triangle, or -1 if the hit wasn't against a triangle
+   */
+  public int getTriangleIndex() {
+    return triangleIndex;
+  }
+
+  /**
+   * The barycentric coordinates of the hit point within the hit triangle. The x, y and z
+   * components are the weights of the first, second and third vertex of the triangle.
+   *
+   * @see #getTriangleIndex()
+   * @return a new vector with the barycentric coordinates, or zero if the hit wasn't against a
+   *     triangle
+   */
+  public Vector3 getBarycentricCoordinates() {
+    if (triangleIndex < 0) {
+      return Vector3.zero();
+    }
+    return new Vector3(1.0f - barycentricU - barycentricV, barycentricU, barycentricV);
+  }
+
   /** @hide */
   public void set(HitTestResult other) {
     super.set(other);
     setNode(other.node);
+    setInstanceIndex(other.instanceIndex);
+    setTriangle(other.triangleIndex, other.barycentricU, other.barycentricV);
   }
 
   /** @hide */
@@ -38,5 +91,9 @@ public class HitTestResult extends RayHit {
   public void reset() {
     super.reset();
     node = null;
+    instanceIndex = -1;
+    triangleIndex = -1;
+    barycentricU = 0.0f;
+    barycentricV = 0.0f;
   }
 }
@@ -24,6 +24,8 @@ import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.ChangeId;
 import com.google.ar.sceneform.utilities.Preconditions;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -110,6 +112,10 @@ public class Node extends NodeParent implements TransformProvider {
      * position is changed, then that will trigger {@link #onTransformChanged(Node, Node)} to be
      * called for all of it's descendants with the originatingNode being node A.
      *
+     * <p>For nodes in a scene, this is called once per frame during the scene update no matter how
+     * many times the node changed during the frame. For nodes that aren't in a scene, it is called
+     * immediately.
+     *
      * @param node the node that changed
      * @param originatingNode the node that triggered the transformation to change
      */
@@ -130,28 +136,56 @@ public class Node extends NodeParent implements TransformProvider {
     }
   }
 
+  /**
+   * Collision layers that a node belongs to unless they are changed with {@link
+   * #setCollisionLayers(int)}.
+   */
+  public static final int DEFAULT_COLLISION_LAYERS = Collider.DEFAULT_LAYERS;
+
   private static final float DIRECTION_UP_EPSILON = 0.99f;
 
   // This is the default from the ViewConfiguration class.
   private static final int DEFAULT_TOUCH_SLOP = 8;
 
   private static final String DEFAULT_NAME = "Node";
+  private static final int[] NO_TAG_INDEX_POSITIONS = new int[0];
+
+  // Constants used to avoid allocating in per-frame methods, never modified.
+  private static final Vector3 ONE = Vector3.one();
+  private static final Vector3 FORWARD = Vector3.forward();
+  private static final Vector3 BACK = Vector3.back();
+  private static final Vector3 RIGHT = Vector3.right();
+  private static final Vector3 LEFT = Vector3.left();
+  private static final Vector3 UP = Vector3.up();
+  private static final Vector3 DOWN = Vector3.down();
+
+  // Every epoch of every domain gets a new value, so a node that moves to another scene is never
+  // mistaken for one validated in the current epoch of that scene.
+  private static long lastTransformEpoch;
+  // Every recomputed world transform gets a new generation, so a node can tell that the world
+  // transform of its parent changed by comparing generations instead of being flagged by it. The
+  // counter is shared so that generations stay unique when nodes move between scenes.
+  private static long lastWorldGeneration;
+  // The domain of the nodes that aren't in a scene.
+  private static final TransformDomain detachedTransformDomain = new TransformDomain();
 
-  private static final int LOCAL_TRANSFORM_DIRTY = 1;
-  private static final int WORLD_TRANSFORM_DIRTY = 1 << 1;
-  private static final int WORLD_INVERSE_TRANSFORM_DIRTY = 1 << 2;
-  private static final int WORLD_POSITION_DIRTY = 1 << 3;
-  private static final int WORLD_ROTATION_DIRTY = 1 << 4;
-  private static final int WORLD_SCALE_DIRTY = 1 << 5;
-
-  private static final int WORLD_DIRTY_FLAGS =
-      WORLD_TRANSFORM_DIRTY
-          | WORLD_INVERSE_TRANSFORM_DIRTY
-          | WORLD_POSITION_DIRTY
-          | WORLD_ROTATION_DIRTY
-          | WORLD_SCALE_DIRTY;
+  /**
+   * The nodes whose world transforms are validated together, which are the nodes of a scene or the
+   * nodes that aren't in any scene. Moving a node only advances the epoch of its own domain, so
+   * nodes in other scenes don't need to check their ancestors again.
+   */
+  static final class TransformDomain {
+    // Advanced whenever the local transform or the parent of a node in the domain changes. A node
+    // whose world transform was validated during the current epoch doesn't need to check its
+    // ancestors again.
+    private long epoch = ++lastTransformEpoch;
+    // The ancestors being validated by validateWorldTransform, reused to avoid allocations.
+    private final ArrayList<Node> validationChain = new ArrayList<>();
 
-  private static final int LOCAL_DIRTY_FLAGS = LOCAL_TRANSFORM_DIRTY | WORLD_DIRTY_FLAGS;
+    private void advance() {
+      epoch = ++lastTransformEpoch;
+    }
+  }
 
   // Scene Graph fields.
   @Nullable private Scene scene;
@@ -165,6 +199,14 @@ public class Node extends NodeParent implements TransformProvider {
   // name hash for comparison
   private int nameHash = DEFAULT_NAME.hashCode();
 
+  // Tags used to find the node, see addTag.
+  private final ArrayList<String> tags = new ArrayList<>();
+  private final List<String> unmodifiableTags = Collections.unmodifiableList(tags);
+
+  // The position of this node in the buckets of the scene's NodeIndex. Only assigned by NodeIndex.
+  int nameIndexPosition = -1;
+  private int[] tagIndexPositions = NO_TAG_INDEX_POSITIONS;
+
   /**
    * WARNING: Do not assign this property directly unless you know what you are doing. Instead, call
    * setParent. This field is only exposed in the package to be accessible to the class NodeParent.
@@ -181,6 +223,9 @@ public class Node extends NodeParent implements TransformProvider {
   // The node's parent could be a Node or the scene.
   @Nullable NodeParent parent;
 
+  // The slot of this node in the children of its parent. Only assigned by NodeParent.
+  int childSlot = -1;
+
   // Local transformation fields.
   private final Vector3 localPosition = new Vector3();
   private final Quaternion localRotation = new Quaternion();
@@ -194,12 +239,42 @@ public class Node extends NodeParent implements TransformProvider {
   private final Matrix cachedWorldModelMatrix = new Matrix();
   private final Matrix cachedWorldModelMatrixInverse = new Matrix();
 
-  /** Determines when various aspects of the node's transform are dirty and must be recalculated. */
-  private int dirtyTransformFlags = LOCAL_DIRTY_FLAGS;
+  // Transform generations. A cached value is only valid if the generations it was computed from
+  // are still current, nothing is flagged when an ancestor moves.
+  private int localGeneration;
+  private int localModelMatrixGeneration = -1;
+  private long validatedEpoch;
+  private long worldGeneration;
+  private int worldLocalGeneration = -1;
+  private long worldParentGeneration = -1;
+  private long worldInverseGeneration = -1;
+  private long worldPositionGeneration = -1;
+  private long worldRotationGeneration = -1;
+  private long worldScaleGeneration = -1;
+
+  // Which kinds of work are queued for this node in the TransformChangeQueue.
+  int pendingTransformChanges;
+  // True while setParent moves this node, so that the node isn't dispatched immediately while it
+  // is briefly out of a scene. setParent dispatches it once afterwards.
+  private boolean isChangingParent;
+
+  // The slot of this node in the scene's transform store, if the scene has one. Only assigned by
+  // TransformStore.
+  int transformSlot = -1;
+
+  // The slot of this node in the scene's transform snapshot. Only assigned by TransformSnapshot.
+  int snapshotSlot = -1;
 
   // Status fields.
   private boolean enabled = true;
   private boolean active = false;
+  private boolean isUpdateThreadSafe = false;
+  // True while a transform change made during a parallel update waits to be committed.
+  private boolean hasDeferredTransformChange = false;
+  // The transform epoch in which the world transform and the values cached from it were last
+  // validated for reads during a parallel update. Volatile so that a worker that sees it also sees
+  // the values that another worker validated.
+  private volatile long parallelReadEpoch;
 
   // Rendering fields.
   private int renderableId = ChangeId.EMPTY_ID;
@@ -211,13 +286,13 @@ public class Node extends NodeParent implements TransformProvider {
   // Collision fields.
   @Nullable private CollisionShape collisionShape;
   @Nullable private Collider collider;
+  private int collisionLayers = DEFAULT_COLLISION_LAYERS;
 
   // Listeners.
   @Nullable private OnTouchListener onTouchListener;
   @Nullable private OnTapListener onTapListener;
   private final ArrayList<LifecycleListener> lifecycleListeners = new ArrayList<>();
   private final ArrayList<TransformChangedListener> transformChangedListeners = new ArrayList<>();
-  private boolean allowDispatchTransformChangedListeners = true;
 
   // Stores data used for detecting when a tap has occurred on this node.
   @Nullable private TapTrackingData tapTrackingData = null;
@@ -228,7 +303,6 @@ public class Node extends NodeParent implements TransformProvider {
     AndroidPreconditions.checkUiThread();
 
     localScale.set(1, 1, 1);
-    cachedWorldScale.set(localScale);
   }
 
   /**
@@ -240,9 +314,21 @@ public class Node extends NodeParent implements TransformProvider {
    */
   public final void setName(String name) {
     Preconditions.checkNotNull(name, "Parameter \"name\" was null.");
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> setName(name));
+      return;
+    }
+
+    if (scene != null) {
+      scene.nodeIndex.removeName(this);
+    }
 
     this.name = name;
     nameHash = name.hashCode();
+
+    if (scene != null) {
+      scene.nodeIndex.addName(this);
+    }
   }
 
   /** Returns the name of the node. The default value is "Node". */
@@ -250,6 +336,70 @@ public class Node extends NodeParent implements TransformProvider {
     return name;
   }
 
+  /**
+   * Adds a tag to this node. Nodes can be found using their tags, see {@link
+   * NodeParent#findByTag(String)}. A node may have several tags, and a tag may be shared by several
+   * nodes. If the node already has the tag, no change is made.
+   *
+   * @param tag the tag to add
+   */
+  public final void addTag(String tag) {
+    Preconditions.checkNotNull(tag, "Parameter \"tag\" was null.");
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> addTag(tag));
+      return;
+    }
+
+    if (tags.contains(tag)) {
+      return;
+    }
+
+    tags.add(tag);
+    if (tagIndexPositions.length < tags.size()) {
+      tagIndexPositions = Arrays.copyOf(tagIndexPositions, tags.size() * 2);
+    }
+
+    if (scene != null) {
+      scene.nodeIndex.addTag(this, tags.size() - 1);
+    }
+  }
+
+  /**
+   * Removes a tag from this node. If the node doesn't have the tag, no change is made.
+   *
+   * @param tag the tag to remove
+   */
+  public final void removeTag(String tag) {
+    Preconditions.checkNotNull(tag, "Parameter \"tag\" was null.");
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> removeTag(tag));
+      return;
+    }
+
+    int tagIndex = tags.indexOf(tag);
+    if (tagIndex == -1) {
+      return;
+    }
+
+    if (scene != null) {
+      scene.nodeIndex.removeTag(this, tagIndex);
+    }
+
+    tags.remove(tagIndex);
+    System.arraycopy(
+        tagIndexPositions, tagIndex + 1, tagIndexPositions, tagIndex, tags.size() - tagIndex);
+  }
+
+  /** Returns true if this node has the given tag. */
+  public final boolean hasTag(String tag) {
+    return tags.contains(tag);
+  }
+
+  /** Returns an immutable list of the tags of this node, in the order they were added. */
+  public final List<String> getTags() {
+    return unmodifiableTags;
+  }
+
   /**
    * Changes the parent node of this node. If set to null, this node will be detached from its
    * parent. The local position, rotation, and scale of this node will remain the same. Therefore,
@@ -265,25 +415,28 @@ public class Node extends NodeParent implements TransformProvider {
    *     detached from its parent.
    */
   public void setParent(@Nullable NodeParent parent) {
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> setParent(parent));
+      return;
+    }
     AndroidPreconditions.checkUiThread();
 
     if (parent == this.parent) {
       return;
     }
 
-    // Disallow dispatching transformed changed here so we don't
-    // send it multiple times when setParent is called.
-    allowDispatchTransformChangedListeners = false;
+    isChangingParent = true;
     if (parent != null) {
       // If this node already has a parent, addChild automatically removes it from its old parent.
       parent.addChild(this);
     } else if (this.parent != null) {
       this.parent.removeChild(this);
     }
-    allowDispatchTransformChangedListeners = true;
+    isChangingParent = false;
 
-    // Make sure transform changed is dispatched.
-    markTransformChangedRecursively(WORLD_DIRTY_FLAGS, this);
+    // Make sure transform changed is dispatched. Changes queued while the parent changed are
+    // coalesced with this one.
+    markTransformChanged();
   }
 
   /**
@@ -358,6 +511,11 @@ public class Node extends NodeParent implements TransformProvider {
    * @param enabled the new enabled status of the node
    */
   public final void setEnabled(boolean enabled) {
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> setEnabled(enabled));
+      return;
+    }
+
     AndroidPreconditions.checkUiThread();
 
     if (this.enabled == enabled) {
@@ -407,6 +565,38 @@ public class Node extends NodeParent implements TransformProvider {
     return active;
   }
 
+  /**
+   * Sets whether {@link #onUpdate(FrameTime)} and the {@link LifecycleListener#onUpdated(Node,
+   * FrameTime)} callbacks of this node may be called from a worker thread. They are only called
+   * from a worker thread if the scene has an update pool, see {@link
+   * Scene#setUpdatePool(java.util.concurrent.ForkJoinPool)}. The default is false.
+   *
+   * <p>Thread-safe nodes are updated concurrently with each other, after the other nodes have been
+   * updated on the UI thread. While updating, a thread-safe node may only change its own state and
+   * its own local transform. World transforms read during the update are the ones from before the
+   * thread-safe nodes started updating, except for the transforms of other thread-safe nodes,
+   * which must not be read since they may be changing. Adding, removing, reparenting, enabling and
+   * disabling nodes, and changing their names and tags, is deferred until all of the thread-safe
+   * nodes have been updated. Nothing else in the scene may be changed.
+   *
+   * <p>Hit tests and overlap tests can't be made while updating a thread-safe node, they throw an
+   * IllegalStateException.
+   *
+   * @param updateThreadSafe true if this node can be updated from a worker thread
+   */
+  public void setUpdateThreadSafe(boolean updateThreadSafe) {
+    isUpdateThreadSafe = updateThreadSafe;
+  }
+
+  /**
+   * Returns true if this node can be updated from a worker thread.
+   *
+   * @see #setUpdateThreadSafe(boolean)
+   */
+  public final boolean isUpdateThreadSafe() {
+    return isUpdateThreadSafe;
+  }
+
   /**
    * Registers a callback to be invoked when a touch event is dispatched to this node. The way that
    * touch events are propagated mirrors the way touches are propagated to Android Views. This is
@@ -496,7 +686,7 @@ public class Node extends NodeParent implements TransformProvider {
   protected final void onAddChild(Node child) {
     super.onAddChild(child);
     child.parentAsNode = this;
-    child.markTransformChangedRecursively(WORLD_DIRTY_FLAGS, child);
+    child.markTransformChanged();
     child.setSceneRecursively(scene);
   }
 
@@ -504,36 +694,102 @@ public class Node extends NodeParent implements TransformProvider {
   protected final void onRemoveChild(Node child) {
     super.onRemoveChild(child);
     child.parentAsNode = null;
-    child.markTransformChangedRecursively(WORLD_DIRTY_FLAGS, child);
+    child.markTransformChanged();
     child.setSceneRecursively(null);
   }
 
-  private final void markTransformChangedRecursively(int flagsToMark, Node originatingNode) {
-    boolean needsRecursion = false;
+  /** Called when the local transform of this node changes. */
+  private void markLocalTransformChanged() {
+    localGeneration++;
+    markTransformChanged();
+  }
 
-    if ((dirtyTransformFlags & flagsToMark) != flagsToMark) {
-      dirtyTransformFlags |= flagsToMark;
+  /**
+   * Called when the world transform of this node and its descendants changes. This doesn't visit
+   * the descendants, their cached transforms are invalidated by the new epoch and generations, and
+   * the rest of the work is queued so that it happens once however many times the node moves.
+   */
+  private void markTransformChanged() {
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      // The rest is shared with other nodes, so it is done after the parallel update.
+      if (!hasDeferredTransformChange) {
+        hasDeferredTransformChange = true;
+        ParallelUpdate.deferTransformChange(this);
+      }
+      return;
+    }
+
+    getTransformDomain().advance();
 
-      if ((dirtyTransformFlags & WORLD_TRANSFORM_DIRTY) == WORLD_TRANSFORM_DIRTY
-          && collider != null) {
-        collider.markWorldShapeDirty();
+    Scene scene = this.scene;
+    if (scene == null) {
+      if (!isChangingParent) {
+        TransformChangeQueue.getInstance().dispatchNow(this);
       }
+      return;
+    }
 
-      needsRecursion = true;
+    TransformChangeQueue.getInstance().add(this);
+    if (scene.transformStore != null) {
+      scene.transformStore.markDirty(transformSlot);
     }
+  }
 
-    if (originatingNode.allowDispatchTransformChangedListeners) {
-      dispatchTransformChanged(originatingNode);
-      needsRecursion = true;
+  /**
+   * Brings the world transform and the values cached from it up to date, so that they are only
+   * read while nodes are updated in parallel. Also validates the ancestors, since the world
+   * transform depends on them.
+   */
+  final void validateWorldTransformForParallelUpdate() {
+    getWorldModelMatrixInverseInternal();
+    getWorldPositionInternal();
+    getWorldRotationInternal();
+    getWorldScaleInternal();
+    parallelReadEpoch = getTransformDomain().epoch;
+  }
+
+  /** Returns true if this node was validated for reads during the current parallel update. */
+  final boolean isValidatedForParallelUpdate() {
+    return parallelReadEpoch == getTransformDomain().epoch;
+  }
+
+  /**
+   * Called before the world transform is read. When a worker reads a node that wasn't validated
+   * before the parallel update, validates it under the lock of its domain so that workers never
+   * update the same cached values concurrently.
+   */
+  private void checkParallelRead() {
+    if (!ParallelUpdate.isUpdatingInParallel() || isValidatedForParallelUpdate()) {
+      return;
     }
 
-    if (needsRecursion) {
-      // Uses for instead of foreach to avoid unecessary allocations.
-      List<Node> children = getChildren();
-      for (int i = 0; i < children.size(); i++) {
-        Node node = children.get(i);
-        node.markTransformChangedRecursively(flagsToMark, originatingNode);
+    TransformDomain domain = getTransformDomain();
+    synchronized (domain) {
+      if (isValidatedForParallelUpdate()) {
+        return;
       }
+
+      // Validating reads the world transforms of this node and its ancestors, which must not
+      // check again.
+      ParallelUpdate.setUpdatingInParallel(false);
+      try {
+        validateWorldTransformForParallelUpdate();
+      } finally {
+        ParallelUpdate.setUpdatingInParallel(true);
+      }
+    }
+  }
+
+  /** Called by ParallelUpdate to finish a transform change made during a parallel update. */
+  final void commitDeferredTransformChange() {
+    hasDeferredTransformChange = false;
+    markTransformChanged();
+  }
+
+  /** Called by TransformChangeQueue when the world transform of this node changed. */
+  void markColliderTransformChanged() {
+    if (collider != null) {
+      collider.markWorldShapeDirty();
     }
   }
 
@@ -548,6 +804,19 @@ public class Node extends NodeParent implements TransformProvider {
     return new Vector3(localPosition);
   }
 
+  /**
+   * Gets the nodes position relative to its parent (local-space) without allocating.
+   *
+   * @param dest the vector the position is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getLocalPosition(Vector3 dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(localPosition);
+    return dest;
+  }
+
   /**
    * Gets a copy of the nodes rotation relative to its parent (local-space). If {@link
    * #isTopLevel()} is true, then this is the same as {@link #getWorldRotation()}.
@@ -559,6 +828,19 @@ public class Node extends NodeParent implements TransformProvider {
     return new Quaternion(localRotation);
   }
 
+  /**
+   * Gets the nodes rotation relative to its parent (local-space) without allocating.
+   *
+   * @param dest the quaternion the rotation is written to
+   * @return dest, for convenience
+   */
+  public final Quaternion getLocalRotation(Quaternion dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(localRotation);
+    return dest;
+  }
+
   /**
    * Gets a copy of the nodes scale relative to its parent (local-space). If {@link #isTopLevel()}
    * is true, then this is the same as {@link #getWorldScale()}.
@@ -570,6 +852,19 @@ public class Node extends NodeParent implements TransformProvider {
     return new Vector3(localScale);
   }
 
+  /**
+   * Gets the nodes scale relative to its parent (local-space) without allocating.
+   *
+   * @param dest the vector the scale is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getLocalScale(Vector3 dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(localScale);
+    return dest;
+  }
+
   /**
    * Get a copy of the nodes world-space position.
    *
@@ -580,6 +875,19 @@ public class Node extends NodeParent implements TransformProvider {
     return new Vector3(getWorldPositionInternal());
   }
 
+  /**
+   * Gets the nodes world-space position without allocating.
+   *
+   * @param dest the vector the position is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getWorldPosition(Vector3 dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(getWorldPositionInternal());
+    return dest;
+  }
+
   /**
    * Gets a copy of the nodes world-space rotation.
    *
@@ -590,6 +898,19 @@ public class Node extends NodeParent implements TransformProvider {
     return new Quaternion(getWorldRotationInternal());
   }
 
+  /**
+   * Gets the nodes world-space rotation without allocating.
+   *
+   * @param dest the quaternion the rotation is written to
+   * @return dest, for convenience
+   */
+  public final Quaternion getWorldRotation(Quaternion dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(getWorldRotationInternal());
+    return dest;
+  }
+
   /**
    * Gets a copy of the nodes world-space scale. Some precision will be lost if the node is skewed.
    *
@@ -600,6 +921,19 @@ public class Node extends NodeParent implements TransformProvider {
     return new Vector3(getWorldScaleInternal());
   }
 
+  /**
+   * Gets the nodes world-space scale without allocating.
+   *
+   * @param dest the vector the scale is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getWorldScale(Vector3 dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(getWorldScaleInternal());
+    return dest;
+  }
+
   /**
    * Sets the position of this node relative to its parent (local-space). If {@link #isTopLevel()}
    * is true, then this is the same as {@link #setWorldPosition(Vector3)}.
@@ -611,7 +945,7 @@ public class Node extends NodeParent implements TransformProvider {
     Preconditions.checkNotNull(position, "Parameter \"position\" was null.");
 
     localPosition.set(position);
-    markTransformChangedRecursively(LOCAL_DIRTY_FLAGS, this);
+    markLocalTransformChanged();
   }
 
   /**
@@ -625,7 +959,7 @@ public class Node extends NodeParent implements TransformProvider {
     Preconditions.checkNotNull(rotation, "Parameter \"rotation\" was null.");
 
     localRotation.set(rotation);
-    markTransformChangedRecursively(LOCAL_DIRTY_FLAGS, this);
+    markLocalTransformChanged();
   }
 
   /**
@@ -639,7 +973,7 @@ public class Node extends NodeParent implements TransformProvider {
     Preconditions.checkNotNull(scale, "Parameter \"scale\" was null.");
 
     localScale.set(scale);
-    markTransformChangedRecursively(LOCAL_DIRTY_FLAGS, this);
+    markLocalTransformChanged();
   }
 
   /**
@@ -654,15 +988,15 @@ public class Node extends NodeParent implements TransformProvider {
     if (parentAsNode == null) {
       localPosition.set(position);
     } else {
-      localPosition.set(parentAsNode.worldToLocalPoint(position));
+      parentAsNode.worldToLocalPoint(position, localPosition);
     }
 
-    markTransformChangedRecursively(LOCAL_DIRTY_FLAGS, this);
+    markLocalTransformChanged();
 
     // We already know the world position, cache it immediately so we don't
     // need to decompose it.
     cachedWorldPosition.set(position);
-    dirtyTransformFlags &= ~WORLD_POSITION_DIRTY;
+    worldPositionGeneration = getWorldGeneration();
   }
 
   /**
@@ -677,16 +1011,16 @@ public class Node extends NodeParent implements TransformProvider {
     if (parentAsNode == null) {
       localRotation.set(rotation);
     } else {
-      localRotation.set(
-          Quaternion.multiply(parentAsNode.getWorldRotationInternal().inverted(), rotation));
+      parentAsNode.getWorldRotationInternal().inverted(localRotation);
+      Quaternion.multiply(localRotation, rotation, localRotation);
     }
 
-    markTransformChangedRecursively(LOCAL_DIRTY_FLAGS, this);
+    markLocalTransformChanged();
 
     // We already know the world rotation, cache it immediately so we don't
     // need to decompose it.
     cachedWorldRotation.set(rotation);
-    dirtyTransformFlags &= ~WORLD_ROTATION_DIRTY;
+    worldRotationGeneration = getWorldGeneration();
   }
 
   /**
@@ -701,12 +1035,9 @@ public class Node extends NodeParent implements TransformProvider {
     if (parentAsNode != null) {
       Node parentAsNode = this.parentAsNode;
 
-      // Compute local matrix with scale = 1.
-      // Disallow dispatch transform changed here so we don't send the event multiple times
-      // during setWorldScale.
-      allowDispatchTransformChangedListeners = false;
-      setLocalScale(Vector3.one());
-      allowDispatchTransformChangedListeners = true;
+      // Compute local matrix with scale = 1. Both calls to setLocalScale are coalesced into a
+      // single transform changed event.
+      setLocalScale(ONE);
       Matrix localModelMatrix = getLocalModelMatrixInternal();
 
       Matrix.multiply(
@@ -729,7 +1060,7 @@ public class Node extends NodeParent implements TransformProvider {
     // We already know the world scale, cache it immediately so we don't
     // need to decompose it.
     cachedWorldScale.set(scale);
-    dirtyTransformFlags &= ~WORLD_SCALE_DIRTY;
+    worldScaleGeneration = getWorldGeneration();
   }
 
   /**
@@ -744,6 +1075,20 @@ public class Node extends NodeParent implements TransformProvider {
     return getWorldModelMatrixInternal().transformPoint(point);
   }
 
+  /**
+   * Converts a point in the local-space of this node to world-space without allocating.
+   *
+   * @param point the point to convert
+   * @param dest the vector the result is written to, may be point
+   * @return dest, for convenience
+   */
+  public final Vector3 localToWorldPoint(Vector3 point, Vector3 dest) {
+    Preconditions.checkNotNull(point, "Parameter \"point\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    return getWorldModelMatrixInternal().transformPoint(point, dest);
+  }
+
   /**
    * Converts a point in world-space to the local-space of this node.
    *
@@ -756,6 +1101,20 @@ public class Node extends NodeParent implements TransformProvider {
     return getWorldModelMatrixInverseInternal().transformPoint(point);
   }
 
+  /**
+   * Converts a point in world-space to the local-space of this node without allocating.
+   *
+   * @param point the point to convert
+   * @param dest the vector the result is written to, may be point
+   * @return dest, for convenience
+   */
+  public final Vector3 worldToLocalPoint(Vector3 point, Vector3 dest) {
+    Preconditions.checkNotNull(point, "Parameter \"point\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    return getWorldModelMatrixInverseInternal().transformPoint(point, dest);
+  }
+
   /**
    * Converts a direction from the local-space of this node to world-space. Not impacted by the
    * position or scale of the node.
@@ -769,6 +1128,20 @@ public class Node extends NodeParent implements TransformProvider {
     return Quaternion.rotateVector(getWorldRotationInternal(), direction);
   }
 
+  /**
+   * Converts a direction from the local-space of this node to world-space without allocating.
+   *
+   * @param direction the direction to convert
+   * @param dest the vector the result is written to, may be direction
+   * @return dest, for convenience
+   */
+  public final Vector3 localToWorldDirection(Vector3 direction, Vector3 dest) {
+    Preconditions.checkNotNull(direction, "Parameter \"direction\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    return Quaternion.rotateVector(getWorldRotationInternal(), direction, dest);
+  }
+
   /**
    * Converts a direction from world-space to the local-space of this node. Not impacted by the
    * position or scale of the node.
@@ -782,13 +1155,37 @@ public class Node extends NodeParent implements TransformProvider {
     return Quaternion.inverseRotateVector(getWorldRotationInternal(), direction);
   }
 
+  /**
+   * Converts a direction from world-space to the local-space of this node without allocating.
+   *
+   * @param direction the direction to convert
+   * @param dest the vector the result is written to, may be direction
+   * @return dest, for convenience
+   */
+  public final Vector3 worldToLocalDirection(Vector3 direction, Vector3 dest) {
+    Preconditions.checkNotNull(direction, "Parameter \"direction\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    return Quaternion.inverseRotateVector(getWorldRotationInternal(), direction, dest);
+  }
+
   /**
    * Gets the world-space forward vector (-z) of this node.
    *
    * @return a new vector that represents the node's forward direction in world-space
    */
   public final Vector3 getForward() {
-    return localToWorldDirection(Vector3.forward());
+    return getForward(new Vector3());
+  }
+
+  /**
+   * Gets the world-space forward vector (-z) of this node without allocating.
+   *
+   * @param dest the vector the direction is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getForward(Vector3 dest) {
+    return localToWorldDirection(FORWARD, dest);
   }
 
   /**
@@ -797,7 +1194,17 @@ public class Node extends NodeParent implements TransformProvider {
    * @return a new vector that represents the node's back direction in world-space
    */
   public final Vector3 getBack() {
-    return localToWorldDirection(Vector3.back());
+    return getBack(new Vector3());
+  }
+
+  /**
+   * Gets the world-space back vector (+z) of this node without allocating.
+   *
+   * @param dest the vector the direction is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getBack(Vector3 dest) {
+    return localToWorldDirection(BACK, dest);
   }
 
   /**
@@ -806,7 +1213,17 @@ public class Node extends NodeParent implements TransformProvider {
    * @return a new vector that represents the node's right direction in world-space
    */
   public final Vector3 getRight() {
-    return localToWorldDirection(Vector3.right());
+    return getRight(new Vector3());
+  }
+
+  /**
+   * Gets the world-space right vector (+x) of this node without allocating.
+   *
+   * @param dest the vector the direction is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getRight(Vector3 dest) {
+    return localToWorldDirection(RIGHT, dest);
   }
 
   /**
@@ -815,7 +1232,17 @@ public class Node extends NodeParent implements TransformProvider {
    * @return a new vector that represents the node's left direction in world-space
    */
   public final Vector3 getLeft() {
-    return localToWorldDirection(Vector3.left());
+    return getLeft(new Vector3());
+  }
+
+  /**
+   * Gets the world-space left vector (-x) of this node without allocating.
+   *
+   * @param dest the vector the direction is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getLeft(Vector3 dest) {
+    return localToWorldDirection(LEFT, dest);
   }
 
   /**
@@ -824,7 +1251,17 @@ public class Node extends NodeParent implements TransformProvider {
    * @return a new vector that represents the node's up direction in world-space
    */
   public final Vector3 getUp() {
-    return localToWorldDirection(Vector3.up());
+    return getUp(new Vector3());
+  }
+
+  /**
+   * Gets the world-space up vector (+y) of this node without allocating.
+   *
+   * @param dest the vector the direction is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getUp(Vector3 dest) {
+    return localToWorldDirection(UP, dest);
   }
 
   /**
@@ -833,7 +1270,17 @@ public class Node extends NodeParent implements TransformProvider {
    * @return a new vector that represents the node's down direction in world-space
    */
   public final Vector3 getDown() {
-    return localToWorldDirection(Vector3.down());
+    return getDown(new Vector3());
+  }
+
+  /**
+   * Gets the world-space down vector (-y) of this node without allocating.
+   *
+   * @param dest the vector the direction is written to
+   * @return dest, for convenience
+   */
+  public final Vector3 getDown(Vector3 dest) {
+    return localToWorldDirection(DOWN, dest);
   }
 
   /**
@@ -927,6 +1374,37 @@ public class Node extends NodeParent implements TransformProvider {
     return null;
   }
 
+  /**
+   * Sets the bitmask of collision layers this node belongs to. Hit tests and overlap tests that are
+   * given a layer mask only consider nodes that share at least one layer with the mask, and skip
+   * the other nodes without testing their collision shapes. Nodes that should never be hit, such
+   * as decorations or UI, can be moved to their own layer or given no layers at all.
+   *
+   * @see Scene#hitTest(Ray, int)
+   * @see Scene#hitTestAll(Ray, int)
+   * @see Scene#overlapTest(Node, int)
+   * @see Scene#overlapTestAll(Node, int)
+   * @see Scene#setTouchCollisionLayers(int)
+   * @param collisionLayers bitmask of layers, {@link #DEFAULT_COLLISION_LAYERS} by default
+   */
+  public void setCollisionLayers(int collisionLayers) {
+    AndroidPreconditions.checkUiThread();
+
+    this.collisionLayers = collisionLayers;
+    if (collider != null) {
+      collider.setLayers(collisionLayers);
+    }
+  }
+
+  /**
+   * Gets the bitmask of collision layers this node belongs to.
+   *
+   * @see #setCollisionLayers(int)
+   */
+  public int getCollisionLayers() {
+    return collisionLayers;
+  }
+
   /**
    * Sets the {@link Light} to display. To use, first create a {@link Light} using {@link
    * Light.Builder}. Set the parameters you care about and then attach it to the node using this
@@ -1000,6 +1478,19 @@ public class Node extends NodeParent implements TransformProvider {
     return getWorldModelMatrixInternal();
   }
 
+  /**
+   * Returns the world model matrix frozen by the scene at the end of the last frame update, or the
+   * current world model matrix if this node wasn't in the scene then.
+   *
+   * @hide
+   */
+  @Override
+  public final Matrix getFrozenWorldModelMatrix() {
+    Scene scene = this.scene;
+    Matrix frozen = scene == null ? null : scene.transformSnapshot.getWorldModelMatrix(this);
+    return frozen != null ? frozen : getWorldModelMatrixInternal();
+  }
+
   /**
    * Handles when this node becomes active. A Node is active if it's enabled, part of a scene, and
    * its parent is active.
@@ -1145,6 +1636,10 @@ public class Node extends NodeParent implements TransformProvider {
    * position is changed, then that will trigger {@link #onTransformChange(Node)} to be called for
    * all of it's children with the originatingNode being node A.
    *
+   * <p>For nodes in a scene, this is called once per frame during the scene update no matter how
+   * many times the node changed during the frame. For nodes that aren't in a scene, it is called
+   * immediately.
+   *
    * @param originatingNode the node that triggered this node's transformation to change
    */
   public void onTransformChange(Node originatingNode) {
@@ -1202,16 +1697,49 @@ public class Node extends NodeParent implements TransformProvider {
     return nameHash;
   }
 
+  int getTagIndexPosition(int tagIndex) {
+    return tagIndexPositions[tagIndex];
+  }
+
+  void setTagIndexPosition(int tagIndex, int position) {
+    tagIndexPositions[tagIndex] = position;
+  }
+
+  @Override
+  @Nullable
+  NodeIndex getNodeIndex() {
+    return scene == null ? null : scene.nodeIndex;
+  }
+
+  @Override
+  boolean isInHierarchy(Node node) {
+    return node == this || node.isDescendantOf(this);
+  }
+
   /**
    * Calls onUpdate if the node is active. Used by SceneView to dispatch updates.
    *
    * @param frameTime provides time information for the current frame
    */
   final void dispatchUpdate(FrameTime frameTime) {
-    if (!isActive()) {
+    if (!prepareUpdate()) {
       return;
     }
 
+    dispatchOnUpdate(frameTime);
+  }
+
+  /**
+   * Updates the state that changes with the renderable. Always called on the UI thread, even for
+   * nodes updated in parallel.
+   *
+   * @return false if the node is inactive and shouldn't be updated
+   */
+  final boolean prepareUpdate() {
+    if (!isActive()) {
+      return false;
+    }
+
     // Update state when the renderable has changed.
     Renderable renderable = getRenderable();
     if (renderable != null && renderable.getId().checkChanged(renderableId)) {
@@ -1221,6 +1749,19 @@ public class Node extends NodeParent implements TransformProvider {
       renderableId = renderable.getId().get();
     }
 
+    // Make sure the collision system sees changes made directly to the collision shape.
+    if (collider != null) {
+      collider.checkShapeChanged();
+    }
+
+    return true;
+  }
+
+  /**
+   * Calls onUpdate and the lifecycle listeners. Called from a worker thread for nodes that are
+   * updated in parallel.
+   */
+  final void dispatchOnUpdate(FrameTime frameTime) {
     onUpdate(frameTime);
 
     for (LifecycleListener lifecycleListener : lifecycleListeners) {
@@ -1278,6 +1819,14 @@ public class Node extends NodeParent implements TransformProvider {
   final void setSceneRecursively(@Nullable Scene scene) {
     AndroidPreconditions.checkUiThread();
 
+    // The slots of the transform store follow the hierarchy, so they must be reassigned.
+    if (this.scene != null) {
+      this.scene.onHierarchyChanged();
+    }
+    if (scene != null) {
+      scene.onHierarchyChanged();
+    }
+
     // First, set the scene of this node and all child nodes.
     setSceneRecursivelyInternal(scene);
 
@@ -1307,26 +1856,62 @@ public class Node extends NodeParent implements TransformProvider {
   }
 
   Matrix getLocalModelMatrixInternal() {
-    if ((dirtyTransformFlags & LOCAL_TRANSFORM_DIRTY) == LOCAL_TRANSFORM_DIRTY) {
+    if (localModelMatrixGeneration != localGeneration) {
       cachedLocalModelMatrix.makeTrs(localPosition, localRotation, localScale);
-      dirtyTransformFlags &= ~LOCAL_TRANSFORM_DIRTY;
+      localModelMatrixGeneration = localGeneration;
     }
 
     return cachedLocalModelMatrix;
   }
 
+  /**
+   * Sets the world model matrix computed by the scene's transform store, which already accounts
+   * for the current transform of this node and its parents. The world generation only advances if
+   * the matrix changed.
+   *
+   * @return true if the matrix changed
+   */
+  final boolean setWorldModelMatrixFromStore(float[] data, int offset) {
+    worldLocalGeneration = localGeneration;
+    worldParentGeneration = parentAsNode == null ? 0 : parentAsNode.worldGeneration;
+
+    float[] cachedData = cachedWorldModelMatrix.data;
+    for (int i = 0; i < 16; i++) {
+      if (cachedData[i] != data[offset + i]) {
+        System.arraycopy(data, offset, cachedData, 0, 16);
+        worldGeneration = ++lastWorldGeneration;
+        return true;
+      }
+    }
+
+    return false;
+  }
+
   Matrix getWorldModelMatrixInverseInternal() {
-    if ((dirtyTransformFlags & WORLD_INVERSE_TRANSFORM_DIRTY) == WORLD_INVERSE_TRANSFORM_DIRTY) {
+    long generation = getWorldGeneration();
+    if (worldInverseGeneration != generation) {
       // Cache the inverse of the world model matrix.
       // Used for converting from world-space to local-space.
-      Matrix.invert(getWorldModelMatrixInternal(), cachedWorldModelMatrixInverse);
-      dirtyTransformFlags &= ~WORLD_INVERSE_TRANSFORM_DIRTY;
+      Matrix.invert(cachedWorldModelMatrix, cachedWorldModelMatrixInverse);
+      worldInverseGeneration = generation;
     }
 
     return cachedWorldModelMatrixInverse;
   }
 
   private void setSceneRecursivelyInternal(@Nullable Scene scene) {
+    if (this.scene != scene) {
+      if (this.scene != null) {
+        this.scene.nodeIndex.remove(this);
+      }
+      if (scene != null) {
+        scene.nodeIndex.add(this);
+      }
+
+      // Validate again in the domain of the new scene.
+      validatedEpoch = 0;
+    }
+
     this.scene = scene;
     for (Node node : getChildren()) {
       node.setSceneRecursively(scene);
@@ -1426,7 +2011,8 @@ public class Node extends NodeParent implements TransformProvider {
     }
   }
 
-  private void dispatchTransformChanged(Node originatingNode) {
+  /** Called by TransformChangeQueue once per frame for each node whose transform changed. */
+  final void dispatchTransformChanged(Node originatingNode) {
     onTransformChange(originatingNode);
 
     for (int i = 0; i < transformChangedListeners.size(); i++) {
@@ -1448,6 +2034,7 @@ public class Node extends NodeParent implements TransformProvider {
       // Create the collider if it doesn't already exist.
       if (collider == null) {
         collider = new Collider(this, finalCollisionShape);
+        collider.setLayers(collisionLayers);
 
         // Attach the collider to the collision system if the node is already active.
         if (active && scene != null) {
@@ -1478,20 +2065,69 @@ public class Node extends NodeParent implements TransformProvider {
   }
 
   private Matrix getWorldModelMatrixInternal() {
-    if ((dirtyTransformFlags & WORLD_TRANSFORM_DIRTY) == WORLD_TRANSFORM_DIRTY) {
+    checkParallelRead();
+    if (validatedEpoch != getTransformDomain().epoch) {
+      validateWorldTransform();
+    }
+
+    return cachedWorldModelMatrix;
+  }
+
+  /** Returns the generation of the world model matrix after making sure that it is up to date. */
+  long getWorldGeneration() {
+    checkParallelRead();
+    if (validatedEpoch != getTransformDomain().epoch) {
+      validateWorldTransform();
+    }
+
+    return worldGeneration;
+  }
+
+  /**
+   * Brings the world model matrix up to date without recursion. Walks up to the first ancestor
+   * validated during the current epoch, then back down, recomputing only the nodes whose local
+   * transform or parent world transform generation changed.
+   */
+  private void validateWorldTransform() {
+    // A node and its ancestors are always in the same domain.
+    TransformDomain domain = getTransformDomain();
+    long epoch = domain.epoch;
+    ArrayList<Node> chain = domain.validationChain;
+    int base = chain.size();
+    for (Node node = this; node != null && node.validatedEpoch != epoch; ) {
+      chain.add(node);
+      node = node.parentAsNode;
+    }
+
+    for (int i = chain.size() - 1; i >= base; i--) {
+      chain.remove(i).updateWorldTransform(epoch);
+    }
+  }
+
+  private TransformDomain getTransformDomain() {
+    Scene scene = this.scene;
+    return scene != null ? scene.transformDomain : detachedTransformDomain;
+  }
+
+  /** Recomputes the world model matrix if needed. The parent must already be validated. */
+  private void updateWorldTransform(long epoch) {
+    long parentGeneration = parentAsNode == null ? 0 : parentAsNode.worldGeneration;
+    if (worldLocalGeneration != localGeneration || worldParentGeneration != parentGeneration) {
       if (parentAsNode == null) {
         cachedWorldModelMatrix.set(getLocalModelMatrixInternal().data);
       } else {
         Matrix.multiply(
-            parentAsNode.getWorldModelMatrixInternal(),
+            parentAsNode.cachedWorldModelMatrix,
             getLocalModelMatrixInternal(),
             cachedWorldModelMatrix);
       }
 
-      dirtyTransformFlags &= ~WORLD_TRANSFORM_DIRTY;
+      worldGeneration = ++lastWorldGeneration;
+      worldLocalGeneration = localGeneration;
+      worldParentGeneration = parentGeneration;
     }
 
-    return cachedWorldModelMatrix;
+    validatedEpoch = epoch;
   }
 
   /**
@@ -1500,16 +2136,20 @@ public class Node extends NodeParent implements TransformProvider {
    * getWorldPosition is written to be immutable and therefore requires allocating a new Vector for
    * each use.
    *
-   * @return The cachedWorldPosition.
+   * @return The cachedWorldPosition, or the local position of a top-level node. Must not be
+   *     modified.
    */
   private Vector3 getWorldPositionInternal() {
-    if ((dirtyTransformFlags & WORLD_POSITION_DIRTY) == WORLD_POSITION_DIRTY) {
-      if (parentAsNode != null) {
-        getWorldModelMatrixInternal().decomposeTranslation(cachedWorldPosition);
-      } else {
-        cachedWorldPosition.set(localPosition);
-      }
-      dirtyTransformFlags &= ~WORLD_POSITION_DIRTY;
+    // The world transform of a top-level node is its local transform. Return it instead of copying
+    // it to the cache, so that reads never write.
+    if (parentAsNode == null) {
+      return localPosition;
+    }
+
+    long generation = getWorldGeneration();
+    if (worldPositionGeneration != generation) {
+      cachedWorldModelMatrix.decomposeTranslation(cachedWorldPosition);
+      worldPositionGeneration = generation;
     }
 
     return cachedWorldPosition;
@@ -1521,17 +2161,18 @@ public class Node extends NodeParent implements TransformProvider {
    * getWorldRotation is written to be immutable and therefore requires allocating a new Quaternion
    * for each use.
    *
-   * @return The cachedWorldRotation.
+   * @return The cachedWorldRotation, or the local rotation of a top-level node. Must not be
+   *     modified.
    */
   private Quaternion getWorldRotationInternal() {
-    if ((dirtyTransformFlags & WORLD_ROTATION_DIRTY) == WORLD_ROTATION_DIRTY) {
-      if (parentAsNode != null) {
-        getWorldModelMatrixInternal()
-            .decomposeRotation(getWorldScaleInternal(), cachedWorldRotation);
-      } else {
-        cachedWorldRotation.set(localRotation);
-      }
-      dirtyTransformFlags &= ~WORLD_ROTATION_DIRTY;
+    if (parentAsNode == null) {
+      return localRotation;
+    }
+
+    long generation = getWorldGeneration();
+    if (worldRotationGeneration != generation) {
+      cachedWorldModelMatrix.decomposeRotation(getWorldScaleInternal(), cachedWorldRotation);
+      worldRotationGeneration = generation;
     }
 
     return cachedWorldRotation;
@@ -1542,16 +2183,18 @@ public class Node extends NodeParent implements TransformProvider {
    * updated before it is accessed. Used internally instead of getWorldScale because getWorldScale
    * is written to be immutable and therefore requires allocating a new Vector3 for each use.
    *
-   * @return The cachedWorldScale.
+   * @return The cachedWorldScale, or the local scale of a top-level node. Must not be
+   *     modified.
    */
   private Vector3 getWorldScaleInternal() {
-    if ((dirtyTransformFlags & WORLD_SCALE_DIRTY) == WORLD_SCALE_DIRTY) {
-      if (parentAsNode != null) {
-        getWorldModelMatrixInternal().decomposeScale(cachedWorldScale);
-      } else {
-        cachedWorldScale.set(localScale);
-      }
-      dirtyTransformFlags &= ~WORLD_SCALE_DIRTY;
+    if (parentAsNode == null) {
+      return localScale;
+    }
+
+    long generation = getWorldGeneration();
+    if (worldScaleGeneration != generation) {
+      cachedWorldModelMatrix.decomposeScale(cachedWorldScale);
+      worldScaleGeneration = generation;
     }
 
     return cachedWorldScale;
@@ -1580,7 +2223,7 @@ public class Node extends NodeParent implements TransformProvider {
     lightInstance = null;
   }
 
-  private Renderer getRendererOrDie() {
+  Renderer getRendererOrDie() {
     if (scene == null) {
       throw new IllegalStateException("Unable to get Renderer.");
     }
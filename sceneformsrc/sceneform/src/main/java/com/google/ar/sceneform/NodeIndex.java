@@ -0,0 +1,132 @@
+package com.google.ar.sceneform;
+
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Indexes the nodes in a scene by name and by tag, so that they can be found without walking the
+ * hierarchy.
+ *
+ * <p>The index is updated as nodes enter and leave the scene, and when the name or tags of a node
+ * in the scene change. Every key maps to a bucket of nodes. Each node remembers its position in
+ * the buckets it belongs to, so a node is added to or removed from a bucket in constant time.
+ * Buckets are unordered.
+ */
+class NodeIndex {
+  private final HashMap<String, ArrayList<Node>> nodesByName = new HashMap<>();
+  private final HashMap<String, ArrayList<Node>> nodesByTag = new HashMap<>();
+
+  /** Returns the nodes with the given name, or null if there are none. */
+  @Nullable
+  List<Node> getNodesWithName(String name) {
+    return nodesByName.get(name);
+  }
+
+  /** Returns the nodes with the given tag, or null if there are none. */
+  @Nullable
+  List<Node> getNodesWithTag(String tag) {
+    return nodesByTag.get(tag);
+  }
+
+  /** Called when a node enters the scene. */
+  void add(Node node) {
+    Preconditions.checkNotNull(node, "Parameter \"node\" was null.");
+
+    addName(node);
+    List<String> tags = node.getTags();
+    for (int i = 0; i < tags.size(); i++) {
+      addTag(node, i);
+    }
+  }
+
+  /** Called when a node leaves the scene. */
+  void remove(Node node) {
+    Preconditions.checkNotNull(node, "Parameter \"node\" was null.");
+
+    removeName(node);
+    List<String> tags = node.getTags();
+    for (int i = 0; i < tags.size(); i++) {
+      removeTag(node, i);
+    }
+  }
+
+  /** Called before the name of a node in the scene changes. */
+  void removeName(Node node) {
+    ArrayList<Node> bucket = nodesByName.get(node.getName());
+    if (bucket == null) {
+      return;
+    }
+
+    int position = node.nameIndexPosition;
+    Node moved = removeAt(bucket, position);
+    if (moved != null) {
+      moved.nameIndexPosition = position;
+    }
+    if (bucket.isEmpty()) {
+      nodesByName.remove(node.getName());
+    }
+    node.nameIndexPosition = -1;
+  }
+
+  /** Called after the name of a node in the scene changed. */
+  void addName(Node node) {
+    ArrayList<Node> bucket = nodesByName.get(node.getName());
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      nodesByName.put(node.getName(), bucket);
+    }
+
+    node.nameIndexPosition = bucket.size();
+    bucket.add(node);
+  }
+
+  /** Called after a tag was added to a node in the scene, at the given index in its tags. */
+  void addTag(Node node, int tagIndex) {
+    String tag = node.getTags().get(tagIndex);
+    ArrayList<Node> bucket = nodesByTag.get(tag);
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      nodesByTag.put(tag, bucket);
+    }
+
+    node.setTagIndexPosition(tagIndex, bucket.size());
+    bucket.add(node);
+  }
+
+  /** Called before the tag at the given index is removed from a node in the scene. */
+  void removeTag(Node node, int tagIndex) {
+    String tag = node.getTags().get(tagIndex);
+    ArrayList<Node> bucket = nodesByTag.get(tag);
+    if (bucket == null) {
+      return;
+    }
+
+    int position = node.getTagIndexPosition(tagIndex);
+    Node moved = removeAt(bucket, position);
+    if (moved != null) {
+      moved.setTagIndexPosition(moved.getTags().indexOf(tag), position);
+    }
+    if (bucket.isEmpty()) {
+      nodesByTag.remove(tag);
+    }
+  }
+
+  /**
+   * Removes the node at a position by moving the last node of the bucket into it. Returns the node
+   * that was moved, or null if the removed node was the last one.
+   */
+  @Nullable
+  private static Node removeAt(ArrayList<Node> bucket, int position) {
+    int last = bucket.size() - 1;
+    Node lastNode = bucket.remove(last);
+    if (position == last) {
+      return null;
+    }
+
+    bucket.set(position, lastNode);
+    return lastNode;
+  }
+}
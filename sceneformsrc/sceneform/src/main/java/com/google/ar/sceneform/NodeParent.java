@@ -5,9 +5,12 @@ import androidx.annotation.Nullable;
 
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.Preconditions;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -18,16 +21,24 @@ import java.util.function.Predicate;
  * child of another {@link Node} or a {@link Scene}, use {@link Node#setParent(NodeParent)}.
  */
 public abstract class NodeParent {
-  private final ArrayList<Node> children = new ArrayList<>();
-  private final List<Node> unmodifiableChildren = Collections.unmodifiableList(children);
-
-  // List of children that can be iterated over
-  private final ArrayList<Node> iterableChildren = new ArrayList<>();
-
-  // True if the list of children has changed since the last time iterableChildren was updated.
-  private boolean isIterableChildrenDirty;
-
-  // Used to track if the list of iterableChildren is currently being iterated over.
+  private static final Node[] NO_CHILDREN = new Node[0];
+  private static final int[] NO_SLOTS = new int[0];
+
+  // The children in order. Each child stores its slot, so removing a child only leaves a null hole
+  // instead of searching for the child and shifting the children after it. Holes are compacted
+  // away the next time the children are read or iterated over outside of an iteration. Children
+  // added during an iteration are appended after the slots being iterated over, so iterating never
+  // needs a copy of the children.
+  private Node[] childSlots = NO_CHILDREN;
+  private int slotCount;
+  private int holeCount;
+  // The slots of the children in order, without the holes. Only built when a child is read by
+  // index while there are holes, and rebuilt after the children change.
+  private int[] liveSlots = NO_SLOTS;
+  private boolean isLiveSlotsValid;
+  private final ChildList unmodifiableChildren = new ChildList();
+
+  // Used to track if the children are currently being iterated over.
   // This is an integer instead of a boolean to handle re-entrance (iteration inside of iteration).
   private int iteratingCounter;
 
@@ -46,6 +57,10 @@ public abstract class NodeParent {
    */
   public final void addChild(Node child) {
     Preconditions.checkNotNull(child, "Parameter \"child\" was null.");
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> addChild(child));
+      return;
+    }
     AndroidPreconditions.checkUiThread();
 
     // Return early if the parent hasn't changed.
@@ -69,10 +84,14 @@ public abstract class NodeParent {
    */
   public final void removeChild(Node child) {
     Preconditions.checkNotNull(child, "Parameter \"child\" was null.");
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      ParallelUpdate.deferStructuralChange(() -> removeChild(child));
+      return;
+    }
     AndroidPreconditions.checkUiThread();
 
     // Return early if this parent doesn't contain the child.
-    if (!children.contains(child)) {
+    if (child.parent != this) {
       return;
     }
 
@@ -90,11 +109,15 @@ public abstract class NodeParent {
   public void callOnHierarchy(Consumer<Node> consumer) {
     Preconditions.checkNotNull(consumer, "Parameter \"consumer\" was null.");
 
-    ArrayList<Node> iterableChildren = getIterableChildren();
+    compactChildSlots();
     startIterating();
-    for (int i = 0; i < iterableChildren.size(); i++) {
-      Node child = iterableChildren.get(i);
-      child.callOnHierarchy(consumer);
+    // Children added while iterating are appended after count, and aren't visited.
+    int count = slotCount;
+    for (int i = 0; i < count; i++) {
+      Node child = childSlots[i];
+      if (child != null) {
+        child.callOnHierarchy(consumer);
+      }
     }
     stopIterating();
   }
@@ -112,11 +135,15 @@ public abstract class NodeParent {
   public Node findInHierarchy(Predicate<Node> condition) {
     Preconditions.checkNotNull(condition, "Parameter \"condition\" was null.");
 
-    ArrayList<Node> iterableChildren = getIterableChildren();
+    compactChildSlots();
     Node found = null;
     startIterating();
-    for (int i = 0; i < iterableChildren.size(); i++) {
-      Node child = iterableChildren.get(i);
+    int count = slotCount;
+    for (int i = 0; i < count; i++) {
+      Node child = childSlots[i];
+      if (child == null) {
+        continue;
+      }
       found = child.findInHierarchy(condition);
       if (found != null) {
         break;
@@ -131,6 +158,9 @@ public abstract class NodeParent {
    * this NodeParent is a Node, traversal starts with this NodeParent, otherwise traversal starts
    * with its children.
    *
+   * <p>Nodes in a scene are indexed by name, so if only one node in the hierarchy has the name it
+   * is found without traversing the hierarchy.
+   *
    * @param name The name of the node to find
    * @return the node if it's found, otherwise null
    */
@@ -141,6 +171,11 @@ public abstract class NodeParent {
       return null;
     }
 
+    NodeIndex nodeIndex = getNodeIndex();
+    if (nodeIndex != null) {
+      return findIndexed(nodeIndex.getNodesWithName(name), node -> name.equals(node.getName()));
+    }
+
     int hashToFind = name.hashCode();
     Node found =
         findInHierarchy(
@@ -153,6 +188,92 @@ public abstract class NodeParent {
     return found;
   }
 
+  /**
+   * Traverse the hierarchy to find the first node with a given tag. Traversal is depth first. If
+   * this NodeParent is a Node, traversal starts with this NodeParent, otherwise traversal starts
+   * with its children.
+   *
+   * <p>Nodes in a scene are indexed by tag, so if only one node in the hierarchy has the tag it is
+   * found without traversing the hierarchy.
+   *
+   * @param tag The tag of the node to find
+   * @return the node if it's found, otherwise null
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  public Node findByTag(String tag) {
+    Preconditions.checkNotNull(tag, "Parameter \"tag\" was null.");
+
+    NodeIndex nodeIndex = getNodeIndex();
+    if (nodeIndex != null) {
+      return findIndexed(nodeIndex.getNodesWithTag(tag), node -> node.hasTag(tag));
+    }
+
+    return findInHierarchy(node -> node.hasTag(tag));
+  }
+
+  /**
+   * Finds all the nodes in the hierarchy with a given name. If this NodeParent is a Node, it is
+   * included in the search. The nodes are found in no particular order.
+   *
+   * <p>Nodes in a scene are indexed by name, so this doesn't traverse the hierarchy.
+   *
+   * @param name The name of the nodes to find
+   * @param dest The list that the nodes are written to. It is cleared first, so the same list can
+   *     be reused for every call.
+   * @return dest, for convenience
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public List<Node> findAllByName(String name, List<Node> dest) {
+    Preconditions.checkNotNull(name, "Parameter \"name\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    NodeIndex nodeIndex = getNodeIndex();
+    if (nodeIndex != null) {
+      return findAllIndexed(nodeIndex.getNodesWithName(name), dest);
+    }
+
+    dest.clear();
+    callOnHierarchy(
+        node -> {
+          if (name.equals(node.getName())) {
+            dest.add(node);
+          }
+        });
+    return dest;
+  }
+
+  /**
+   * Finds all the nodes in the hierarchy with a given tag. If this NodeParent is a Node, it is
+   * included in the search. The nodes are found in no particular order.
+   *
+   * <p>Nodes in a scene are indexed by tag, so this doesn't traverse the hierarchy.
+   *
+   * @param tag The tag of the nodes to find
+   * @param dest The list that the nodes are written to. It is cleared first, so the same list can
+   *     be reused for every call.
+   * @return dest, for convenience
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public List<Node> findAllByTag(String tag, List<Node> dest) {
+    Preconditions.checkNotNull(tag, "Parameter \"tag\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    NodeIndex nodeIndex = getNodeIndex();
+    if (nodeIndex != null) {
+      return findAllIndexed(nodeIndex.getNodesWithTag(tag), dest);
+    }
+
+    dest.clear();
+    callOnHierarchy(
+        node -> {
+          if (node.hasTag(tag)) {
+            dest.add(node);
+          }
+        });
+    return dest;
+  }
+
   protected boolean canAddChild(Node child, StringBuilder failureReason) {
     Preconditions.checkNotNull(child, "Parameter \"child\" was null.");
     Preconditions.checkNotNull(failureReason, "Parameter \"failureReason\" was null.");
@@ -174,30 +295,129 @@ public abstract class NodeParent {
       previousParent.removeChild(child);
     }
 
-    children.add(child);
-    child.parent = this;
+    // Reuse the slots of removed children before growing, unless they are being iterated over.
+    if (slotCount == childSlots.length) {
+      compactChildSlots();
+    }
+    if (slotCount == childSlots.length) {
+      childSlots = Arrays.copyOf(childSlots, Math.max(4, childSlots.length * 2));
+    }
 
-    isIterableChildrenDirty = true;
+    childSlots[slotCount] = child;
+    child.childSlot = slotCount;
+    slotCount++;
+    isLiveSlotsValid = false;
+    unmodifiableChildren.onModified();
+    child.parent = this;
   }
 
   @CallSuper
   protected void onRemoveChild(Node child) {
     Preconditions.checkNotNull(child, "Parameter \"child\" was null.");
 
-    children.remove(child);
+    childSlots[child.childSlot] = null;
+    child.childSlot = -1;
+    holeCount++;
+    isLiveSlotsValid = false;
+    unmodifiableChildren.onModified();
     child.parent = null;
+  }
+
+  /** Returns the index of the scene this NodeParent is in, or null if it isn't in a scene. */
+  @Nullable
+  NodeIndex getNodeIndex() {
+    return null;
+  }
 
-    isIterableChildrenDirty = true;
+  /**
+   * Returns true if the node is part of the hierarchy searched by the find methods. Only called for
+   * nodes in the same scene as this NodeParent.
+   */
+  boolean isInHierarchy(Node node) {
+    return false;
   }
 
-  private ArrayList<Node> getIterableChildren() {
-    if (isIterableChildrenDirty && !isIterating()) {
-      iterableChildren.clear();
-      iterableChildren.addAll(children);
-      isIterableChildrenDirty = false;
+  /**
+   * Returns the only candidate in the hierarchy. If several candidates are in the hierarchy, falls
+   * back to traversing it so that the first one in depth first order is returned.
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  private Node findIndexed(@Nullable List<Node> candidates, Predicate<Node> condition) {
+    if (candidates == null) {
+      return null;
     }
 
-    return iterableChildren;
+    Node found = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      Node candidate = candidates.get(i);
+      if (!isInHierarchy(candidate)) {
+        continue;
+      }
+
+      if (found != null) {
+        return findInHierarchy(condition);
+      }
+      found = candidate;
+    }
+
+    return found;
+  }
+
+  private List<Node> findAllIndexed(@Nullable List<Node> candidates, List<Node> dest) {
+    dest.clear();
+    if (candidates == null) {
+      return dest;
+    }
+
+    for (int i = 0; i < candidates.size(); i++) {
+      Node candidate = candidates.get(i);
+      if (isInHierarchy(candidate)) {
+        dest.add(candidate);
+      }
+    }
+    return dest;
+  }
+
+  /** Removes the holes left by removed children, unless the children are being iterated over. */
+  private void compactChildSlots() {
+    if (holeCount == 0 || isIterating()) {
+      return;
+    }
+
+    int count = 0;
+    for (int i = 0; i < slotCount; i++) {
+      Node child = childSlots[i];
+      if (child != null) {
+        childSlots[count] = child;
+        child.childSlot = count;
+        count++;
+      }
+    }
+
+    Arrays.fill(childSlots, count, slotCount, null);
+    slotCount = count;
+    holeCount = 0;
+    unmodifiableChildren.onModified();
+  }
+
+  /** Returns the slots of the children in order, skipping the holes. */
+  private int[] getLiveSlots() {
+    if (isLiveSlotsValid) {
+      return liveSlots;
+    }
+
+    if (liveSlots.length < slotCount) {
+      liveSlots = new int[childSlots.length];
+    }
+    int count = 0;
+    for (int i = 0; i < slotCount; i++) {
+      if (childSlots[i] != null) {
+        liveSlots[count++] = i;
+      }
+    }
+    isLiveSlotsValid = true;
+    return liveSlots;
   }
 
   private void startIterating() {
@@ -214,4 +434,53 @@ public abstract class NodeParent {
   private boolean isIterating() {
     return iteratingCounter > 0;
   }
+
+  /**
+   * Read-only view of the children that skips the holes left by removed children. Its iterators
+   * fail fast with a ConcurrentModificationException when a child is added or removed.
+   */
+  private final class ChildList extends AbstractList<Node> implements RandomAccess {
+    // Compacting before an iterator is created means the holes it finds while iterating were left
+    // by removals during the iteration, which already invalidate the iterator.
+    @Override
+    public Iterator<Node> iterator() {
+      compactChildSlots();
+      return super.iterator();
+    }
+
+    @Override
+    public ListIterator<Node> listIterator(int index) {
+      compactChildSlots();
+      return super.listIterator(index);
+    }
+
+    @Override
+    public Node get(int index) {
+      compactChildSlots();
+      if (holeCount == 0) {
+        if (index < 0 || index >= slotCount) {
+          throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + slotCount);
+        }
+        return childSlots[index];
+      }
+
+      // Holes only remain while the children are being iterated over. The live slots are indexed
+      // once, so reading the children by index stays constant time per read until they change.
+      int size = slotCount - holeCount;
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return childSlots[getLiveSlots()[index]];
+    }
+
+    @Override
+    public int size() {
+      compactChildSlots();
+      return slotCount - holeCount;
+    }
+
+    private void onModified() {
+      modCount++;
+    }
+  }
 }
@@ -0,0 +1,143 @@
+package com.google.ar.sceneform;
+
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Calls {@link Node#onUpdate(FrameTime)} for the nodes that declared their updates thread-safe on
+ * a fork-join pool, then applies the changes they made to the scene graph on the UI thread.
+ *
+ * <p>While a node is updated on the pool:
+ *
+ * <ul>
+ *   <li>Changes to its transform only update its local transform. The rest of the transform change
+ *       is deferred, so every world transform read during the parallel phase is the one from
+ *       before the phase started.
+ *   <li>Adding, removing and reparenting nodes is deferred.
+ * </ul>
+ *
+ * The deferred changes are applied in a single-threaded commit step once every node has been
+ * updated.
+ */
+class ParallelUpdate {
+  // Smaller ranges of nodes are updated on a single thread.
+  private static final int MIN_NODES_PER_TASK = 8;
+
+  // Set on a thread while it updates a node as part of a parallel update. The thread that starts
+  // the update may also run some of the nodes, so this can't be derived from the current thread.
+  private static final ThreadLocal<Boolean> isUpdatingInParallel = new ThreadLocal<>();
+
+  private static final ConcurrentLinkedQueue<Node> deferredTransformChanges =
+      new ConcurrentLinkedQueue<>();
+  private static final ConcurrentLinkedQueue<Runnable> deferredStructuralChanges =
+      new ConcurrentLinkedQueue<>();
+
+  private final ArrayList<Node> nodes = new ArrayList<>();
+
+  /** Returns true if the current thread is updating a node as part of a parallel update. */
+  static boolean isUpdatingInParallel() {
+    return Boolean.TRUE.equals(isUpdatingInParallel.get());
+  }
+
+  /**
+   * Sets whether the current thread is updating a node as part of a parallel update. Cleared by a
+   * worker while it validates a world transform, see {@link Node#isValidatedForParallelUpdate()}.
+   */
+  static void setUpdatingInParallel(boolean updatingInParallel) {
+    isUpdatingInParallel.set(updatingInParallel);
+  }
+
+  /** Defers a change to the structure of the scene graph made by a node updating in parallel. */
+  static void deferStructuralChange(Runnable change) {
+    deferredStructuralChanges.add(change);
+  }
+
+  /** Defers the rest of a transform change made by a node updating in parallel. */
+  static void deferTransformChange(Node node) {
+    deferredTransformChanges.add(node);
+  }
+
+  /** Adds a node to update during the next call to {@link #run(ForkJoinPool, FrameTime)}. */
+  void add(Node node) {
+    nodes.add(node);
+  }
+
+  /** Updates the added nodes on the pool, blocks until they are done and commits their changes. */
+  void run(ForkJoinPool pool, FrameTime frameTime) {
+    Preconditions.checkNotNull(pool, "Parameter \"pool\" was null.");
+
+    if (nodes.isEmpty()) {
+      return;
+    }
+
+    // World transforms are validated lazily, which isn't safe to do from several threads. Validate
+    // the world transforms that the nodes usually read, their own and their ancestors', up front
+    // so the workers only read them. Workers validate any other node they read under a lock.
+    for (int i = 0; i < nodes.size(); i++) {
+      Node node = nodes.get(i);
+      // An ancestor that is already validated was validated with all of its own ancestors.
+      while (node != null && !node.isValidatedForParallelUpdate()) {
+        node.validateWorldTransformForParallelUpdate();
+        node = node.getParent();
+      }
+    }
+
+    try {
+      pool.invoke(new UpdateTask(nodes, 0, nodes.size(), frameTime));
+    } finally {
+      nodes.clear();
+      commit();
+    }
+  }
+
+  private static void commit() {
+    Node node;
+    while ((node = deferredTransformChanges.poll()) != null) {
+      node.commitDeferredTransformChange();
+    }
+
+    Runnable change;
+    while ((change = deferredStructuralChanges.poll()) != null) {
+      change.run();
+    }
+  }
+
+  private static final class UpdateTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<Node> nodes;
+    private final int start;
+    private final int end;
+    private final FrameTime frameTime;
+
+    UpdateTask(ArrayList<Node> nodes, int start, int end, FrameTime frameTime) {
+      this.nodes = nodes;
+      this.start = start;
+      this.end = end;
+      this.frameTime = frameTime;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= MIN_NODES_PER_TASK) {
+        isUpdatingInParallel.set(Boolean.TRUE);
+        try {
+          for (int i = start; i < end; i++) {
+            nodes.get(i).dispatchOnUpdate(frameTime);
+          }
+        } finally {
+          isUpdatingInParallel.set(Boolean.FALSE);
+        }
+        return;
+      }
+
+      int middle = (start + end) >>> 1;
+      invokeAll(
+          new UpdateTask(nodes, start, middle, frameTime),
+          new UpdateTask(nodes, middle, end, frameTime));
+    }
+  }
+}
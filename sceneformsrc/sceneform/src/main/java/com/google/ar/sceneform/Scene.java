@@ -10,14 +10,22 @@ import androidx.annotation.VisibleForTesting;
 import com.google.ar.sceneform.collision.Collider;
 import com.google.ar.sceneform.collision.CollisionSystem;
 import com.google.ar.sceneform.collision.Ray;
+import com.google.ar.sceneform.collision.TriangleBvh;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.Color;
 import com.google.ar.sceneform.rendering.LightProbe;
+import com.google.ar.sceneform.rendering.Renderable;
 import com.google.ar.sceneform.rendering.Renderer;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.EnvironmentalHdrParameters;
 import com.google.ar.sceneform.utilities.LoadHelper;
 import com.google.ar.sceneform.utilities.Preconditions;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * The Sceneform Scene maintains the scene graph, a hierarchical organization of a scene's content.
@@ -87,6 +95,9 @@ public class Scene extends NodeParent {
   public static final EnvironmentalHdrParameters DEFAULT_HDR_PARAMETERS =
       EnvironmentalHdrParameters.makeDefault();
 
+  /** Layer mask that matches nodes on any collision layer. */
+  public static final int ALL_COLLISION_LAYERS = CollisionSystem.ALL_LAYERS;
+
   private final Camera camera;
   @Nullable private final Sun sunlightNode;
   @Nullable private final SceneView view;
@@ -96,7 +107,22 @@ public class Scene extends NodeParent {
 
   // Systems.
   final CollisionSystem collisionSystem = new CollisionSystem();
+  private final TransformChangeQueue transformChangeQueue = TransformChangeQueue.getInstance();
   private final TouchEventSystem touchEventSystem = new TouchEventSystem();
+  private int touchCollisionLayers = ALL_COLLISION_LAYERS;
+  private int[] batchColliderIndices = new int[0];
+  // Reused by hitTestTriangles.
+  private final Matrix triangleWorldToLocal = new Matrix();
+  private final Vector3 triangleRayOrigin = new Vector3();
+  private final Vector3 triangleRayDirection = new Vector3();
+  private final float[] triangleHit = new float[3];
+  // Only created when enabled with setTransformStoreEnabled.
+  @Nullable TransformStore transformStore;
+  final TransformSnapshot transformSnapshot = new TransformSnapshot(this);
+  @Nullable private ForkJoinPool updatePool;
+  final NodeIndex nodeIndex = new NodeIndex();
+  final Node.TransformDomain transformDomain = new Node.TransformDomain();
+  private final ParallelUpdate parallelUpdate = new ParallelUpdate();
 
   private final ArrayList<OnUpdateListener> onUpdateListeners = new ArrayList<>();
 
@@ -114,6 +140,7 @@ public class Scene extends NodeParent {
     }
 
     isUnderTesting = true;
+    collisionSystem.setOnBeforeRefitListener(this::onBeforeCollisionQuery);
   }
 
   /** Create a scene with the given context. */
@@ -121,6 +148,7 @@ public class Scene extends NodeParent {
   public Scene(SceneView view) {
     Preconditions.checkNotNull(view, "Parameter \"view\" was null.");
     this.view = view;
+    collisionSystem.setOnBeforeRefitListener(this::onBeforeCollisionQuery);
     camera = new Camera(this);
     if (!AndroidPreconditions.isMinAndroidApiLevel()) {
       // Enforce min api level 24
@@ -257,6 +285,61 @@ public class Scene extends NodeParent {
     onUpdateListeners.remove(onUpdateListener);
   }
 
+  /**
+   * Sets whether the world transforms of the nodes in this scene are kept in a transform store.
+   * Disabled by default.
+   *
+   * <p>When enabled, the world matrices of all nodes are stored in contiguous arrays ordered so
+   * that every parent comes before its children. Nodes that moved are recomputed in a single linear
+   * pass at the end of each frame update instead of each node walking up its parents when it is
+   * drawn, which is faster for scenes with thousands of nodes. Adding, removing or reparenting
+   * nodes makes the next pass reorder and recompute the whole scene, so this is best suited to
+   * scenes whose hierarchy rarely changes.
+   *
+   * @param enabled true to keep world transforms in a transform store
+   */
+  public void setTransformStoreEnabled(boolean enabled) {
+    AndroidPreconditions.checkUiThread();
+
+    if (enabled && transformStore == null) {
+      transformStore = new TransformStore(this);
+    } else if (!enabled) {
+      transformStore = null;
+    }
+  }
+
+  /** Returns true if the world transforms of the nodes are kept in a transform store. */
+  public boolean isTransformStoreEnabled() {
+    return transformStore != null;
+  }
+
+  /**
+   * Sets the pool used to update the nodes that declared their updates thread-safe with {@link
+   * Node#setUpdateThreadSafe(boolean)}. Null by default, in which case every node is updated on the
+   * UI thread.
+   *
+   * <p>Each frame, the nodes that aren't thread-safe are updated on the UI thread first, in
+   * hierarchy order. The thread-safe nodes are then updated concurrently on the pool, and the frame
+   * waits for all of them. Structural changes and transform changes they make are committed on the
+   * UI thread once they have all been updated, before transform changed listeners are called.
+   *
+   * @param pool the pool to update thread-safe nodes on, or null to update every node on the UI
+   *     thread
+   */
+  public void setUpdatePool(@Nullable ForkJoinPool pool) {
+    AndroidPreconditions.checkUiThread();
+    updatePool = pool;
+  }
+
+  /**
+   * Returns the pool used to update thread-safe nodes, or null if every node is updated on the UI
+   * thread.
+   */
+  @Nullable
+  public ForkJoinPool getUpdatePool() {
+    return updatePool;
+  }
+
   @Override
   public void onAddChild(Node child) {
     super.onAddChild(child);
@@ -269,6 +352,16 @@ public class Scene extends NodeParent {
     child.setSceneRecursively(null);
   }
 
+  @Override
+  NodeIndex getNodeIndex() {
+    return nodeIndex;
+  }
+
+  @Override
+  boolean isInHierarchy(Node node) {
+    return node.getScene() == this;
+  }
+
   /**
    * Tests to see if a motion event is touching any nodes within the scene, based on a ray hit test
    * whose origin is the screen position of the motion event, and outputs a HitTestResult containing
@@ -279,6 +372,20 @@ public class Scene extends NodeParent {
    *     information about where the motion event hit the node in world-space
    */
   public HitTestResult hitTest(MotionEvent motionEvent) {
+    return hitTest(motionEvent, ALL_COLLISION_LAYERS);
+  }
+
+  /**
+   * Tests to see if a motion event is touching any nodes on the given collision layers, and
+   * outputs a HitTestResult containing the node closest to the screen.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param motionEvent the motion event to use for the test
+   * @param layerMask bitmask of the collision layers to test against
+   * @return the result includes the first node that was hit by the motion event (may be null), and
+   *     information about where the motion event hit the node in world-space
+   */
+  public HitTestResult hitTest(MotionEvent motionEvent, int layerMask) {
     Preconditions.checkNotNull(motionEvent, "Parameter \"motionEvent\" was null.");
 
     if (camera == null) {
@@ -286,7 +393,7 @@ public class Scene extends NodeParent {
     }
 
     Ray ray = camera.motionEventToRay(motionEvent);
-    return hitTest(ray);
+    return hitTest(ray, layerMask);
   }
 
   /**
@@ -299,12 +406,44 @@ public class Scene extends NodeParent {
    *     information about where the ray hit the node in world-space
    */
   public HitTestResult hitTest(Ray ray) {
+    return hitTest(ray, ALL_COLLISION_LAYERS, null);
+  }
+
+  /**
+   * Tests to see if a ray is hitting any nodes on the given collision layers and outputs a
+   * HitTestResult containing the node closest to the ray origin that intersects with the ray.
+   * Nodes on other layers are skipped without testing their collision shapes.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param ray the ray to use for the test
+   * @param layerMask bitmask of the collision layers to test against
+   * @return the result includes the first node that was hit by the ray (may be null), and
+   *     information about where the ray hit the node in world-space
+   */
+  public HitTestResult hitTest(Ray ray, int layerMask) {
+    return hitTest(ray, layerMask, null);
+  }
+
+  /**
+   * Tests to see if a ray is hitting any nodes on the given collision layers that are accepted by
+   * the filter, and outputs a HitTestResult containing the node closest to the ray origin that
+   * intersects with the ray.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param ray the ray to use for the test
+   * @param layerMask bitmask of the collision layers to test against
+   * @param filter returns false for nodes that should be ignored. If null, all nodes on the layers
+   *     are tested.
+   * @return the result includes the first node that was hit by the ray (may be null), and
+   *     information about where the ray hit the node in world-space
+   */
+  public HitTestResult hitTest(Ray ray, int layerMask, @Nullable Predicate<Node> filter) {
     Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
 
     HitTestResult result = new HitTestResult();
-    Collider collider = collisionSystem.raycast(ray, result);
+    Collider collider = collisionSystem.raycast(ray, result, layerMask, toColliderFilter(filter));
     if (collider != null) {
-      result.setNode((Node) collider.getTransformProvider());
+      setHitNode(result, collider);
     }
 
     return result;
@@ -319,13 +458,27 @@ public class Scene extends NodeParent {
    *     no nodes were hit.
    */
   public ArrayList<HitTestResult> hitTestAll(MotionEvent motionEvent) {
+    return hitTestAll(motionEvent, ALL_COLLISION_LAYERS);
+  }
+
+  /**
+   * Tests to see if a motion event is touching any nodes on the given collision layers and returns
+   * a list of HitTestResults containing all of the nodes that were hit, sorted by distance.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param motionEvent The motion event to use for the test.
+   * @param layerMask Bitmask of the collision layers to test against.
+   * @return Populated with a HitTestResult for each node that was hit sorted by distance. Empty if
+   *     no nodes were hit.
+   */
+  public ArrayList<HitTestResult> hitTestAll(MotionEvent motionEvent, int layerMask) {
     Preconditions.checkNotNull(motionEvent, "Parameter \"motionEvent\" was null.");
 
     if (camera == null) {
       return new ArrayList<>();
     }
     Ray ray = camera.motionEventToRay(motionEvent);
-    return hitTestAll(ray);
+    return hitTestAll(ray, layerMask);
   }
 
   /**
@@ -338,6 +491,39 @@ public class Scene extends NodeParent {
    *     no nodes were hit.
    */
   public ArrayList<HitTestResult> hitTestAll(Ray ray) {
+    return hitTestAll(ray, ALL_COLLISION_LAYERS, null);
+  }
+
+  /**
+   * Tests to see if a ray is hitting any nodes on the given collision layers and returns a list of
+   * HitTestResults containing all of the nodes that were hit, sorted by distance. Nodes on other
+   * layers are skipped without testing their collision shapes.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param ray The ray to use for the test.
+   * @param layerMask Bitmask of the collision layers to test against.
+   * @return Populated with a HitTestResult for each node that was hit sorted by distance. Empty if
+   *     no nodes were hit.
+   */
+  public ArrayList<HitTestResult> hitTestAll(Ray ray, int layerMask) {
+    return hitTestAll(ray, layerMask, null);
+  }
+
+  /**
+   * Tests to see if a ray is hitting any nodes on the given collision layers that are accepted by
+   * the filter, and returns a list of HitTestResults containing all of the nodes that were hit,
+   * sorted by distance.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param ray The ray to use for the test.
+   * @param layerMask Bitmask of the collision layers to test against.
+   * @param filter Returns false for nodes that should be ignored. If null, all nodes on the layers
+   *     are tested.
+   * @return Populated with a HitTestResult for each node that was hit sorted by distance. Empty if
+   *     no nodes were hit.
+   */
+  public ArrayList<HitTestResult> hitTestAll(
+      Ray ray, int layerMask, @Nullable Predicate<Node> filter) {
     Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
 
     ArrayList<HitTestResult> results = new ArrayList<>();
@@ -345,12 +531,286 @@ public class Scene extends NodeParent {
     collisionSystem.raycastAll(
         ray,
         results,
-        (result, collider) -> result.setNode((Node) collider.getTransformProvider()),
+        layerMask,
+        toColliderFilter(filter),
+        Scene::setHitNode,
         () -> new HitTestResult());
 
     return results;
   }
 
+  /**
+   * Tests to see if a ray is hitting any nodes on the given collision layers, and returns a list of
+   * HitTestResults for the closest nodes that were hit, sorted by distance. Use this instead of
+   * {@link #hitTestAll(Ray, int)} when only the first few hits are needed, since the nodes beyond
+   * them are skipped instead of being tested and sorted.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param ray The ray to use for the test.
+   * @param layerMask Bitmask of the collision layers to test against.
+   * @param maxHits The maximum number of nodes to return.
+   * @param maxDistance The maximum distance along the ray to test.
+   * @return Populated with a HitTestResult for each of the closest nodes that were hit sorted by
+   *     distance. Empty if no nodes were hit.
+   */
+  public ArrayList<HitTestResult> hitTestAll(
+      Ray ray, int layerMask, int maxHits, float maxDistance) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+
+    ArrayList<HitTestResult> results = new ArrayList<>();
+
+    collisionSystem.raycastAll(
+        ray,
+        results,
+        maxHits,
+        maxDistance,
+        layerMask,
+        null,
+        Scene::setHitNode,
+        () -> new HitTestResult());
+
+    return results;
+  }
+
+  /**
+   * Tests to see if a motion event is touching the triangles of any renderables on the given
+   * collision layers, and outputs a HitTestResult containing the node closest to the screen.
+   *
+   * @see #hitTestTriangles(Ray, int)
+   * @param motionEvent the motion event to use for the test
+   * @param layerMask bitmask of the collision layers to test against
+   * @return the result includes the first node that was hit by the motion event (may be null), and
+   *     the triangle that was hit
+   */
+  public HitTestResult hitTestTriangles(MotionEvent motionEvent, int layerMask) {
+    Preconditions.checkNotNull(motionEvent, "Parameter \"motionEvent\" was null.");
+
+    if (camera == null) {
+      return new HitTestResult();
+    }
+
+    Ray ray = camera.motionEventToRay(motionEvent);
+    return hitTestTriangles(ray, layerMask);
+  }
+
+  /**
+   * Tests to see if a ray is hitting the triangles of any renderables on the given collision
+   * layers, and outputs a HitTestResult containing the node closest to the origin of the ray.
+   *
+   * <p>The collision shapes of the nodes are tested first, then the ray is tested against the
+   * triangles of the renderable of each node that was hit. This is more expensive than {@link
+   * #hitTest(Ray, int)} but finds the exact point on the model, which is useful for placing
+   * content on complex models. The triangle data of a renderable is indexed the first time it is
+   * tested, and shared by all copies of the renderable. Nodes whose renderable doesn't keep its
+   * triangle data are hit on their collision shape instead.
+   *
+   * @see HitTestResult#getTriangleIndex()
+   * @see HitTestResult#getBarycentricCoordinates()
+   * @param ray the ray to use for the test
+   * @param layerMask bitmask of the collision layers to test against
+   * @return the result includes the first node that was hit by the ray (may be null), and the
+   *     triangle that was hit
+   */
+  public HitTestResult hitTestTriangles(Ray ray, int layerMask) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+
+    HitTestResult result = new HitTestResult();
+    ArrayList<HitTestResult> candidates = hitTestAll(ray, layerMask);
+    if (candidates.isEmpty()) {
+      return result;
+    }
+
+    Vector3 origin = ray.getOrigin();
+    Vector3 direction = ray.getDirection();
+    for (int i = 0; i < candidates.size(); i++) {
+      HitTestResult candidate = candidates.get(i);
+      // The candidates are sorted by the distance to their collision shapes, which contain their
+      // triangles, so the remaining candidates can't be hit closer than the best hit so far.
+      if (candidate.getDistance() > result.getDistance()) {
+        break;
+      }
+
+      Node node = candidate.getNode();
+      int instanceIndex = candidate.getInstanceIndex();
+      StaticInstancesNode instancesNode =
+          instanceIndex >= 0 && node instanceof StaticInstancesNode
+              ? (StaticInstancesNode) node
+              : null;
+      Renderable renderable;
+      if (instancesNode != null) {
+        renderable = instancesNode.getInstanceRenderable();
+      } else {
+        renderable = node == null ? null : node.getRenderable();
+      }
+      TriangleBvh triangleBvh = renderable == null ? null : renderable.getTriangleBvh();
+      if (node == null || triangleBvh == null) {
+        if (candidate.getDistance() < result.getDistance()) {
+          result.set(candidate);
+        }
+        continue;
+      }
+
+      Matrix localToWorld =
+          instancesNode != null
+              ? instancesNode.getInstanceWorldModelMatrix(instanceIndex)
+              : node.getWorldModelMatrix();
+      if (!Matrix.invert(localToWorld, triangleWorldToLocal)) {
+        continue;
+      }
+
+      // The direction isn't normalized after transforming it, so distances along the local ray are
+      // the same as along the world ray.
+      Vector3 localOrigin = triangleWorldToLocal.transformPoint(origin, triangleRayOrigin);
+      Vector3 localDirection =
+          triangleWorldToLocal.transformDirection(direction, triangleRayDirection);
+      int triangleIndex =
+          triangleBvh.raycast(
+              localOrigin.x,
+              localOrigin.y,
+              localOrigin.z,
+              localDirection.x,
+              localDirection.y,
+              localDirection.z,
+              result.getDistance(),
+              triangleHit);
+      if (triangleIndex >= 0) {
+        result.setNode(node);
+        result.setInstanceIndex(instanceIndex);
+        result.setDistance(triangleHit[0]);
+        result.setPoint(ray.getPoint(triangleHit[0]));
+        result.setTriangle(triangleIndex, triangleHit[1], triangleHit[2]);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Tests to see if a sphere moving along a ray touches any nodes on the given collision layers
+   * that are accepted by the filter, and outputs a HitTestResult containing the first node that it
+   * touches. Unlike calling {@link #overlapTest(Node)} at the start and end of a movement, this
+   * can't miss nodes that are thinner than the distance moved, so it can be used to stop dragged
+   * or animated nodes from passing through other nodes.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param ray the sphere starts centered at the origin of the ray and moves along its direction
+   * @param radius the radius of the sphere
+   * @param maxDistance the maximum distance to move the sphere
+   * @param layerMask bitmask of the collision layers to test against
+   * @param filter returns false for nodes that should be ignored, such as the node being moved. If
+   *     null, all nodes on the layers are tested.
+   * @return the result includes the first node touched by the sphere (may be null), the distance
+   *     it moved until then, and the point and normal where it touched the node in world-space
+   */
+  public HitTestResult sphereCast(
+      Ray ray, float radius, float maxDistance, int layerMask, @Nullable Predicate<Node> filter) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+
+    HitTestResult result = new HitTestResult();
+    Collider collider =
+        collisionSystem.sphereCast(
+            ray, radius, maxDistance, result, layerMask, toColliderFilter(filter));
+    if (collider != null) {
+      setHitNode(result, collider);
+    }
+
+    return result;
+  }
+
+  /**
+   * Tests to see if a box moving along a ray touches any nodes on the given collision layers that
+   * are accepted by the filter, and outputs a HitTestResult containing the first node that it
+   * touches.
+   *
+   * @see #sphereCast(Ray, float, float, int, Predicate)
+   * @param ray the box starts centered at the origin of the ray and moves along its direction
+   * @param size the size of the box
+   * @param rotation the rotation of the box in world-space
+   * @param maxDistance the maximum distance to move the box
+   * @param layerMask bitmask of the collision layers to test against
+   * @param filter returns false for nodes that should be ignored, such as the node being moved. If
+   *     null, all nodes on the layers are tested.
+   * @return the result includes the first node touched by the box (may be null), the distance it
+   *     moved until then, and the point and normal where it touched the node in world-space
+   */
+  public HitTestResult boxCast(
+      Ray ray,
+      Vector3 size,
+      Quaternion rotation,
+      float maxDistance,
+      int layerMask,
+      @Nullable Predicate<Node> filter) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+    Preconditions.checkNotNull(size, "Parameter \"size\" was null.");
+    Preconditions.checkNotNull(rotation, "Parameter \"rotation\" was null.");
+
+    HitTestResult result = new HitTestResult();
+    Collider collider =
+        collisionSystem.boxCast(
+            ray, size, rotation, maxDistance, result, layerMask, toColliderFilter(filter));
+    if (collider != null) {
+      setHitNode(result, collider);
+    }
+
+    return result;
+  }
+
+  /**
+   * Tests a batch of rays against the nodes on the given collision layers, and outputs the node
+   * closest to the origin of each ray. This is much cheaper than calling {@link #hitTest(Ray)} for
+   * each ray when many rays are cast per frame.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param origins the origin of each ray in world-space, packed as x, y, z
+   * @param directions the direction of each ray in world-space, packed as x, y, z
+   * @param rayCount the number of rays to test
+   * @param layerMask bitmask of the collision layers to test against
+   * @param outDistances receives the distance along each ray to the node that was hit, or {@link
+   *     Float#MAX_VALUE} if the ray didn't hit a node
+   * @param outNodes receives the node closest to the origin of each ray, or null if the ray didn't
+   *     hit a node
+   * @param pool if not null, large batches are split across this pool. This call still blocks
+   *     until all of the rays have been tested.
+   * @return the number of rays that hit a node
+   */
+  public int hitTestBatch(
+      float[] origins,
+      float[] directions,
+      int rayCount,
+      int layerMask,
+      float[] outDistances,
+      Node[] outNodes,
+      @Nullable ForkJoinPool pool) {
+    Preconditions.checkNotNull(outNodes, "Parameter \"outNodes\" was null.");
+    if (rayCount < 0 || outNodes.length < rayCount) {
+      throw new IllegalArgumentException("Arrays are too small for " + rayCount + " rays.");
+    }
+
+    if (batchColliderIndices.length < rayCount) {
+      batchColliderIndices = new int[rayCount];
+    }
+
+    int hitCount =
+        collisionSystem.raycastBatch(
+            origins,
+            directions,
+            rayCount,
+            layerMask,
+            outDistances,
+            batchColliderIndices,
+            pool);
+
+    for (int i = 0; i < rayCount; i++) {
+      int colliderIndex = batchColliderIndices[i];
+      outNodes[i] =
+          colliderIndex < 0
+              ? null
+              : StaticInstancesNode.getNode(collisionSystem.getCollider(colliderIndex));
+    }
+
+    return hitCount;
+  }
+
   /**
    * Tests to see if the given node's collision shape overlaps the collision shape of any other
    * nodes in the scene using {@link Node#getCollisionShape()}. The node used for testing does not
@@ -364,6 +824,22 @@ public class Scene extends NodeParent {
    */
   @Nullable
   public Node overlapTest(Node node) {
+    return overlapTest(node, ALL_COLLISION_LAYERS);
+  }
+
+  /**
+   * Tests to see if the given node's collision shape overlaps the collision shape of any other
+   * nodes on the given collision layers. The node used for testing does not need to be active.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param node The node to use for the test.
+   * @param layerMask Bitmask of the collision layers to test against.
+   * @return A node that is overlapping the test node. If no node is overlapping the test node, then
+   *     this is null. If multiple nodes are overlapping the test node, then this could be any of
+   *     them.
+   */
+  @Nullable
+  public Node overlapTest(Node node, int layerMask) {
     Preconditions.checkNotNull(node, "Parameter \"node\" was null.");
 
     Collider collider = node.getCollider();
@@ -371,12 +847,12 @@ public class Scene extends NodeParent {
       return null;
     }
 
-    Collider intersectedCollider = collisionSystem.intersects(collider);
+    Collider intersectedCollider = collisionSystem.intersects(collider, layerMask, null);
     if (intersectedCollider == null) {
       return null;
     }
 
-    return (Node) intersectedCollider.getTransformProvider();
+    return StaticInstancesNode.getNode(intersectedCollider);
   }
 
   /**
@@ -389,6 +865,20 @@ public class Scene extends NodeParent {
    *     test node, then the list is empty.
    */
   public ArrayList<Node> overlapTestAll(Node node) {
+    return overlapTestAll(node, ALL_COLLISION_LAYERS);
+  }
+
+  /**
+   * Tests to see if a node is overlapping any other nodes on the given collision layers. The node
+   * used for testing does not need to be active.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param node The node to use for the test.
+   * @param layerMask Bitmask of the collision layers to test against.
+   * @return A list of all nodes that are overlapping the test node. If no node is overlapping the
+   *     test node, then the list is empty.
+   */
+  public ArrayList<Node> overlapTestAll(Node node, int layerMask) {
     Preconditions.checkNotNull(node, "Parameter \"node\" was null.");
 
     ArrayList<Node> results = new ArrayList<>();
@@ -400,12 +890,85 @@ public class Scene extends NodeParent {
 
     collisionSystem.intersectsAll(
         collider,
+        layerMask,
+        null,
         (Collider intersectedCollider) ->
-            results.add((Node) intersectedCollider.getTransformProvider()));
+            results.add(StaticInstancesNode.getNode(intersectedCollider)));
 
     return results;
   }
 
+  /**
+   * Finds every pair of active nodes in the scene whose collision shapes overlap each other using
+   * {@link Node#getCollisionShape()}. Each pair is reported once.
+   *
+   * <p>This is much faster than calling {@link #overlapTestAll(Node)} for every node, because all
+   * of the nodes are tested against each other in a single pass.
+   *
+   * @param onOverlap called with the two nodes of each overlapping pair
+   * @return the number of overlapping pairs
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public int overlapTestAllPairs(BiConsumer<Node, Node> onOverlap) {
+    return overlapTestAllPairs(ALL_COLLISION_LAYERS, onOverlap);
+  }
+
+  /**
+   * Finds every pair of active nodes on the given collision layers whose collision shapes overlap
+   * each other. Each pair is reported once.
+   *
+   * @see #overlapTestAllPairs(BiConsumer)
+   * @param layerMask bitmask of the collision layers to test
+   * @param onOverlap called with the two nodes of each overlapping pair
+   * @return the number of overlapping pairs
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public int overlapTestAllPairs(int layerMask, BiConsumer<Node, Node> onOverlap) {
+    Preconditions.checkNotNull(onOverlap, "Parameter \"onOverlap\" was null.");
+
+    return collisionSystem.intersectsAllPairs(
+        layerMask,
+        (Collider colliderA, Collider colliderB) ->
+            onOverlap.accept(
+                StaticInstancesNode.getNode(colliderA), StaticInstancesNode.getNode(colliderB)));
+  }
+
+  /**
+   * Sets the collision layers of the nodes that can receive touch events. Nodes that don't share a
+   * layer with the mask are ignored when deciding which node was touched, as if they had no
+   * collision shape.
+   *
+   * @see Node#setCollisionLayers(int)
+   * @param layerMask bitmask of the collision layers, {@link #ALL_COLLISION_LAYERS} by default
+   */
+  public void setTouchCollisionLayers(int layerMask) {
+    touchCollisionLayers = layerMask;
+  }
+
+  /**
+   * Gets the collision layers of the nodes that can receive touch events.
+   *
+   * @see #setTouchCollisionLayers(int)
+   */
+  public int getTouchCollisionLayers() {
+    return touchCollisionLayers;
+  }
+
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  private static Predicate<Collider> toColliderFilter(@Nullable Predicate<Node> filter) {
+    if (filter == null) {
+      return null;
+    }
+
+    return collider -> filter.test(StaticInstancesNode.getNode(collider));
+  }
+
+  private static void setHitNode(HitTestResult result, Collider collider) {
+    result.setNode(StaticInstancesNode.getNode(collider));
+    result.setInstanceIndex(StaticInstancesNode.getInstanceIndex(collider));
+  }
+
   /** Returns true if this Scene was created by a test. */
   boolean isUnderTesting() {
     return isUnderTesting;
@@ -494,9 +1057,7 @@ public class Scene extends NodeParent {
   void onTouchEvent(MotionEvent motionEvent) {
     Preconditions.checkNotNull(motionEvent, "Parameter \"motionEvent\" was null.");
 
-    // TODO: Investigate API for controlling what node's can be hit by the hitTest.
-    // i.e. layers, disabling collision shapes.
-    HitTestResult hitTestResult = hitTest(motionEvent);
+    HitTestResult hitTestResult = hitTest(motionEvent, touchCollisionLayers);
     touchEventSystem.onTouchEvent(hitTestResult, motionEvent);
   }
 
@@ -505,7 +1066,50 @@ public class Scene extends NodeParent {
       onUpdateListener.onUpdate(frameTime);
     }
 
-    callOnHierarchy(node -> node.dispatchUpdate(frameTime));
+    ForkJoinPool pool = updatePool;
+    if (pool == null) {
+      callOnHierarchy(node -> node.dispatchUpdate(frameTime));
+    } else {
+      // Thread-safe nodes are only prepared here and collected to be updated in parallel.
+      callOnHierarchy(
+          node -> {
+            if (!node.isUpdateThreadSafe()) {
+              node.dispatchUpdate(frameTime);
+            } else if (node.prepareUpdate()) {
+              parallelUpdate.add(node);
+            }
+          });
+      parallelUpdate.run(pool, frameTime);
+    }
+
+    // Transform changed listeners are called once per frame for every node that moved.
+    transformChangeQueue.flushListeners();
+
+    if (transformStore != null) {
+      transformStore.update();
+    }
+
+    // Freeze the transforms last, so the renderer draws the frame with every matrix resolved once.
+    transformSnapshot.freeze();
+  }
+
+  void onHierarchyChanged() {
+    if (transformStore != null) {
+      transformStore.invalidateOrder();
+    }
+    transformSnapshot.invalidateOrder();
+  }
+
+  /** Called by the collision system at the start of every query. */
+  private void onBeforeCollisionQuery() {
+    // The collision system is refit lazily by whichever thread queries it first, which isn't safe
+    // from the workers that update thread-safe nodes.
+    if (ParallelUpdate.isUpdatingInParallel()) {
+      throw new IllegalStateException(
+          "Collision queries can't be made while updating a thread-safe node.");
+    }
+
+    transformChangeQueue.flushColliders();
   }
 
   @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"})
@@ -0,0 +1,376 @@
+package com.google.ar.sceneform;
+
+import androidx.annotation.CallSuper;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.collision.Collider;
+import com.google.ar.sceneform.collision.CollisionShape;
+import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.rendering.Renderable;
+import com.google.ar.sceneform.rendering.RenderableInstance;
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A node that displays one {@link Renderable} at many transforms, for large layouts of identical
+ * static objects such as the shelves of a store.
+ *
+ * <p>Each instance only stores its transform relative to this node, the instance of the renderable
+ * that displays it and its collider. This uses a fraction of the memory of a {@link Node} per
+ * object, since instances have no children, listeners, or local and world transform caches.
+ * Instances move with this node, but can't be moved independently of each other other than by
+ * calling {@link #setInstanceTransform(int, Vector3, Quaternion, Vector3)}.
+ *
+ * <p>Instances are hit by {@link Scene#hitTest(com.google.ar.sceneform.collision.Ray)} and the
+ * other queries of the scene like regular nodes. The hit node is this node, and {@link
+ * HitTestResult#getInstanceIndex()} is the index of the instance that was hit. They use the
+ * collision layers of this node.
+ *
+ * <p>The renderable and collision shape of the instances are set with {@link
+ * #setInstanceRenderable(Renderable)} and {@link #setInstanceCollisionShape(CollisionShape)}.
+ * The renderable and collision shape of the node itself are still displayed and hit at the node's
+ * own transform.
+ */
+public class StaticInstancesNode extends Node {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final ArrayList<Instance> instances = new ArrayList<>();
+  // The transform of each instance relative to this node, 16 floats each in column-major order.
+  private float[] localModelMatrices = new float[INITIAL_CAPACITY * 16];
+  private final Matrix scratchMatrix = new Matrix();
+
+  @Nullable private Renderable instanceRenderable;
+  @Nullable private CollisionShape instanceCollisionShape;
+
+  /** Creates a node without instances. */
+  public StaticInstancesNode() {}
+
+  /**
+   * Sets the {@link Renderable} displayed by every instance. If {@link
+   * #setInstanceCollisionShape(CollisionShape)} is not set, then {@link
+   * Renderable#getCollisionShape()} is used to detect collisions with the instances.
+   *
+   * @param renderable the renderable to display, or null to display nothing
+   */
+  public void setInstanceRenderable(@Nullable Renderable renderable) {
+    AndroidPreconditions.checkUiThread();
+
+    if (instanceRenderable == renderable) {
+      return;
+    }
+
+    for (int i = 0; i < instances.size(); i++) {
+      destroyRenderableInstance(instances.get(i));
+    }
+
+    instanceRenderable = renderable;
+
+    for (int i = 0; i < instances.size(); i++) {
+      createRenderableInstance(instances.get(i));
+      refreshCollider(instances.get(i));
+    }
+  }
+
+  /** Returns the {@link Renderable} displayed by every instance. */
+  @Nullable
+  public Renderable getInstanceRenderable() {
+    return instanceRenderable;
+  }
+
+  /**
+   * Sets the shape used to detect collisions with every instance. If null, the collision shape of
+   * the instance renderable is used.
+   *
+   * @param collisionShape the shape of each instance relative to the instance's transform
+   */
+  public void setInstanceCollisionShape(@Nullable CollisionShape collisionShape) {
+    AndroidPreconditions.checkUiThread();
+
+    instanceCollisionShape = collisionShape;
+    for (int i = 0; i < instances.size(); i++) {
+      refreshCollider(instances.get(i));
+    }
+  }
+
+  /** Returns the shape set with {@link #setInstanceCollisionShape(CollisionShape)}. */
+  @Nullable
+  public CollisionShape getInstanceCollisionShape() {
+    return instanceCollisionShape;
+  }
+
+  /**
+   * Adds an instance at a transform relative to this node.
+   *
+   * @return the index of the new instance
+   */
+  public int addInstance(Vector3 position, Quaternion rotation, Vector3 scale) {
+    AndroidPreconditions.checkUiThread();
+
+    int index = instances.size();
+    if (localModelMatrices.length < (index + 1) * 16) {
+      localModelMatrices = Arrays.copyOf(localModelMatrices, localModelMatrices.length * 2);
+    }
+
+    Instance instance = new Instance(this, index);
+    instances.add(instance);
+    setInstanceTransform(index, position, rotation, scale);
+    createRenderableInstance(instance);
+    refreshCollider(instance);
+    return index;
+  }
+
+  /**
+   * Sets the transform of an instance relative to this node.
+   *
+   * @param index the index of the instance, as returned by {@link #addInstance(Vector3,
+   *     Quaternion, Vector3)}
+   */
+  public void setInstanceTransform(
+      int index, Vector3 position, Quaternion rotation, Vector3 scale) {
+    AndroidPreconditions.checkUiThread();
+    Preconditions.checkNotNull(position, "Parameter \"position\" was null.");
+    Preconditions.checkNotNull(rotation, "Parameter \"rotation\" was null.");
+    Preconditions.checkNotNull(scale, "Parameter \"scale\" was null.");
+    Instance instance = instances.get(index);
+
+    scratchMatrix.makeTrs(position, rotation, scale);
+    System.arraycopy(scratchMatrix.data, 0, localModelMatrices, index * 16, 16);
+
+    instance.worldGeneration = -1;
+    if (instance.collider != null) {
+      instance.collider.markWorldShapeDirty();
+    }
+  }
+
+  /**
+   * Removes an instance. To keep the instances contiguous, the last instance takes the index of
+   * the removed instance.
+   *
+   * @param index the index of the instance to remove
+   */
+  public void removeInstance(int index) {
+    AndroidPreconditions.checkUiThread();
+
+    Instance removed = instances.get(index);
+    destroyRenderableInstance(removed);
+    if (removed.collider != null) {
+      removed.collider.setAttachedCollisionSystem(null);
+      removed.collider = null;
+    }
+
+    int last = instances.size() - 1;
+    Instance moved = instances.remove(last);
+    if (index != last) {
+      System.arraycopy(localModelMatrices, last * 16, localModelMatrices, index * 16, 16);
+      moved.index = index;
+      instances.set(index, moved);
+    }
+  }
+
+  /** Removes all of the instances. */
+  public void clearInstances() {
+    AndroidPreconditions.checkUiThread();
+
+    for (int i = instances.size() - 1; i >= 0; i--) {
+      removeInstance(i);
+    }
+  }
+
+  /** Returns the number of instances. */
+  public int getInstanceCount() {
+    return instances.size();
+  }
+
+  /**
+   * Gets the world-space position of an instance.
+   *
+   * @param index the index of the instance
+   * @param dest the vector the position is written to
+   * @return dest, for convenience
+   */
+  public Vector3 getInstanceWorldPosition(int index, Vector3 dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    getInstanceWorldModelMatrix(index).decomposeTranslation(dest);
+    return dest;
+  }
+
+  /** @hide */
+  public Matrix getInstanceWorldModelMatrix(int index) {
+    return getInstanceWorldModelMatrix(instances.get(index));
+  }
+
+  @Override
+  public void setCollisionLayers(int collisionLayers) {
+    super.setCollisionLayers(collisionLayers);
+
+    for (int i = 0; i < instances.size(); i++) {
+      Collider collider = instances.get(i).collider;
+      if (collider != null) {
+        collider.setLayers(collisionLayers);
+      }
+    }
+  }
+
+  /**
+   * Attaches the instances to the renderer and the collision system. Subclasses that override this
+   * must call the super method.
+   */
+  @CallSuper
+  @Override
+  public void onActivate() {
+    super.onActivate();
+
+    Scene scene = getScene();
+    for (int i = 0; i < instances.size(); i++) {
+      Instance instance = instances.get(i);
+      if (instance.renderableInstance != null && scene != null && !scene.isUnderTesting()) {
+        instance.renderableInstance.attachToRenderer(getRendererOrDie());
+      }
+      if (instance.collider != null && scene != null) {
+        instance.collider.setAttachedCollisionSystem(scene.collisionSystem);
+      }
+    }
+  }
+
+  /**
+   * Detaches the instances from the renderer and the collision system. Subclasses that override
+   * this must call the super method.
+   */
+  @CallSuper
+  @Override
+  public void onDeactivate() {
+    super.onDeactivate();
+
+    for (int i = 0; i < instances.size(); i++) {
+      Instance instance = instances.get(i);
+      if (instance.renderableInstance != null) {
+        instance.renderableInstance.detachFromRenderer(false);
+      }
+      if (instance.collider != null) {
+        instance.collider.setAttachedCollisionSystem(null);
+      }
+    }
+  }
+
+  @Override
+  void markColliderTransformChanged() {
+    super.markColliderTransformChanged();
+
+    for (int i = 0; i < instances.size(); i++) {
+      Collider collider = instances.get(i).collider;
+      if (collider != null) {
+        collider.markWorldShapeDirty();
+      }
+    }
+  }
+
+  /** Returns the node that a collider belongs to, which may be the node of an instance. */
+  static Node getNode(Collider collider) {
+    TransformProvider transformProvider = collider.getTransformProvider();
+    if (transformProvider instanceof Instance) {
+      return ((Instance) transformProvider).node;
+    }
+
+    return (Node) transformProvider;
+  }
+
+  /** Returns the index of the instance that a collider belongs to, or -1 if it's a node's. */
+  static int getInstanceIndex(Collider collider) {
+    TransformProvider transformProvider = collider.getTransformProvider();
+    if (transformProvider instanceof Instance) {
+      return ((Instance) transformProvider).index;
+    }
+
+    return -1;
+  }
+
+  private Matrix getInstanceWorldModelMatrix(Instance instance) {
+    long generation = getWorldGeneration();
+    if (instance.worldGeneration != generation) {
+      Matrix.multiply(
+          getWorldModelMatrix().data,
+          0,
+          localModelMatrices,
+          instance.index * 16,
+          instance.worldModelMatrix.data,
+          0);
+      instance.worldGeneration = generation;
+    }
+
+    return instance.worldModelMatrix;
+  }
+
+  private void createRenderableInstance(Instance instance) {
+    Renderable renderable = instanceRenderable;
+    if (renderable == null) {
+      return;
+    }
+
+    instance.renderableInstance = renderable.createInstance(instance);
+    Scene scene = getScene();
+    if (isActive() && scene != null && !scene.isUnderTesting()) {
+      instance.renderableInstance.attachToRenderer(getRendererOrDie());
+    }
+  }
+
+  private static void destroyRenderableInstance(Instance instance) {
+    if (instance.renderableInstance != null) {
+      instance.renderableInstance.detachFromRenderer(true);
+      instance.renderableInstance = null;
+    }
+  }
+
+  private void refreshCollider(Instance instance) {
+    CollisionShape shape = instanceCollisionShape;
+    if (shape == null && instanceRenderable != null) {
+      shape = instanceRenderable.getCollisionShape();
+    }
+
+    if (shape == null) {
+      if (instance.collider != null) {
+        instance.collider.setAttachedCollisionSystem(null);
+        instance.collider = null;
+      }
+      return;
+    }
+
+    if (instance.collider == null) {
+      instance.collider = new Collider(instance, shape);
+      instance.collider.setLayers(getCollisionLayers());
+
+      Scene scene = getScene();
+      if (isActive() && scene != null) {
+        instance.collider.setAttachedCollisionSystem(scene.collisionSystem);
+      }
+    } else if (instance.collider.getShape() != shape) {
+      instance.collider.setShape(shape);
+    }
+  }
+
+  /** The transform provider of the renderable instance and collider of one instance. */
+  static final class Instance implements TransformProvider {
+    private final StaticInstancesNode node;
+    private int index;
+    private final Matrix worldModelMatrix = new Matrix();
+    // The world generation of the node that worldModelMatrix was computed for, or -1 if the local
+    // transform of the instance changed since.
+    private long worldGeneration = -1;
+    @Nullable private RenderableInstance renderableInstance;
+    @Nullable private Collider collider;
+
+    Instance(StaticInstancesNode node, int index) {
+      this.node = node;
+      this.index = index;
+    }
+
+    @Override
+    public Matrix getWorldModelMatrix() {
+      return node.getInstanceWorldModelMatrix(this);
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.google.ar.sceneform;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defers the work that a transform change causes in the descendants of a node, so that it is done
+ * once per node no matter how many times the node moved.
+ *
+ * <p>Moving a node only queues it. The descendants of the queued nodes are visited later, without
+ * recursion:
+ *
+ * <ul>
+ *   <li>Their colliders are marked as moved before the next collision query, see {@link
+ *       #flushColliders()}.
+ *   <li>Their transform changed listeners are called once per frame, see {@link
+ *       #flushListeners()}.
+ * </ul>
+ *
+ * <p>When both a node and one of its ancestors are queued, only the ancestor is visited, so every
+ * node is reached once and its listeners receive the top-most node that moved as the originating
+ * node.
+ *
+ * <p>Nodes in every scene share a single queue, so a node can move between scenes while it is
+ * queued. Like the rest of the scene graph, it must only be used from the UI thread.
+ */
+class TransformChangeQueue {
+  static final int PENDING_COLLIDERS = 1;
+  static final int PENDING_LISTENERS = 1 << 1;
+  static final int PENDING_ALL = PENDING_COLLIDERS | PENDING_LISTENERS;
+
+  private static final TransformChangeQueue INSTANCE = new TransformChangeQueue();
+
+  private final ArrayList<Node> colliderRoots = new ArrayList<>();
+  private final ArrayList<Node> listenerRoots = new ArrayList<>();
+  private final ArrayList<Node> flushingRoots = new ArrayList<>();
+  // Shared by all walks. A walk only pops the entries it pushed, so walks can nest when a listener
+  // moves a node that isn't in a scene.
+  private final ArrayList<Node> stack = new ArrayList<>();
+
+  static TransformChangeQueue getInstance() {
+    return INSTANCE;
+  }
+
+  /** Queues a node whose local transform or parent changed. */
+  void add(Node node) {
+    int pending = node.pendingTransformChanges;
+    if ((pending & PENDING_COLLIDERS) == 0) {
+      colliderRoots.add(node);
+    }
+    if ((pending & PENDING_LISTENERS) == 0) {
+      listenerRoots.add(node);
+    }
+    node.pendingTransformChanges = PENDING_ALL;
+  }
+
+  /**
+   * Immediately does the work for a node that isn't in a scene, since such a node may never be
+   * flushed.
+   */
+  void dispatchNow(Node node) {
+    walk(node, PENDING_ALL, node);
+  }
+
+  /** Marks the colliders of all queued nodes and their descendants as moved. */
+  void flushColliders() {
+    if (colliderRoots.isEmpty()) {
+      return;
+    }
+
+    // Collider updates don't call back into the scene graph, so nothing is queued while flushing.
+    collectTopMostRoots(colliderRoots, PENDING_COLLIDERS);
+    for (int i = 0; i < flushingRoots.size(); i++) {
+      walk(flushingRoots.get(i), PENDING_COLLIDERS, null);
+    }
+    flushingRoots.clear();
+  }
+
+  /**
+   * Calls the transform changed listeners of all queued nodes and their descendants. Nodes moved by
+   * the listeners are dispatched before this returns.
+   */
+  void flushListeners() {
+    while (!listenerRoots.isEmpty()) {
+      collectTopMostRoots(listenerRoots, PENDING_LISTENERS);
+
+      // Listeners may queue more nodes, so iterate over a copy of the roots. Nodes queued from now
+      // on are dispatched by the next iteration of the outer loop.
+      int start = stack.size();
+      for (int i = 0; i < flushingRoots.size(); i++) {
+        stack.add(flushingRoots.get(i));
+      }
+      flushingRoots.clear();
+      for (int i = start; i < stack.size(); i++) {
+        Node root = stack.get(i);
+        walk(root, PENDING_LISTENERS, root);
+      }
+      trimStack(start);
+    }
+  }
+
+  /**
+   * Moves the roots that have no queued ancestor into flushingRoots and clears the pending flag of
+   * all roots. The subtrees of the remaining roots don't overlap.
+   */
+  private void collectTopMostRoots(ArrayList<Node> roots, int flag) {
+    for (int i = 0; i < roots.size(); i++) {
+      Node root = roots.get(i);
+      if (!hasPendingAncestor(root, flag)) {
+        flushingRoots.add(root);
+      }
+    }
+
+    for (int i = 0; i < roots.size(); i++) {
+      Node root = roots.get(i);
+      root.pendingTransformChanges &= ~flag;
+    }
+    roots.clear();
+  }
+
+  private static boolean hasPendingAncestor(Node node, int flag) {
+    for (Node ancestor = node.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+      if ((ancestor.pendingTransformChanges & flag) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Visits a node and its descendants depth first, parents before children. */
+  private void walk(Node root, int work, @Nullable Node originatingNode) {
+    int base = stack.size();
+    stack.add(root);
+    while (stack.size() > base) {
+      Node node = stack.remove(stack.size() - 1);
+
+      if ((work & PENDING_COLLIDERS) != 0) {
+        node.markColliderTransformChanged();
+      }
+      if ((work & PENDING_LISTENERS) != 0 && originatingNode != null) {
+        node.dispatchTransformChanged(originatingNode);
+      }
+
+      // Push in reverse so that children are visited in order.
+      List<Node> children = node.getChildren();
+      for (int i = children.size() - 1; i >= 0; i--) {
+        stack.add(children.get(i));
+      }
+    }
+  }
+
+  private void trimStack(int size) {
+    for (int i = stack.size() - 1; i >= size; i--) {
+      stack.remove(i);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+package com.google.ar.sceneform;
+
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Freezes the world matrices of all nodes in a scene at the end of each frame update, so that the
+ * renderer reads one consistent set of transforms instead of resolving them lazily while drawing.
+ *
+ * <p>{@link #freeze()} resolves the world matrix of every node in the scene once and copies it
+ * into the back buffer, then swaps the buffers. The front buffer holds the transforms of the last
+ * completed update until the next call to {@link #freeze()}. Only the matrices whose world
+ * generation changed since they were last copied into a buffer are copied again.
+ *
+ * <p>Nodes that are not in the front buffer, such as nodes added to the scene since the last
+ * freeze, are not frozen and their live world matrix is used instead.
+ */
+class TransformSnapshot {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final Scene scene;
+
+  // The nodes of the scene in depth first order. A node's slot is its position in this order.
+  private Node[] order = new Node[INITIAL_CAPACITY];
+  private Node[] stack = new Node[INITIAL_CAPACITY];
+  private int count;
+  // True when the hierarchy changed and the slots must be reassigned.
+  private boolean isOrderDirty = true;
+
+  private Buffer front = new Buffer();
+  private Buffer back = new Buffer();
+
+  TransformSnapshot(Scene scene) {
+    Preconditions.checkNotNull(scene, "Parameter \"scene\" was null.");
+    this.scene = scene;
+  }
+
+  /** Called when a node is added to, removed from, or moved within the scene. */
+  void invalidateOrder() {
+    isOrderDirty = true;
+  }
+
+  /**
+   * Returns the world matrix of a node frozen by the last call to {@link #freeze()}, or null if the
+   * node wasn't in the scene then.
+   */
+  @Nullable
+  Matrix getWorldModelMatrix(Node node) {
+    int slot = node.snapshotSlot;
+    Buffer buffer = front;
+    if (slot < 0 || slot >= buffer.count || buffer.nodes[slot] != node) {
+      return null;
+    }
+
+    return buffer.matrices[slot];
+  }
+
+  /** Resolves the world matrices of all nodes into the back buffer, then swaps the buffers. */
+  void freeze() {
+    if (isOrderDirty) {
+      assignSlots();
+      isOrderDirty = false;
+    }
+
+    Buffer buffer = back;
+    buffer.ensureCapacity(count);
+    for (int i = 0; i < count; i++) {
+      Node node = order[i];
+      long generation = node.getWorldGeneration();
+      if (buffer.nodes[i] == node && buffer.generations[i] == generation) {
+        continue;
+      }
+
+      buffer.nodes[i] = node;
+      buffer.generations[i] = generation;
+      buffer.matrices[i].set(node.getWorldModelMatrix());
+    }
+
+    // Release the nodes that are no longer in the scene.
+    if (buffer.count > count) {
+      Arrays.fill(buffer.nodes, count, buffer.count, null);
+    }
+    buffer.count = count;
+
+    back = front;
+    front = buffer;
+  }
+
+  /**
+   * Assigns slots depth first, which usually follows the order the nodes were created in and reads
+   * them with better locality than breadth-first. Uses an explicit stack, since hierarchies can be
+   * deep.
+   */
+  private void assignSlots() {
+    int previousCount = count;
+    count = 0;
+
+    int stackSize = pushChildren(scene, 0);
+    while (stackSize > 0) {
+      Node node = stack[--stackSize];
+      stack[stackSize] = null;
+
+      if (count == order.length) {
+        order = Arrays.copyOf(order, order.length * 2);
+      }
+      order[count] = node;
+      node.snapshotSlot = count;
+      count++;
+
+      stackSize = pushChildren(node, stackSize);
+    }
+
+    if (previousCount > count) {
+      Arrays.fill(order, count, previousCount, null);
+    }
+  }
+
+  /** Pushes the children of a parent in reverse, so that they are popped in order. */
+  private int pushChildren(NodeParent parent, int stackSize) {
+    List<Node> children = parent.getChildren();
+    int size = children.size();
+    if (stackSize + size > stack.length) {
+      stack = Arrays.copyOf(stack, Math.max(stack.length * 2, stackSize + size));
+    }
+
+    for (int i = size - 1; i >= 0; i--) {
+      stack[stackSize++] = children.get(i);
+    }
+    return stackSize;
+  }
+
+  /** The frozen world matrices of one frame, indexed by slot. */
+  private static final class Buffer {
+    private Node[] nodes = new Node[0];
+    private long[] generations = new long[0];
+    private Matrix[] matrices = new Matrix[0];
+    private int count;
+
+    private void ensureCapacity(int capacity) {
+      if (capacity <= nodes.length) {
+        return;
+      }
+
+      int newCapacity = Math.max(Math.max(INITIAL_CAPACITY, nodes.length * 2), capacity);
+      int oldCapacity = nodes.length;
+      nodes = Arrays.copyOf(nodes, newCapacity);
+      generations = Arrays.copyOf(generations, newCapacity);
+      matrices = Arrays.copyOf(matrices, newCapacity);
+      for (int i = oldCapacity; i < newCapacity; i++) {
+        matrices[i] = new Matrix();
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package com.google.ar.sceneform;
+
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the world matrices of all nodes in a scene in contiguous arrays, so that they can be
+ * recomputed in a single linear pass once per frame.
+ *
+ * <p>Each node in the scene is assigned a slot. Slots are assigned breadth-first, so the slot of a
+ * parent always comes before the slots of its children. A node that changes only marks its slot as
+ * dirty. {@link #update()} then walks the slots in order, and recomputes the world matrix of every
+ * dirty slot, and every slot whose parent's world matrix changed, from the world matrix of the
+ * parent that was already computed earlier in the same pass. A node whose world matrix comes out
+ * unchanged keeps its world generation, so nothing derived from it is recomputed. This replaces
+ * walking up the hierarchy from each node, and doesn't allocate once the arrays have grown to fit
+ * the scene.
+ *
+ * <p>The recomputed matrices are written back to their nodes, so reading a node's transform
+ * between two updates still works as before.
+ */
+class TransformStore {
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int NO_PARENT = -1;
+
+  private final Scene scene;
+
+  // Per slot: the node, the slot of its parent, and whether it changed since the last update.
+  private Node[] nodes = new Node[INITIAL_CAPACITY];
+  private int[] parents = new int[INITIAL_CAPACITY];
+  private boolean[] dirty = new boolean[INITIAL_CAPACITY];
+  // Per slot: the world matrix as 16 floats in column-major order.
+  private float[] worldMatrices = new float[INITIAL_CAPACITY * 16];
+  private int count;
+
+  // True when the hierarchy changed and the slots must be reassigned.
+  private boolean isOrderDirty = true;
+
+  TransformStore(Scene scene) {
+    Preconditions.checkNotNull(scene, "Parameter \"scene\" was null.");
+    this.scene = scene;
+  }
+
+  /** Returns the number of nodes that had a slot assigned during the last update. */
+  int getNodeCount() {
+    return count;
+  }
+
+  /** Called when a node is added to, removed from, or moved within the scene. */
+  void invalidateOrder() {
+    isOrderDirty = true;
+  }
+
+  /** Called when the world transform of the node in a slot becomes dirty. */
+  void markDirty(int slot) {
+    // Every slot is recomputed after the slots are reassigned, and until then slots may be stale.
+    if (isOrderDirty || slot < 0 || slot >= count) {
+      return;
+    }
+
+    dirty[slot] = true;
+  }
+
+  /** Recomputes the world matrices of all dirty slots and writes them back to their nodes. */
+  void update() {
+    if (isOrderDirty) {
+      assignSlots();
+      isOrderDirty = false;
+    }
+
+    for (int i = 0; i < count; i++) {
+      int parent = parents[i];
+      if (!dirty[i] && (parent == NO_PARENT || !dirty[parent])) {
+        continue;
+      }
+
+      Node node = nodes[i];
+      Matrix localModelMatrix = node.getLocalModelMatrixInternal();
+      if (parent == NO_PARENT) {
+        System.arraycopy(localModelMatrix.data, 0, worldMatrices, i * 16, 16);
+      } else {
+        Matrix.multiply(
+            worldMatrices, parent * 16, localModelMatrix.data, 0, worldMatrices, i * 16);
+      }
+      // A matrix that didn't change only dirties the children that changed themselves.
+      dirty[i] = node.setWorldModelMatrixFromStore(worldMatrices, i * 16);
+    }
+
+    Arrays.fill(dirty, 0, count, false);
+  }
+
+  /** Assigns slots breadth-first, using the slots themselves as the queue, and dirties them all. */
+  private void assignSlots() {
+    int previousCount = count;
+    count = 0;
+
+    List<Node> topLevelNodes = scene.getChildren();
+    for (int i = 0; i < topLevelNodes.size(); i++) {
+      addSlot(topLevelNodes.get(i), NO_PARENT);
+    }
+
+    for (int i = 0; i < count; i++) {
+      List<Node> children = nodes[i].getChildren();
+      for (int j = 0; j < children.size(); j++) {
+        addSlot(children.get(j), i);
+      }
+    }
+
+    // Release the nodes that are no longer in the scene.
+    if (previousCount > count) {
+      Arrays.fill(nodes, count, previousCount, null);
+    }
+    Arrays.fill(dirty, 0, count, true);
+  }
+
+  private void addSlot(Node node, int parent) {
+    if (count == nodes.length) {
+      int capacity = nodes.length * 2;
+      nodes = Arrays.copyOf(nodes, capacity);
+      parents = Arrays.copyOf(parents, capacity);
+      dirty = Arrays.copyOf(dirty, capacity);
+      worldMatrices = Arrays.copyOf(worldMatrices, capacity * 16);
+    }
+
+    nodes[count] = node;
+    parents[count] = parent;
+    node.transformSlot = count;
+    count++;
+  }
+}
@@ -138,107 +138,100 @@ public class Box extends CollisionShape {
     return rotationMatrix;
   }
 
+  /**
+   * Get the raw center of the box. Do not modify directly. Instead, use setCenter.
+   *
+   * @return a reference to the box's raw center
+   */
+  Vector3 getRawCenter() {
+    return center;
+  }
+
+  /**
+   * Get the raw size of the box. Do not modify directly. Instead, use setSize.
+   *
+   * @return a reference to the box's raw size
+   */
+  Vector3 getRawSize() {
+    return size;
+  }
+
   /** @hide protected method */
   @Override
   protected boolean rayIntersection(Ray ray, RayHit result) {
     Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
     Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
 
-    Vector3 rayDirection = ray.getDirection();
-    Vector3 rayOrigin = ray.getOrigin();
-    Vector3 max = getExtents();
-    Vector3 min = max.negated();
+    Vector3 rayOrigin = ray.getRawOrigin();
+    Vector3 rayDirection = ray.getRawDirection();
+    float distance =
+        rayIntersectionDistance(
+            rayOrigin.x,
+            rayOrigin.y,
+            rayOrigin.z,
+            rayDirection.x,
+            rayDirection.y,
+            rayDirection.z);
+    if (Float.isNaN(distance)) {
+      return false;
+    }
+
+    result.setDistance(distance);
+    result.setPoint(ray, distance);
+    return true;
+  }
 
+  @Override
+  float rayIntersectionDistance(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ) {
     // tMin is the farthest "near" intersection (amongst the X,Y and Z planes pairs)
     float tMin = Float.MIN_VALUE;
 
     // tMax is the nearest "far" intersection (amongst the X,Y and Z planes pairs)
     float tMax = Float.MAX_VALUE;
 
-    Vector3 delta = Vector3.subtract(center, rayOrigin);
+    float deltaX = center.x - originX;
+    float deltaY = center.y - originY;
+    float deltaZ = center.z - originZ;
 
-    // Test intersection with the 2 planes perpendicular to the OBB's x axis.
+    // Test intersection with the 2 planes perpendicular to each of the OBB's axes.
     float[] axes = rotationMatrix.data;
-    Vector3 axis = new Vector3(axes[0], axes[1], axes[2]);
-    float e = Vector3.dot(axis, delta);
-    float f = Vector3.dot(rayDirection, axis);
-
-    if (!MathHelper.almostEqualRelativeAndAbs(f, 0.0f)) {
-      float t1 = (e + min.x) / f;
-      float t2 = (e + max.x) / f;
-
-      if (t1 > t2) {
-        float temp = t1;
-        t1 = t2;
-        t2 = temp;
-      }
-
-      tMax = Math.min(t2, tMax);
-      tMin = Math.max(t1, tMin);
-
-      if (tMax < tMin) {
-        return false;
-      }
-    } else if (-e + min.x > 0.0f || -e + max.x < 0.0f) {
-      // Ray is almost parallel to one of the planes.
-      return false;
-    }
-
-    // Test intersection with the 2 planes perpendicular to the OBB's y axis.
-    axis = new Vector3(axes[4], axes[5], axes[6]);
-    e = Vector3.dot(axis, delta);
-    f = Vector3.dot(rayDirection, axis);
-
-    if (!MathHelper.almostEqualRelativeAndAbs(f, 0.0f)) {
-      float t1 = (e + min.y) / f;
-      float t2 = (e + max.y) / f;
-
-      if (t1 > t2) {
-        float temp = t1;
-        t1 = t2;
-        t2 = temp;
-      }
-
-      tMax = Math.min(t2, tMax);
-      tMin = Math.max(t1, tMin);
-
-      if (tMax < tMin) {
-        return false;
-      }
-    } else if (-e + min.y > 0.0f || -e + max.y < 0.0f) {
-      // Ray is almost parallel to one of the planes.
-      return false;
-    }
-
-    // Test intersection with the 2 planes perpendicular to the OBB's z axis.
-    axis = new Vector3(axes[8], axes[9], axes[10]);
-    e = Vector3.dot(axis, delta);
-    f = Vector3.dot(rayDirection, axis);
-
-    if (!MathHelper.almostEqualRelativeAndAbs(f, 0.0f)) {
-      float t1 = (e + min.z) / f;
-      float t2 = (e + max.z) / f;
-
-      if (t1 > t2) {
-        float temp = t1;
-        t1 = t2;
-        t2 = temp;
-      }
-
-      tMax = Math.min(t2, tMax);
-      tMin = Math.max(t1, tMin);
-
-      if (tMax < tMin) {
-        return false;
+    for (int i = 0; i < 3; i++) {
+      float axisX = axes[i * 4];
+      float axisY = axes[i * 4 + 1];
+      float axisZ = axes[i * 4 + 2];
+      float extent = (i == 0 ? size.x : i == 1 ? size.y : size.z) * 0.5f;
+      float e = axisX * deltaX + axisY * deltaY + axisZ * deltaZ;
+      float f = directionX * axisX + directionY * axisY + directionZ * axisZ;
+
+      if (!MathHelper.almostEqualRelativeAndAbs(f, 0.0f)) {
+        float t1 = (e - extent) / f;
+        float t2 = (e + extent) / f;
+
+        if (t1 > t2) {
+          float temp = t1;
+          t1 = t2;
+          t2 = temp;
+        }
+
+        tMax = Math.min(t2, tMax);
+        tMin = Math.max(t1, tMin);
+
+        if (tMax < tMin) {
+          return Float.NaN;
+        }
+      } else if (-e - extent > 0.0f || -e + extent < 0.0f) {
+        // Ray is almost parallel to one of the planes.
+        return Float.NaN;
       }
-    } else if (-e + min.z > 0.0f || -e + max.z < 0.0f) {
-      // Ray is almost parallel to one of the planes.
-      return false;
     }
 
-    result.setDistance(tMin);
-    result.setPoint(ray.getPoint(result.getDistance()));
-    return true;
+    return tMin;
   }
 
   /** @hide protected method */
@@ -260,6 +253,109 @@ public class Box extends CollisionShape {
     return Intersections.boxBoxIntersection(this, box);
   }
 
+  /** @hide protected method */
+  @Override
+  protected boolean capsuleIntersection(Capsule capsule) {
+    return Gjk.intersects(this, capsule);
+  }
+
+  /** @hide protected method */
+  @Override
+  protected boolean convexHullIntersection(ConvexHull convexHull) {
+    return Gjk.intersects(this, convexHull);
+  }
+
+  @Override
+  void support(float directionX, float directionY, float directionZ, float[] result) {
+    float[] axes = rotationMatrix.data;
+    float x = center.x;
+    float y = center.y;
+    float z = center.z;
+
+    // Move to the face of the box that faces the direction along each of the box axes.
+    for (int i = 0; i < 3; i++) {
+      float axisX = axes[i * 4];
+      float axisY = axes[i * 4 + 1];
+      float axisZ = axes[i * 4 + 2];
+      float extent = (i == 0 ? size.x : i == 1 ? size.y : size.z) * 0.5f;
+      if (axisX * directionX + axisY * directionY + axisZ * directionZ < 0.0f) {
+        extent = -extent;
+      }
+
+      x += axisX * extent;
+      y += axisY * extent;
+      z += axisZ * extent;
+    }
+
+    result[0] = x;
+    result[1] = y;
+    result[2] = z;
+  }
+
+  @Override
+  void computeAabb(float[] aabb) {
+    float[] m = rotationMatrix.data;
+    float extentX = size.x * 0.5f;
+    float extentY = size.y * 0.5f;
+    float extentZ = size.z * 0.5f;
+
+    // The axes of the box are the columns of the rotation matrix.
+    float halfX = Math.abs(m[0]) * extentX + Math.abs(m[4]) * extentY + Math.abs(m[8]) * extentZ;
+    float halfY = Math.abs(m[1]) * extentX + Math.abs(m[5]) * extentY + Math.abs(m[9]) * extentZ;
+    float halfZ = Math.abs(m[2]) * extentX + Math.abs(m[6]) * extentY + Math.abs(m[10]) * extentZ;
+
+    aabb[0] = center.x - halfX;
+    aabb[1] = center.y - halfY;
+    aabb[2] = center.z - halfZ;
+    aabb[3] = center.x + halfX;
+    aabb[4] = center.y + halfY;
+    aabb[5] = center.z + halfZ;
+  }
+
+  @Override
+  void computeTransformedAabb(Matrix modelMatrix, float[] aabb) {
+    float[] m = modelMatrix.data;
+    float[] r = rotationMatrix.data;
+
+    // Matches transform(): each extent is scaled by the scale of the matching axis of the matrix,
+    // and the rotation of the matrix is applied after the local rotation.
+    float scaleX = (float) Math.sqrt(m[0] * m[0] + m[1] * m[1] + m[2] * m[2]);
+    float scaleY = (float) Math.sqrt(m[4] * m[4] + m[5] * m[5] + m[6] * m[6]);
+    float scaleZ = (float) Math.sqrt(m[8] * m[8] + m[9] * m[9] + m[10] * m[10]);
+    float inverseScaleX = scaleX != 0.0f ? 1.0f / scaleX : 0.0f;
+    float inverseScaleY = scaleY != 0.0f ? 1.0f / scaleY : 0.0f;
+    float inverseScaleZ = scaleZ != 0.0f ? 1.0f / scaleZ : 0.0f;
+
+    float halfX = 0.0f;
+    float halfY = 0.0f;
+    float halfZ = 0.0f;
+    for (int i = 0; i < 3; i++) {
+      float localX = r[i * 4] * inverseScaleX;
+      float localY = r[i * 4 + 1] * inverseScaleY;
+      float localZ = r[i * 4 + 2] * inverseScaleZ;
+      float axisX = m[0] * localX + m[4] * localY + m[8] * localZ;
+      float axisY = m[1] * localX + m[5] * localY + m[9] * localZ;
+      float axisZ = m[2] * localX + m[6] * localY + m[10] * localZ;
+      float extent =
+          (i == 0 ? size.x * scaleX : i == 1 ? size.y * scaleY : size.z * scaleZ) * 0.5f;
+
+      halfX += Math.abs(axisX) * extent;
+      halfY += Math.abs(axisY) * extent;
+      halfZ += Math.abs(axisZ) * extent;
+    }
+
+    float worldCenterX = m[0] * center.x + m[4] * center.y + m[8] * center.z + m[12];
+    float worldCenterY = m[1] * center.x + m[5] * center.y + m[9] * center.z + m[13];
+    float worldCenterZ = m[2] * center.x + m[6] * center.y + m[10] * center.z + m[14];
+
+    aabb[0] = worldCenterX - halfX;
+    aabb[1] = worldCenterY - halfY;
+    aabb[2] = worldCenterZ - halfZ;
+    aabb[3] = worldCenterX + halfX;
+    aabb[4] = worldCenterY + halfY;
+    aabb[5] = worldCenterZ + halfZ;
+  }
+
   @Override
   CollisionShape transform(TransformProvider transformProvider) {
     Preconditions.checkNotNull(transformProvider, "Parameter \"transformProvider\" was null.");
@@ -297,8 +393,8 @@ public class Box extends CollisionShape {
     resultBox.size.y = size.y * worldScale.y;
     resultBox.size.z = size.z * worldScale.z;
 
-    // Transform the rotation of the box.
+    // Transform the rotation of the box. The local rotation is applied first.
     modelMatrix.decomposeRotation(worldScale, resultBox.rotationMatrix);
-    Matrix.multiply(rotationMatrix, resultBox.rotationMatrix, resultBox.rotationMatrix);
+    Matrix.multiply(resultBox.rotationMatrix, rotationMatrix, resultBox.rotationMatrix);
   }
 }
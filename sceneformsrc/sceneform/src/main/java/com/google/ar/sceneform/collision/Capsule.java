@@ -0,0 +1,353 @@
+package com.google.ar.sceneform.collision;
+
+import android.util.Log;
+import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.utilities.Preconditions;
+
+/**
+ * Mathematical representation of a capsule. A capsule is the set of points within a radius of the
+ * line segment between two points. Used to perform intersection and collision tests against
+ * capsules, which fit characters and elongated objects more closely than a box or a sphere.
+ */
+public class Capsule extends CollisionShape {
+  private static final String TAG = Capsule.class.getSimpleName();
+  private static final float PARALLEL_EPSILON = 1.0e-6f;
+
+  private final Vector3 pointA = new Vector3(0.0f, -0.5f, 0.0f);
+  private final Vector3 pointB = new Vector3(0.0f, 0.5f, 0.0f);
+  private float radius = 0.5f;
+
+  /** Create a capsule from (0,-0.5,0) to (0,0.5,0) with a radius of 0.5. */
+  public Capsule() {}
+
+  /**
+   * Create a capsule with a specified radius around the segment between two points.
+   *
+   * @param radius the radius of the capsule
+   * @param pointA the center of one end of the capsule
+   * @param pointB the center of the other end of the capsule
+   */
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
+  public Capsule(float radius, Vector3 pointA, Vector3 pointB) {
+    Preconditions.checkNotNull(pointA, "Parameter \"pointA\" was null.");
+    Preconditions.checkNotNull(pointB, "Parameter \"pointB\" was null.");
+
+    setPointA(pointA);
+    setPointB(pointB);
+    setRadius(radius);
+  }
+
+  /**
+   * Set the center of one end of this capsule.
+   *
+   * @see #getPointA()
+   * @param pointA the new center of the end of the capsule
+   */
+  public void setPointA(Vector3 pointA) {
+    Preconditions.checkNotNull(pointA, "Parameter \"pointA\" was null.");
+    this.pointA.set(pointA);
+    onChanged();
+  }
+
+  /**
+   * Get a copy of the center of one end of the capsule.
+   *
+   * @see #setPointA(Vector3)
+   * @return a new vector that represents the center of the end of the capsule
+   */
+  public Vector3 getPointA() {
+    return new Vector3(pointA);
+  }
+
+  /**
+   * Set the center of the other end of this capsule.
+   *
+   * @see #getPointB()
+   * @param pointB the new center of the end of the capsule
+   */
+  public void setPointB(Vector3 pointB) {
+    Preconditions.checkNotNull(pointB, "Parameter \"pointB\" was null.");
+    this.pointB.set(pointB);
+    onChanged();
+  }
+
+  /**
+   * Get a copy of the center of the other end of the capsule.
+   *
+   * @see #setPointB(Vector3)
+   * @return a new vector that represents the center of the end of the capsule
+   */
+  public Vector3 getPointB() {
+    return new Vector3(pointB);
+  }
+
+  /**
+   * Set the radius of the capsule.
+   *
+   * @see #getRadius()
+   * @param radius the new radius of the capsule
+   */
+  public void setRadius(float radius) {
+    this.radius = radius;
+    onChanged();
+  }
+
+  /**
+   * Get the radius of the capsule.
+   *
+   * @see #setRadius(float)
+   * @return the radius of the capsule
+   */
+  public float getRadius() {
+    return radius;
+  }
+
+  /**
+   * Get the raw center of one end of the capsule. Do not modify directly. Instead, use setPointA.
+   *
+   * @return a reference to the capsule's raw point
+   */
+  Vector3 getRawPointA() {
+    return pointA;
+  }
+
+  /**
+   * Get the raw center of the other end of the capsule. Do not modify directly. Instead, use
+   * setPointB.
+   *
+   * @return a reference to the capsule's raw point
+   */
+  Vector3 getRawPointB() {
+    return pointB;
+  }
+
+  @Override
+  public Capsule makeCopy() {
+    return new Capsule(getRadius(), getPointA(), getPointB());
+  }
+
+  /** @hide */
+  @Override
+  protected boolean rayIntersection(Ray ray, RayHit result) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+    Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
+
+    Vector3 rayOrigin = ray.getRawOrigin();
+    Vector3 rayDirection = ray.getRawDirection();
+    float distance =
+        rayIntersectionDistance(
+            rayOrigin.x,
+            rayOrigin.y,
+            rayOrigin.z,
+            rayDirection.x,
+            rayDirection.y,
+            rayDirection.z);
+    if (Float.isNaN(distance)) {
+      return false;
+    }
+
+    result.setDistance(distance);
+    result.setPoint(ray, distance);
+    return true;
+  }
+
+  @Override
+  float rayIntersectionDistance(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ) {
+    float radiusSquared = radius * radius;
+    if (Intersections.pointSegmentDistanceSquared(
+            originX,
+            originY,
+            originZ,
+            pointA.x,
+            pointA.y,
+            pointA.z,
+            pointB.x,
+            pointB.y,
+            pointB.z)
+        <= radiusSquared) {
+      return 0.0f;
+    }
+
+    // The capsule is the union of a cylinder and a sphere at each end, so the ray enters it at the
+    // nearest point where it enters any of them.
+    float nearest =
+        Math.min(
+            sphereEntryDistance(
+                originX, originY, originZ, directionX, directionY, directionZ, pointA),
+            sphereEntryDistance(
+                originX, originY, originZ, directionX, directionY, directionZ, pointB));
+
+    float abX = pointB.x - pointA.x;
+    float abY = pointB.y - pointA.y;
+    float abZ = pointB.z - pointA.z;
+    float aoX = originX - pointA.x;
+    float aoY = originY - pointA.y;
+    float aoZ = originZ - pointA.z;
+
+    float abab = abX * abX + abY * abY + abZ * abZ;
+    float abDirection = abX * directionX + abY * directionY + abZ * directionZ;
+    float abao = abX * aoX + abY * aoY + abZ * aoZ;
+    float directionAo = directionX * aoX + directionY * aoY + directionZ * aoZ;
+    float aoao = aoX * aoX + aoY * aoY + aoZ * aoZ;
+
+    // Side of the cylinder, skipped when the ray is parallel to the axis of the capsule.
+    float a = abab - abDirection * abDirection;
+    if (a > PARALLEL_EPSILON * abab) {
+      float b = abab * directionAo - abao * abDirection;
+      float c = abab * aoao - abao * abao - radiusSquared * abab;
+      float h = b * b - a * c;
+      if (h >= 0.0f) {
+        float t = (-b - (float) Math.sqrt(h)) / a;
+        float y = abao + t * abDirection;
+        if (t >= 0.0f && y > 0.0f && y < abab) {
+          nearest = Math.min(nearest, t);
+        }
+      }
+    }
+
+    return nearest == Float.MAX_VALUE ? Float.NaN : nearest;
+  }
+
+  /** Returns the distance to where the ray enters a sphere at the end, or Float.MAX_VALUE. */
+  private float sphereEntryDistance(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      Vector3 center) {
+    float differenceX = originX - center.x;
+    float differenceY = originY - center.y;
+    float differenceZ = originZ - center.z;
+    float b = differenceX * directionX + differenceY * directionY + differenceZ * directionZ;
+    float c =
+        (differenceX * differenceX + differenceY * differenceY + differenceZ * differenceZ)
+            - radius * radius;
+    float h = b * b - c;
+    if (h < 0.0f) {
+      return Float.MAX_VALUE;
+    }
+
+    float t = -b - (float) Math.sqrt(h);
+    return t >= 0.0f ? t : Float.MAX_VALUE;
+  }
+
+  /** @hide */
+  @Override
+  protected boolean shapeIntersection(CollisionShape shape) {
+    Preconditions.checkNotNull(shape, "Parameter \"shape\" was null.");
+    return shape.capsuleIntersection(this);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean sphereIntersection(Sphere sphere) {
+    return Intersections.capsuleSphereIntersection(this, sphere);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean boxIntersection(Box box) {
+    return Gjk.intersects(this, box);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean capsuleIntersection(Capsule capsule) {
+    return Intersections.capsuleCapsuleIntersection(this, capsule);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean convexHullIntersection(ConvexHull convexHull) {
+    return Gjk.intersects(this, convexHull);
+  }
+
+  @Override
+  void support(float directionX, float directionY, float directionZ, float[] result) {
+    Vector3 end =
+        pointA.x * directionX + pointA.y * directionY + pointA.z * directionZ
+                > pointB.x * directionX + pointB.y * directionY + pointB.z * directionZ
+            ? pointA
+            : pointB;
+    float length =
+        (float)
+            Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+    float scale = length > 0.0f ? radius / length : 0.0f;
+    result[0] = end.x + directionX * scale;
+    result[1] = end.y + directionY * scale;
+    result[2] = end.z + directionZ * scale;
+  }
+
+  @Override
+  void computeAabb(float[] aabb) {
+    aabb[0] = Math.min(pointA.x, pointB.x) - radius;
+    aabb[1] = Math.min(pointA.y, pointB.y) - radius;
+    aabb[2] = Math.min(pointA.z, pointB.z) - radius;
+    aabb[3] = Math.max(pointA.x, pointB.x) + radius;
+    aabb[4] = Math.max(pointA.y, pointB.y) + radius;
+    aabb[5] = Math.max(pointA.z, pointB.z) + radius;
+  }
+
+  @Override
+  void computeTransformedAabb(Matrix modelMatrix, float[] aabb) {
+    float[] m = modelMatrix.data;
+
+    // Matches transform(), which scales the radius by the largest scale of the matrix.
+    float worldRadius = radius * getMaxScale(modelMatrix);
+    float aX = m[0] * pointA.x + m[4] * pointA.y + m[8] * pointA.z + m[12];
+    float aY = m[1] * pointA.x + m[5] * pointA.y + m[9] * pointA.z + m[13];
+    float aZ = m[2] * pointA.x + m[6] * pointA.y + m[10] * pointA.z + m[14];
+    float bX = m[0] * pointB.x + m[4] * pointB.y + m[8] * pointB.z + m[12];
+    float bY = m[1] * pointB.x + m[5] * pointB.y + m[9] * pointB.z + m[13];
+    float bZ = m[2] * pointB.x + m[6] * pointB.y + m[10] * pointB.z + m[14];
+
+    aabb[0] = Math.min(aX, bX) - worldRadius;
+    aabb[1] = Math.min(aY, bY) - worldRadius;
+    aabb[2] = Math.min(aZ, bZ) - worldRadius;
+    aabb[3] = Math.max(aX, bX) + worldRadius;
+    aabb[4] = Math.max(aY, bY) + worldRadius;
+    aabb[5] = Math.max(aZ, bZ) + worldRadius;
+  }
+
+  @Override
+  CollisionShape transform(TransformProvider transformProvider) {
+    Preconditions.checkNotNull(transformProvider, "Parameter \"transformProvider\" was null.");
+
+    Capsule result = new Capsule();
+    transform(transformProvider, result);
+    return result;
+  }
+
+  @Override
+  void transform(TransformProvider transformProvider, CollisionShape result) {
+    Preconditions.checkNotNull(transformProvider, "Parameter \"transformProvider\" was null.");
+    Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
+
+    if (!(result instanceof Capsule)) {
+      Log.w(TAG, "Cannot pass CollisionShape of a type other than Capsule into Capsule.transform.");
+      return;
+    }
+
+    Capsule resultCapsule = (Capsule) result;
+
+    Matrix modelMatrix = transformProvider.getWorldModelMatrix();
+
+    // Transform the ends of the capsule. Writes in place, so the capsule may be its own result.
+    modelMatrix.transformPoint(pointA, resultCapsule.pointA);
+    modelMatrix.transformPoint(pointB, resultCapsule.pointB);
+
+    // Transform the radius of the capsule by the largest scale, like computeTransformedAabb.
+    resultCapsule.radius = radius * getMaxScale(modelMatrix);
+    resultCapsule.onChanged();
+  }
+}
@@ -13,14 +13,28 @@ import com.google.ar.sceneform.utilities.Preconditions;
  * @hide
  */
 public class Collider {
+  /** Layers that a collider belongs to unless they are changed with {@link #setLayers(int)}. */
+  public static final int DEFAULT_LAYERS = 1;
+
   private TransformProvider transformProvider;
   @Nullable private CollisionSystem attachedCollisionSystem;
 
   private CollisionShape localShape;
   @Nullable private CollisionShape cachedWorldShape;
 
-  private boolean isWorldShapeDirty;
+  // Incremented every time the transform changes. The world shape is only recomputed when it was
+  // last computed for an older generation, and only when it's requested.
+  private int transformGeneration;
+  private int worldShapeGeneration;
   private int shapeId = ChangeId.EMPTY_ID;
+  private int layers = DEFAULT_LAYERS;
+
+  // Id of this collider's leaf in the attached collision system's tree.
+  int proxyId = DynamicAabbTree.NULL_NODE;
+  // True while this collider is waiting for its leaf bounds to be refit.
+  boolean isProxyDirty;
+  // Index of this collider in the attached collision system's list of colliders.
+  int systemIndex = -1;
 
   /** @hide */
   @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
@@ -38,6 +52,7 @@ public class Collider {
 
     localShape = localCollisionShape;
     cachedWorldShape = null;
+    markProxyDirty();
   }
 
   /** @hide */
@@ -45,6 +60,28 @@ public class Collider {
     return localShape;
   }
 
+  /**
+   * Sets the bitmask of collision layers this collider belongs to. Queries only consider colliders
+   * that share at least one layer with their layer mask. A collider with no layers is never hit.
+   *
+   * @hide
+   */
+  public void setLayers(int layers) {
+    if (this.layers == layers) {
+      return;
+    }
+
+    this.layers = layers;
+    if (attachedCollisionSystem != null) {
+      attachedCollisionSystem.updateColliderLayers(this);
+    }
+  }
+
+  /** @hide */
+  public int getLayers() {
+    return layers;
+  }
+
   public TransformProvider getTransformProvider() {
     return transformProvider;
   }
@@ -52,10 +89,33 @@ public class Collider {
   /** @hide */
   @Nullable
   public CollisionShape getTransformedShape() {
+    if (attachedCollisionSystem != null) {
+      attachedCollisionSystem.worldShapeRequestCount++;
+    }
+
+    return getWorldShape();
+  }
+
+  /**
+   * Returns the world shape like {@link #getTransformedShape()}, without counting it as a request.
+   * Used by the collision system when it resolves shapes for its own bookkeeping.
+   */
+  @Nullable
+  CollisionShape getWorldShape() {
     updateCachedWorldShape();
     return cachedWorldShape;
   }
 
+  /**
+   * Calculates bounds that contain the world shape from the local shape and the transform, without
+   * computing the world shape.
+   *
+   * @param aabb receives the min x, y, z followed by the max x, y, z of the bounds
+   */
+  void computeWorldAabb(float[] aabb) {
+    localShape.computeTransformedAabb(transformProvider.getWorldModelMatrix(), aabb);
+  }
+
   /** @hide */
   public void setAttachedCollisionSystem(@Nullable CollisionSystem collisionSystem) {
     if (attachedCollisionSystem != null) {
@@ -69,9 +129,55 @@ public class Collider {
     }
   }
 
-  /** @hide */
+  /**
+   * Called when the transform changes. This only advances the transform generation, the world
+   * shape is recomputed the next time it's requested.
+   *
+   * @hide
+   */
   public void markWorldShapeDirty() {
-    isWorldShapeDirty = true;
+    transformGeneration++;
+    if (attachedCollisionSystem != null) {
+      attachedCollisionSystem.transformInvalidationCount++;
+    }
+
+    markProxyDirty();
+  }
+
+  /**
+   * Returns the number of times the transform of this collider has changed.
+   *
+   * @hide
+   */
+  public int getTransformGeneration() {
+    return transformGeneration;
+  }
+
+  /**
+   * Returns the transform generation that the world shape was last computed for.
+   *
+   * @hide
+   */
+  public int getWorldShapeGeneration() {
+    return worldShapeGeneration;
+  }
+
+  /**
+   * Refits this collider's bounds in the collision system if its local shape was modified in
+   * place. Shapes don't notify their colliders when they change, so this is polled once per frame.
+   *
+   * @hide
+   */
+  public void checkShapeChanged() {
+    if (localShape.getId().checkChanged(shapeId)) {
+      markProxyDirty();
+    }
+  }
+
+  private void markProxyDirty() {
+    if (attachedCollisionSystem != null) {
+      attachedCollisionSystem.markColliderDirty(this);
+    }
   }
 
   private boolean doesCachedWorldShapeNeedUpdate() {
@@ -80,7 +186,9 @@ public class Collider {
     }
 
     ChangeId changeId = localShape.getId();
-    return changeId.checkChanged(shapeId) || isWorldShapeDirty || cachedWorldShape == null;
+    return changeId.checkChanged(shapeId)
+        || worldShapeGeneration != transformGeneration
+        || cachedWorldShape == null;
   }
 
   private void updateCachedWorldShape() {
@@ -96,5 +204,10 @@ public class Collider {
 
     ChangeId changeId = localShape.getId();
     shapeId = changeId.get();
+    worldShapeGeneration = transformGeneration;
+
+    if (attachedCollisionSystem != null) {
+      attachedCollisionSystem.worldShapeUpdateCount++;
+    }
   }
 }
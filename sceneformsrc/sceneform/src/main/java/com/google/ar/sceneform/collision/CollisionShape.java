@@ -1,6 +1,7 @@
 package com.google.ar.sceneform.collision;
 
 import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Matrix;
 import com.google.ar.sceneform.utilities.ChangeId;
 
 /** Base class for all types of shapes that collision checks can be performed against. */
@@ -30,6 +31,12 @@ public abstract class CollisionShape {
   /** @hide */
   protected abstract boolean boxIntersection(Box box);
 
+  /** @hide */
+  protected abstract boolean capsuleIntersection(Capsule capsule);
+
+  /** @hide */
+  protected abstract boolean convexHullIntersection(ConvexHull convexHull);
+
   @SuppressWarnings("initialization")
   CollisionShape() {
     changeId.update();
@@ -42,4 +49,81 @@ public abstract class CollisionShape {
   abstract CollisionShape transform(TransformProvider transformProvider);
 
   abstract void transform(TransformProvider transformProvider, CollisionShape result);
+
+  /**
+   * Calculates an axis aligned box that fully contains this shape.
+   *
+   * @param aabb receives the min x, y, z followed by the max x, y, z of the box
+   */
+  abstract void computeAabb(float[] aabb);
+
+  /**
+   * Calculates an axis aligned box that fully contains this shape once it's transformed by a model
+   * matrix, without computing the transformed shape. The box may be larger than the bounds of the
+   * transformed shape. By default the bounds of this shape are transformed.
+   *
+   * @param aabb receives the min x, y, z followed by the max x, y, z of the box
+   */
+  void computeTransformedAabb(Matrix modelMatrix, float[] aabb) {
+    computeAabb(aabb);
+
+    float[] m = modelMatrix.data;
+    float centerX = (aabb[0] + aabb[3]) * 0.5f;
+    float centerY = (aabb[1] + aabb[4]) * 0.5f;
+    float centerZ = (aabb[2] + aabb[5]) * 0.5f;
+    float extentX = (aabb[3] - aabb[0]) * 0.5f;
+    float extentY = (aabb[4] - aabb[1]) * 0.5f;
+    float extentZ = (aabb[5] - aabb[2]) * 0.5f;
+
+    float worldCenterX = m[0] * centerX + m[4] * centerY + m[8] * centerZ + m[12];
+    float worldCenterY = m[1] * centerX + m[5] * centerY + m[9] * centerZ + m[13];
+    float worldCenterZ = m[2] * centerX + m[6] * centerY + m[10] * centerZ + m[14];
+    float halfX = Math.abs(m[0]) * extentX + Math.abs(m[4]) * extentY + Math.abs(m[8]) * extentZ;
+    float halfY = Math.abs(m[1]) * extentX + Math.abs(m[5]) * extentY + Math.abs(m[9]) * extentZ;
+    float halfZ = Math.abs(m[2]) * extentX + Math.abs(m[6]) * extentY + Math.abs(m[10]) * extentZ;
+
+    aabb[0] = worldCenterX - halfX;
+    aabb[1] = worldCenterY - halfY;
+    aabb[2] = worldCenterZ - halfZ;
+    aabb[3] = worldCenterX + halfX;
+    aabb[4] = worldCenterY + halfY;
+    aabb[5] = worldCenterZ + halfZ;
+  }
+
+  /**
+   * Returns the largest scale of a model matrix, the length of its longest axis. Used to scale the
+   * radius of round shapes.
+   */
+  static float getMaxScale(Matrix modelMatrix) {
+    float[] m = modelMatrix.data;
+    float scaleSquared =
+        Math.max(
+            Math.max(
+                m[0] * m[0] + m[1] * m[1] + m[2] * m[2], m[4] * m[4] + m[5] * m[5] + m[6] * m[6]),
+            m[8] * m[8] + m[9] * m[9] + m[10] * m[10]);
+    return (float) Math.sqrt(scaleSquared);
+  }
+
+  /**
+   * Calculates the distance along a ray to where it hits this shape, without allocating. Used by
+   * {@link #rayIntersection(Ray, RayHit)} and by batched ray casts.
+   *
+   * @return the distance along the ray, or {@link Float#NaN} if the ray doesn't hit this shape. The
+   *     direction is expected to be normalized.
+   */
+  abstract float rayIntersectionDistance(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ);
+
+  /**
+   * Finds the point of this shape that is farthest along a direction. Used by {@link Gjk} to test
+   * shapes that don't have a dedicated intersection test against each other.
+   *
+   * @param result receives the x, y, z of the point
+   */
+  abstract void support(float directionX, float directionY, float directionZ, float[] result);
 }
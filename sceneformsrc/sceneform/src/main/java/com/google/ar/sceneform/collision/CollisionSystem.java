@@ -2,11 +2,17 @@ package com.google.ar.sceneform.collision;
 
 import androidx.annotation.Nullable;
 
+import com.google.ar.sceneform.math.MathHelper;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.Preconditions;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 /**
@@ -17,41 +23,205 @@ import java.util.function.Supplier;
 public class CollisionSystem {
   private static final String TAG = CollisionSystem.class.getSimpleName();
 
-  // TODO: Store things in some spatial partition or another.
+  /** Layer mask that matches colliders on any layer. */
+  public static final int ALL_LAYERS = 0xFFFFFFFF;
+
+  // Batched ray casts are only split across a pool into chunks of at least this many rays.
+  private static final int BATCH_CHUNK_SIZE = 64;
+
   private final ArrayList<Collider> colliders = new ArrayList<>();
 
+  // Spatial partition used to only test the colliders near a ray or a shape.
+  private final DynamicAabbTree tree = new DynamicAabbTree();
+
+  // Colliders that moved or changed shape since the last query and need their bounds refit.
+  private final ArrayList<Collider> dirtyColliders = new ArrayList<>();
+  // Called before the dirty colliders are refit, so that moves that haven't reached the colliders
+  // yet are included.
+  @Nullable private Runnable onBeforeRefitListener;
+
+  // Reused to avoid allocations during queries.
+  private final float[] aabb = new float[6];
+  private final RayHit tempResult = new RayHit();
+  private final NearestHitCallback nearestHitCallback = new NearestHitCallback();
+  private final SortedHitsCallback sortedHitsCallback = new SortedHitsCallback();
+  private final OverlapCallback overlapCallback = new OverlapCallback();
+  private final ShapeCastCallback shapeCastCallback = new ShapeCastCallback();
+  private final Sphere castSphere = new Sphere();
+  private final Box castBox = new Box();
+  private final BatchRaycaster batchRaycaster = new BatchRaycaster(null);
+  private CollisionShape[] batchShapes = new CollisionShape[0];
+
+  // Counters updated by the attached colliders, see getWorldShapeUpdateCount().
+  int transformInvalidationCount;
+  int worldShapeRequestCount;
+  int worldShapeUpdateCount;
+
+  // Scratch storage for the sweep in intersectsAllPairs.
+  private float[] sweepBounds = new float[0];
+  private long[] sweepOrder = new long[0];
+  private int[] sweepIndices = new int[0];
+  private final float[] sweepSum = new float[3];
+  private final float[] sweepSumSquared = new float[3];
+
   public void addCollider(Collider collider) {
     Preconditions.checkNotNull(collider, "Parameter \"collider\" was null.");
+    collider.systemIndex = colliders.size();
     colliders.add(collider);
+
+    collider.computeWorldAabb(aabb);
+    collider.proxyId = tree.createProxy(aabb, collider, collider.getLayers());
   }
 
   public void removeCollider(Collider collider) {
     Preconditions.checkNotNull(collider, "Parameter \"collider\" was null.");
-    colliders.remove(collider);
+
+    // Swap the last collider into the removed slot so removal doesn't shift the list.
+    int index = collider.systemIndex;
+    if (index >= 0 && index < colliders.size() && colliders.get(index) == collider) {
+      Collider last = colliders.remove(colliders.size() - 1);
+      if (last != collider) {
+        colliders.set(index, last);
+        last.systemIndex = index;
+      }
+    }
+    collider.systemIndex = -1;
+
+    // A dirty collider must leave the queue too, otherwise it would be refit into a tree it is no
+    // longer in and never be queued again by the next system it's added to.
+    if (collider.isProxyDirty) {
+      int dirtyIndex = dirtyColliders.indexOf(collider);
+      if (dirtyIndex >= 0) {
+        Collider lastDirty = dirtyColliders.remove(dirtyColliders.size() - 1);
+        if (lastDirty != collider) {
+          dirtyColliders.set(dirtyIndex, lastDirty);
+        }
+      }
+      collider.isProxyDirty = false;
+    }
+
+    if (collider.proxyId != DynamicAabbTree.NULL_NODE) {
+      tree.destroyProxy(collider.proxyId);
+      collider.proxyId = DynamicAabbTree.NULL_NODE;
+    }
+  }
+
+  /** Returns the number of colliders in the system. */
+  public int getColliderCount() {
+    return colliders.size();
+  }
+
+  /**
+   * Returns the collider at an index, as written by {@link #raycastBatch}. Indices stay valid until
+   * a collider is added or removed.
+   */
+  public Collider getCollider(int index) {
+    Preconditions.checkElementIndex(index, colliders.size());
+    return colliders.get(index);
+  }
+
+  /**
+   * Returns the number of times the transform of an attached collider changed since the counters
+   * were last reset.
+   */
+  public int getTransformInvalidationCount() {
+    return transformInvalidationCount;
+  }
+
+  /**
+   * Returns the number of times the world shape of an attached collider was requested since the
+   * counters were last reset. This counts calls to {@link Collider#getTransformedShape()} and the
+   * shapes that queries resolve when a collider passes their bounds test. Refitting the bounds of
+   * moved colliders doesn't resolve their shapes, and the shapes that {@link #raycastBatch}
+   * resolves up front for its workers aren't counted.
+   */
+  public int getWorldShapeRequestCount() {
+    return worldShapeRequestCount;
+  }
+
+  /**
+   * Returns the number of times the world shape of an attached collider was recomputed since the
+   * counters were last reset. A world shape is recomputed at most once per transform change, and
+   * only if it's requested, so under heavy animation this is much lower than {@link
+   * #getTransformInvalidationCount()}.
+   */
+  public int getWorldShapeUpdateCount() {
+    return worldShapeUpdateCount;
+  }
+
+  /** Resets the counters used to measure how often world shapes are recomputed. */
+  public void resetWorldShapeCounters() {
+    transformInvalidationCount = 0;
+    worldShapeRequestCount = 0;
+    worldShapeUpdateCount = 0;
+  }
+
+  /**
+   * Sets a listener that is called at the start of every query, before the colliders that moved
+   * are refit. The scene uses it to mark the colliders whose transform changes were deferred.
+   */
+  public void setOnBeforeRefitListener(@Nullable Runnable listener) {
+    onBeforeRefitListener = listener;
+  }
+
+  /**
+   * Queues a collider to have its bounds refit before the next query. Called by {@link Collider}
+   * when its world shape becomes dirty.
+   */
+  void markColliderDirty(Collider collider) {
+    if (collider.isProxyDirty) {
+      return;
+    }
+
+    collider.isProxyDirty = true;
+    dirtyColliders.add(collider);
+  }
+
+  /**
+   * Updates the layers stored in the tree for a collider. Called by {@link Collider} when its
+   * layers change.
+   */
+  void updateColliderLayers(Collider collider) {
+    if (collider.proxyId != DynamicAabbTree.NULL_NODE) {
+      tree.setProxyLayers(collider.proxyId, collider.getLayers());
+    }
   }
 
   @Nullable
   public Collider raycast(Ray ray, RayHit resultHit) {
+    return raycast(ray, resultHit, ALL_LAYERS, null);
+  }
+
+  /**
+   * Finds the closest collider hit by a ray, only considering colliders on the given layers that
+   * are accepted by the filter. Colliders on other layers are skipped while traversing the tree, so
+   * they are never tested against the ray.
+   *
+   * @param layerMask bitmask of the layers to test against
+   * @param filter returns false for colliders that should be ignored, or null to accept all
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  public Collider raycast(
+      Ray ray, RayHit resultHit, int layerMask, @Nullable Predicate<Collider> filter) {
     Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
     Preconditions.checkNotNull(resultHit, "Parameter \"resultHit\" was null.");
 
     resultHit.reset();
-    Collider result = null;
-    RayHit tempResult = new RayHit();
-    for (Collider collider : colliders) {
-      CollisionShape collisionShape = collider.getTransformedShape();
-      if (collisionShape == null) {
-        continue;
-      }
+    refitDirtyColliders();
 
-      if (collisionShape.rayIntersection(ray, tempResult)) {
-        if (tempResult.getDistance() < resultHit.getDistance()) {
-          resultHit.set(tempResult);
-          result = collider;
-        }
-      }
-    }
+    NearestHitCallback callback = nearestHitCallback;
+    callback.ray = ray;
+    callback.resultHit = resultHit;
+    callback.filter = filter;
+    callback.result = null;
+    raycastTree(ray, Float.MAX_VALUE, layerMask, callback);
 
+    Collider result = callback.result;
+    callback.ray = null;
+    callback.resultHit = null;
+    callback.filter = null;
+    callback.result = null;
     return result;
   }
 
@@ -61,37 +231,92 @@ public class CollisionSystem {
       ArrayList<T> resultBuffer,
       @Nullable BiConsumer<T, Collider> processResult,
       Supplier<T> allocateResult) {
+    return raycastAll(ray, resultBuffer, ALL_LAYERS, null, processResult, allocateResult);
+  }
+
+  /**
+   * Finds every collider hit by a ray, only considering colliders on the given layers that are
+   * accepted by the filter.
+   *
+   * @param layerMask bitmask of the layers to test against
+   * @param filter returns false for colliders that should be ignored, or null to accept all
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public <T extends RayHit> int raycastAll(
+      Ray ray,
+      ArrayList<T> resultBuffer,
+      int layerMask,
+      @Nullable Predicate<Collider> filter,
+      @Nullable BiConsumer<T, Collider> processResult,
+      Supplier<T> allocateResult) {
+    return raycastAll(
+        ray,
+        resultBuffer,
+        Integer.MAX_VALUE,
+        Float.MAX_VALUE,
+        layerMask,
+        filter,
+        processResult,
+        allocateResult);
+  }
+
+  /**
+   * Finds the closest colliders hit by a ray, up to a maximum number of hits and a maximum
+   * distance. The hits are kept sorted as they are found, and once maxHits hits have been found the
+   * traversal is clipped to the farthest of them. The cost depends on the colliders near the start
+   * of the ray rather than on every collider along it.
+   *
+   * @param resultBuffer receives the hits sorted by distance, followed by reset entries if the
+   *     buffer was larger than the number of hits
+   * @param maxHits the maximum number of hits to find
+   * @param maxDistance the maximum distance along the ray to search
+   * @param layerMask bitmask of the layers to test against
+   * @param filter returns false for colliders that should be ignored, or null to accept all
+   * @return the number of hits
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public <T extends RayHit> int raycastAll(
+      Ray ray,
+      ArrayList<T> resultBuffer,
+      int maxHits,
+      float maxDistance,
+      int layerMask,
+      @Nullable Predicate<Collider> filter,
+      @Nullable BiConsumer<T, Collider> processResult,
+      Supplier<T> allocateResult) {
     Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
     Preconditions.checkNotNull(resultBuffer, "Parameter \"resultBuffer\" was null.");
     Preconditions.checkNotNull(allocateResult, "Parameter \"allocateResult\" was null.");
 
-    RayHit tempResult = new RayHit();
     int hitCount = 0;
+    if (maxHits > 0) {
+      refitDirtyColliders();
 
-    // Check the ray against all the colliders.
-    for (Collider collider : colliders) {
-      CollisionShape collisionShape = collider.getTransformedShape();
-      if (collisionShape == null) {
-        continue;
-      }
+      SortedHitsCallback callback = sortedHitsCallback;
+      callback.begin(ray, maxHits, filter);
+      raycastTree(ray, maxDistance, layerMask, callback);
+      hitCount = callback.hitCount;
 
-      if (collisionShape.rayIntersection(ray, tempResult)) {
-        hitCount++;
-        T result = null;
-        if (resultBuffer.size() >= hitCount) {
-          result = resultBuffer.get(hitCount - 1);
+      for (int i = 0; i < hitCount; i++) {
+        T result;
+        if (i < resultBuffer.size()) {
+          result = resultBuffer.get(i);
         } else {
           result = allocateResult.get();
           resultBuffer.add(result);
         }
 
+        float distance = callback.hitDistances[i];
         result.reset();
-        result.set(tempResult);
+        result.setDistance(distance);
+        result.setPoint(ray, distance);
 
         if (processResult != null) {
-          processResult.accept(result, collider);
+          processResult.accept(result, callback.hitColliders[i]);
         }
       }
+
+      callback.end();
     }
 
     // Reset extra hits in the buffer.
@@ -99,62 +324,844 @@ public class CollisionSystem {
       resultBuffer.get(i).reset();
     }
 
-    // Sort the hits by distance.
-    Collections.sort(resultBuffer, (a, b) -> Float.compare(a.getDistance(), b.getDistance()));
-
     return hitCount;
   }
 
+  /** Same as {@link #raycastBatch(float[], float[], int, int, float[], int[], ForkJoinPool)}. */
+  public int raycastBatch(
+      float[] origins,
+      float[] directions,
+      int rayCount,
+      int layerMask,
+      float[] outDistances,
+      int[] outColliderIndices) {
+    return raycastBatch(
+        origins, directions, rayCount, layerMask, outDistances, outColliderIndices, null);
+  }
+
+  /**
+   * Finds the closest collider hit by each ray in a batch. The rays are read from primitive arrays
+   * and the results are written to caller owned arrays, so a batch doesn't allocate per ray and
+   * the bounds of the colliders are refit once for the whole batch.
+   *
+   * @param origins the origin of each ray, packed as x, y, z
+   * @param directions the direction of each ray, packed as x, y, z. They are normalized before
+   *     casting, so distances are the same as for a {@link Ray}.
+   * @param rayCount the number of rays to cast
+   * @param layerMask bitmask of the layers to test against
+   * @param outDistances receives the distance to the closest hit of each ray, or {@link
+   *     Float#MAX_VALUE} if the ray didn't hit anything
+   * @param outColliderIndices receives the index of the closest collider hit by each ray, to be
+   *     passed to {@link #getCollider(int)}, or -1 if the ray didn't hit anything
+   * @param pool if not null, large batches are split into chunks that are cast in parallel on this
+   *     pool. This call still blocks until all of the rays have been cast.
+   * @return the number of rays that hit a collider
+   */
+  public int raycastBatch(
+      float[] origins,
+      float[] directions,
+      int rayCount,
+      int layerMask,
+      float[] outDistances,
+      int[] outColliderIndices,
+      @Nullable ForkJoinPool pool) {
+    Preconditions.checkNotNull(origins, "Parameter \"origins\" was null.");
+    Preconditions.checkNotNull(directions, "Parameter \"directions\" was null.");
+    Preconditions.checkNotNull(outDistances, "Parameter \"outDistances\" was null.");
+    Preconditions.checkNotNull(outColliderIndices, "Parameter \"outColliderIndices\" was null.");
+    if (rayCount < 0
+        || origins.length < rayCount * 3
+        || directions.length < rayCount * 3
+        || outDistances.length < rayCount
+        || outColliderIndices.length < rayCount) {
+      throw new IllegalArgumentException("Arrays are too small for " + rayCount + " rays.");
+    }
+
+    refitDirtyColliders();
+
+    if (pool == null || rayCount <= BATCH_CHUNK_SIZE) {
+      return batchRaycaster.cast(
+          origins, directions, 0, rayCount, layerMask, outDistances, outColliderIndices);
+    }
+
+    // Colliders update their world shapes lazily, which isn't safe to do from several threads.
+    // Resolve every shape up front so the workers only read them.
+    int colliderCount = colliders.size();
+    if (batchShapes.length < colliderCount) {
+      batchShapes = new CollisionShape[Math.max(colliderCount, batchShapes.length * 2)];
+    }
+    for (int i = 0; i < colliderCount; i++) {
+      batchShapes[i] = colliders.get(i).getWorldShape();
+    }
+
+    try {
+      return pool.invoke(
+          new BatchRaycastTask(
+              origins,
+              directions,
+              0,
+              rayCount,
+              layerMask,
+              outDistances,
+              outColliderIndices,
+              batchShapes));
+    } finally {
+      Arrays.fill(batchShapes, 0, colliderCount, null);
+    }
+  }
+
+  /**
+   * Finds the first collider touched by a sphere moving along a ray, only considering colliders on
+   * the given layers that are accepted by the filter.
+   *
+   * @see #shapeCast(CollisionShape, Vector3, float, RayHit, int, Predicate)
+   * @param ray the sphere starts centered at the origin of the ray and moves along its direction
+   * @param radius the radius of the sphere
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  public Collider sphereCast(
+      Ray ray,
+      float radius,
+      float maxDistance,
+      RayHit resultHit,
+      int layerMask,
+      @Nullable Predicate<Collider> filter) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+
+    castSphere.setCenter(ray.getRawOrigin());
+    castSphere.setRadius(radius);
+    return shapeCast(
+        castSphere, ray.getRawDirection(), maxDistance, resultHit, layerMask, filter);
+  }
+
+  /**
+   * Finds the first collider touched by a box moving along a ray, only considering colliders on
+   * the given layers that are accepted by the filter.
+   *
+   * @see #shapeCast(CollisionShape, Vector3, float, RayHit, int, Predicate)
+   * @param ray the box starts centered at the origin of the ray and moves along its direction
+   * @param size the size of the box
+   * @param rotation the rotation of the box
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  public Collider boxCast(
+      Ray ray,
+      Vector3 size,
+      Quaternion rotation,
+      float maxDistance,
+      RayHit resultHit,
+      int layerMask,
+      @Nullable Predicate<Collider> filter) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+    Preconditions.checkNotNull(size, "Parameter \"size\" was null.");
+    Preconditions.checkNotNull(rotation, "Parameter \"rotation\" was null.");
+
+    castBox.setCenter(ray.getRawOrigin());
+    castBox.setSize(size);
+    castBox.setRotation(rotation);
+    return shapeCast(castBox, ray.getRawDirection(), maxDistance, resultHit, layerMask, filter);
+  }
+
+  /**
+   * Finds the first collider touched by a shape moving in a straight line, only considering
+   * colliders on the given layers that are accepted by the filter. Unlike testing for overlaps at
+   * the start and end of a movement, this can't miss colliders that are thinner than the distance
+   * moved.
+   *
+   * <p>The bounds of the shape are cast through the same tree as rays, and each collider they
+   * reach is tested against the moving shape with a GJK ray cast. The nearest hit clips the rest of
+   * the traversal.
+   *
+   * @param shape the moving shape in world-space, at the start of the movement. To cast the shape
+   *     of a collider, pass its transformed shape and use the filter to ignore the collider itself.
+   * @param direction the direction of the movement
+   * @param maxDistance the maximum distance to move
+   * @param resultHit receives the distance moved until the shapes touch, the contact point on the
+   *     collider that was hit and its normal there. If the shape already overlaps the collider, the
+   *     distance is 0 and the normal is zero.
+   * @param layerMask bitmask of the layers to test against
+   * @param filter returns false for colliders that should be ignored, or null to accept all
+   * @return the first collider touched, or null if the shape can move the whole distance
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  public Collider shapeCast(
+      CollisionShape shape,
+      Vector3 direction,
+      float maxDistance,
+      RayHit resultHit,
+      int layerMask,
+      @Nullable Predicate<Collider> filter) {
+    Preconditions.checkNotNull(shape, "Parameter \"shape\" was null.");
+    Preconditions.checkNotNull(direction, "Parameter \"direction\" was null.");
+    Preconditions.checkNotNull(resultHit, "Parameter \"resultHit\" was null.");
+
+    resultHit.reset();
+    refitDirtyColliders();
+
+    Vector3 normalizedDirection = direction.normalized();
+    shape.computeAabb(aabb);
+
+    ShapeCastCallback callback = shapeCastCallback;
+    callback.shape = shape;
+    callback.directionX = normalizedDirection.x;
+    callback.directionY = normalizedDirection.y;
+    callback.directionZ = normalizedDirection.z;
+    callback.filter = filter;
+    callback.result = null;
+    tree.boxCast(
+        (aabb[0] + aabb[3]) * 0.5f,
+        (aabb[1] + aabb[4]) * 0.5f,
+        (aabb[2] + aabb[5]) * 0.5f,
+        normalizedDirection.x,
+        normalizedDirection.y,
+        normalizedDirection.z,
+        (aabb[3] - aabb[0]) * 0.5f,
+        (aabb[4] - aabb[1]) * 0.5f,
+        (aabb[5] - aabb[2]) * 0.5f,
+        maxDistance,
+        layerMask,
+        callback);
+
+    Collider result = callback.result;
+    if (result != null) {
+      float[] hit = callback.nearestHit;
+      resultHit.setDistance(hit[0]);
+      resultHit.setPoint(new Vector3(hit[1], hit[2], hit[3]));
+      resultHit.setNormal(new Vector3(hit[4], hit[5], hit[6]));
+    }
+
+    callback.shape = null;
+    callback.filter = null;
+    callback.result = null;
+    return result;
+  }
+
   @Nullable
   public Collider intersects(Collider collider) {
+    return intersects(collider, ALL_LAYERS, null);
+  }
+
+  /**
+   * Finds a collider that overlaps the given collider, only considering colliders on the given
+   * layers that are accepted by the filter.
+   *
+   * @param layerMask bitmask of the layers to test against
+   * @param filter returns false for colliders that should be ignored, or null to accept all
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  @Nullable
+  public Collider intersects(
+      Collider collider, int layerMask, @Nullable Predicate<Collider> filter) {
     Preconditions.checkNotNull(collider, "Parameter \"collider\" was null.");
 
-    CollisionShape collisionShape = collider.getTransformedShape();
-    if (collisionShape == null) {
-      return null;
-    }
+    OverlapCallback callback = overlapCallback;
+    callback.processResult = null;
+    callback.filter = filter;
+    callback.result = null;
+    queryTree(collider, layerMask, callback);
 
-    for (Collider otherCollider : colliders) {
-      if (otherCollider == collider) {
+    Collider result = callback.result;
+    callback.filter = null;
+    callback.result = null;
+    return result;
+  }
+
+  @SuppressWarnings("AndroidApiChecker")
+  public void intersectsAll(Collider collider, Consumer<Collider> processResult) {
+    intersectsAll(collider, ALL_LAYERS, null, processResult);
+  }
+
+  /**
+   * Finds every collider that overlaps the given collider, only considering colliders on the given
+   * layers that are accepted by the filter.
+   *
+   * @param layerMask bitmask of the layers to test against
+   * @param filter returns false for colliders that should be ignored, or null to accept all
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public void intersectsAll(
+      Collider collider,
+      int layerMask,
+      @Nullable Predicate<Collider> filter,
+      Consumer<Collider> processResult) {
+    Preconditions.checkNotNull(collider, "Parameter \"collider\" was null.");
+    Preconditions.checkNotNull(processResult, "Parameter \"processResult\" was null.");
+
+    OverlapCallback callback = overlapCallback;
+    callback.processResult = processResult;
+    callback.filter = filter;
+    callback.result = null;
+    queryTree(collider, layerMask, callback);
+
+    callback.processResult = null;
+    callback.filter = null;
+    callback.result = null;
+  }
+
+  /**
+   * Finds every pair of colliders in the system that overlap each other. Each pair is reported
+   * once.
+   *
+   * <p>The bounds of all colliders are sorted along the axis they are most spread out on and swept
+   * once, so only colliders whose bounds overlap are passed to the narrow phase. This is much
+   * cheaper than calling {@link #intersectsAll(Collider, Consumer)} for every collider.
+   *
+   * @param processResult called with the two colliders of each overlapping pair
+   * @return the number of overlapping pairs
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public int intersectsAllPairs(BiConsumer<Collider, Collider> processResult) {
+    return intersectsAllPairs(ALL_LAYERS, processResult);
+  }
+
+  /**
+   * Finds every pair of colliders on the given layers that overlap each other. Colliders that
+   * don't share a layer with the mask are left out of the sweep entirely.
+   *
+   * @param layerMask bitmask of the layers to test
+   * @see #intersectsAllPairs(BiConsumer)
+   */
+  @SuppressWarnings("AndroidApiChecker")
+  public int intersectsAllPairs(int layerMask, BiConsumer<Collider, Collider> processResult) {
+    Preconditions.checkNotNull(processResult, "Parameter \"processResult\" was null.");
+
+    // Marks the colliders whose transform changes were deferred, so the shapes read below are
+    // current.
+    refitDirtyColliders();
+
+    int colliderCount = colliders.size();
+    ensureSweepCapacity(colliderCount);
+
+    // Gather the bounds of every collider and pick the axis with the most spread. The world shapes
+    // are only resolved for the pairs whose bounds overlap.
+    int count = 0;
+    float[] sum = sweepSum;
+    float[] sumSquared = sweepSumSquared;
+    Arrays.fill(sum, 0.0f);
+    Arrays.fill(sumSquared, 0.0f);
+    for (int i = 0; i < colliderCount; i++) {
+      Collider collider = colliders.get(i);
+      if ((collider.getLayers() & layerMask) == 0) {
         continue;
       }
 
-      CollisionShape otherCollisionShape = otherCollider.getTransformedShape();
-      if (otherCollisionShape == null) {
+      collider.computeWorldAabb(aabb);
+      System.arraycopy(aabb, 0, sweepBounds, i * 6, 6);
+      sweepIndices[count] = i;
+
+      for (int axis = 0; axis < 3; axis++) {
+        float center = (aabb[axis] + aabb[axis + 3]) * 0.5f;
+        sum[axis] += center;
+        sumSquared[axis] += center * center;
+      }
+      count++;
+    }
+
+    int sweepAxis = 0;
+    float maxVariance = -1.0f;
+    for (int axis = 0; axis < 3; axis++) {
+      float variance = sumSquared[axis] - sum[axis] * sum[axis] / Math.max(count, 1);
+      if (variance > maxVariance) {
+        maxVariance = variance;
+        sweepAxis = axis;
+      }
+    }
+
+    // Sort by the min bound on the sweep axis. The key is packed with the collider index into a
+    // long so that the sort doesn't allocate.
+    for (int i = 0; i < count; i++) {
+      int index = sweepIndices[i];
+      int key = Float.floatToIntBits(sweepBounds[index * 6 + sweepAxis]);
+      // Flip the bits of negative floats so that the ints sort in the same order as the floats.
+      key ^= (key >> 31) & 0x7fffffff;
+      sweepOrder[i] = ((long) key << 32) | index;
+    }
+    Arrays.sort(sweepOrder, 0, count);
+
+    int axis1 = (sweepAxis + 1) % 3;
+    int axis2 = (sweepAxis + 2) % 3;
+    int pairCount = 0;
+
+    for (int i = 0; i < count; i++) {
+      int a = (int) sweepOrder[i];
+      int offsetA = a * 6;
+      float maxA = sweepBounds[offsetA + sweepAxis + 3];
+
+      for (int j = i + 1; j < count; j++) {
+        int b = (int) sweepOrder[j];
+        int offsetB = b * 6;
+
+        // Everything after this starts past the end of a on the sweep axis.
+        if (sweepBounds[offsetB + sweepAxis] > maxA) {
+          break;
+        }
+
+        if (sweepBounds[offsetB + axis1] > sweepBounds[offsetA + axis1 + 3]
+            || sweepBounds[offsetA + axis1] > sweepBounds[offsetB + axis1 + 3]
+            || sweepBounds[offsetB + axis2] > sweepBounds[offsetA + axis2 + 3]
+            || sweepBounds[offsetA + axis2] > sweepBounds[offsetB + axis2 + 3]) {
+          continue;
+        }
+
+        CollisionShape shapeA = colliders.get(a).getTransformedShape();
+        CollisionShape shapeB = colliders.get(b).getTransformedShape();
+        if (shapeA != null && shapeB != null && shapeA.shapeIntersection(shapeB)) {
+          pairCount++;
+          processResult.accept(colliders.get(a), colliders.get(b));
+        }
+      }
+    }
+
+    return pairCount;
+  }
+
+  private void raycastTree(
+      Ray ray, float maxDistance, int layerMask, DynamicAabbTree.RayCastCallback callback) {
+    Vector3 origin = ray.getRawOrigin();
+    Vector3 direction = ray.getRawDirection();
+    tree.raycast(
+        origin.x,
+        origin.y,
+        origin.z,
+        direction.x,
+        direction.y,
+        direction.z,
+        maxDistance,
+        layerMask,
+        callback);
+  }
+
+  private void queryTree(Collider collider, int layerMask, OverlapCallback callback) {
+    // Refit first, the query collider may be one of the colliders whose move was deferred.
+    refitDirtyColliders();
+
+    // The world shape of the query collider is resolved by the callback when its bounds touch
+    // another collider.
+    callback.collider = collider;
+    callback.collisionShape = null;
+    collider.computeWorldAabb(aabb);
+    tree.query(aabb, layerMask, callback);
+    callback.collider = null;
+    callback.collisionShape = null;
+  }
+
+  private void ensureSweepCapacity(int colliderCount) {
+    if (sweepOrder.length < colliderCount) {
+      int capacity = Math.max(colliderCount, sweepOrder.length * 2);
+      sweepBounds = new float[capacity * 6];
+      sweepOrder = new long[capacity];
+      sweepIndices = new int[capacity];
+    }
+  }
+
+  /**
+   * Updates the tree bounds of every collider that changed since the last query. The bounds are
+   * computed from the local shapes, the world shapes are resolved later by the queries that touch
+   * them.
+   */
+  private void refitDirtyColliders() {
+    if (onBeforeRefitListener != null) {
+      onBeforeRefitListener.run();
+    }
+
+    for (int i = 0; i < dirtyColliders.size(); i++) {
+      Collider collider = dirtyColliders.get(i);
+      collider.isProxyDirty = false;
+
+      if (collider.proxyId == DynamicAabbTree.NULL_NODE) {
         continue;
       }
 
-      if (collisionShape.shapeIntersection(otherCollisionShape)) {
-        return otherCollider;
+      collider.computeWorldAabb(aabb);
+      tree.moveProxy(collider.proxyId, aabb);
+    }
+
+    dirtyColliders.clear();
+  }
+
+  /** Keeps the closest hit and clips the traversal to it. */
+  private final class NearestHitCallback implements DynamicAabbTree.RayCastCallback {
+    @Nullable Ray ray;
+    @Nullable RayHit resultHit;
+    @Nullable Predicate<Collider> filter;
+    @Nullable Collider result;
+
+    @Override
+    @SuppressWarnings("AndroidApiChecker")
+    public float onRayCastLeaf(Collider collider, float maxDistance) {
+      Ray ray = Preconditions.checkNotNull(this.ray);
+      RayHit resultHit = Preconditions.checkNotNull(this.resultHit);
+
+      if (filter != null && !filter.test(collider)) {
+        return maxDistance;
+      }
+
+      CollisionShape collisionShape = collider.getTransformedShape();
+      if (collisionShape == null) {
+        return maxDistance;
+      }
+
+      if (collisionShape.rayIntersection(ray, tempResult)
+          && tempResult.getDistance() < resultHit.getDistance()) {
+        resultHit.set(tempResult);
+        result = collider;
+        return tempResult.getDistance();
+      }
+
+      return maxDistance;
+    }
+  }
+
+  /**
+   * Keeps the closest hits sorted by distance. Once the maximum number of hits has been found, the
+   * traversal is clipped to the farthest of them, since nothing beyond it can be kept.
+   */
+  private final class SortedHitsCallback implements DynamicAabbTree.RayCastCallback {
+    private static final int INITIAL_CAPACITY = 8;
+
+    float[] hitDistances = new float[INITIAL_CAPACITY];
+    Collider[] hitColliders = new Collider[INITIAL_CAPACITY];
+    int hitCount;
+
+    private int maxHits;
+    @Nullable private Predicate<Collider> filter;
+
+    private float originX;
+    private float originY;
+    private float originZ;
+    private float directionX;
+    private float directionY;
+    private float directionZ;
+
+    void begin(Ray ray, int maxHits, @Nullable Predicate<Collider> filter) {
+      Vector3 origin = ray.getRawOrigin();
+      Vector3 direction = ray.getRawDirection();
+      originX = origin.x;
+      originY = origin.y;
+      originZ = origin.z;
+      directionX = direction.x;
+      directionY = direction.y;
+      directionZ = direction.z;
+      this.maxHits = maxHits;
+      this.filter = filter;
+      hitCount = 0;
+    }
+
+    void end() {
+      Arrays.fill(hitColliders, 0, hitCount, null);
+      filter = null;
+      hitCount = 0;
+    }
+
+    @Override
+    @SuppressWarnings("AndroidApiChecker")
+    public float onRayCastLeaf(Collider collider, float maxDistance) {
+      if (filter != null && !filter.test(collider)) {
+        return maxDistance;
+      }
+
+      CollisionShape collisionShape = collider.getTransformedShape();
+      if (collisionShape == null) {
+        return maxDistance;
+      }
+
+      float distance =
+          collisionShape.rayIntersectionDistance(
+              originX, originY, originZ, directionX, directionY, directionZ);
+      if (Float.isNaN(distance) || distance > maxDistance) {
+        return maxDistance;
+      }
+
+      // Insert after any hits at the same distance, so ties keep the order they were found in.
+      int index = hitCount;
+      while (index > 0 && hitDistances[index - 1] > distance) {
+        index--;
+      }
+
+      if (hitCount < maxHits) {
+        if (hitCount == hitDistances.length) {
+          int capacity = (int) Math.min((long) maxHits, hitCount * 2L);
+          hitDistances = Arrays.copyOf(hitDistances, capacity);
+          hitColliders = Arrays.copyOf(hitColliders, capacity);
+        }
+        hitCount++;
+      } else if (index == hitCount) {
+        return maxDistance;
       }
+
+      int moveCount = hitCount - 1 - index;
+      System.arraycopy(hitDistances, index, hitDistances, index + 1, moveCount);
+      System.arraycopy(hitColliders, index, hitColliders, index + 1, moveCount);
+      hitDistances[index] = distance;
+      hitColliders[index] = collider;
+
+      return hitCount == maxHits ? hitDistances[hitCount - 1] : maxDistance;
+    }
+  }
+
+  /**
+   * Casts rays from a batch one at a time, keeping the closest hit of the current ray and clipping
+   * the traversal to it. Each thread casting rays needs its own instance.
+   */
+  private final class BatchRaycaster implements DynamicAabbTree.RayCastCallback {
+    // World shapes indexed by collider index, or null to get them from the colliders.
+    @Nullable private final CollisionShape[] shapes;
+    private int[] stack = DynamicAabbTree.createStack();
+
+    private float originX;
+    private float originY;
+    private float originZ;
+    private float directionX;
+    private float directionY;
+    private float directionZ;
+    private float hitDistance;
+    @Nullable private Collider hitCollider;
+
+    BatchRaycaster(@Nullable CollisionShape[] shapes) {
+      this.shapes = shapes;
     }
 
-    return null;
+    /** Casts the rays from start to end and returns how many of them hit a collider. */
+    int cast(
+        float[] origins,
+        float[] directions,
+        int start,
+        int end,
+        int layerMask,
+        float[] outDistances,
+        int[] outColliderIndices) {
+      int hitCount = 0;
+
+      for (int i = start; i < end; i++) {
+        int offset = i * 3;
+        originX = origins[offset];
+        originY = origins[offset + 1];
+        originZ = origins[offset + 2];
+        setDirection(directions[offset], directions[offset + 1], directions[offset + 2]);
+        hitDistance = Float.MAX_VALUE;
+        hitCollider = null;
+
+        stack =
+            tree.raycast(
+                originX,
+                originY,
+                originZ,
+                directionX,
+                directionY,
+                directionZ,
+                Float.MAX_VALUE,
+                layerMask,
+                this,
+                stack);
+
+        outDistances[i] = hitDistance;
+        if (hitCollider != null) {
+          outColliderIndices[i] = hitCollider.systemIndex;
+          hitCount++;
+        } else {
+          outColliderIndices[i] = -1;
+        }
+      }
+
+      hitCollider = null;
+      return hitCount;
+    }
+
+    @Override
+    public float onRayCastLeaf(Collider collider, float maxDistance) {
+      CollisionShape collisionShape =
+          shapes != null ? shapes[collider.systemIndex] : collider.getTransformedShape();
+      if (collisionShape == null) {
+        return maxDistance;
+      }
+
+      float distance =
+          collisionShape.rayIntersectionDistance(
+              originX, originY, originZ, directionX, directionY, directionZ);
+      if (!Float.isNaN(distance) && distance < hitDistance) {
+        hitDistance = distance;
+        hitCollider = collider;
+        return distance;
+      }
+
+      return maxDistance;
+    }
+
+    // Normalizes the direction the same way as Vector3#normalized().
+    private void setDirection(float x, float y, float z) {
+      float normSquared = x * x + y * y + z * z;
+      if (MathHelper.almostEqualRelativeAndAbs(normSquared, 0.0f)) {
+        x = 0.0f;
+        y = 0.0f;
+        z = 0.0f;
+      } else if (normSquared != 1) {
+        float norm = (float) (1.0 / Math.sqrt(normSquared));
+        x *= norm;
+        y *= norm;
+        z *= norm;
+      }
+
+      directionX = x;
+      directionY = y;
+      directionZ = z;
+    }
   }
 
-  @SuppressWarnings("AndroidApiChecker")
-  public void intersectsAll(Collider collider, Consumer<Collider> processResult) {
-    Preconditions.checkNotNull(collider, "Parameter \"collider\" was null.");
-    Preconditions.checkNotNull(processResult, "Parameter \"processResult\" was null.");
+  /** Splits a batch of rays in half until the chunks are small enough to cast directly. */
+  private final class BatchRaycastTask extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
 
-    CollisionShape collisionShape = collider.getTransformedShape();
-    if (collisionShape == null) {
-      return;
+    private final float[] origins;
+    private final float[] directions;
+    private final int start;
+    private final int end;
+    private final int layerMask;
+    private final float[] outDistances;
+    private final int[] outColliderIndices;
+    private final CollisionShape[] shapes;
+
+    BatchRaycastTask(
+        float[] origins,
+        float[] directions,
+        int start,
+        int end,
+        int layerMask,
+        float[] outDistances,
+        int[] outColliderIndices,
+        CollisionShape[] shapes) {
+      this.origins = origins;
+      this.directions = directions;
+      this.start = start;
+      this.end = end;
+      this.layerMask = layerMask;
+      this.outDistances = outDistances;
+      this.outColliderIndices = outColliderIndices;
+      this.shapes = shapes;
+    }
+
+    @Override
+    protected Integer compute() {
+      if (end - start <= BATCH_CHUNK_SIZE) {
+        return new BatchRaycaster(shapes)
+            .cast(origins, directions, start, end, layerMask, outDistances, outColliderIndices);
+      }
+
+      int middle = (start + end) >>> 1;
+      BatchRaycastTask first =
+          new BatchRaycastTask(
+              origins,
+              directions,
+              start,
+              middle,
+              layerMask,
+              outDistances,
+              outColliderIndices,
+              shapes);
+      BatchRaycastTask second =
+          new BatchRaycastTask(
+              origins,
+              directions,
+              middle,
+              end,
+              layerMask,
+              outDistances,
+              outColliderIndices,
+              shapes);
+      first.fork();
+      int secondHits = second.compute();
+      return first.join() + secondHits;
+    }
+  }
+
+  /** Runs the narrow phase of a shape cast and clips the traversal to the nearest hit. */
+  private final class ShapeCastCallback implements DynamicAabbTree.RayCastCallback {
+    @Nullable CollisionShape shape;
+    float directionX;
+    float directionY;
+    float directionZ;
+    @Nullable Predicate<Collider> filter;
+    @Nullable Collider result;
+    final float[] nearestHit = new float[Gjk.CAST_RESULT_SIZE];
+    private final float[] hit = new float[Gjk.CAST_RESULT_SIZE];
+
+    @Override
+    @SuppressWarnings("AndroidApiChecker")
+    public float onRayCastLeaf(Collider collider, float maxDistance) {
+      CollisionShape shape = Preconditions.checkNotNull(this.shape);
+
+      if (filter != null && !filter.test(collider)) {
+        return maxDistance;
+      }
+
+      CollisionShape collisionShape = collider.getTransformedShape();
+      if (collisionShape == null) {
+        return maxDistance;
+      }
+
+      if (!Gjk.cast(
+          shape, directionX, directionY, directionZ, maxDistance, collisionShape, hit)) {
+        return maxDistance;
+      }
+
+      if (result != null && hit[0] >= nearestHit[0]) {
+        return maxDistance;
+      }
+
+      System.arraycopy(hit, 0, nearestHit, 0, hit.length);
+      result = collider;
+      return hit[0];
     }
+  }
 
-    for (Collider otherCollider : colliders) {
+  /** Runs the narrow phase against the colliders whose bounds overlap the query shape. */
+  private final class OverlapCallback implements DynamicAabbTree.QueryCallback {
+    @Nullable Collider collider;
+    @Nullable CollisionShape collisionShape;
+    // When null, the query stops at the first overlap and stores it in result.
+    @Nullable Consumer<Collider> processResult;
+    @Nullable Predicate<Collider> filter;
+    @Nullable Collider result;
+
+    @Override
+    @SuppressWarnings("AndroidApiChecker")
+    public boolean onQueryLeaf(Collider otherCollider) {
+      Collider collider = Preconditions.checkNotNull(this.collider);
       if (otherCollider == collider) {
-        continue;
+        return true;
+      }
+
+      if (filter != null && !filter.test(otherCollider)) {
+        return true;
+      }
+
+      CollisionShape collisionShape = this.collisionShape;
+      if (collisionShape == null) {
+        collisionShape = collider.getTransformedShape();
+        if (collisionShape == null) {
+          return false;
+        }
+        this.collisionShape = collisionShape;
       }
 
       CollisionShape otherCollisionShape = otherCollider.getTransformedShape();
       if (otherCollisionShape == null) {
-        continue;
+        return true;
+      }
+
+      if (!collisionShape.shapeIntersection(otherCollisionShape)) {
+        return true;
       }
 
-      if (collisionShape.shapeIntersection(otherCollisionShape)) {
-        processResult.accept(otherCollider);
+      if (processResult == null) {
+        result = otherCollider;
+        return false;
       }
+
+      processResult.accept(otherCollider);
+      return true;
     }
   }
 }
@@ -0,0 +1,339 @@
+package com.google.ar.sceneform.collision;
+
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.List;
+
+/**
+ * Mathematical representation of a convex hull. Used to perform intersection and collision tests
+ * against the convex shape that wraps a set of points, such as the vertices of a model, which fits
+ * irregular objects much more closely than a box.
+ *
+ * <p>The hull is stored as its vertices and the planes of its faces. Copies of a hull share this
+ * data, so creating a copy for each instance of a model is cheap.
+ */
+public class ConvexHull extends CollisionShape {
+  private static final String TAG = ConvexHull.class.getSimpleName();
+  private static final float PARALLEL_EPSILON = 1.0e-6f;
+
+  // Vertices packed as x, y, z.
+  private float[] vertices;
+  // Face planes packed as normal x, y, z and offset. A point is inside a plane when
+  // dot(normal, point) <= offset.
+  private float[] planes;
+  // True when vertices and planes may be shared with another hull, so they can't be modified.
+  private boolean sharesData;
+
+  /**
+   * Create the convex hull of a set of points.
+   *
+   * @param points the points to wrap
+   * @throws IllegalArgumentException if the points all lie on a single plane
+   */
+  public ConvexHull(List<Vector3> points) {
+    Preconditions.checkNotNull(points, "Parameter \"points\" was null.");
+
+    float[] packedPoints = new float[points.size() * 3];
+    for (int i = 0; i < points.size(); i++) {
+      Vector3 point = points.get(i);
+      packedPoints[i * 3] = point.x;
+      packedPoints[i * 3 + 1] = point.y;
+      packedPoints[i * 3 + 2] = point.z;
+    }
+
+    QuickHull quickHull = new QuickHull(packedPoints, points.size());
+    if (!quickHull.build()) {
+      throw new IllegalArgumentException("ConvexHull requires at least 4 points not on a plane.");
+    }
+
+    vertices = quickHull.getVertices();
+    planes = quickHull.getPlanes();
+  }
+
+  private ConvexHull(float[] vertices, float[] planes) {
+    this.vertices = vertices;
+    this.planes = planes;
+    sharesData = true;
+  }
+
+  /**
+   * Create the convex hull of points packed as x, y, z.
+   *
+   * @return the hull, or null if the points all lie on a single plane
+   * @hide
+   */
+  @Nullable
+  public static ConvexHull fromPoints(float[] points, int pointCount) {
+    Preconditions.checkNotNull(points, "Parameter \"points\" was null.");
+
+    QuickHull quickHull = new QuickHull(points, pointCount);
+    if (!quickHull.build()) {
+      return null;
+    }
+
+    ConvexHull result = new ConvexHull(quickHull.getVertices(), quickHull.getPlanes());
+    result.sharesData = false;
+    return result;
+  }
+
+  /** Get the number of vertices of the hull. */
+  public int getVertexCount() {
+    return vertices.length / 3;
+  }
+
+  /**
+   * Get a copy of a vertex of the hull.
+   *
+   * @param index the index of the vertex, less than {@link #getVertexCount()}
+   * @return a new vector that represents the vertex
+   */
+  public Vector3 getVertex(int index) {
+    return new Vector3(vertices[index * 3], vertices[index * 3 + 1], vertices[index * 3 + 2]);
+  }
+
+  @Override
+  public ConvexHull makeCopy() {
+    sharesData = true;
+    return new ConvexHull(vertices, planes);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean rayIntersection(Ray ray, RayHit result) {
+    Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
+    Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
+
+    Vector3 rayOrigin = ray.getRawOrigin();
+    Vector3 rayDirection = ray.getRawDirection();
+    float distance =
+        rayIntersectionDistance(
+            rayOrigin.x,
+            rayOrigin.y,
+            rayOrigin.z,
+            rayDirection.x,
+            rayDirection.y,
+            rayDirection.z);
+    if (Float.isNaN(distance)) {
+      return false;
+    }
+
+    result.setDistance(distance);
+    result.setPoint(ray, distance);
+    return true;
+  }
+
+  @Override
+  float rayIntersectionDistance(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ) {
+    // Clip the ray against each face plane (Cyrus-Beck).
+    float tEnter = 0.0f;
+    float tExit = Float.MAX_VALUE;
+    for (int i = 0; i < planes.length; i += 4) {
+      float normalX = planes[i];
+      float normalY = planes[i + 1];
+      float normalZ = planes[i + 2];
+      float distance = planes[i + 3] - (normalX * originX + normalY * originY + normalZ * originZ);
+      float denominator = normalX * directionX + normalY * directionY + normalZ * directionZ;
+
+      if (Math.abs(denominator) < PARALLEL_EPSILON) {
+        // Ray is almost parallel to the plane.
+        if (distance < 0.0f) {
+          return Float.NaN;
+        }
+        continue;
+      }
+
+      float t = distance / denominator;
+      if (denominator < 0.0f) {
+        tEnter = Math.max(tEnter, t);
+      } else {
+        tExit = Math.min(tExit, t);
+      }
+
+      if (tEnter > tExit) {
+        return Float.NaN;
+      }
+    }
+
+    return tEnter;
+  }
+
+  /** @hide */
+  @Override
+  protected boolean shapeIntersection(CollisionShape shape) {
+    Preconditions.checkNotNull(shape, "Parameter \"shape\" was null.");
+    return shape.convexHullIntersection(this);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean sphereIntersection(Sphere sphere) {
+    return Gjk.intersects(this, sphere);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean boxIntersection(Box box) {
+    return Gjk.intersects(this, box);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean capsuleIntersection(Capsule capsule) {
+    return Gjk.intersects(this, capsule);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean convexHullIntersection(ConvexHull convexHull) {
+    return Gjk.intersects(this, convexHull);
+  }
+
+  @Override
+  void support(float directionX, float directionY, float directionZ, float[] result) {
+    int bestIndex = 0;
+    float bestDot = -Float.MAX_VALUE;
+    for (int i = 0; i < vertices.length; i += 3) {
+      float dot =
+          vertices[i] * directionX + vertices[i + 1] * directionY + vertices[i + 2] * directionZ;
+      if (dot > bestDot) {
+        bestDot = dot;
+        bestIndex = i;
+      }
+    }
+
+    result[0] = vertices[bestIndex];
+    result[1] = vertices[bestIndex + 1];
+    result[2] = vertices[bestIndex + 2];
+  }
+
+  @Override
+  void computeAabb(float[] aabb) {
+    aabb[0] = Float.MAX_VALUE;
+    aabb[1] = Float.MAX_VALUE;
+    aabb[2] = Float.MAX_VALUE;
+    aabb[3] = -Float.MAX_VALUE;
+    aabb[4] = -Float.MAX_VALUE;
+    aabb[5] = -Float.MAX_VALUE;
+    for (int i = 0; i < vertices.length; i += 3) {
+      aabb[0] = Math.min(aabb[0], vertices[i]);
+      aabb[1] = Math.min(aabb[1], vertices[i + 1]);
+      aabb[2] = Math.min(aabb[2], vertices[i + 2]);
+      aabb[3] = Math.max(aabb[3], vertices[i]);
+      aabb[4] = Math.max(aabb[4], vertices[i + 1]);
+      aabb[5] = Math.max(aabb[5], vertices[i + 2]);
+    }
+  }
+
+  @Override
+  CollisionShape transform(TransformProvider transformProvider) {
+    Preconditions.checkNotNull(transformProvider, "Parameter \"transformProvider\" was null.");
+
+    ConvexHull result = new ConvexHull(new float[0], new float[0]);
+    transform(transformProvider, result);
+    return result;
+  }
+
+  @Override
+  void transform(TransformProvider transformProvider, CollisionShape result) {
+    Preconditions.checkNotNull(transformProvider, "Parameter \"transformProvider\" was null.");
+    Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
+
+    if (!(result instanceof ConvexHull)) {
+      Log.w(
+          TAG,
+          "Cannot pass CollisionShape of a type other than ConvexHull into ConvexHull.transform.");
+      return;
+    }
+
+    if (result == this) {
+      throw new IllegalArgumentException("ConvexHull cannot transform itself.");
+    }
+
+    ConvexHull resultHull = (ConvexHull) result;
+    if (resultHull.sharesData
+        || resultHull.vertices.length != vertices.length
+        || resultHull.planes.length != planes.length) {
+      resultHull.vertices = new float[vertices.length];
+      resultHull.planes = new float[planes.length];
+      resultHull.sharesData = false;
+    }
+
+    float[] m = transformProvider.getWorldModelMatrix().data;
+
+    // Transform the vertices.
+    float[] resultVertices = resultHull.vertices;
+    for (int i = 0; i < vertices.length; i += 3) {
+      float x = vertices[i];
+      float y = vertices[i + 1];
+      float z = vertices[i + 2];
+      resultVertices[i] = m[0] * x + m[4] * y + m[8] * z + m[12];
+      resultVertices[i + 1] = m[1] * x + m[5] * y + m[9] * z + m[13];
+      resultVertices[i + 2] = m[2] * x + m[6] * y + m[10] * z + m[14];
+    }
+
+    // Normals transform by the inverse transpose of the matrix, which is its cofactor matrix
+    // divided by the determinant. Only the sign of the determinant matters since the normals are
+    // normalized afterwards.
+    float c00 = m[5] * m[10] - m[6] * m[9];
+    float c01 = m[6] * m[8] - m[4] * m[10];
+    float c02 = m[4] * m[9] - m[5] * m[8];
+    float c10 = m[9] * m[2] - m[10] * m[1];
+    float c11 = m[10] * m[0] - m[8] * m[2];
+    float c12 = m[8] * m[1] - m[9] * m[0];
+    float c20 = m[1] * m[6] - m[2] * m[5];
+    float c21 = m[2] * m[4] - m[0] * m[6];
+    float c22 = m[0] * m[5] - m[1] * m[4];
+    float determinant = m[0] * c00 + m[1] * c01 + m[2] * c02;
+    float sign = determinant < 0.0f ? -1.0f : 1.0f;
+
+    float[] resultPlanes = resultHull.planes;
+    for (int i = 0; i < planes.length; i += 4) {
+      float normalX = planes[i];
+      float normalY = planes[i + 1];
+      float normalZ = planes[i + 2];
+      float offset = planes[i + 3];
+
+      float resultNormalX = (c00 * normalX + c10 * normalY + c20 * normalZ) * sign;
+      float resultNormalY = (c01 * normalX + c11 * normalY + c21 * normalZ) * sign;
+      float resultNormalZ = (c02 * normalX + c12 * normalY + c22 * normalZ) * sign;
+      float length =
+          (float)
+              Math.sqrt(
+                  resultNormalX * resultNormalX
+                      + resultNormalY * resultNormalY
+                      + resultNormalZ * resultNormalZ);
+      if (length > 0.0f) {
+        resultNormalX /= length;
+        resultNormalY /= length;
+        resultNormalZ /= length;
+      }
+
+      // Transform a point on the plane to find the new offset.
+      float pointX = normalX * offset;
+      float pointY = normalY * offset;
+      float pointZ = normalZ * offset;
+      float resultPointX = m[0] * pointX + m[4] * pointY + m[8] * pointZ + m[12];
+      float resultPointY = m[1] * pointX + m[5] * pointY + m[9] * pointZ + m[13];
+      float resultPointZ = m[2] * pointX + m[6] * pointY + m[10] * pointZ + m[14];
+
+      resultPlanes[i] = resultNormalX;
+      resultPlanes[i + 1] = resultNormalY;
+      resultPlanes[i + 2] = resultNormalZ;
+      resultPlanes[i + 3] =
+          resultNormalX * resultPointX
+              + resultNormalY * resultPointY
+              + resultNormalZ * resultPointZ;
+    }
+
+    resultHull.onChanged();
+  }
+}
@@ -0,0 +1,784 @@
+package com.google.ar.sceneform.collision;
+
+import androidx.annotation.Nullable;
+
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.util.Arrays;
+
+/**
+ * Incremental bounding volume hierarchy of axis aligned bounding boxes, used by {@link
+ * CollisionSystem} to avoid testing every collider against every query.
+ *
+ * <p>Each collider is stored in a leaf whose box is enlarged by a small margin, so a collider that
+ * moves a little doesn't require the tree to be restructured. Internal nodes are kept balanced with
+ * tree rotations as leaves are inserted and removed.
+ *
+ * <p>Each leaf also stores the collision layers of its collider, and internal nodes store the
+ * union of the layers below them, so queries that filter by layer skip whole sub-trees.
+ *
+ * <p>Nodes are stored in flat arrays indexed by node id to keep traversal free of allocations.
+ *
+ * @hide
+ */
+class DynamicAabbTree {
+  /** Callback used by {@link #raycast}. */
+  interface RayCastCallback {
+    /**
+     * Called for each leaf whose bounds are hit by the ray.
+     *
+     * @return the new maximum distance along the ray to search. Return the passed in distance to
+     *     continue the search unchanged, a smaller value to clip the search, or a negative value
+     *     to stop the search.
+     */
+    float onRayCastLeaf(Collider collider, float maxDistance);
+  }
+
+  /** Callback used by {@link #query}. */
+  interface QueryCallback {
+    /**
+     * Called for each leaf whose bounds overlap the query bounds.
+     *
+     * @return true to continue the query, false to stop it
+     */
+    boolean onQueryLeaf(Collider collider);
+  }
+
+  static final int NULL_NODE = -1;
+
+  // Amount that leaf bounds are enlarged by in each direction, in meters.
+  private static final float AABB_MARGIN = 0.05f;
+  private static final int BOUNDS_STRIDE = 6;
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int INITIAL_STACK_CAPACITY = 64;
+
+  // minX, minY, minZ, maxX, maxY, maxZ for each node.
+  private float[] bounds;
+  // For nodes on the free list, the parent holds the next free node instead.
+  private int[] parents;
+  private int[] children1;
+  private int[] children2;
+  // Height of the sub-tree. Leaves are 0, free nodes are -1.
+  private int[] heights;
+  // Layers of the collider for leaves, union of the children's layers for internal nodes.
+  private int[] layers;
+  private Collider[] colliders;
+
+  private int root = NULL_NODE;
+  private int freeList = NULL_NODE;
+  private int leafCount;
+
+  // Reused by traversals on the thread that owns the tree. Traversals on other threads pass their
+  // own stack.
+  private int[] stack = new int[INITIAL_STACK_CAPACITY];
+
+  // Scratch bounds used while inserting a leaf.
+  private final float[] combined = new float[BOUNDS_STRIDE];
+
+  @SuppressWarnings("initialization") // Suppress @UnderInitialization warning.
+  DynamicAabbTree() {
+    allocateStorage(INITIAL_CAPACITY);
+  }
+
+  /** Creates a stack that can be passed to the traversals of this tree. */
+  static int[] createStack() {
+    return new int[INITIAL_STACK_CAPACITY];
+  }
+
+  /** Returns the number of leaves in the tree. */
+  int getLeafCount() {
+    return leafCount;
+  }
+
+  /**
+   * Inserts a leaf for a collider.
+   *
+   * @param aabb the tight bounds of the collider, min x, y, z followed by max x, y, z
+   * @param layers the collision layers of the collider
+   * @return the id of the created leaf
+   */
+  int createProxy(float[] aabb, Collider collider, int layers) {
+    Preconditions.checkNotNull(aabb, "Parameter \"aabb\" was null.");
+    Preconditions.checkNotNull(collider, "Parameter \"collider\" was null.");
+
+    int proxyId = allocateNode();
+    setFatBounds(proxyId, aabb);
+    colliders[proxyId] = collider;
+    this.layers[proxyId] = layers;
+    heights[proxyId] = 0;
+    insertLeaf(proxyId);
+    leafCount++;
+    return proxyId;
+  }
+
+  /** Removes a leaf that was created by {@link #createProxy(float[], Collider, int)}. */
+  void destroyProxy(int proxyId) {
+    checkLeaf(proxyId);
+
+    removeLeaf(proxyId);
+    freeNode(proxyId);
+    leafCount--;
+  }
+
+  /**
+   * Updates the bounds of a leaf. The tree is only restructured if the new bounds are no longer
+   * contained in the enlarged bounds of the leaf.
+   *
+   * @return true if the leaf was re-inserted
+   */
+  boolean moveProxy(int proxyId, float[] aabb) {
+    checkLeaf(proxyId);
+    Preconditions.checkNotNull(aabb, "Parameter \"aabb\" was null.");
+
+    if (contains(proxyId, aabb)) {
+      return false;
+    }
+
+    removeLeaf(proxyId);
+    setFatBounds(proxyId, aabb);
+    insertLeaf(proxyId);
+    return true;
+  }
+
+  /** Changes the collision layers of a leaf without restructuring the tree. */
+  void setProxyLayers(int proxyId, int layers) {
+    checkLeaf(proxyId);
+
+    this.layers[proxyId] = layers;
+    for (int index = parents[proxyId]; index != NULL_NODE; index = parents[index]) {
+      this.layers[index] = this.layers[children1[index]] | this.layers[children2[index]];
+    }
+  }
+
+  @Nullable
+  Collider getCollider(int proxyId) {
+    return colliders[proxyId];
+  }
+
+  /**
+   * Walks every leaf whose bounds overlap an axis aligned box.
+   *
+   * @param aabb the bounds to test, min x, y, z followed by max x, y, z
+   * @param layerMask only leaves that share at least one layer with the mask are visited
+   */
+  void query(float[] aabb, int layerMask, QueryCallback callback) {
+    Preconditions.checkNotNull(aabb, "Parameter \"aabb\" was null.");
+    Preconditions.checkNotNull(callback, "Parameter \"callback\" was null.");
+
+    if (root == NULL_NODE) {
+      return;
+    }
+
+    int stackSize = 0;
+    stack[stackSize++] = root;
+
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+
+      if ((layers[node] & layerMask) == 0 || !overlaps(node, aabb)) {
+        continue;
+      }
+
+      if (isLeaf(node)) {
+        if (!callback.onQueryLeaf(colliders[node])) {
+          return;
+        }
+      } else {
+        ensureStackCapacity(stackSize + 2);
+        stack[stackSize++] = children1[node];
+        stack[stackSize++] = children2[node];
+      }
+    }
+  }
+
+  /**
+   * Walks every leaf whose bounds are hit by a ray within a maximum distance. The callback can
+   * shorten the distance to prune the rest of the traversal, which is used to find the nearest hit.
+   *
+   * @param maxDistance the maximum distance along the ray to search
+   * @param layerMask only leaves that share at least one layer with the mask are visited
+   */
+  void raycast(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float maxDistance,
+      int layerMask,
+      RayCastCallback callback) {
+    stack =
+        raycast(
+            originX,
+            originY,
+            originZ,
+            directionX,
+            directionY,
+            directionZ,
+            maxDistance,
+            layerMask,
+            callback,
+            stack);
+  }
+
+  /**
+   * Same as {@link #raycast(float, float, float, float, float, float, float, int,
+   * RayCastCallback)}, but uses the given stack for the traversal. This allows rays to be cast from
+   * several threads at the same time, as long as the tree isn't modified while they run.
+   *
+   * @param stack created with {@link #createStack()}
+   * @return the stack, which is replaced by a larger array if it had to grow
+   */
+  int[] raycast(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float maxDistance,
+      int layerMask,
+      RayCastCallback callback,
+      int[] stack) {
+    return cast(
+        originX,
+        originY,
+        originZ,
+        directionX,
+        directionY,
+        directionZ,
+        0.0f,
+        0.0f,
+        0.0f,
+        maxDistance,
+        layerMask,
+        callback,
+        stack);
+  }
+
+  /**
+   * Walks every leaf whose bounds are hit by an axis aligned box moving along a ray within a
+   * maximum distance. This is the same as a ray cast against the bounds of each node enlarged by
+   * the half extents of the box, so it's used as the broad phase of shape casts.
+   *
+   * @param originX the center of the box at the start of the cast
+   * @param extentX half the size of the box along the x axis
+   * @param maxDistance the maximum distance along the ray to search
+   * @param layerMask only leaves that share at least one layer with the mask are visited
+   */
+  void boxCast(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float extentX,
+      float extentY,
+      float extentZ,
+      float maxDistance,
+      int layerMask,
+      RayCastCallback callback) {
+    stack =
+        cast(
+            originX,
+            originY,
+            originZ,
+            directionX,
+            directionY,
+            directionZ,
+            extentX,
+            extentY,
+            extentZ,
+            maxDistance,
+            layerMask,
+            callback,
+            stack);
+  }
+
+  private int[] cast(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float extentX,
+      float extentY,
+      float extentZ,
+      float maxDistance,
+      int layerMask,
+      RayCastCallback callback,
+      int[] stack) {
+    Preconditions.checkNotNull(callback, "Parameter \"callback\" was null.");
+    Preconditions.checkNotNull(stack, "Parameter \"stack\" was null.");
+
+    if (root == NULL_NODE) {
+      return stack;
+    }
+
+    float inverseX = 1.0f / directionX;
+    float inverseY = 1.0f / directionY;
+    float inverseZ = 1.0f / directionZ;
+
+    int stackSize = 0;
+    stack[stackSize++] = root;
+
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+
+      if ((layers[node] & layerMask) == 0) {
+        continue;
+      }
+
+      if (!rayIntersectsBounds(
+          node,
+          originX,
+          originY,
+          originZ,
+          inverseX,
+          inverseY,
+          inverseZ,
+          extentX,
+          extentY,
+          extentZ,
+          maxDistance)) {
+        continue;
+      }
+
+      if (isLeaf(node)) {
+        maxDistance = callback.onRayCastLeaf(colliders[node], maxDistance);
+        if (maxDistance < 0.0f) {
+          return stack;
+        }
+      } else {
+        if (stackSize + 2 > stack.length) {
+          stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+
+        // Visit the child whose center is nearer along the ray first. Hits found there clip the
+        // search, so more of the farther child is skipped.
+        int child1 = children1[node];
+        int child2 = children2[node];
+        if (centerAlongRay(child1, directionX, directionY, directionZ)
+            <= centerAlongRay(child2, directionX, directionY, directionZ)) {
+          stack[stackSize++] = child2;
+          stack[stackSize++] = child1;
+        } else {
+          stack[stackSize++] = child1;
+          stack[stackSize++] = child2;
+        }
+      }
+    }
+
+    return stack;
+  }
+
+  /** Returns twice the distance of the center of the node's bounds along the direction. */
+  private float centerAlongRay(int node, float directionX, float directionY, float directionZ) {
+    int offset = node * BOUNDS_STRIDE;
+    return (bounds[offset] + bounds[offset + 3]) * directionX
+        + (bounds[offset + 1] + bounds[offset + 4]) * directionY
+        + (bounds[offset + 2] + bounds[offset + 5]) * directionZ;
+  }
+
+  private boolean rayIntersectsBounds(
+      int node,
+      float originX,
+      float originY,
+      float originZ,
+      float inverseX,
+      float inverseY,
+      float inverseZ,
+      float extentX,
+      float extentY,
+      float extentZ,
+      float maxDistance) {
+    int offset = node * BOUNDS_STRIDE;
+    float tMin = 0.0f;
+    float tMax = maxDistance;
+
+    // When a direction component is zero the inverse is infinite. If the origin is outside of that
+    // slab both distances have the same sign and the ray is rejected. A NaN (origin exactly on the
+    // slab) fails both comparisons and leaves the interval unchanged.
+    float t1 = (bounds[offset] - extentX - originX) * inverseX;
+    float t2 = (bounds[offset + 3] + extentX - originX) * inverseX;
+    if (t1 > t2) {
+      float temp = t1;
+      t1 = t2;
+      t2 = temp;
+    }
+    if (t1 > tMin) {
+      tMin = t1;
+    }
+    if (t2 < tMax) {
+      tMax = t2;
+    }
+    if (tMax < tMin) {
+      return false;
+    }
+
+    t1 = (bounds[offset + 1] - extentY - originY) * inverseY;
+    t2 = (bounds[offset + 4] + extentY - originY) * inverseY;
+    if (t1 > t2) {
+      float temp = t1;
+      t1 = t2;
+      t2 = temp;
+    }
+    if (t1 > tMin) {
+      tMin = t1;
+    }
+    if (t2 < tMax) {
+      tMax = t2;
+    }
+    if (tMax < tMin) {
+      return false;
+    }
+
+    t1 = (bounds[offset + 2] - extentZ - originZ) * inverseZ;
+    t2 = (bounds[offset + 5] + extentZ - originZ) * inverseZ;
+    if (t1 > t2) {
+      float temp = t1;
+      t1 = t2;
+      t2 = temp;
+    }
+    if (t1 > tMin) {
+      tMin = t1;
+    }
+    if (t2 < tMax) {
+      tMax = t2;
+    }
+    return tMax >= tMin;
+  }
+
+  private void insertLeaf(int leaf) {
+    if (root == NULL_NODE) {
+      root = leaf;
+      parents[root] = NULL_NODE;
+      return;
+    }
+
+    // Find the best sibling for the new leaf using the surface area heuristic.
+    int index = root;
+    while (!isLeaf(index)) {
+      int child1 = children1[index];
+      int child2 = children2[index];
+
+      float area = surfaceArea(index);
+      union(index, leaf, combined);
+      float combinedArea = surfaceArea(combined);
+
+      // Cost of creating a new parent for this node and the new leaf.
+      float cost = 2.0f * combinedArea;
+
+      // Minimum cost of pushing the leaf further down the tree.
+      float inheritanceCost = 2.0f * (combinedArea - area);
+
+      float cost1 = descendCost(child1, leaf) + inheritanceCost;
+      float cost2 = descendCost(child2, leaf) + inheritanceCost;
+
+      if (cost < cost1 && cost < cost2) {
+        break;
+      }
+
+      index = cost1 < cost2 ? child1 : child2;
+    }
+
+    int sibling = index;
+
+    // Create a new parent for the sibling and the new leaf.
+    int oldParent = parents[sibling];
+    int newParent = allocateNode();
+    parents[newParent] = oldParent;
+    colliders[newParent] = null;
+    union(sibling, leaf, combined);
+    System.arraycopy(combined, 0, bounds, newParent * BOUNDS_STRIDE, BOUNDS_STRIDE);
+    heights[newParent] = heights[sibling] + 1;
+    layers[newParent] = layers[sibling] | layers[leaf];
+
+    if (oldParent != NULL_NODE) {
+      if (children1[oldParent] == sibling) {
+        children1[oldParent] = newParent;
+      } else {
+        children2[oldParent] = newParent;
+      }
+    } else {
+      root = newParent;
+    }
+
+    children1[newParent] = sibling;
+    children2[newParent] = leaf;
+    parents[sibling] = newParent;
+    parents[leaf] = newParent;
+
+    refitAncestors(parents[leaf]);
+  }
+
+  private void removeLeaf(int leaf) {
+    if (leaf == root) {
+      root = NULL_NODE;
+      return;
+    }
+
+    int parent = parents[leaf];
+    int grandParent = parents[parent];
+    int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+
+    if (grandParent != NULL_NODE) {
+      // Destroy the parent and connect the sibling to the grand parent.
+      if (children1[grandParent] == parent) {
+        children1[grandParent] = sibling;
+      } else {
+        children2[grandParent] = sibling;
+      }
+      parents[sibling] = grandParent;
+      freeNode(parent);
+
+      refitAncestors(grandParent);
+    } else {
+      root = sibling;
+      parents[sibling] = NULL_NODE;
+      freeNode(parent);
+    }
+  }
+
+  /**
+   * Walks up from a node re-balancing and recomputing the bounds, heights and layers of each
+   * ancestor.
+   */
+  private void refitAncestors(int index) {
+    while (index != NULL_NODE) {
+      index = balance(index);
+
+      int child1 = children1[index];
+      int child2 = children2[index];
+
+      heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+      layers[index] = layers[child1] | layers[child2];
+      union(child1, child2, combined);
+      System.arraycopy(combined, 0, bounds, index * BOUNDS_STRIDE, BOUNDS_STRIDE);
+
+      index = parents[index];
+    }
+  }
+
+  /**
+   * Performs a left or right rotation if node A is imbalanced.
+   *
+   * @return the new root of the sub-tree
+   */
+  private int balance(int iA) {
+    if (isLeaf(iA) || heights[iA] < 2) {
+      return iA;
+    }
+
+    int iB = children1[iA];
+    int iC = children2[iA];
+
+    int balance = heights[iC] - heights[iB];
+
+    // Rotate C up.
+    if (balance > 1) {
+      int iF = children1[iC];
+      int iG = children2[iC];
+
+      // Swap A and C.
+      children1[iC] = iA;
+      parents[iC] = parents[iA];
+      parents[iA] = iC;
+      replaceChild(parents[iC], iA, iC);
+
+      if (heights[iF] > heights[iG]) {
+        children2[iC] = iF;
+        children2[iA] = iG;
+        parents[iG] = iA;
+      } else {
+        children2[iC] = iG;
+        children2[iA] = iF;
+        parents[iF] = iA;
+      }
+      refitNode(iA);
+      refitNode(iC);
+
+      return iC;
+    }
+
+    // Rotate B up.
+    if (balance < -1) {
+      int iD = children1[iB];
+      int iE = children2[iB];
+
+      // Swap A and B.
+      children1[iB] = iA;
+      parents[iB] = parents[iA];
+      parents[iA] = iB;
+      replaceChild(parents[iB], iA, iB);
+
+      if (heights[iD] > heights[iE]) {
+        children2[iB] = iD;
+        children1[iA] = iE;
+        parents[iE] = iA;
+      } else {
+        children2[iB] = iE;
+        children1[iA] = iD;
+        parents[iD] = iA;
+      }
+      refitNode(iA);
+      refitNode(iB);
+
+      return iB;
+    }
+
+    return iA;
+  }
+
+  private void replaceChild(int parent, int oldChild, int newChild) {
+    if (parent == NULL_NODE) {
+      root = newChild;
+    } else if (children1[parent] == oldChild) {
+      children1[parent] = newChild;
+    } else {
+      children2[parent] = newChild;
+    }
+  }
+
+  private void refitNode(int index) {
+    int child1 = children1[index];
+    int child2 = children2[index];
+    union(child1, child2, combined);
+    System.arraycopy(combined, 0, bounds, index * BOUNDS_STRIDE, BOUNDS_STRIDE);
+    heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+    layers[index] = layers[child1] | layers[child2];
+  }
+
+  private float descendCost(int child, int leaf) {
+    union(child, leaf, combined);
+    if (isLeaf(child)) {
+      return surfaceArea(combined);
+    }
+    return surfaceArea(combined) - surfaceArea(child);
+  }
+
+  private boolean isLeaf(int node) {
+    return children1[node] == NULL_NODE;
+  }
+
+  private boolean contains(int node, float[] aabb) {
+    int offset = node * BOUNDS_STRIDE;
+    return bounds[offset] <= aabb[0]
+        && bounds[offset + 1] <= aabb[1]
+        && bounds[offset + 2] <= aabb[2]
+        && bounds[offset + 3] >= aabb[3]
+        && bounds[offset + 4] >= aabb[4]
+        && bounds[offset + 5] >= aabb[5];
+  }
+
+  private boolean overlaps(int node, float[] aabb) {
+    int offset = node * BOUNDS_STRIDE;
+    return bounds[offset] <= aabb[3]
+        && bounds[offset + 1] <= aabb[4]
+        && bounds[offset + 2] <= aabb[5]
+        && bounds[offset + 3] >= aabb[0]
+        && bounds[offset + 4] >= aabb[1]
+        && bounds[offset + 5] >= aabb[2];
+  }
+
+  private void setFatBounds(int node, float[] aabb) {
+    int offset = node * BOUNDS_STRIDE;
+    bounds[offset] = aabb[0] - AABB_MARGIN;
+    bounds[offset + 1] = aabb[1] - AABB_MARGIN;
+    bounds[offset + 2] = aabb[2] - AABB_MARGIN;
+    bounds[offset + 3] = aabb[3] + AABB_MARGIN;
+    bounds[offset + 4] = aabb[4] + AABB_MARGIN;
+    bounds[offset + 5] = aabb[5] + AABB_MARGIN;
+  }
+
+  private void union(int nodeA, int nodeB, float[] dest) {
+    int a = nodeA * BOUNDS_STRIDE;
+    int b = nodeB * BOUNDS_STRIDE;
+    dest[0] = Math.min(bounds[a], bounds[b]);
+    dest[1] = Math.min(bounds[a + 1], bounds[b + 1]);
+    dest[2] = Math.min(bounds[a + 2], bounds[b + 2]);
+    dest[3] = Math.max(bounds[a + 3], bounds[b + 3]);
+    dest[4] = Math.max(bounds[a + 4], bounds[b + 4]);
+    dest[5] = Math.max(bounds[a + 5], bounds[b + 5]);
+  }
+
+  private float surfaceArea(int node) {
+    int offset = node * BOUNDS_STRIDE;
+    float dx = bounds[offset + 3] - bounds[offset];
+    float dy = bounds[offset + 4] - bounds[offset + 1];
+    float dz = bounds[offset + 5] - bounds[offset + 2];
+    return dx * dy + dy * dz + dz * dx;
+  }
+
+  private static float surfaceArea(float[] aabb) {
+    float dx = aabb[3] - aabb[0];
+    float dy = aabb[4] - aabb[1];
+    float dz = aabb[5] - aabb[2];
+    return dx * dy + dy * dz + dz * dx;
+  }
+
+  private int allocateNode() {
+    if (freeList == NULL_NODE) {
+      allocateStorage(Math.max(INITIAL_CAPACITY, heights.length * 2));
+    }
+
+    int node = freeList;
+    freeList = parents[node];
+    parents[node] = NULL_NODE;
+    children1[node] = NULL_NODE;
+    children2[node] = NULL_NODE;
+    heights[node] = 0;
+    return node;
+  }
+
+  private void freeNode(int node) {
+    parents[node] = freeList;
+    heights[node] = -1;
+    colliders[node] = null;
+    freeList = node;
+  }
+
+  private void allocateStorage(int capacity) {
+    int oldCapacity = heights == null ? 0 : heights.length;
+    if (oldCapacity == 0) {
+      bounds = new float[capacity * BOUNDS_STRIDE];
+      parents = new int[capacity];
+      children1 = new int[capacity];
+      children2 = new int[capacity];
+      heights = new int[capacity];
+      layers = new int[capacity];
+      colliders = new Collider[capacity];
+    } else {
+      bounds = Arrays.copyOf(bounds, capacity * BOUNDS_STRIDE);
+      parents = Arrays.copyOf(parents, capacity);
+      children1 = Arrays.copyOf(children1, capacity);
+      children2 = Arrays.copyOf(children2, capacity);
+      heights = Arrays.copyOf(heights, capacity);
+      layers = Arrays.copyOf(layers, capacity);
+      colliders = Arrays.copyOf(colliders, capacity);
+    }
+
+    // Link the new nodes into the free list.
+    for (int i = oldCapacity; i < capacity - 1; i++) {
+      parents[i] = i + 1;
+      heights[i] = -1;
+    }
+    parents[capacity - 1] = freeList;
+    heights[capacity - 1] = -1;
+    freeList = oldCapacity;
+  }
+
+  private void ensureStackCapacity(int size) {
+    if (size > stack.length) {
+      stack = Arrays.copyOf(stack, stack.length * 2);
+    }
+  }
+
+  private void checkLeaf(int proxyId) {
+    if (proxyId < 0 || proxyId >= heights.length || heights[proxyId] != 0) {
+      throw new IllegalArgumentException("Invalid proxy id: " + proxyId);
+    }
+  }
+}
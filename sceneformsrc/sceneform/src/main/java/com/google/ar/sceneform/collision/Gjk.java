@@ -0,0 +1,724 @@
+package com.google.ar.sceneform.collision;
+
+import com.google.ar.sceneform.utilities.Preconditions;
+
+/**
+ * Overlap test and shape cast between any two convex shapes, using the Gilbert-Johnson-Keerthi
+ * algorithm.
+ *
+ * <p>The shapes are only accessed through {@link CollisionShape#support}, so this is used for the
+ * pairs of shapes that don't have a dedicated test in {@link Intersections}. The algorithm searches
+ * the Minkowski difference of the two shapes for the origin with a simplex of up to four points.
+ *
+ * <p>The shape cast is the GJK ray cast described by van den Bergen: a ray from the origin is cast
+ * against the Minkowski difference, which it enters at the distance where the moving shape first
+ * touches the other one.
+ *
+ * @hide
+ */
+class Gjk {
+  // The search converges in a handful of iterations for the shapes used here. If it hasn't
+  // converged by then, the shapes are touching within rounding error and treated as overlapping.
+  private static final int MAX_ITERATIONS = 32;
+  private static final float MIN_DIRECTION_LENGTH_SQUARED = 1.0e-12f;
+  // A cast hits once its distance to the Minkowski difference is this small relative to the size
+  // of the simplex, squared. If rounding error stops it from getting there, it hits if the
+  // distance is within the looser tolerance. The distance moved only ever grows, so a hit is never
+  // past the actual contact.
+  private static final double CAST_EPSILON_SQUARED = 1.0e-10;
+  private static final double CAST_STALL_EPSILON_SQUARED = 1.0e-6;
+  private static final int MAX_CAST_ITERATIONS = 64;
+  // Number of floats written by cast().
+  static final int CAST_RESULT_SIZE = 7;
+
+  private static final ThreadLocal<Gjk> instance =
+      new ThreadLocal<Gjk>() {
+        @Override
+        protected Gjk initialValue() {
+          return new Gjk();
+        }
+      };
+
+  // Points of the simplex, newest first, packed as x, y, z.
+  private final float[] simplex = new float[12];
+  private int simplexSize;
+
+  private float directionX;
+  private float directionY;
+  private float directionZ;
+
+  private final float[] supportA = new float[3];
+  private final float[] supportB = new float[3];
+
+  // Points of the cast simplex on the Minkowski difference, and the points on the target shape
+  // that they were found from, packed as x, y, z.
+  private final double[] castPoints = new double[12];
+  private final double[] castTargetPoints = new double[12];
+  // Points of the cast simplex relative to the current position along the ray, and their weights
+  // in the closest point to the origin.
+  private final double[] castOffsets = new double[12];
+  private final double[] castWeights = new double[4];
+  private final double[] faceWeights = new double[4];
+  private int castSize;
+  private boolean originInside;
+
+  // Closest point of the cast simplex to the origin, and the largest squared length of its points.
+  private double closestX;
+  private double closestY;
+  private double closestZ;
+  private double maxLengthSquared;
+
+  private Gjk() {}
+
+  /** Determine if two convex shapes intersect with each other. */
+  static boolean intersects(CollisionShape shapeA, CollisionShape shapeB) {
+    Preconditions.checkNotNull(shapeA, "Parameter \"shapeA\" was null.");
+    Preconditions.checkNotNull(shapeB, "Parameter \"shapeB\" was null.");
+
+    return instance.get().test(shapeA, shapeB);
+  }
+
+  /**
+   * Determine when a convex shape moving along a direction first touches another convex shape.
+   *
+   * @param movingShape the shape that moves, at its start position
+   * @param directionX the direction of the movement, normalized
+   * @param maxDistance the maximum distance to move
+   * @param targetShape the shape that doesn't move
+   * @param result receives the distance moved until the shapes touch, the contact point on the
+   *     target shape and the normal of the target shape at the contact point, packed as {@link
+   *     #CAST_RESULT_SIZE} floats. The normal is zero if the shapes already overlap at the start.
+   * @return true if the shapes touch within maxDistance
+   */
+  static boolean cast(
+      CollisionShape movingShape,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float maxDistance,
+      CollisionShape targetShape,
+      float[] result) {
+    Preconditions.checkNotNull(movingShape, "Parameter \"movingShape\" was null.");
+    Preconditions.checkNotNull(targetShape, "Parameter \"targetShape\" was null.");
+    Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
+
+    return instance
+        .get()
+        .castShape(
+            movingShape, directionX, directionY, directionZ, maxDistance, targetShape, result);
+  }
+
+  private boolean test(CollisionShape shapeA, CollisionShape shapeB) {
+    directionX = 1.0f;
+    directionY = 0.0f;
+    directionZ = 0.0f;
+    simplexSize = 0;
+    addSupportPoint(shapeA, shapeB);
+
+    directionX = -simplex[0];
+    directionY = -simplex[1];
+    directionZ = -simplex[2];
+
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      if (directionX * directionX + directionY * directionY + directionZ * directionZ
+          < MIN_DIRECTION_LENGTH_SQUARED) {
+        // The origin is on the boundary of the simplex, so the shapes are touching.
+        return true;
+      }
+
+      addSupportPoint(shapeA, shapeB);
+      if (simplex[0] * directionX + simplex[1] * directionY + simplex[2] * directionZ < 0.0f) {
+        // The farthest point towards the origin didn't pass it, so the origin is outside.
+        return false;
+      }
+
+      if (updateSimplex()) {
+        return true;
+      }
+    }
+
+    return true;
+  }
+
+  /** Adds the point of the Minkowski difference farthest along the search direction. */
+  private void addSupportPoint(CollisionShape shapeA, CollisionShape shapeB) {
+    shapeA.support(directionX, directionY, directionZ, supportA);
+    shapeB.support(-directionX, -directionY, -directionZ, supportB);
+
+    System.arraycopy(simplex, 0, simplex, 3, simplexSize * 3);
+    simplex[0] = supportA[0] - supportB[0];
+    simplex[1] = supportA[1] - supportB[1];
+    simplex[2] = supportA[2] - supportB[2];
+    simplexSize++;
+  }
+
+  /**
+   * Reduces the simplex to the feature closest to the origin and points the search direction
+   * towards the origin from that feature.
+   *
+   * @return true if the simplex contains the origin
+   */
+  private boolean updateSimplex() {
+    switch (simplexSize) {
+      case 2:
+        updateLine();
+        return false;
+      case 3:
+        updateTriangle();
+        return false;
+      default:
+        return updateTetrahedron();
+    }
+  }
+
+  private void updateLine() {
+    float[] s = simplex;
+    float abX = s[3] - s[0];
+    float abY = s[4] - s[1];
+    float abZ = s[5] - s[2];
+    float aoX = -s[0];
+    float aoY = -s[1];
+    float aoZ = -s[2];
+
+    if (abX * aoX + abY * aoY + abZ * aoZ > 0.0f) {
+      // Direction perpendicular to the line, towards the origin: (ab x ao) x ab.
+      float cX = abY * aoZ - abZ * aoY;
+      float cY = abZ * aoX - abX * aoZ;
+      float cZ = abX * aoY - abY * aoX;
+      directionX = cY * abZ - cZ * abY;
+      directionY = cZ * abX - cX * abZ;
+      directionZ = cX * abY - cY * abX;
+    } else {
+      simplexSize = 1;
+      directionX = aoX;
+      directionY = aoY;
+      directionZ = aoZ;
+    }
+  }
+
+  private void updateTriangle() {
+    float[] s = simplex;
+    float abX = s[3] - s[0];
+    float abY = s[4] - s[1];
+    float abZ = s[5] - s[2];
+    float acX = s[6] - s[0];
+    float acY = s[7] - s[1];
+    float acZ = s[8] - s[2];
+    float aoX = -s[0];
+    float aoY = -s[1];
+    float aoZ = -s[2];
+
+    // Normal of the triangle.
+    float nX = abY * acZ - abZ * acY;
+    float nY = abZ * acX - abX * acZ;
+    float nZ = abX * acY - abY * acX;
+
+    // Outward normal of the ac edge: n x ac.
+    float acOutX = nY * acZ - nZ * acY;
+    float acOutY = nZ * acX - nX * acZ;
+    float acOutZ = nX * acY - nY * acX;
+
+    if (acOutX * aoX + acOutY * aoY + acOutZ * aoZ > 0.0f) {
+      if (acX * aoX + acY * aoY + acZ * aoZ > 0.0f) {
+        // Keep the ac edge.
+        s[3] = s[6];
+        s[4] = s[7];
+        s[5] = s[8];
+        simplexSize = 2;
+        float cX = acY * aoZ - acZ * aoY;
+        float cY = acZ * aoX - acX * aoZ;
+        float cZ = acX * aoY - acY * aoX;
+        directionX = cY * acZ - cZ * acY;
+        directionY = cZ * acX - cX * acZ;
+        directionZ = cX * acY - cY * acX;
+      } else {
+        simplexSize = 2;
+        updateLine();
+      }
+      return;
+    }
+
+    // Outward normal of the ab edge: ab x n.
+    float abOutX = abY * nZ - abZ * nY;
+    float abOutY = abZ * nX - abX * nZ;
+    float abOutZ = abX * nY - abY * nX;
+
+    if (abOutX * aoX + abOutY * aoY + abOutZ * aoZ > 0.0f) {
+      simplexSize = 2;
+      updateLine();
+      return;
+    }
+
+    if (nX * aoX + nY * aoY + nZ * aoZ > 0.0f) {
+      directionX = nX;
+      directionY = nY;
+      directionZ = nZ;
+    } else {
+      // The origin is below the triangle. Swap b and c so the next point is added on the side the
+      // normal points to.
+      swapPoints(1, 2);
+      directionX = -nX;
+      directionY = -nY;
+      directionZ = -nZ;
+    }
+  }
+
+  private boolean updateTetrahedron() {
+    float[] s = simplex;
+    float abX = s[3] - s[0];
+    float abY = s[4] - s[1];
+    float abZ = s[5] - s[2];
+    float acX = s[6] - s[0];
+    float acY = s[7] - s[1];
+    float acZ = s[8] - s[2];
+    float adX = s[9] - s[0];
+    float adY = s[10] - s[1];
+    float adZ = s[11] - s[2];
+    float aoX = -s[0];
+    float aoY = -s[1];
+    float aoZ = -s[2];
+
+    // abc face.
+    float nX = abY * acZ - abZ * acY;
+    float nY = abZ * acX - abX * acZ;
+    float nZ = abX * acY - abY * acX;
+    if (nX * aoX + nY * aoY + nZ * aoZ > 0.0f) {
+      simplexSize = 3;
+      updateTriangle();
+      return false;
+    }
+
+    // acd face.
+    nX = acY * adZ - acZ * adY;
+    nY = acZ * adX - acX * adZ;
+    nZ = acX * adY - acY * adX;
+    if (nX * aoX + nY * aoY + nZ * aoZ > 0.0f) {
+      // a, c, d
+      copyPoint(2, 1);
+      copyPoint(3, 2);
+      simplexSize = 3;
+      updateTriangle();
+      return false;
+    }
+
+    // adb face.
+    nX = adY * abZ - adZ * abY;
+    nY = adZ * abX - adX * abZ;
+    nZ = adX * abY - adY * abX;
+    if (nX * aoX + nY * aoY + nZ * aoZ > 0.0f) {
+      // a, d, b
+      copyPoint(1, 2);
+      copyPoint(3, 1);
+      simplexSize = 3;
+      updateTriangle();
+      return false;
+    }
+
+    return true;
+  }
+
+  private boolean castShape(
+      CollisionShape movingShape,
+      float rayX,
+      float rayY,
+      float rayZ,
+      float maxDistance,
+      CollisionShape targetShape,
+      float[] result) {
+    // The ray is cast against the Minkowski difference of the target and the moving shape. Its
+    // support point along v is the support point of the target along v minus the support point of
+    // the moving shape along -v.
+    double distance = 0.0;
+    double positionX = 0.0;
+    double positionY = 0.0;
+    double positionZ = 0.0;
+    double normalX = 0.0;
+    double normalY = 0.0;
+    double normalZ = 0.0;
+    castSize = 0;
+
+    // Start from any point of the difference.
+    addCastPoint(movingShape, targetShape, rayX, rayY, rayZ);
+    castWeights[0] = 1.0;
+    double vX = -castPoints[0];
+    double vY = -castPoints[1];
+    double vZ = -castPoints[2];
+    maxLengthSquared = vX * vX + vY * vY + vZ * vZ;
+
+    boolean hit = false;
+    for (int i = 0; i < MAX_CAST_ITERATIONS; i++) {
+      double lengthSquared = vX * vX + vY * vY + vZ * vZ;
+      if (lengthSquared <= CAST_EPSILON_SQUARED * maxLengthSquared) {
+        hit = true;
+        break;
+      }
+
+      boolean advanced = false;
+      int index = castSize * 3;
+      addCastPoint(movingShape, targetShape, vX, vY, vZ);
+      double vw =
+          vX * (positionX - castPoints[index])
+              + vY * (positionY - castPoints[index + 1])
+              + vZ * (positionZ - castPoints[index + 2]);
+      if (vw > 0.0) {
+        // The support plane separates the current position from the difference, so advance the
+        // position along the ray to the plane.
+        double vr = vX * rayX + vY * rayY + vZ * rayZ;
+        if (vr >= 0.0) {
+          return false;
+        }
+
+        distance -= vw / vr;
+        if (distance > maxDistance) {
+          return false;
+        }
+
+        positionX = rayX * distance;
+        positionY = rayY * distance;
+        positionZ = rayZ * distance;
+        normalX = vX;
+        normalY = vY;
+        normalZ = vZ;
+        advanced = true;
+      }
+
+      if (!updateCastSimplex(positionX, positionY, positionZ)) {
+        // The position is inside the simplex, so it's inside the difference.
+        hit = true;
+        break;
+      }
+
+      if (!advanced
+          && closestX * closestX + closestY * closestY + closestZ * closestZ >= lengthSquared) {
+        // The new point didn't bring the simplex any closer, so rounding error has taken over.
+        break;
+      }
+
+      vX = closestX;
+      vY = closestY;
+      vZ = closestZ;
+    }
+
+    if (!hit && vX * vX + vY * vY + vZ * vZ > CAST_STALL_EPSILON_SQUARED * maxLengthSquared) {
+      return false;
+    }
+
+    double contactX = 0.0;
+    double contactY = 0.0;
+    double contactZ = 0.0;
+    for (int i = 0; i < castSize; i++) {
+      contactX += castTargetPoints[i * 3] * castWeights[i];
+      contactY += castTargetPoints[i * 3 + 1] * castWeights[i];
+      contactZ += castTargetPoints[i * 3 + 2] * castWeights[i];
+    }
+
+    double normalLength = Math.sqrt(normalX * normalX + normalY * normalY + normalZ * normalZ);
+    if (normalLength > 0.0) {
+      normalX /= normalLength;
+      normalY /= normalLength;
+      normalZ /= normalLength;
+    }
+
+    result[0] = (float) distance;
+    result[1] = (float) contactX;
+    result[2] = (float) contactY;
+    result[3] = (float) contactZ;
+    result[4] = (float) normalX;
+    result[5] = (float) normalY;
+    result[6] = (float) normalZ;
+    return true;
+  }
+
+  /** Adds the point of the Minkowski difference of the cast farthest along a direction. */
+  private void addCastPoint(
+      CollisionShape movingShape,
+      CollisionShape targetShape,
+      double directionX,
+      double directionY,
+      double directionZ) {
+    targetShape.support((float) directionX, (float) directionY, (float) directionZ, supportA);
+    movingShape.support((float) -directionX, (float) -directionY, (float) -directionZ, supportB);
+
+    int index = castSize * 3;
+    castTargetPoints[index] = supportA[0];
+    castTargetPoints[index + 1] = supportA[1];
+    castTargetPoints[index + 2] = supportA[2];
+    castPoints[index] = supportA[0] - supportB[0];
+    castPoints[index + 1] = supportA[1] - supportB[1];
+    castPoints[index + 2] = supportA[2] - supportB[2];
+    castSize++;
+  }
+
+  /**
+   * Finds the point of the cast simplex closest to the position, stores the offset from it to the
+   * position as the closest point, and removes the points of the simplex that don't contribute to
+   * it.
+   *
+   * @return false if the position is inside the simplex
+   */
+  private boolean updateCastSimplex(double positionX, double positionY, double positionZ) {
+    double[] q = castOffsets;
+    maxLengthSquared = 0.0;
+    for (int i = 0; i < castSize * 3; i += 3) {
+      q[i] = positionX - castPoints[i];
+      q[i + 1] = positionY - castPoints[i + 1];
+      q[i + 2] = positionZ - castPoints[i + 2];
+      maxLengthSquared =
+          Math.max(maxLengthSquared, q[i] * q[i] + q[i + 1] * q[i + 1] + q[i + 2] * q[i + 2]);
+    }
+
+    int mask;
+    originInside = false;
+    switch (castSize) {
+      case 1:
+        castWeights[0] = 1.0;
+        mask = 1;
+        break;
+      case 2:
+        mask = closestOnSegment(0, 1, castWeights);
+        break;
+      case 3:
+        mask = closestOnTriangle(0, 1, 2, castWeights);
+        break;
+      default:
+        mask = closestOnTetrahedron();
+        break;
+    }
+
+    // Keep the points with a weight, in order.
+    int size = 0;
+    closestX = 0.0;
+    closestY = 0.0;
+    closestZ = 0.0;
+    for (int i = 0; i < castSize; i++) {
+      if ((mask & (1 << i)) == 0) {
+        continue;
+      }
+
+      double weight = castWeights[i];
+      closestX += q[i * 3] * weight;
+      closestY += q[i * 3 + 1] * weight;
+      closestZ += q[i * 3 + 2] * weight;
+      if (size != i) {
+        System.arraycopy(castPoints, i * 3, castPoints, size * 3, 3);
+        System.arraycopy(castTargetPoints, i * 3, castTargetPoints, size * 3, 3);
+        castWeights[size] = weight;
+      }
+      size++;
+    }
+    castSize = size;
+
+    return !originInside;
+  }
+
+  /**
+   * Writes the weights of the point of a segment of the cast simplex closest to the origin.
+   *
+   * @return a bitmask of the points with a weight
+   */
+  private int closestOnSegment(int a, int b, double[] weights) {
+    double[] q = castOffsets;
+    double abX = q[b * 3] - q[a * 3];
+    double abY = q[b * 3 + 1] - q[a * 3 + 1];
+    double abZ = q[b * 3 + 2] - q[a * 3 + 2];
+    double abab = abX * abX + abY * abY + abZ * abZ;
+    double t = -(q[a * 3] * abX + q[a * 3 + 1] * abY + q[a * 3 + 2] * abZ);
+
+    if (t <= 0.0 || abab <= 0.0) {
+      weights[a] = 1.0;
+      return 1 << a;
+    }
+    if (t >= abab) {
+      weights[b] = 1.0;
+      return 1 << b;
+    }
+
+    t /= abab;
+    weights[a] = 1.0 - t;
+    weights[b] = t;
+    return (1 << a) | (1 << b);
+  }
+
+  /**
+   * Writes the weights of the point of a triangle of the cast simplex closest to the origin, using
+   * the Voronoi regions of its vertices and edges.
+   *
+   * @return a bitmask of the points with a weight
+   */
+  private int closestOnTriangle(int a, int b, int c, double[] weights) {
+    double[] q = castOffsets;
+    double abX = q[b * 3] - q[a * 3];
+    double abY = q[b * 3 + 1] - q[a * 3 + 1];
+    double abZ = q[b * 3 + 2] - q[a * 3 + 2];
+    double acX = q[c * 3] - q[a * 3];
+    double acY = q[c * 3 + 1] - q[a * 3 + 1];
+    double acZ = q[c * 3 + 2] - q[a * 3 + 2];
+
+    double d1 = -(abX * q[a * 3] + abY * q[a * 3 + 1] + abZ * q[a * 3 + 2]);
+    double d2 = -(acX * q[a * 3] + acY * q[a * 3 + 1] + acZ * q[a * 3 + 2]);
+    if (d1 <= 0.0 && d2 <= 0.0) {
+      weights[a] = 1.0;
+      return 1 << a;
+    }
+
+    double d3 = -(abX * q[b * 3] + abY * q[b * 3 + 1] + abZ * q[b * 3 + 2]);
+    double d4 = -(acX * q[b * 3] + acY * q[b * 3 + 1] + acZ * q[b * 3 + 2]);
+    if (d3 >= 0.0 && d4 <= d3) {
+      weights[b] = 1.0;
+      return 1 << b;
+    }
+
+    double vc = d1 * d4 - d3 * d2;
+    if (vc <= 0.0 && d1 >= 0.0 && d3 <= 0.0) {
+      return closestOnSegment(a, b, weights);
+    }
+
+    double d5 = -(abX * q[c * 3] + abY * q[c * 3 + 1] + abZ * q[c * 3 + 2]);
+    double d6 = -(acX * q[c * 3] + acY * q[c * 3 + 1] + acZ * q[c * 3 + 2]);
+    if (d6 >= 0.0 && d5 <= d6) {
+      weights[c] = 1.0;
+      return 1 << c;
+    }
+
+    double vb = d5 * d2 - d1 * d6;
+    if (vb <= 0.0 && d2 >= 0.0 && d6 <= 0.0) {
+      return closestOnSegment(a, c, weights);
+    }
+
+    double va = d3 * d6 - d5 * d4;
+    if (va <= 0.0 && d4 - d3 >= 0.0 && d5 - d6 >= 0.0) {
+      return closestOnSegment(b, c, weights);
+    }
+
+    double sum = va + vb + vc;
+    if (sum <= 0.0) {
+      // The triangle is degenerate, so the closest point is on one of its edges.
+      int bestMask = 0;
+      double bestDistanceSquared = Double.MAX_VALUE;
+      double bestWeightA = 0.0;
+      double bestWeightB = 0.0;
+      double bestWeightC = 0.0;
+      for (int edge = 0; edge < 3; edge++) {
+        int mask =
+            edge == 0
+                ? closestOnSegment(a, b, weights)
+                : edge == 1 ? closestOnSegment(a, c, weights) : closestOnSegment(b, c, weights);
+        double distanceSquared = weightedLengthSquared(mask, weights);
+        if (distanceSquared < bestDistanceSquared) {
+          bestDistanceSquared = distanceSquared;
+          bestMask = mask;
+          bestWeightA = weights[a];
+          bestWeightB = weights[b];
+          bestWeightC = weights[c];
+        }
+      }
+      weights[a] = bestWeightA;
+      weights[b] = bestWeightB;
+      weights[c] = bestWeightC;
+      return bestMask;
+    }
+
+    weights[a] = va / sum;
+    weights[b] = vb / sum;
+    weights[c] = vc / sum;
+    return (1 << a) | (1 << b) | (1 << c);
+  }
+
+  /**
+   * Writes the weights of the point of the cast simplex closest to the origin when it has four
+   * points. If the origin is inside, originInside is set and the weights are those of the
+   * nearest point on the nearest face, since the position is on the surface of the Minkowski
+   * difference by then and the barycentric coordinates of a nearly flat simplex aren't reliable.
+   *
+   * @return a bitmask of the points with a weight
+   */
+  private int closestOnTetrahedron() {
+    double[] q = castOffsets;
+    int bestMask = 0;
+    double bestDistanceSquared = Double.MAX_VALUE;
+    int nearestFace = 0;
+    double nearestFaceDistanceSquared = Double.MAX_VALUE;
+    originInside = true;
+
+    for (int opposite = 0; opposite < 4; opposite++) {
+      int a = opposite == 0 ? 1 : 0;
+      int b = opposite <= 1 ? 2 : 1;
+      int c = opposite <= 2 ? 3 : 2;
+
+      double abX = q[b * 3] - q[a * 3];
+      double abY = q[b * 3 + 1] - q[a * 3 + 1];
+      double abZ = q[b * 3 + 2] - q[a * 3 + 2];
+      double acX = q[c * 3] - q[a * 3];
+      double acY = q[c * 3 + 1] - q[a * 3 + 1];
+      double acZ = q[c * 3 + 2] - q[a * 3 + 2];
+      double nX = abY * acZ - abZ * acY;
+      double nY = abZ * acX - abX * acZ;
+      double nZ = abX * acY - abY * acX;
+
+      double originSide = -(nX * q[a * 3] + nY * q[a * 3 + 1] + nZ * q[a * 3 + 2]);
+      double oppositeSide =
+          nX * (q[opposite * 3] - q[a * 3])
+              + nY * (q[opposite * 3 + 1] - q[a * 3 + 1])
+              + nZ * (q[opposite * 3 + 2] - q[a * 3 + 2]);
+
+      if (originSide * oppositeSide > 0.0) {
+        // The origin is on the inner side of this face.
+        double faceDistanceSquared = originSide * originSide / (nX * nX + nY * nY + nZ * nZ);
+        if (faceDistanceSquared < nearestFaceDistanceSquared) {
+          nearestFaceDistanceSquared = faceDistanceSquared;
+          nearestFace = opposite;
+        }
+        continue;
+      }
+
+      // The origin is outside of this face, or the tetrahedron is flat. Keep the closest point
+      // found on the faces it's outside of.
+      originInside = false;
+      int mask = closestOnTriangle(a, b, c, castWeights);
+      double distanceSquared = weightedLengthSquared(mask, castWeights);
+      if (distanceSquared < bestDistanceSquared) {
+        bestDistanceSquared = distanceSquared;
+        bestMask = mask;
+        System.arraycopy(castWeights, 0, faceWeights, 0, 4);
+      }
+    }
+
+    if (originInside) {
+      int a = nearestFace == 0 ? 1 : 0;
+      int b = nearestFace <= 1 ? 2 : 1;
+      int c = nearestFace <= 2 ? 3 : 2;
+      return closestOnTriangle(a, b, c, castWeights);
+    }
+
+    System.arraycopy(faceWeights, 0, castWeights, 0, 4);
+    return bestMask;
+  }
+
+  /** Returns the squared length of the weighted sum of the points of the cast simplex. */
+  private double weightedLengthSquared(int mask, double[] weights) {
+    double[] q = castOffsets;
+    double x = 0.0;
+    double y = 0.0;
+    double z = 0.0;
+    for (int i = 0; i < 4; i++) {
+      if ((mask & (1 << i)) != 0) {
+        x += q[i * 3] * weights[i];
+        y += q[i * 3 + 1] * weights[i];
+        z += q[i * 3 + 2] * weights[i];
+      }
+    }
+    return x * x + y * y + z * z;
+  }
+
+  private void copyPoint(int from, int to) {
+    System.arraycopy(simplex, from * 3, simplex, to * 3, 3);
+  }
+
+  private void swapPoints(int first, int second) {
+    for (int i = 0; i < 3; i++) {
+      float temp = simplex[first * 3 + i];
+      simplex[first * 3 + i] = simplex[second * 3 + i];
+      simplex[second * 3 + i] = temp;
+    }
+  }
+}
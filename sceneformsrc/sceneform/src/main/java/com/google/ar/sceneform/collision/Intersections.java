@@ -1,67 +1,161 @@
 package com.google.ar.sceneform.collision;
 
-import static com.google.ar.sceneform.math.Vector3.add;
-import static com.google.ar.sceneform.math.Vector3.subtract;
-
 import com.google.ar.sceneform.math.MathHelper;
-import com.google.ar.sceneform.math.Matrix;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.Preconditions;
-import java.util.ArrayList;
-import java.util.List;
 
-/** Implementation of common intersection tests used for collision detection. */
+/**
+ * Implementation of common intersection tests used for collision detection.
+ *
+ * <p>The tests work directly on the raw fields of the shapes and don't allocate, since they are run
+ * many times per frame by the collision system.
+ */
 class Intersections {
-  private static final int NUM_VERTICES_PER_BOX = 8;
-  private static final int NUM_TEST_AXES = 15;
+  // Added to the absolute rotation terms of the box test to counteract arithmetic errors when two
+  // edges are parallel and their cross product is close to zero.
+  private static final float PARALLEL_EPSILON = 1.0e-6f;
+
+  // Squared length below which a capsule segment is treated as a single point.
+  private static final float SEGMENT_EPSILON = 1.0e-12f;
 
   /** Determine if two spheres intersect with each other. */
   static boolean sphereSphereIntersection(Sphere sphere1, Sphere sphere2) {
     Preconditions.checkNotNull(sphere1, "Parameter \"sphere1\" was null.");
     Preconditions.checkNotNull(sphere2, "Parameter \"sphere2\" was null.");
 
+    Vector3 center1 = sphere1.getRawCenter();
+    Vector3 center2 = sphere2.getRawCenter();
     float combinedRadius = sphere1.getRadius() + sphere2.getRadius();
     float combinedRadiusSquared = combinedRadius * combinedRadius;
-    Vector3 difference = Vector3.subtract(sphere2.getCenter(), sphere1.getCenter());
-    float differenceLengthSquared = Vector3.dot(difference, difference);
+    float differenceX = center2.x - center1.x;
+    float differenceY = center2.y - center1.y;
+    float differenceZ = center2.z - center1.z;
+    float differenceLengthSquared =
+        differenceX * differenceX + differenceY * differenceY + differenceZ * differenceZ;
 
     return differenceLengthSquared - combinedRadiusSquared <= 0.0f
         && differenceLengthSquared != 0.0f;
   }
 
-  /** Determine if two boxes intersect with each other. */
+  /**
+   * Determine if two boxes intersect with each other.
+   *
+   * <p>Uses the separating axis test on the 15 candidate axes of two oriented boxes: the 3 face
+   * normals of each box and the 9 cross products of their edges. Each box is projected onto an axis
+   * using its center, extents and rotation, so the corners of the boxes are never computed.
+   */
   static boolean boxBoxIntersection(Box box1, Box box2) {
     Preconditions.checkNotNull(box1, "Parameter \"box1\" was null.");
     Preconditions.checkNotNull(box2, "Parameter \"box2\" was null.");
 
-    // Get the vertices of the boxes.
-    List<Vector3> box1Vertices = getVerticesFromBox(box1);
-    List<Vector3> box2Vertices = getVerticesFromBox(box2);
-
-    // Determine the test axes
-    Matrix box1Rotation = box1.getRawRotationMatrix();
-    Matrix box2Rotation = box2.getRawRotationMatrix();
-    ArrayList<Vector3> testAxes = new ArrayList<>(NUM_TEST_AXES);
-    testAxes.add(extractXAxisFromRotationMatrix(box1Rotation));
-    testAxes.add(extractYAxisFromRotationMatrix(box1Rotation));
-    testAxes.add(extractZAxisFromRotationMatrix(box1Rotation));
-    testAxes.add(extractXAxisFromRotationMatrix(box2Rotation));
-    testAxes.add(extractYAxisFromRotationMatrix(box2Rotation));
-    testAxes.add(extractZAxisFromRotationMatrix(box2Rotation));
+    // The axes of each box are the columns of its rotation matrix.
+    float[] a = box1.getRawRotationMatrix().data;
+    float[] b = box2.getRawRotationMatrix().data;
+
+    Vector3 size1 = box1.getRawSize();
+    Vector3 size2 = box2.getRawSize();
+    float ea0 = size1.x * 0.5f;
+    float ea1 = size1.y * 0.5f;
+    float ea2 = size1.z * 0.5f;
+    float eb0 = size2.x * 0.5f;
+    float eb1 = size2.y * 0.5f;
+    float eb2 = size2.z * 0.5f;
+
+    // Rotation expressing box2 in the frame of box1, r[i][j] = dot(a[i], b[j]).
+    float r00 = a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    float r01 = a[0] * b[4] + a[1] * b[5] + a[2] * b[6];
+    float r02 = a[0] * b[8] + a[1] * b[9] + a[2] * b[10];
+    float r10 = a[4] * b[0] + a[5] * b[1] + a[6] * b[2];
+    float r11 = a[4] * b[4] + a[5] * b[5] + a[6] * b[6];
+    float r12 = a[4] * b[8] + a[5] * b[9] + a[6] * b[10];
+    float r20 = a[8] * b[0] + a[9] * b[1] + a[10] * b[2];
+    float r21 = a[8] * b[4] + a[9] * b[5] + a[10] * b[6];
+    float r22 = a[8] * b[8] + a[9] * b[9] + a[10] * b[10];
+
+    float absR00 = Math.abs(r00) + PARALLEL_EPSILON;
+    float absR01 = Math.abs(r01) + PARALLEL_EPSILON;
+    float absR02 = Math.abs(r02) + PARALLEL_EPSILON;
+    float absR10 = Math.abs(r10) + PARALLEL_EPSILON;
+    float absR11 = Math.abs(r11) + PARALLEL_EPSILON;
+    float absR12 = Math.abs(r12) + PARALLEL_EPSILON;
+    float absR20 = Math.abs(r20) + PARALLEL_EPSILON;
+    float absR21 = Math.abs(r21) + PARALLEL_EPSILON;
+    float absR22 = Math.abs(r22) + PARALLEL_EPSILON;
+
+    // Translation between the centers, expressed in the frame of box1.
+    Vector3 center1 = box1.getRawCenter();
+    Vector3 center2 = box2.getRawCenter();
+    float dx = center2.x - center1.x;
+    float dy = center2.y - center1.y;
+    float dz = center2.z - center1.z;
+    float t0 = a[0] * dx + a[1] * dy + a[2] * dz;
+    float t1 = a[4] * dx + a[5] * dy + a[6] * dz;
+    float t2 = a[8] * dx + a[9] * dy + a[10] * dz;
+
+    // Face normals of box1.
+    if (Math.abs(t0) > ea0 + eb0 * absR00 + eb1 * absR01 + eb2 * absR02) {
+      return false;
+    }
+    if (Math.abs(t1) > ea1 + eb0 * absR10 + eb1 * absR11 + eb2 * absR12) {
+      return false;
+    }
+    if (Math.abs(t2) > ea2 + eb0 * absR20 + eb1 * absR21 + eb2 * absR22) {
+      return false;
+    }
 
-    for (int i = 0; i < 3; i++) {
-      testAxes.add(Vector3.cross(testAxes.get(i), testAxes.get(0)));
-      testAxes.add(Vector3.cross(testAxes.get(i), testAxes.get(1)));
-      testAxes.add(Vector3.cross(testAxes.get(i), testAxes.get(2)));
+    // Face normals of box2.
+    if (Math.abs(t0 * r00 + t1 * r10 + t2 * r20)
+        > ea0 * absR00 + ea1 * absR10 + ea2 * absR20 + eb0) {
+      return false;
+    }
+    if (Math.abs(t0 * r01 + t1 * r11 + t2 * r21)
+        > ea0 * absR01 + ea1 * absR11 + ea2 * absR21 + eb1) {
+      return false;
+    }
+    if (Math.abs(t0 * r02 + t1 * r12 + t2 * r22)
+        > ea0 * absR02 + ea1 * absR12 + ea2 * absR22 + eb2) {
+      return false;
     }
 
-    // Attempt to find a separating axis.
-    for (int i = 0; i < testAxes.size(); i++) {
-      if (!testSeparatingAxis(box1Vertices, box2Vertices, testAxes.get(i))) {
-        return false;
-      }
+    // Cross products of the edges, a[i] x b[j].
+    if (Math.abs(t2 * r10 - t1 * r20)
+        > ea1 * absR20 + ea2 * absR10 + eb1 * absR02 + eb2 * absR01) {
+      return false;
+    }
+    if (Math.abs(t2 * r11 - t1 * r21)
+        > ea1 * absR21 + ea2 * absR11 + eb0 * absR02 + eb2 * absR00) {
+      return false;
+    }
+    if (Math.abs(t2 * r12 - t1 * r22)
+        > ea1 * absR22 + ea2 * absR12 + eb0 * absR01 + eb1 * absR00) {
+      return false;
+    }
+    if (Math.abs(t0 * r20 - t2 * r00)
+        > ea0 * absR20 + ea2 * absR00 + eb1 * absR12 + eb2 * absR11) {
+      return false;
+    }
+    if (Math.abs(t0 * r21 - t2 * r01)
+        > ea0 * absR21 + ea2 * absR01 + eb0 * absR12 + eb2 * absR10) {
+      return false;
+    }
+    if (Math.abs(t0 * r22 - t2 * r02)
+        > ea0 * absR22 + ea2 * absR02 + eb0 * absR11 + eb1 * absR10) {
+      return false;
+    }
+    if (Math.abs(t1 * r00 - t0 * r10)
+        > ea0 * absR10 + ea1 * absR00 + eb1 * absR22 + eb2 * absR21) {
+      return false;
+    }
+    if (Math.abs(t1 * r01 - t0 * r11)
+        > ea0 * absR11 + ea1 * absR01 + eb0 * absR22 + eb2 * absR20) {
+      return false;
+    }
+    if (Math.abs(t1 * r02 - t0 * r12)
+        > ea0 * absR12 + ea1 * absR02 + eb0 * absR21 + eb1 * absR20) {
+      return false;
     }
 
+    // No separating axis was found, so the boxes must be intersecting.
     return true;
   }
 
@@ -70,17 +164,49 @@ class Intersections {
     Preconditions.checkNotNull(sphere, "Parameter \"sphere\" was null.");
     Preconditions.checkNotNull(box, "Parameter \"box\" was null.");
 
-    Vector3 point = closestPointOnBox(sphere.getCenter(), box);
-    Vector3 sphereDiff = Vector3.subtract(point, sphere.getCenter());
-    float sphereDiffLengthSquared = Vector3.dot(sphereDiff, sphereDiff);
+    Vector3 sphereCenter = sphere.getRawCenter();
+    Vector3 boxCenter = box.getRawCenter();
+    Vector3 boxSize = box.getRawSize();
+    float[] rotation = box.getRawRotationMatrix().data;
+
+    // Find the closest point on the box to the center of the sphere by clamping the offset from
+    // the box center to the extents along each of the box axes.
+    float diffX = sphereCenter.x - boxCenter.x;
+    float diffY = sphereCenter.y - boxCenter.y;
+    float diffZ = sphereCenter.z - boxCenter.z;
+    float pointX = boxCenter.x;
+    float pointY = boxCenter.y;
+    float pointZ = boxCenter.z;
+
+    for (int i = 0; i < 3; i++) {
+      float axisX = rotation[i * 4];
+      float axisY = rotation[i * 4 + 1];
+      float axisZ = rotation[i * 4 + 2];
+      float extent = (i == 0 ? boxSize.x : i == 1 ? boxSize.y : boxSize.z) * 0.5f;
+      float distance =
+          MathHelper.clamp(diffX * axisX + diffY * axisY + diffZ * axisZ, -extent, extent);
+
+      pointX += axisX * distance;
+      pointY += axisY * distance;
+      pointZ += axisZ * distance;
+    }
 
-    if (sphereDiffLengthSquared > sphere.getRadius() * sphere.getRadius()) {
+    float sphereDiffX = pointX - sphereCenter.x;
+    float sphereDiffY = pointY - sphereCenter.y;
+    float sphereDiffZ = pointZ - sphereCenter.z;
+    float sphereDiffLengthSquared =
+        sphereDiffX * sphereDiffX + sphereDiffY * sphereDiffY + sphereDiffZ * sphereDiffZ;
+
+    float radius = sphere.getRadius();
+    if (sphereDiffLengthSquared > radius * radius) {
       return false;
     }
 
     if (MathHelper.almostEqualRelativeAndAbs(sphereDiffLengthSquared, 0.0f)) {
-      Vector3 boxDiff = Vector3.subtract(point, box.getCenter());
-      float boxDiffLengthSquared = Vector3.dot(boxDiff, boxDiff);
+      float boxDiffX = pointX - boxCenter.x;
+      float boxDiffY = pointY - boxCenter.y;
+      float boxDiffZ = pointZ - boxCenter.z;
+      float boxDiffLengthSquared = boxDiffX * boxDiffX + boxDiffY * boxDiffY + boxDiffZ * boxDiffZ;
       if (MathHelper.almostEqualRelativeAndAbs(boxDiffLengthSquared, 0.0f)) {
         return false;
       }
@@ -89,120 +215,122 @@ class Intersections {
     return true;
   }
 
-  private static Vector3 closestPointOnBox(Vector3 point, Box box) {
-    Vector3 result = new Vector3(box.getCenter());
-    Vector3 diff = Vector3.subtract(point, box.getCenter());
-    Matrix boxRotation = box.getRawRotationMatrix();
-    Vector3 boxExtents = box.getExtents();
-
-    // x-axis
-    {
-      Vector3 axis = extractXAxisFromRotationMatrix(boxRotation);
-      float distance = Vector3.dot(diff, axis);
-
-      if (distance > boxExtents.x) {
-        distance = boxExtents.x;
-      } else if (distance < -boxExtents.x) {
-        distance = -boxExtents.x;
-      }
-
-      result = Vector3.add(result, axis.scaled(distance));
-    }
-
-    // y-axis
-    {
-      Vector3 axis = extractYAxisFromRotationMatrix(boxRotation);
-      float distance = Vector3.dot(diff, axis);
-
-      if (distance > boxExtents.y) {
-        distance = boxExtents.y;
-      } else if (distance < -boxExtents.y) {
-        distance = -boxExtents.y;
-      }
-
-      result = Vector3.add(result, axis.scaled(distance));
-    }
+  /** Determine if a capsule and a sphere intersect with each other. */
+  static boolean capsuleSphereIntersection(Capsule capsule, Sphere sphere) {
+    Preconditions.checkNotNull(capsule, "Parameter \"capsule\" was null.");
+    Preconditions.checkNotNull(sphere, "Parameter \"sphere\" was null.");
 
-    // z-axis
-    {
-      Vector3 axis = extractZAxisFromRotationMatrix(boxRotation);
-      float distance = Vector3.dot(diff, axis);
+    Vector3 pointA = capsule.getRawPointA();
+    Vector3 pointB = capsule.getRawPointB();
+    Vector3 center = sphere.getRawCenter();
+    float combinedRadius = capsule.getRadius() + sphere.getRadius();
+
+    float distanceSquared =
+        pointSegmentDistanceSquared(
+            center.x,
+            center.y,
+            center.z,
+            pointA.x,
+            pointA.y,
+            pointA.z,
+            pointB.x,
+            pointB.y,
+            pointB.z);
+    return distanceSquared <= combinedRadius * combinedRadius;
+  }
 
-      if (distance > boxExtents.z) {
-        distance = boxExtents.z;
-      } else if (distance < -boxExtents.z) {
-        distance = -boxExtents.z;
+  /** Determine if two capsules intersect with each other. */
+  static boolean capsuleCapsuleIntersection(Capsule capsule1, Capsule capsule2) {
+    Preconditions.checkNotNull(capsule1, "Parameter \"capsule1\" was null.");
+    Preconditions.checkNotNull(capsule2, "Parameter \"capsule2\" was null.");
+
+    Vector3 p1 = capsule1.getRawPointA();
+    Vector3 q1 = capsule1.getRawPointB();
+    Vector3 p2 = capsule2.getRawPointA();
+    Vector3 q2 = capsule2.getRawPointB();
+    float combinedRadius = capsule1.getRadius() + capsule2.getRadius();
+
+    // Closest points of two segments, see Real-Time Collision Detection 5.1.9.
+    float d1X = q1.x - p1.x;
+    float d1Y = q1.y - p1.y;
+    float d1Z = q1.z - p1.z;
+    float d2X = q2.x - p2.x;
+    float d2Y = q2.y - p2.y;
+    float d2Z = q2.z - p2.z;
+    float rX = p1.x - p2.x;
+    float rY = p1.y - p2.y;
+    float rZ = p1.z - p2.z;
+    float a = d1X * d1X + d1Y * d1Y + d1Z * d1Z;
+    float e = d2X * d2X + d2Y * d2Y + d2Z * d2Z;
+    float f = d2X * rX + d2Y * rY + d2Z * rZ;
+
+    float s;
+    float t;
+    if (a <= SEGMENT_EPSILON && e <= SEGMENT_EPSILON) {
+      // Both segments are points.
+      s = 0.0f;
+      t = 0.0f;
+    } else if (a <= SEGMENT_EPSILON) {
+      s = 0.0f;
+      t = MathHelper.clamp(f / e, 0.0f, 1.0f);
+    } else {
+      float c = d1X * rX + d1Y * rY + d1Z * rZ;
+      if (e <= SEGMENT_EPSILON) {
+        t = 0.0f;
+        s = MathHelper.clamp(-c / a, 0.0f, 1.0f);
+      } else {
+        float b = d1X * d2X + d1Y * d2Y + d1Z * d2Z;
+        float denominator = a * e - b * b;
+        s =
+            denominator != 0.0f
+                ? MathHelper.clamp((b * f - c * e) / denominator, 0.0f, 1.0f)
+                : 0.0f;
+        t = (b * s + f) / e;
+        if (t < 0.0f) {
+          t = 0.0f;
+          s = MathHelper.clamp(-c / a, 0.0f, 1.0f);
+        } else if (t > 1.0f) {
+          t = 1.0f;
+          s = MathHelper.clamp((b - c) / a, 0.0f, 1.0f);
+        }
       }
-
-      result = Vector3.add(result, axis.scaled(distance));
     }
 
-    return result;
+    float differenceX = (p1.x + d1X * s) - (p2.x + d2X * t);
+    float differenceY = (p1.y + d1Y * s) - (p2.y + d2Y * t);
+    float differenceZ = (p1.z + d1Z * s) - (p2.z + d2Z * t);
+    float distanceSquared =
+        differenceX * differenceX + differenceY * differenceY + differenceZ * differenceZ;
+    return distanceSquared <= combinedRadius * combinedRadius;
   }
 
-  private static boolean testSeparatingAxis(
-      List<Vector3> vertices1, List<Vector3> vertices2, Vector3 axis) {
-    float min1 = Float.MAX_VALUE;
-    float max1 = Float.MIN_VALUE;
-    for (int i = 0; i < vertices1.size(); ++i) {
-      float projection = Vector3.dot(axis, vertices1.get(i));
-      min1 = Math.min(projection, min1);
-      max1 = Math.max(projection, max1);
-    }
-
-    float min2 = Float.MAX_VALUE;
-    float max2 = Float.MIN_VALUE;
-    for (int i = 0; i < vertices2.size(); i++) {
-      float projection = Vector3.dot(axis, vertices2.get(i));
-      min2 = Math.min(projection, min2);
-      max2 = Math.max(projection, max2);
+  /** Returns the squared distance from a point to the segment between a and b. */
+  static float pointSegmentDistanceSquared(
+      float pointX,
+      float pointY,
+      float pointZ,
+      float aX,
+      float aY,
+      float aZ,
+      float bX,
+      float bY,
+      float bZ) {
+    float abX = bX - aX;
+    float abY = bY - aY;
+    float abZ = bZ - aZ;
+    float apX = pointX - aX;
+    float apY = pointY - aY;
+    float apZ = pointZ - aZ;
+
+    float lengthSquared = abX * abX + abY * abY + abZ * abZ;
+    float t = 0.0f;
+    if (lengthSquared > SEGMENT_EPSILON) {
+      t = MathHelper.clamp((apX * abX + apY * abY + apZ * abZ) / lengthSquared, 0.0f, 1.0f);
     }
 
-    return min2 <= max1 && min1 <= max2;
-  }
-
-  /** Converts a box into an array of 8 vertices that represent the corners of the box. */
-  private static List<Vector3> getVerticesFromBox(Box box) {
-    Preconditions.checkNotNull(box, "Parameter \"box\" was null.");
-
-    // Get the properties of the box.
-    Vector3 center = box.getCenter();
-    Vector3 extents = box.getExtents();
-    Matrix rotation = box.getRawRotationMatrix();
-
-    // Get the rotation axes of the box.
-    Vector3 xAxis = extractXAxisFromRotationMatrix(rotation);
-    Vector3 yAxis = extractYAxisFromRotationMatrix(rotation);
-    Vector3 zAxis = extractZAxisFromRotationMatrix(rotation);
-
-    // Scale the rotation axes by the extents.
-    Vector3 xScaled = xAxis.scaled(extents.x);
-    Vector3 yScaled = yAxis.scaled(extents.y);
-    Vector3 zScaled = zAxis.scaled(extents.z);
-
-    // Calculate the 8 vertices of the box.
-    ArrayList<Vector3> vertices = new ArrayList<>(NUM_VERTICES_PER_BOX);
-    vertices.add(add(add(add(center, xScaled), yScaled), zScaled));
-    vertices.add(add(add(subtract(center, xScaled), yScaled), zScaled));
-    vertices.add(add(subtract(add(center, xScaled), yScaled), zScaled));
-    vertices.add(subtract(add(add(center, xScaled), yScaled), zScaled));
-    vertices.add(subtract(subtract(subtract(center, xScaled), yScaled), zScaled));
-    vertices.add(subtract(subtract(add(center, xScaled), yScaled), zScaled));
-    vertices.add(subtract(add(subtract(center, xScaled), yScaled), zScaled));
-    vertices.add(add(subtract(subtract(center, xScaled), yScaled), zScaled));
-
-    return vertices;
-  }
-
-  private static Vector3 extractXAxisFromRotationMatrix(Matrix matrix) {
-    return new Vector3(matrix.data[0], matrix.data[4], matrix.data[8]);
-  }
-
-  private static Vector3 extractYAxisFromRotationMatrix(Matrix matrix) {
-    return new Vector3(matrix.data[1], matrix.data[5], matrix.data[9]);
-  }
-
-  private static Vector3 extractZAxisFromRotationMatrix(Matrix matrix) {
-    return new Vector3(matrix.data[2], matrix.data[6], matrix.data[10]);
+    float differenceX = apX - abX * t;
+    float differenceY = apY - abY * t;
+    float differenceZ = apZ - abZ * t;
+    return differenceX * differenceX + differenceY * differenceY + differenceZ * differenceZ;
   }
 }
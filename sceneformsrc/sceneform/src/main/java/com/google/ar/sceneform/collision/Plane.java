@@ -53,7 +53,7 @@ public class Plane {
       float distance = Vector3.dot(delta, normal) / denominator;
       if (distance >= 0) {
         result.setDistance(distance);
-        result.setPoint(ray.getPoint(result.getDistance()));
+        result.setPoint(ray, result.getDistance());
         return true;
       }
     }
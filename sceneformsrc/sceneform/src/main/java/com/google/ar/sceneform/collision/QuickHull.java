@@ -0,0 +1,363 @@
+package com.google.ar.sceneform.collision;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Computes the convex hull of a point cloud with the quickhull algorithm.
+ *
+ * <p>The hull is built from triangles in double precision, then coplanar triangles are merged into
+ * a single plane. Each plane is pushed out to the farthest input point, so every input point is
+ * inside the result even when rounding made the triangulation slightly too small.
+ *
+ * @hide
+ */
+class QuickHull {
+  // Points closer to a face than this fraction of the size of the point cloud are treated as
+  // being on the face.
+  private static final double RELATIVE_EPSILON = 1.0e-5;
+  // Triangles whose normals differ by less than this are merged into the same plane.
+  private static final double PLANE_MERGE_EPSILON = 1.0e-6;
+
+  private static class Face {
+    final int a;
+    final int b;
+    final int c;
+    final double normalX;
+    final double normalY;
+    final double normalZ;
+    final double offset;
+    final ArrayList<Integer> outside = new ArrayList<>();
+    boolean deleted;
+
+    Face(int a, int b, int c, double[] points) {
+      this.a = a;
+      this.b = b;
+      this.c = c;
+
+      double abX = points[b * 3] - points[a * 3];
+      double abY = points[b * 3 + 1] - points[a * 3 + 1];
+      double abZ = points[b * 3 + 2] - points[a * 3 + 2];
+      double acX = points[c * 3] - points[a * 3];
+      double acY = points[c * 3 + 1] - points[a * 3 + 1];
+      double acZ = points[c * 3 + 2] - points[a * 3 + 2];
+      double nX = abY * acZ - abZ * acY;
+      double nY = abZ * acX - abX * acZ;
+      double nZ = abX * acY - abY * acX;
+      double length = Math.sqrt(nX * nX + nY * nY + nZ * nZ);
+      normalX = nX / length;
+      normalY = nY / length;
+      normalZ = nZ / length;
+      offset = normalX * points[a * 3] + normalY * points[a * 3 + 1] + normalZ * points[a * 3 + 2];
+    }
+
+    double distance(double[] points, int index) {
+      return normalX * points[index * 3]
+          + normalY * points[index * 3 + 1]
+          + normalZ * points[index * 3 + 2]
+          - offset;
+    }
+  }
+
+  private final double[] points;
+  private final int pointCount;
+  private final ArrayList<Face> faces = new ArrayList<>();
+  private double epsilon;
+
+  private float[] vertices = new float[0];
+  private float[] planes = new float[0];
+
+  QuickHull(float[] points, int pointCount) {
+    this.pointCount = pointCount;
+    this.points = new double[pointCount * 3];
+    for (int i = 0; i < pointCount * 3; i++) {
+      this.points[i] = points[i];
+    }
+  }
+
+  /**
+   * Builds the hull.
+   *
+   * @return false if the points are degenerate (they all lie on a plane)
+   */
+  boolean build() {
+    if (pointCount < 4 || !buildInitialTetrahedron()) {
+      return false;
+    }
+
+    int iterations = 0;
+    Face face;
+    while ((face = findFaceWithOutsidePoints()) != null && iterations++ < pointCount) {
+      addPoint(face);
+    }
+
+    buildResult();
+    return true;
+  }
+
+  /** Returns the hull vertices packed as x, y, z. */
+  float[] getVertices() {
+    return vertices;
+  }
+
+  /** Returns the hull planes packed as normal x, y, z and offset. */
+  float[] getPlanes() {
+    return planes;
+  }
+
+  private boolean buildInitialTetrahedron() {
+    // Find the extreme points along each axis.
+    int[] extremes = new int[6];
+    double maxAbsX = 0.0;
+    double maxAbsY = 0.0;
+    double maxAbsZ = 0.0;
+    for (int i = 0; i < pointCount; i++) {
+      for (int axis = 0; axis < 3; axis++) {
+        double value = points[i * 3 + axis];
+        if (value < points[extremes[axis] * 3 + axis]) {
+          extremes[axis] = i;
+        }
+        if (value > points[extremes[axis + 3] * 3 + axis]) {
+          extremes[axis + 3] = i;
+        }
+      }
+      maxAbsX = Math.max(maxAbsX, Math.abs(points[i * 3]));
+      maxAbsY = Math.max(maxAbsY, Math.abs(points[i * 3 + 1]));
+      maxAbsZ = Math.max(maxAbsZ, Math.abs(points[i * 3 + 2]));
+    }
+
+    epsilon = RELATIVE_EPSILON * (maxAbsX + maxAbsY + maxAbsZ);
+    if (epsilon == 0.0) {
+      return false;
+    }
+
+    // The two extreme points farthest apart make the first edge.
+    int p0 = 0;
+    int p1 = 0;
+    double maxDistance = 0.0;
+    for (int i = 0; i < 6; i++) {
+      for (int j = i + 1; j < 6; j++) {
+        double distance = distanceSquared(extremes[i], extremes[j]);
+        if (distance > maxDistance) {
+          maxDistance = distance;
+          p0 = extremes[i];
+          p1 = extremes[j];
+        }
+      }
+    }
+    if (Math.sqrt(maxDistance) <= epsilon) {
+      return false;
+    }
+
+    // The point farthest from the edge makes the first triangle.
+    double edgeX = points[p1 * 3] - points[p0 * 3];
+    double edgeY = points[p1 * 3 + 1] - points[p0 * 3 + 1];
+    double edgeZ = points[p1 * 3 + 2] - points[p0 * 3 + 2];
+    double edgeLength = Math.sqrt(edgeX * edgeX + edgeY * edgeY + edgeZ * edgeZ);
+    int p2 = 0;
+    maxDistance = 0.0;
+    for (int i = 0; i < pointCount; i++) {
+      double toX = points[i * 3] - points[p0 * 3];
+      double toY = points[i * 3 + 1] - points[p0 * 3 + 1];
+      double toZ = points[i * 3 + 2] - points[p0 * 3 + 2];
+      double crossX = edgeY * toZ - edgeZ * toY;
+      double crossY = edgeZ * toX - edgeX * toZ;
+      double crossZ = edgeX * toY - edgeY * toX;
+      double distance = Math.sqrt(crossX * crossX + crossY * crossY + crossZ * crossZ) / edgeLength;
+      if (distance > maxDistance) {
+        maxDistance = distance;
+        p2 = i;
+      }
+    }
+    if (maxDistance <= epsilon) {
+      return false;
+    }
+
+    // The point farthest from the triangle makes the tetrahedron.
+    Face base = new Face(p0, p1, p2, points);
+    int p3 = 0;
+    maxDistance = 0.0;
+    for (int i = 0; i < pointCount; i++) {
+      double distance = Math.abs(base.distance(points, i));
+      if (distance > maxDistance) {
+        maxDistance = distance;
+        p3 = i;
+      }
+    }
+    if (maxDistance <= epsilon) {
+      return false;
+    }
+
+    // Wind the faces so that their normals point away from the fourth point.
+    if (base.distance(points, p3) > 0.0) {
+      faces.add(new Face(p0, p2, p1, points));
+      faces.add(new Face(p0, p1, p3, points));
+      faces.add(new Face(p1, p2, p3, points));
+      faces.add(new Face(p2, p0, p3, points));
+    } else {
+      faces.add(base);
+      faces.add(new Face(p0, p3, p1, points));
+      faces.add(new Face(p1, p3, p2, points));
+      faces.add(new Face(p2, p3, p0, points));
+    }
+
+    for (int i = 0; i < pointCount; i++) {
+      if (i != p0 && i != p1 && i != p2 && i != p3) {
+        assignToFace(i, faces, 0);
+      }
+    }
+
+    return true;
+  }
+
+  /** Adds the point to the outside set of the face it is farthest above, if any. */
+  private void assignToFace(int point, ArrayList<Face> candidates, int firstCandidate) {
+    Face bestFace = null;
+    double bestDistance = epsilon;
+    for (int i = firstCandidate; i < candidates.size(); i++) {
+      Face face = candidates.get(i);
+      double distance = face.distance(points, point);
+      if (distance > bestDistance) {
+        bestDistance = distance;
+        bestFace = face;
+      }
+    }
+
+    if (bestFace != null) {
+      bestFace.outside.add(point);
+    }
+  }
+
+  @Nullable
+  private Face findFaceWithOutsidePoints() {
+    for (int i = 0; i < faces.size(); i++) {
+      Face face = faces.get(i);
+      if (!face.deleted && !face.outside.isEmpty()) {
+        return face;
+      }
+    }
+    return null;
+  }
+
+  private void addPoint(Face face) {
+    // Use the point farthest from the face, which is guaranteed to be on the hull.
+    int eye = face.outside.get(0);
+    double maxDistance = face.distance(points, eye);
+    for (int i = 1; i < face.outside.size(); i++) {
+      int point = face.outside.get(i);
+      double distance = face.distance(points, point);
+      if (distance > maxDistance) {
+        maxDistance = distance;
+        eye = point;
+      }
+    }
+
+    // Remove every face the point can see, keeping the edges of those faces.
+    HashSet<Long> visibleEdges = new HashSet<>();
+    ArrayList<Integer> orphans = new ArrayList<>();
+    ArrayList<Face> visibleFaces = new ArrayList<>();
+    for (int i = 0; i < faces.size(); i++) {
+      Face candidate = faces.get(i);
+      if (!candidate.deleted && candidate.distance(points, eye) > epsilon) {
+        candidate.deleted = true;
+        visibleFaces.add(candidate);
+        visibleEdges.add(edgeKey(candidate.a, candidate.b));
+        visibleEdges.add(edgeKey(candidate.b, candidate.c));
+        visibleEdges.add(edgeKey(candidate.c, candidate.a));
+        for (int j = 0; j < candidate.outside.size(); j++) {
+          int point = candidate.outside.get(j);
+          if (point != eye) {
+            orphans.add(point);
+          }
+        }
+        candidate.outside.clear();
+      }
+    }
+
+    // The horizon is the edges of the visible faces that aren't shared with another visible face.
+    // Connect each of them to the new point, keeping the winding of the removed face.
+    int firstNewFace = faces.size();
+    for (int i = 0; i < visibleFaces.size(); i++) {
+      Face visible = visibleFaces.get(i);
+      addHorizonFace(visibleEdges, visible.a, visible.b, eye);
+      addHorizonFace(visibleEdges, visible.b, visible.c, eye);
+      addHorizonFace(visibleEdges, visible.c, visible.a, eye);
+    }
+
+    for (int i = 0; i < orphans.size(); i++) {
+      assignToFace(orphans.get(i), faces, firstNewFace);
+    }
+  }
+
+  private void addHorizonFace(HashSet<Long> visibleEdges, int from, int to, int eye) {
+    if (!visibleEdges.contains(edgeKey(to, from))) {
+      faces.add(new Face(from, to, eye, points));
+    }
+  }
+
+  private void buildResult() {
+    HashSet<Integer> hullPoints = new HashSet<>();
+    ArrayList<double[]> mergedPlanes = new ArrayList<>();
+    for (int i = 0; i < faces.size(); i++) {
+      Face face = faces.get(i);
+      if (face.deleted) {
+        continue;
+      }
+
+      hullPoints.add(face.a);
+      hullPoints.add(face.b);
+      hullPoints.add(face.c);
+
+      boolean merged = false;
+      for (int j = 0; j < mergedPlanes.size(); j++) {
+        double[] plane = mergedPlanes.get(j);
+        double dot =
+            plane[0] * face.normalX + plane[1] * face.normalY + plane[2] * face.normalZ;
+        if (dot > 1.0 - PLANE_MERGE_EPSILON) {
+          merged = true;
+          break;
+        }
+      }
+      if (!merged) {
+        mergedPlanes.add(new double[] {face.normalX, face.normalY, face.normalZ});
+      }
+    }
+
+    vertices = new float[hullPoints.size() * 3];
+    int vertexIndex = 0;
+    for (Integer point : hullPoints) {
+      vertices[vertexIndex++] = (float) points[point * 3];
+      vertices[vertexIndex++] = (float) points[point * 3 + 1];
+      vertices[vertexIndex++] = (float) points[point * 3 + 2];
+    }
+
+    // Push each plane out to the farthest point so the hull contains all of the points.
+    planes = new float[mergedPlanes.size() * 4];
+    for (int i = 0; i < mergedPlanes.size(); i++) {
+      double[] plane = mergedPlanes.get(i);
+      double offset = -Double.MAX_VALUE;
+      for (int j = 0; j < pointCount; j++) {
+        double distance =
+            plane[0] * points[j * 3] + plane[1] * points[j * 3 + 1] + plane[2] * points[j * 3 + 2];
+        offset = Math.max(offset, distance);
+      }
+
+      planes[i * 4] = (float) plane[0];
+      planes[i * 4 + 1] = (float) plane[1];
+      planes[i * 4 + 2] = (float) plane[2];
+      planes[i * 4 + 3] = (float) offset;
+    }
+  }
+
+  private double distanceSquared(int first, int second) {
+    double x = points[first * 3] - points[second * 3];
+    double y = points[first * 3 + 1] - points[second * 3 + 1];
+    double z = points[first * 3 + 2] - points[second * 3 + 2];
+    return x * x + y * y + z * z;
+  }
+
+  private static long edgeKey(int from, int to) {
+    return ((long) from << 32) | (to & 0xFFFFFFFFL);
+  }
+}
@@ -54,7 +54,7 @@ public class Ray {
   public void setDirection(Vector3 direction) {
     Preconditions.checkNotNull(direction, "Parameter \"direction\" was null.");
 
-    this.direction.set(direction.normalized());
+    direction.normalized(this.direction);
   }
 
   /**
@@ -66,6 +66,19 @@ public class Ray {
     return new Vector3(direction);
   }
 
+  /** Returns the origin of the ray without copying it. The returned vector must not be modified. */
+  Vector3 getRawOrigin() {
+    return origin;
+  }
+
+  /**
+   * Returns the normalized direction of the ray without copying it. The returned vector must not be
+   * modified.
+   */
+  Vector3 getRawDirection() {
+    return direction;
+  }
+
   /**
    * Get a point at a distance along the ray.
    *
@@ -76,6 +89,23 @@ public class Ray {
     return Vector3.add(origin, direction.scaled(distance));
   }
 
+  /**
+   * Gets a point at a distance along the ray without allocating.
+   *
+   * @param distance distance along the ray of the point
+   * @param dest the vector the point is written to
+   * @return dest, for convenience
+   */
+  public Vector3 getPoint(float distance, Vector3 dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    dest.set(
+        origin.x + direction.x * distance,
+        origin.y + direction.y * distance,
+        origin.z + direction.z * distance);
+    return dest;
+  }
+
   @Override
   public String toString() {
     return "[Origin:" + origin + ", Direction:" + direction + "]";
@@ -4,13 +4,15 @@ import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.Preconditions;
 
 /**
- * Stores the results of ray intersection tests against various types of CollisionShape.
+ * Stores the results of ray intersection tests and shape casts against various types of
+ * CollisionShape.
  *
  * @hide
  */
 public class RayHit {
   private float distance = Float.MAX_VALUE;
   private final Vector3 point = new Vector3();
+  private final Vector3 normal = new Vector3();
 
   /** @hide */
   public void setDistance(float distance) {
@@ -32,6 +34,11 @@ public class RayHit {
     this.point.set(point);
   }
 
+  /** Sets the point to the point at a distance along a ray without allocating. */
+  void setPoint(Ray ray, float distance) {
+    ray.getPoint(distance, point);
+  }
+
   /**
    * Get the position in world-space where the ray hit the collision shape.
    *
@@ -41,17 +48,36 @@ public class RayHit {
     return new Vector3(point);
   }
 
+  /** @hide */
+  public void setNormal(Vector3 normal) {
+    Preconditions.checkNotNull(normal, "Parameter \"normal\" was null.");
+    this.normal.set(normal);
+  }
+
+  /**
+   * Get the normal of the collision shape at the hit point, pointing away from the shape. This is
+   * only set by shape casts. It is zero for ray intersection tests, and for shape casts that
+   * started out overlapping the collision shape.
+   *
+   * @return a new vector that represents the normal in world-space at the hit point
+   */
+  public Vector3 getNormal() {
+    return new Vector3(normal);
+  }
+
   /** @hide */
   public void set(RayHit other) {
     Preconditions.checkNotNull(other, "Parameter \"other\" was null.");
 
     setDistance(other.distance);
     setPoint(other.point);
+    setNormal(other.normal);
   }
 
   /** @hide */
   public void reset() {
     distance = Float.MAX_VALUE;
     point.set(0, 0, 0);
+    normal.set(0, 0, 0);
   }
 }
@@ -86,6 +86,15 @@ public class Sphere extends CollisionShape {
     return radius;
   }
 
+  /**
+   * Get the raw center of the sphere. Do not modify directly. Instead, use setCenter.
+   *
+   * @return a reference to the sphere's raw center
+   */
+  Vector3 getRawCenter() {
+    return center;
+  }
+
   @Override
   public Sphere makeCopy() {
     return new Sphere(getRadius(), getCenter());
@@ -97,16 +106,45 @@ public class Sphere extends CollisionShape {
     Preconditions.checkNotNull(ray, "Parameter \"ray\" was null.");
     Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
 
-    Vector3 rayDirection = ray.getDirection();
-    Vector3 rayOrigin = ray.getOrigin();
+    Vector3 rayOrigin = ray.getRawOrigin();
+    Vector3 rayDirection = ray.getRawDirection();
+    float distance =
+        rayIntersectionDistance(
+            rayOrigin.x,
+            rayOrigin.y,
+            rayOrigin.z,
+            rayDirection.x,
+            rayDirection.y,
+            rayDirection.z);
+    if (Float.isNaN(distance)) {
+      return false;
+    }
 
-    Vector3 difference = Vector3.subtract(rayOrigin, center);
-    float b = 2.0f * Vector3.dot(difference, rayDirection);
-    float c = Vector3.dot(difference, difference) - radius * radius;
+    result.setDistance(distance);
+    result.setPoint(ray, distance);
+    return true;
+  }
+
+  @Override
+  float rayIntersectionDistance(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ) {
+    float differenceX = originX - center.x;
+    float differenceY = originY - center.y;
+    float differenceZ = originZ - center.z;
+    float b =
+        2.0f * (differenceX * directionX + differenceY * directionY + differenceZ * directionZ);
+    float c =
+        (differenceX * differenceX + differenceY * differenceY + differenceZ * differenceZ)
+            - radius * radius;
     float discriminant = b * b - 4.0f * c;
 
     if (discriminant < 0.0f) {
-      return false;
+      return Float.NaN;
     }
 
     float discriminantSqrt = (float) Math.sqrt(discriminant);
@@ -114,17 +152,14 @@ public class Sphere extends CollisionShape {
     float tPlus = (-b + discriminantSqrt) / 2.0f;
 
     if (tMinus < 0.0f && tPlus < 0.0f) {
-      return false;
+      return Float.NaN;
     }
 
     if (tMinus < 0 && tPlus > 0) {
-      result.setDistance(tPlus);
+      return tPlus;
     } else {
-      result.setDistance(tMinus);
+      return tMinus;
     }
-
-    result.setPoint(ray.getPoint(result.getDistance()));
-    return true;
   }
 
   /** @hide */
@@ -146,6 +181,57 @@ public class Sphere extends CollisionShape {
     return Intersections.sphereBoxIntersection(this, box);
   }
 
+  /** @hide */
+  @Override
+  protected boolean capsuleIntersection(Capsule capsule) {
+    return Intersections.capsuleSphereIntersection(capsule, this);
+  }
+
+  /** @hide */
+  @Override
+  protected boolean convexHullIntersection(ConvexHull convexHull) {
+    return Gjk.intersects(this, convexHull);
+  }
+
+  @Override
+  void support(float directionX, float directionY, float directionZ, float[] result) {
+    float length =
+        (float)
+            Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+    float scale = length > 0.0f ? radius / length : 0.0f;
+    result[0] = center.x + directionX * scale;
+    result[1] = center.y + directionY * scale;
+    result[2] = center.z + directionZ * scale;
+  }
+
+  @Override
+  void computeAabb(float[] aabb) {
+    aabb[0] = center.x - radius;
+    aabb[1] = center.y - radius;
+    aabb[2] = center.z - radius;
+    aabb[3] = center.x + radius;
+    aabb[4] = center.y + radius;
+    aabb[5] = center.z + radius;
+  }
+
+  @Override
+  void computeTransformedAabb(Matrix modelMatrix, float[] aabb) {
+    float[] m = modelMatrix.data;
+
+    // Matches transform(), which scales the radius by the largest scale of the matrix.
+    float worldRadius = radius * getMaxScale(modelMatrix);
+    float worldCenterX = m[0] * center.x + m[4] * center.y + m[8] * center.z + m[12];
+    float worldCenterY = m[1] * center.x + m[5] * center.y + m[9] * center.z + m[13];
+    float worldCenterZ = m[2] * center.x + m[6] * center.y + m[10] * center.z + m[14];
+
+    aabb[0] = worldCenterX - worldRadius;
+    aabb[1] = worldCenterY - worldRadius;
+    aabb[2] = worldCenterZ - worldRadius;
+    aabb[3] = worldCenterX + worldRadius;
+    aabb[4] = worldCenterY + worldRadius;
+    aabb[5] = worldCenterZ + worldRadius;
+  }
+
   @Override
   CollisionShape transform(TransformProvider transformProvider) {
     Preconditions.checkNotNull(transformProvider, "Parameter \"transformProvider\" was null.");
@@ -0,0 +1,354 @@
+package com.google.ar.sceneform.collision;
+
+import com.google.ar.sceneform.utilities.Preconditions;
+
+/**
+ * Bounding volume hierarchy over the triangles of a mesh, used to find the exact triangle hit by a
+ * ray.
+ *
+ * <p>The tree is built once by splitting the triangles at the median of their centroids along the
+ * longest axis. Nodes and triangles are stored in flat arrays in depth-first order, so a ray only
+ * touches the nodes along its path and the triangles of the leaves it reaches.
+ *
+ * @hide
+ */
+public class TriangleBvh {
+  private static final int MAX_TRIANGLES_PER_LEAF = 4;
+  // Median splits keep the depth at log2 of the triangle count, so this is never exceeded.
+  private static final int MAX_STACK_SIZE = 64;
+  private static final float PARALLEL_EPSILON = 1.0e-12f;
+
+  // Per node: min x, y, z and max x, y, z.
+  private final float[] nodeBounds;
+  // Per node: the first triangle and the triangle count for a leaf, or the index of the right
+  // child and 0 for an internal node. The left child of an internal node always follows it.
+  private final int[] nodeData;
+  private int nodeCount;
+
+  // The vertices of each triangle in tree order, packed as 9 floats.
+  private final float[] triangleVertices;
+  // The index of each triangle in tree order in the original mesh.
+  private final int[] triangleIndices;
+
+  // Scratch data used while building.
+  private float[] centroids;
+
+  /**
+   * Build the tree for an indexed triangle mesh.
+   *
+   * @param positions vertex positions packed as x, y, z
+   * @param indices three vertex indices per triangle
+   * @param triangleCount the number of triangles to read from indices
+   */
+  public TriangleBvh(float[] positions, int[] indices, int triangleCount) {
+    Preconditions.checkNotNull(positions, "Parameter \"positions\" was null.");
+    Preconditions.checkNotNull(indices, "Parameter \"indices\" was null.");
+
+    triangleVertices = new float[triangleCount * 9];
+    triangleIndices = new int[triangleCount];
+    centroids = new float[triangleCount * 3];
+    for (int i = 0; i < triangleCount; i++) {
+      triangleIndices[i] = i;
+      for (int corner = 0; corner < 3; corner++) {
+        int vertex = indices[i * 3 + corner] * 3;
+        for (int axis = 0; axis < 3; axis++) {
+          float value = positions[vertex + axis];
+          triangleVertices[i * 9 + corner * 3 + axis] = value;
+          centroids[i * 3 + axis] += value / 3.0f;
+        }
+      }
+    }
+
+    int maxNodeCount = Math.max(1, 2 * triangleCount);
+    nodeBounds = new float[maxNodeCount * 6];
+    nodeData = new int[maxNodeCount * 2];
+    buildNode(0, triangleCount);
+    centroids = null;
+  }
+
+  /** Get the number of triangles in the tree. */
+  public int getTriangleCount() {
+    return triangleIndices.length;
+  }
+
+  /**
+   * Find the nearest triangle hit by a ray. The direction doesn't need to be normalized, the
+   * distance is measured in multiples of it.
+   *
+   * @param result receives the distance to the hit and the barycentric weights of the second and
+   *     third vertex of the triangle at the hit point
+   * @return the index of the triangle that was hit, or -1 if no triangle was hit
+   */
+  public int raycast(
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float maxDistance,
+      float[] result) {
+    Preconditions.checkNotNull(result, "Parameter \"result\" was null.");
+
+    if (triangleIndices.length == 0) {
+      return -1;
+    }
+
+    float inverseX = 1.0f / directionX;
+    float inverseY = 1.0f / directionY;
+    float inverseZ = 1.0f / directionZ;
+
+    int hitTriangle = -1;
+    float nearest = maxDistance;
+    int[] stack = new int[MAX_STACK_SIZE];
+    int stackSize = 0;
+    stack[stackSize++] = 0;
+
+    while (stackSize > 0) {
+      int node = stack[--stackSize];
+      float entry = slabEntry(node, originX, originY, originZ, inverseX, inverseY, inverseZ);
+      if (entry > nearest) {
+        continue;
+      }
+
+      int first = nodeData[node * 2];
+      int count = nodeData[node * 2 + 1];
+      if (count > 0) {
+        for (int i = first; i < first + count; i++) {
+          float distance =
+              triangleIntersection(
+                  i,
+                  originX,
+                  originY,
+                  originZ,
+                  directionX,
+                  directionY,
+                  directionZ,
+                  nearest,
+                  result);
+          if (!Float.isNaN(distance)) {
+            nearest = distance;
+            hitTriangle = i;
+          }
+        }
+        continue;
+      }
+
+      // Visit the nearer child first, so that the farther one can be skipped if a hit is found.
+      int left = node + 1;
+      int right = first;
+      float leftEntry = slabEntry(left, originX, originY, originZ, inverseX, inverseY, inverseZ);
+      float rightEntry = slabEntry(right, originX, originY, originZ, inverseX, inverseY, inverseZ);
+      if (leftEntry <= rightEntry) {
+        stack[stackSize++] = right;
+        stack[stackSize++] = left;
+      } else {
+        stack[stackSize++] = left;
+        stack[stackSize++] = right;
+      }
+    }
+
+    return hitTriangle < 0 ? -1 : triangleIndices[hitTriangle];
+  }
+
+  private int buildNode(int first, int count) {
+    int node = nodeCount++;
+    float minX = Float.MAX_VALUE;
+    float minY = Float.MAX_VALUE;
+    float minZ = Float.MAX_VALUE;
+    float maxX = -Float.MAX_VALUE;
+    float maxY = -Float.MAX_VALUE;
+    float maxZ = -Float.MAX_VALUE;
+    for (int i = first * 9; i < (first + count) * 9; i += 3) {
+      minX = Math.min(minX, triangleVertices[i]);
+      minY = Math.min(minY, triangleVertices[i + 1]);
+      minZ = Math.min(minZ, triangleVertices[i + 2]);
+      maxX = Math.max(maxX, triangleVertices[i]);
+      maxY = Math.max(maxY, triangleVertices[i + 1]);
+      maxZ = Math.max(maxZ, triangleVertices[i + 2]);
+    }
+
+    nodeBounds[node * 6] = minX;
+    nodeBounds[node * 6 + 1] = minY;
+    nodeBounds[node * 6 + 2] = minZ;
+    nodeBounds[node * 6 + 3] = maxX;
+    nodeBounds[node * 6 + 4] = maxY;
+    nodeBounds[node * 6 + 5] = maxZ;
+
+    if (count <= MAX_TRIANGLES_PER_LEAF) {
+      nodeData[node * 2] = first;
+      nodeData[node * 2 + 1] = count;
+      return node;
+    }
+
+    // Split along the longest axis of the centroids.
+    int axis = 0;
+    float longest = -1.0f;
+    for (int candidate = 0; candidate < 3; candidate++) {
+      float min = Float.MAX_VALUE;
+      float max = -Float.MAX_VALUE;
+      for (int i = first; i < first + count; i++) {
+        min = Math.min(min, centroids[i * 3 + candidate]);
+        max = Math.max(max, centroids[i * 3 + candidate]);
+      }
+      if (max - min > longest) {
+        longest = max - min;
+        axis = candidate;
+      }
+    }
+
+    int half = count / 2;
+    selectMedian(first, first + count - 1, first + half, axis);
+
+    buildNode(first, half);
+    nodeData[node * 2] = buildNode(first + half, count - half);
+    nodeData[node * 2 + 1] = 0;
+    return node;
+  }
+
+  /**
+   * Partially sorts the triangles in [left, right] so that the triangle at index k has the
+   * centroid that it would have if they were sorted along the axis, with smaller ones before it.
+   */
+  private void selectMedian(int left, int right, int k, int axis) {
+    while (left < right) {
+      float pivot = centroids[((left + right) >>> 1) * 3 + axis];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (centroids[i * 3 + axis] < pivot) {
+          i++;
+        }
+        while (centroids[j * 3 + axis] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swapTriangles(i, j);
+          i++;
+          j--;
+        }
+      }
+
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void swapTriangles(int first, int second) {
+    int index = triangleIndices[first];
+    triangleIndices[first] = triangleIndices[second];
+    triangleIndices[second] = index;
+
+    for (int i = 0; i < 3; i++) {
+      float centroid = centroids[first * 3 + i];
+      centroids[first * 3 + i] = centroids[second * 3 + i];
+      centroids[second * 3 + i] = centroid;
+    }
+
+    for (int i = 0; i < 9; i++) {
+      float vertex = triangleVertices[first * 9 + i];
+      triangleVertices[first * 9 + i] = triangleVertices[second * 9 + i];
+      triangleVertices[second * 9 + i] = vertex;
+    }
+  }
+
+  /** Returns the distance at which the ray enters the bounds of the node, or infinity. */
+  private float slabEntry(
+      int node,
+      float originX,
+      float originY,
+      float originZ,
+      float inverseX,
+      float inverseY,
+      float inverseZ) {
+    float[] bounds = nodeBounds;
+    int offset = node * 6;
+
+    float t1 = (bounds[offset] - originX) * inverseX;
+    float t2 = (bounds[offset + 3] - originX) * inverseX;
+    float tMin = Math.min(t1, t2);
+    float tMax = Math.max(t1, t2);
+
+    t1 = (bounds[offset + 1] - originY) * inverseY;
+    t2 = (bounds[offset + 4] - originY) * inverseY;
+    tMin = Math.max(tMin, Math.min(t1, t2));
+    tMax = Math.min(tMax, Math.max(t1, t2));
+
+    t1 = (bounds[offset + 2] - originZ) * inverseZ;
+    t2 = (bounds[offset + 5] - originZ) * inverseZ;
+    tMin = Math.max(tMin, Math.min(t1, t2));
+    tMax = Math.min(tMax, Math.max(t1, t2));
+
+    // A ray parallel to a slab with its origin on the slab plane gives NaN, which compares false
+    // here, so the node is visited to be safe.
+    if (tMax < Math.max(tMin, 0.0f)) {
+      return Float.POSITIVE_INFINITY;
+    }
+    return Math.max(tMin, 0.0f);
+  }
+
+  /**
+   * Moller-Trumbore ray-triangle test for a triangle in tree order.
+   *
+   * @return the distance to the hit, or NaN if the triangle isn't hit closer than maxDistance
+   */
+  private float triangleIntersection(
+      int triangle,
+      float originX,
+      float originY,
+      float originZ,
+      float directionX,
+      float directionY,
+      float directionZ,
+      float maxDistance,
+      float[] result) {
+    float[] v = triangleVertices;
+    int offset = triangle * 9;
+    float edge1X = v[offset + 3] - v[offset];
+    float edge1Y = v[offset + 4] - v[offset + 1];
+    float edge1Z = v[offset + 5] - v[offset + 2];
+    float edge2X = v[offset + 6] - v[offset];
+    float edge2Y = v[offset + 7] - v[offset + 1];
+    float edge2Z = v[offset + 8] - v[offset + 2];
+
+    float pX = directionY * edge2Z - directionZ * edge2Y;
+    float pY = directionZ * edge2X - directionX * edge2Z;
+    float pZ = directionX * edge2Y - directionY * edge2X;
+    float determinant = edge1X * pX + edge1Y * pY + edge1Z * pZ;
+    if (Math.abs(determinant) < PARALLEL_EPSILON) {
+      return Float.NaN;
+    }
+
+    float inverseDeterminant = 1.0f / determinant;
+    float toOriginX = originX - v[offset];
+    float toOriginY = originY - v[offset + 1];
+    float toOriginZ = originZ - v[offset + 2];
+    float u = (toOriginX * pX + toOriginY * pY + toOriginZ * pZ) * inverseDeterminant;
+    if (u < 0.0f || u > 1.0f) {
+      return Float.NaN;
+    }
+
+    float qX = toOriginY * edge1Z - toOriginZ * edge1Y;
+    float qY = toOriginZ * edge1X - toOriginX * edge1Z;
+    float qZ = toOriginX * edge1Y - toOriginY * edge1X;
+    float w = (directionX * qX + directionY * qY + directionZ * qZ) * inverseDeterminant;
+    if (w < 0.0f || u + w > 1.0f) {
+      return Float.NaN;
+    }
+
+    float distance = (edge2X * qX + edge2Y * qY + edge2Z * qZ) * inverseDeterminant;
+    if (distance < 0.0f || distance >= maxDistance) {
+      return Float.NaN;
+    }
+
+    result[0] = distance;
+    result[1] = u;
+    result[2] = w;
+    return distance;
+  }
+}
@@ -10,4 +10,12 @@ import com.google.ar.sceneform.math.Matrix;
  */
 public interface TransformProvider {
   Matrix getWorldModelMatrix();
+
+  /**
+   * Returns the world model matrix frozen at the end of the last frame update, which is what the
+   * renderer draws. Providers that aren't frozen return their current world model matrix.
+   */
+  default Matrix getFrozenWorldModelMatrix() {
+    return getWorldModelMatrix();
+  }
 }
@@ -57,12 +57,9 @@ public class Matrix {
   }
 
   public void decomposeScale(Vector3 destScale) {
-    Vector3 temp = new Vector3(data[0], data[1], data[2]);
-    destScale.x = temp.length();
-    temp.set(data[4], data[5], data[6]);
-    destScale.y = temp.length();
-    temp.set(data[8], data[9], data[10]);
-    destScale.z = temp.length();
+    destScale.x = (float) Math.sqrt(data[0] * data[0] + data[1] * data[1] + data[2] * data[2]);
+    destScale.y = (float) Math.sqrt(data[4] * data[4] + data[5] * data[5] + data[6] * data[6]);
+    destScale.z = (float) Math.sqrt(data[8] * data[8] + data[9] * data[9] + data[10] * data[10]);
   }
 
   public void decomposeRotation(Vector3 decomposedScale, Quaternion destRotation) {
@@ -270,77 +267,159 @@ public class Matrix {
   public static void multiply(Matrix lhs, Matrix rhs, Matrix dest) {
     Preconditions.checkNotNull(lhs, "Parameter \"lhs\" was null.");
     Preconditions.checkNotNull(rhs, "Parameter \"rhs\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
 
-    float m00 = 0f;
-    float m01 = 0f;
-    float m02 = 0f;
-    float m03 = 0f;
-    float m10 = 0f;
-    float m11 = 0f;
-    float m12 = 0f;
-    float m13 = 0f;
-    float m20 = 0f;
-    float m21 = 0f;
-    float m22 = 0f;
-    float m23 = 0f;
-    float m30 = 0f;
-    float m31 = 0f;
-    float m32 = 0f;
-    float m33 = 0f;
-
-    for (int i = 0; i < 4; i++) {
-      float lhs0 = lhs.data[0 + (i * 4)];
-      float lhs1 = lhs.data[1 + (i * 4)];
-      float lhs2 = lhs.data[2 + (i * 4)];
-      float lhs3 = lhs.data[3 + (i * 4)];
-      float rhs0 = rhs.data[(0 * 4) + i];
-      float rhs1 = rhs.data[(1 * 4) + i];
-      float rhs2 = rhs.data[(2 * 4) + i];
-      float rhs3 = rhs.data[(3 * 4) + i];
-
-      m00 += lhs0 * rhs0;
-      m01 += lhs1 * rhs0;
-      m02 += lhs2 * rhs0;
-      m03 += lhs3 * rhs0;
-
-      m10 += lhs0 * rhs1;
-      m11 += lhs1 * rhs1;
-      m12 += lhs2 * rhs1;
-      m13 += lhs3 * rhs1;
-
-      m20 += lhs0 * rhs2;
-      m21 += lhs1 * rhs2;
-      m22 += lhs2 * rhs2;
-      m23 += lhs3 * rhs2;
-
-      m30 += lhs0 * rhs3;
-      m31 += lhs1 * rhs3;
-      m32 += lhs2 * rhs3;
-      m33 += lhs3 * rhs3;
-    }
+    multiply(lhs.data, 0, rhs.data, 0, dest.data, 0);
+  }
+
+  /**
+   * Multiplies two matrices stored as 16 consecutive floats in column-major order, starting at the
+   * given offsets. The result may be written over either input.
+   */
+  public static void multiply(
+      float[] lhs, int lhsOffset, float[] rhs, int rhsOffset, float[] dest, int destOffset) {
+    float l00 = lhs[lhsOffset];
+    float l01 = lhs[lhsOffset + 1];
+    float l02 = lhs[lhsOffset + 2];
+    float l03 = lhs[lhsOffset + 3];
+    float l10 = lhs[lhsOffset + 4];
+    float l11 = lhs[lhsOffset + 5];
+    float l12 = lhs[lhsOffset + 6];
+    float l13 = lhs[lhsOffset + 7];
+    float l20 = lhs[lhsOffset + 8];
+    float l21 = lhs[lhsOffset + 9];
+    float l22 = lhs[lhsOffset + 10];
+    float l23 = lhs[lhsOffset + 11];
+    float l30 = lhs[lhsOffset + 12];
+    float l31 = lhs[lhsOffset + 13];
+    float l32 = lhs[lhsOffset + 14];
+    float l33 = lhs[lhsOffset + 15];
+
+    float r00 = rhs[rhsOffset];
+    float r01 = rhs[rhsOffset + 1];
+    float r02 = rhs[rhsOffset + 2];
+    float r03 = rhs[rhsOffset + 3];
+    float r10 = rhs[rhsOffset + 4];
+    float r11 = rhs[rhsOffset + 5];
+    float r12 = rhs[rhsOffset + 6];
+    float r13 = rhs[rhsOffset + 7];
+    float r20 = rhs[rhsOffset + 8];
+    float r21 = rhs[rhsOffset + 9];
+    float r22 = rhs[rhsOffset + 10];
+    float r23 = rhs[rhsOffset + 11];
+    float r30 = rhs[rhsOffset + 12];
+    float r31 = rhs[rhsOffset + 13];
+    float r32 = rhs[rhsOffset + 14];
+    float r33 = rhs[rhsOffset + 15];
+
+    dest[destOffset] = l00 * r00 + l10 * r01 + l20 * r02 + l30 * r03;
+    dest[destOffset + 1] = l01 * r00 + l11 * r01 + l21 * r02 + l31 * r03;
+    dest[destOffset + 2] = l02 * r00 + l12 * r01 + l22 * r02 + l32 * r03;
+    dest[destOffset + 3] = l03 * r00 + l13 * r01 + l23 * r02 + l33 * r03;
+    dest[destOffset + 4] = l00 * r10 + l10 * r11 + l20 * r12 + l30 * r13;
+    dest[destOffset + 5] = l01 * r10 + l11 * r11 + l21 * r12 + l31 * r13;
+    dest[destOffset + 6] = l02 * r10 + l12 * r11 + l22 * r12 + l32 * r13;
+    dest[destOffset + 7] = l03 * r10 + l13 * r11 + l23 * r12 + l33 * r13;
+    dest[destOffset + 8] = l00 * r20 + l10 * r21 + l20 * r22 + l30 * r23;
+    dest[destOffset + 9] = l01 * r20 + l11 * r21 + l21 * r22 + l31 * r23;
+    dest[destOffset + 10] = l02 * r20 + l12 * r21 + l22 * r22 + l32 * r23;
+    dest[destOffset + 11] = l03 * r20 + l13 * r21 + l23 * r22 + l33 * r23;
+    dest[destOffset + 12] = l00 * r30 + l10 * r31 + l20 * r32 + l30 * r33;
+    dest[destOffset + 13] = l01 * r30 + l11 * r31 + l21 * r32 + l31 * r33;
+    dest[destOffset + 14] = l02 * r30 + l12 * r31 + l22 * r32 + l32 * r33;
+    dest[destOffset + 15] = l03 * r30 + l13 * r31 + l23 * r32 + l33 * r33;
+  }
+
+  /**
+   * Multiplies a parent matrix by a batch of matrices, as {@link #multiply(float[], int, float[],
+   * int, float[], int)} would for each of them. The batch matrices are read from src and written to
+   * dest 16 floats apart. The parent is read once, so dest may be src but must not overlap the
+   * parent.
+   *
+   * @param count the number of matrices in the batch
+   */
+  public static void multiplyBatch(
+      float[] parent,
+      int parentOffset,
+      float[] src,
+      int srcOffset,
+      float[] dest,
+      int destOffset,
+      int count) {
+    Preconditions.checkNotNull(parent, "Parameter \"parent\" was null.");
+    Preconditions.checkNotNull(src, "Parameter \"src\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
 
-    dest.data[0] = m00;
-    dest.data[1] = m01;
-    dest.data[2] = m02;
-    dest.data[3] = m03;
-    dest.data[4] = m10;
-    dest.data[5] = m11;
-    dest.data[6] = m12;
-    dest.data[7] = m13;
-    dest.data[8] = m20;
-    dest.data[9] = m21;
-    dest.data[10] = m22;
-    dest.data[11] = m23;
-    dest.data[12] = m30;
-    dest.data[13] = m31;
-    dest.data[14] = m32;
-    dest.data[15] = m33;
+    float l00 = parent[parentOffset];
+    float l01 = parent[parentOffset + 1];
+    float l02 = parent[parentOffset + 2];
+    float l03 = parent[parentOffset + 3];
+    float l10 = parent[parentOffset + 4];
+    float l11 = parent[parentOffset + 5];
+    float l12 = parent[parentOffset + 6];
+    float l13 = parent[parentOffset + 7];
+    float l20 = parent[parentOffset + 8];
+    float l21 = parent[parentOffset + 9];
+    float l22 = parent[parentOffset + 10];
+    float l23 = parent[parentOffset + 11];
+    float l30 = parent[parentOffset + 12];
+    float l31 = parent[parentOffset + 13];
+    float l32 = parent[parentOffset + 14];
+    float l33 = parent[parentOffset + 15];
+
+    for (int i = 0; i < count; i++) {
+      int s = srcOffset + i * 16;
+      int d = destOffset + i * 16;
+      float r00 = src[s];
+      float r01 = src[s + 1];
+      float r02 = src[s + 2];
+      float r03 = src[s + 3];
+      float r10 = src[s + 4];
+      float r11 = src[s + 5];
+      float r12 = src[s + 6];
+      float r13 = src[s + 7];
+      float r20 = src[s + 8];
+      float r21 = src[s + 9];
+      float r22 = src[s + 10];
+      float r23 = src[s + 11];
+      float r30 = src[s + 12];
+      float r31 = src[s + 13];
+      float r32 = src[s + 14];
+      float r33 = src[s + 15];
+      dest[d] = l00 * r00 + l10 * r01 + l20 * r02 + l30 * r03;
+      dest[d + 1] = l01 * r00 + l11 * r01 + l21 * r02 + l31 * r03;
+      dest[d + 2] = l02 * r00 + l12 * r01 + l22 * r02 + l32 * r03;
+      dest[d + 3] = l03 * r00 + l13 * r01 + l23 * r02 + l33 * r03;
+      dest[d + 4] = l00 * r10 + l10 * r11 + l20 * r12 + l30 * r13;
+      dest[d + 5] = l01 * r10 + l11 * r11 + l21 * r12 + l31 * r13;
+      dest[d + 6] = l02 * r10 + l12 * r11 + l22 * r12 + l32 * r13;
+      dest[d + 7] = l03 * r10 + l13 * r11 + l23 * r12 + l33 * r13;
+      dest[d + 8] = l00 * r20 + l10 * r21 + l20 * r22 + l30 * r23;
+      dest[d + 9] = l01 * r20 + l11 * r21 + l21 * r22 + l31 * r23;
+      dest[d + 10] = l02 * r20 + l12 * r21 + l22 * r22 + l32 * r23;
+      dest[d + 11] = l03 * r20 + l13 * r21 + l23 * r22 + l33 * r23;
+      dest[d + 12] = l00 * r30 + l10 * r31 + l20 * r32 + l30 * r33;
+      dest[d + 13] = l01 * r30 + l11 * r31 + l21 * r32 + l31 * r33;
+      dest[d + 14] = l02 * r30 + l12 * r31 + l22 * r32 + l32 * r33;
+      dest[d + 15] = l03 * r30 + l13 * r31 + l23 * r32 + l33 * r33;
+    }
   }
 
   public Vector3 transformPoint(Vector3 vector) {
+    return transformPoint(vector, new Vector3());
+  }
+
+  /**
+   * Transforms a point without allocating.
+   *
+   * @param dest the vector the result is written to, may be the vector being transformed
+   * @return dest, for convenience
+   */
+  public Vector3 transformPoint(Vector3 vector, Vector3 dest) {
     Preconditions.checkNotNull(vector, "Parameter \"vector\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
 
-    Vector3 result = new Vector3();
+    Vector3 result = dest;
     float vx = vector.x;
     float vy = vector.y;
     float vz = vector.z;
@@ -372,9 +451,21 @@ public class Matrix {
    * case the matrix used should be the inverse transpose of the incoming matrix.
    */
   public Vector3 transformDirection(Vector3 vector) {
+    return transformDirection(vector, new Vector3());
+  }
+
+  /**
+   * Transforms a direction by ignoring any translation, without allocating.
+   *
+   * @param dest the vector the result is written to, may be the vector being transformed
+   * @return dest, for convenience
+   * @see #transformDirection(Vector3)
+   */
+  public Vector3 transformDirection(Vector3 vector, Vector3 dest) {
     Preconditions.checkNotNull(vector, "Parameter \"vector\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
 
-    Vector3 result = new Vector3();
+    Vector3 result = dest;
     float vx = vector.x;
     float vy = vector.y;
     float vz = vector.z;
@@ -392,10 +483,128 @@ public class Matrix {
     return result;
   }
 
+  /**
+   * Transforms a batch of points by this matrix, as {@link #transformPoint(Vector3, Vector3)} would
+   * for each of them. Each point is 3 consecutive floats, and consecutive points start the given
+   * stride apart. dest may be src if both use the same offset and stride.
+   *
+   * @param count the number of points in the batch
+   */
+  public void transformPoints(
+      float[] src,
+      int srcOffset,
+      int srcStride,
+      float[] dest,
+      int destOffset,
+      int destStride,
+      int count) {
+    Preconditions.checkNotNull(src, "Parameter \"src\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    float m00 = data[0];
+    float m01 = data[1];
+    float m02 = data[2];
+    float m10 = data[4];
+    float m11 = data[5];
+    float m12 = data[6];
+    float m20 = data[8];
+    float m21 = data[9];
+    float m22 = data[10];
+    float m30 = data[12];
+    float m31 = data[13];
+    float m32 = data[14];
+
+    for (int i = 0; i < count; i++) {
+      int s = srcOffset + i * srcStride;
+      int d = destOffset + i * destStride;
+      float x = src[s];
+      float y = src[s + 1];
+      float z = src[s + 2];
+      dest[d] = m00 * x + m10 * y + m20 * z + m30;
+      dest[d + 1] = m01 * x + m11 * y + m21 * z + m31;
+      dest[d + 2] = m02 * x + m12 * y + m22 * z + m32;
+    }
+  }
+
+  /** Returns true if the bottom row of this matrix is [0, 0, 0, 1], as it is for TRS matrices. */
+  public boolean isAffine() {
+    return data[3] == 0.0f && data[7] == 0.0f && data[11] == 0.0f && data[15] == 1.0f;
+  }
+
+  /**
+   * Inverts an affine matrix, see {@link #isAffine()}. Only the 3x3 upper-left part needs to be
+   * inverted, which is much cheaper than the general inverse and also handles scale and shear.
+   *
+   * @return false if the matrix can't be inverted, in which case dest is unchanged
+   */
+  public static boolean invertAffine(Matrix matrix, Matrix dest) {
+    Preconditions.checkNotNull(matrix, "Parameter \"matrix\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+
+    float[] m = matrix.data;
+    float a00 = m[0];
+    float a01 = m[1];
+    float a02 = m[2];
+    float a10 = m[4];
+    float a11 = m[5];
+    float a12 = m[6];
+    float a20 = m[8];
+    float a21 = m[9];
+    float a22 = m[10];
+    float tx = m[12];
+    float ty = m[13];
+    float tz = m[14];
+
+    // Cofactors of the first row, reused for the determinant.
+    float c00 = a11 * a22 - a21 * a12;
+    float c10 = a21 * a02 - a01 * a22;
+    float c20 = a01 * a12 - a11 * a02;
+
+    float det = a00 * c00 + a10 * c10 + a20 * c20;
+    if (det == 0) {
+      return false;
+    }
+
+    float invDet = 1.0f / det;
+    float i00 = c00 * invDet;
+    float i01 = c10 * invDet;
+    float i02 = c20 * invDet;
+    float i10 = (a20 * a12 - a10 * a22) * invDet;
+    float i11 = (a00 * a22 - a20 * a02) * invDet;
+    float i12 = (a10 * a02 - a00 * a12) * invDet;
+    float i20 = (a10 * a21 - a20 * a11) * invDet;
+    float i21 = (a20 * a01 - a00 * a21) * invDet;
+    float i22 = (a00 * a11 - a10 * a01) * invDet;
+
+    float[] d = dest.data;
+    d[0] = i00;
+    d[1] = i01;
+    d[2] = i02;
+    d[3] = 0.0f;
+    d[4] = i10;
+    d[5] = i11;
+    d[6] = i12;
+    d[7] = 0.0f;
+    d[8] = i20;
+    d[9] = i21;
+    d[10] = i22;
+    d[11] = 0.0f;
+    d[12] = -(i00 * tx + i10 * ty + i20 * tz);
+    d[13] = -(i01 * tx + i11 * ty + i21 * tz);
+    d[14] = -(i02 * tx + i12 * ty + i22 * tz);
+    d[15] = 1.0f;
+    return true;
+  }
+
   public static boolean invert(Matrix matrix, Matrix dest) {
     Preconditions.checkNotNull(matrix, "Parameter \"matrix\" was null.");
     Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
 
+    // Model matrices are almost always affine, and their inverse is much cheaper to compute.
+    if (matrix.isAffine()) {
+      return invertAffine(matrix, dest);
+    }
+
     float m0 = matrix.data[0];
     float m1 = matrix.data[1];
     float m2 = matrix.data[2];
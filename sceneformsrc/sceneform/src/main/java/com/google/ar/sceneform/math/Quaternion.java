@@ -126,9 +126,20 @@ public class Quaternion {
    * @return the quaternion scaled to the unit length, or zero if that can not be done.
    */
   public Quaternion normalized() {
-    Quaternion result = new Quaternion(this);
-    result.normalize();
-    return result;
+    return normalized(new Quaternion());
+  }
+
+  /**
+   * Get a Quaternion with a matching rotation but scaled to unit length, without allocating.
+   *
+   * @param dest the quaternion the result is written to, may be this quaternion
+   * @return dest, for convenience
+   */
+  public Quaternion normalized(Quaternion dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+    dest.set(this);
+    dest.normalize();
+    return dest;
   }
 
   /**
@@ -137,7 +148,19 @@ public class Quaternion {
    * @return the opposite rotation
    */
   public Quaternion inverted() {
-    return new Quaternion(-this.x, -this.y, -this.z, this.w);
+    return inverted(new Quaternion());
+  }
+
+  /**
+   * Get a Quaternion with the opposite rotation, without allocating.
+   *
+   * @param dest the quaternion the result is written to, may be this quaternion
+   * @return dest, for convenience
+   */
+  public Quaternion inverted(Quaternion dest) {
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+    dest.set(-this.x, -this.y, -this.z, this.w);
+    return dest;
   }
 
   /**
@@ -160,9 +183,20 @@ public class Quaternion {
    * @return The rotated vector
    */
   public static Vector3 rotateVector(Quaternion q, Vector3 src) {
+    return rotateVector(q, src, new Vector3());
+  }
+
+  /**
+   * Rotates a Vector3 by a Quaternion without allocating.
+   *
+   * @param dest the vector the result is written to, may be src
+   * @return dest, for convenience
+   */
+  public static Vector3 rotateVector(Quaternion q, Vector3 src, Vector3 dest) {
     Preconditions.checkNotNull(q, "Parameter \"q\" was null.");
     Preconditions.checkNotNull(src, "Parameter \"src\" was null.");
-    Vector3 result = new Vector3();
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+    Vector3 result = dest;
     float w2 = q.w * q.w;
     float x2 = q.x * q.x;
     float y2 = q.y * q.y;
@@ -192,9 +226,20 @@ public class Quaternion {
   }
 
   public static Vector3 inverseRotateVector(Quaternion q, Vector3 src) {
+    return inverseRotateVector(q, src, new Vector3());
+  }
+
+  /**
+   * Rotates a Vector3 by the inverse of a Quaternion without allocating.
+   *
+   * @param dest the vector the result is written to, may be src
+   * @return dest, for convenience
+   */
+  public static Vector3 inverseRotateVector(Quaternion q, Vector3 src, Vector3 dest) {
     Preconditions.checkNotNull(q, "Parameter \"q\" was null.");
     Preconditions.checkNotNull(src, "Parameter \"src\" was null.");
-    Vector3 result = new Vector3();
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
+    Vector3 result = dest;
     float w2 = q.w * q.w;
     float x2 = -q.x * -q.x;
     float y2 = -q.y * -q.y;
@@ -231,8 +276,20 @@ public class Quaternion {
    * @return The combined rotation
    */
   public static Quaternion multiply(Quaternion lhs, Quaternion rhs) {
+    return multiply(lhs, rhs, new Quaternion());
+  }
+
+  /**
+   * Combines two Quaternions without allocating.
+   *
+   * @param dest the quaternion the result is written to, may be lhs or rhs
+   * @return dest, for convenience
+   * @see #multiply(Quaternion, Quaternion)
+   */
+  public static Quaternion multiply(Quaternion lhs, Quaternion rhs, Quaternion dest) {
     Preconditions.checkNotNull(lhs, "Parameter \"lhs\" was null.");
     Preconditions.checkNotNull(rhs, "Parameter \"rhs\" was null.");
+    Preconditions.checkNotNull(dest, "Parameter \"dest\" was null.");
     float lx = lhs.x;
     float ly = lhs.y;
     float lz = lhs.z;
@@ -242,13 +299,12 @@ public class Quaternion {
     float rz = rhs.z;
     float rw = rhs.w;
 
-    Quaternion result =
-        new Quaternion(
-            lw * rx + lx * rw + ly * rz - lz * ry,
-            lw * ry - lx * rz + ly * rw + lz * rx,
-            lw * rz + lx * ry - ly * rx + lz * rw,
-            lw * rw - lx * rx - ly * ry - lz * rz);
-    return result;
+    dest.set(
+        lw * rx + lx * rw + ly * rz - lz * ry,
+        lw * ry - lx * rz + ly * rw + lz * rx,
+        lw * rz + lx * ry - ly * rx + lz * rw,
+        lw * rw - lx * rx - ly * ry - lz * rz);
+    return dest;
   }
 
   /**
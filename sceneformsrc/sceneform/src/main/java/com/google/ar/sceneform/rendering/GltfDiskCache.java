@@ -0,0 +1,335 @@
+package com.google.ar.sceneform.rendering;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.google.ar.sceneform.utilities.ContentHash;
+import com.google.ar.sceneform.utilities.Preconditions;
+import com.google.ar.sceneform.utilities.SceneformBufferUtils;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches glTF models on disk together with the external buffers and images they reference, so that
+ * loading a model again is a single mapped read instead of reading the source and resolving each of
+ * its resources.
+ *
+ * <p>An entry is stored in one file named after the hash of the source key. The file holds the key,
+ * to detect hash collisions, and ends with a content hash of everything before it, to detect
+ * truncated or corrupted files. Entries older than the maximum age are ignored and replaced.
+ *
+ * <p>Entries are keyed by the uri of the source only, not by a hash of its contents, because
+ * hashing the contents would mean reading the source on every load, which is what the cache
+ * avoids. A source that changes in place is picked up once its entry reaches the maximum age.
+ *
+ * <p>When the entries take more than the maximum size, the least recently used ones are deleted.
+ * Reading an entry updates the modification time of its file to track when it was last used, so
+ * the age of an entry is stored in the file instead.
+ */
+class GltfDiskCache {
+  private static final String TAG = GltfDiskCache.class.getSimpleName();
+  private static final String DIRECTORY_NAME = "sceneform_gltf";
+  private static final String FILE_EXTENSION = ".bin";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // "SFGC" read as a little endian int.
+  private static final int MAGIC = 0x43474653;
+  private static final int VERSION = 2;
+  private static final int HASH_LENGTH = 32;
+  // Matches the max-stale age allowed for cached remote sources.
+  private static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(14);
+  private static final long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+
+  @Nullable private static GltfDiskCache instance;
+
+  /** A glTF model and the external resources it references, by the uri used in the model. */
+  static final class Entry {
+    final ByteBuffer gltf;
+    final Map<String, ByteBuffer> resources;
+
+    Entry(ByteBuffer gltf, Map<String, ByteBuffer> resources) {
+      Preconditions.checkNotNull(gltf, "Parameter \"gltf\" was null.");
+      Preconditions.checkNotNull(resources, "Parameter \"resources\" was null.");
+      this.gltf = gltf;
+      this.resources = resources;
+    }
+  }
+
+  private final File directory;
+  private final long maxAgeMillis;
+  private final long maxSizeBytes;
+
+  GltfDiskCache(File directory, long maxAgeMillis, long maxSizeBytes) {
+    Preconditions.checkNotNull(directory, "Parameter \"directory\" was null.");
+    this.directory = directory;
+    this.maxAgeMillis = maxAgeMillis;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /** Returns the cache in the cache directory of the application. */
+  static synchronized GltfDiskCache getInstance(Context context) {
+    Preconditions.checkNotNull(context, "Parameter \"context\" was null.");
+    if (instance == null) {
+      File directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+      instance = new GltfDiskCache(directory, DEFAULT_MAX_AGE_MILLIS, DEFAULT_MAX_SIZE_BYTES);
+    }
+    return instance;
+  }
+
+  /**
+   * Maps the entry of a source, or returns null if there is no valid entry. The buffers of the
+   * entry are slices of the mapping.
+   */
+  @Nullable
+  Entry read(String sourceKey) {
+    Preconditions.checkNotNull(sourceKey, "Parameter \"sourceKey\" was null.");
+
+    File file = fileFor(sourceKey);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try {
+      long now = System.currentTimeMillis();
+      Entry entry = parse(SceneformBufferUtils.mapFile(file), sourceKey, now - maxAgeMillis);
+      if (entry == null) {
+        deleteQuietly(file);
+      } else {
+        // Marks the entry as recently used. If this fails, entries are pruned in write order.
+        file.setLastModified(now);
+      }
+      return entry;
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      Log.w(TAG, "Unable to read cached " + sourceKey + " - " + e.getMessage());
+      deleteQuietly(file);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the entry of a source, replacing any previous one. Entries larger than the maximum size
+   * aren't written, since they would be pruned right away. Failures are only logged.
+   */
+  void write(String sourceKey, Entry entry) {
+    Preconditions.checkNotNull(sourceKey, "Parameter \"sourceKey\" was null.");
+    Preconditions.checkNotNull(entry, "Parameter \"entry\" was null.");
+
+    File file = fileFor(sourceKey);
+    long size = serializedSize(sourceKey, entry);
+    if (size > maxSizeBytes) {
+      Log.w(TAG, "Not caching " + sourceKey + " - " + size + " bytes is over the maximum size");
+      // The previous entry is for older contents of the source.
+      deleteQuietly(file);
+      return;
+    }
+
+    // Write to a temporary file first, so that readers never see a partial entry.
+    File temporaryFile = new File(directory, file.getName() + ".tmp");
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create " + directory);
+      }
+
+      try (FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+        serialize(sourceKey, entry, outputStream.getChannel());
+      }
+
+      if (!temporaryFile.renameTo(file)) {
+        throw new IOException("Unable to rename " + temporaryFile);
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Unable to cache " + sourceKey + " - " + e.getMessage());
+      deleteQuietly(temporaryFile);
+      return;
+    }
+
+    pruneToMaxSize();
+  }
+
+  /** Deletes the least recently used entries until the entries fit in the maximum size. */
+  private synchronized void pruneToMaxSize() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+    if (files == null) {
+      return;
+    }
+
+    long totalSize = 0;
+    long[] lastModified = new long[files.length];
+    for (int i = 0; i < files.length; i++) {
+      totalSize += files[i].length();
+      lastModified[i] = files[i].lastModified();
+    }
+    if (totalSize <= maxSizeBytes) {
+      return;
+    }
+
+    // Read the modification times once, they change when entries are read while sorting.
+    Integer[] order = new Integer[files.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (lhs, rhs) -> Long.compare(lastModified[lhs], lastModified[rhs]));
+    for (int i = 0; i < order.length && totalSize > maxSizeBytes; i++) {
+      File file = files[order[i]];
+      long size = file.length();
+      if (file.delete()) {
+        totalSize -= size;
+      }
+    }
+  }
+
+  private File fileFor(String sourceKey) {
+    return new File(
+        directory, ContentHash.of(ByteBuffer.wrap(sourceKey.getBytes(UTF_8))) + FILE_EXTENSION);
+  }
+
+  /** Returns the number of bytes {@link #serialize} writes for an entry. */
+  private static long serializedSize(String sourceKey, Entry entry) {
+    // The magic, the version, the write time and the resource count.
+    long size = 4 + 4 + 8 + 4;
+    size += 4 + sourceKey.getBytes(UTF_8).length;
+    size += 4 + entry.gltf.remaining();
+    for (Map.Entry<String, ByteBuffer> resource : entry.resources.entrySet()) {
+      size += 4 + resource.getKey().getBytes(UTF_8).length;
+      size += 4 + resource.getValue().remaining();
+    }
+    return size + HASH_LENGTH;
+  }
+
+  /**
+   * Writes an entry to a channel, followed by the hash of everything written before it. The buffers
+   * of the entry are written directly, and hashed as they are written.
+   */
+  private static void serialize(String sourceKey, Entry entry, FileChannel channel)
+      throws IOException {
+    EntryWriter writer = new EntryWriter(channel);
+    writer.putInt(MAGIC);
+    writer.putInt(VERSION);
+    writer.putLong(System.currentTimeMillis());
+    writer.putBytes(ByteBuffer.wrap(sourceKey.getBytes(UTF_8)));
+    writer.putBytes(entry.gltf);
+    writer.putInt(entry.resources.size());
+    for (Map.Entry<String, ByteBuffer> resource : entry.resources.entrySet()) {
+      writer.putBytes(ByteBuffer.wrap(resource.getKey().getBytes(UTF_8)));
+      writer.putBytes(resource.getValue());
+    }
+    writer.putHash();
+  }
+
+  /**
+   * Returns the entry in a mapped file, or null if it's invalid, for another source or written
+   * before the oldest allowed time.
+   */
+  @Nullable
+  private static Entry parse(ByteBuffer mapping, String sourceKey, long oldestWriteTimeMillis) {
+    ByteBuffer data = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (data.remaining() < HASH_LENGTH || data.getInt() != MAGIC || data.getInt() != VERSION) {
+      return null;
+    }
+    if (data.getLong() < oldestWriteTimeMillis) {
+      return null;
+    }
+
+    // Check the trailing hash of the body before trusting any length in it.
+    ByteBuffer body = mapping.duplicate();
+    body.limit(body.limit() - HASH_LENGTH);
+    ByteBuffer hash = mapping.duplicate();
+    hash.position(hash.limit() - HASH_LENGTH);
+    if (!ContentHash.of(body).toString().equals(UTF_8.decode(hash).toString())) {
+      return null;
+    }
+    data.limit(body.limit());
+
+    String storedKey = UTF_8.decode(getBytes(data)).toString();
+    if (!storedKey.equals(sourceKey)) {
+      // A different source with the same hash.
+      return null;
+    }
+
+    ByteBuffer gltf = getBytes(data);
+    int resourceCount = data.getInt();
+    Map<String, ByteBuffer> resources = new HashMap<>();
+    for (int i = 0; i < resourceCount; i++) {
+      String uri = UTF_8.decode(getBytes(data)).toString();
+      resources.put(uri, getBytes(data));
+    }
+    return new Entry(gltf, Collections.unmodifiableMap(resources));
+  }
+
+  /** Returns a slice of the next length prefixed bytes, and moves past them. */
+  private static ByteBuffer getBytes(ByteBuffer data) {
+    int length = data.getInt();
+    if (length < 0 || length > data.remaining()) {
+      throw new IllegalArgumentException("Invalid length " + length);
+    }
+
+    ByteBuffer bytes = data.duplicate();
+    bytes.limit(bytes.position() + length);
+    data.position(data.position() + length);
+    return bytes.slice();
+  }
+
+  /** Writes the fields of an entry to a channel and hashes them. */
+  private static final class EntryWriter {
+    private final FileChannel channel;
+    private final ContentHash.Builder hash = ContentHash.builder();
+    private final ByteBuffer scratch = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+    EntryWriter(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void putInt(int value) throws IOException {
+      scratch.clear();
+      scratch.putInt(value);
+      scratch.flip();
+      write(scratch);
+    }
+
+    void putLong(long value) throws IOException {
+      scratch.clear();
+      scratch.putLong(value);
+      scratch.flip();
+      write(scratch);
+    }
+
+    /** Writes the length of the remaining bytes of a buffer, then the bytes. */
+    void putBytes(ByteBuffer bytes) throws IOException {
+      putInt(bytes.remaining());
+      write(bytes.duplicate());
+    }
+
+    /** Writes the hash of everything written so far. The hash itself isn't hashed. */
+    void putHash() throws IOException {
+      ByteBuffer data = ByteBuffer.wrap(hash.build().toString().getBytes(UTF_8));
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+      hash.append(data);
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+    }
+  }
+
+  private static void deleteQuietly(File file) {
+    if (file.exists() && !file.delete()) {
+      Log.w(TAG, "Unable to delete " + file);
+    }
+  }
+}
@@ -75,6 +75,15 @@ interface IRenderableInternalData {
   @Nullable
   FloatBuffer getRawColorBuffer();
 
+  /** Sets the estimated bytes of the vertex, index and texture data uploaded for the renderable. */
+  void setUploadedByteCount(long uploadedByteCount);
+
+  /**
+   * Returns the estimated bytes held by the data of the renderable, including the data uploaded
+   * for it, or 0 if unknown.
+   */
+  long getByteCountEstimate();
+
   void setAnimationNames(@NonNull List<String> animationNames);
 
   @NonNull
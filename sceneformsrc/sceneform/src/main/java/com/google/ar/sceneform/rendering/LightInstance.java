@@ -115,7 +115,7 @@ public class LightInstance {
     LightManager lightManager = engine.getLightManager();
 
     final int instance = lightManager.getInstance(entity);
-    final Matrix transform = transformProvider.getWorldModelMatrix();
+    final Matrix transform = transformProvider.getFrozenWorldModelMatrix();
 
     if (lightTypeRequiresPosition(light.getType())) {
       final Vector3 position = transform.transformPoint(localPosition);
@@ -2,27 +2,46 @@ package com.google.ar.sceneform.rendering;
 
 import android.content.Context;
 import android.net.Uri;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.google.android.filament.gltfio.ResourceLoader;
+import com.google.ar.sceneform.utilities.LoadHelper;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.function.Function;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /** Task for initializing a renderable with glTF data loaded with gltfio. */
 @SuppressWarnings({"AndroidApiChecker", "FutureReturnValueIgnored"}) // CompletableFuture
 public class LoadRenderableFromFilamentGltfTask<T extends Renderable> {
   private static final String TAG = LoadRenderableFromFilamentGltfTask.class.getSimpleName();
+  // "glTF" read as a little endian int, at the start of a binary glTF.
+  private static final int GLB_MAGIC = 0x46546C67;
+  // "JSON" read as a little endian int, the type of the first chunk of a binary glTF.
+  private static final int GLB_JSON_CHUNK_TYPE = 0x4E4F534A;
+  private static final int GLB_HEADER_LENGTH = 12;
+  private static final String DATA_URI_PREFIX = "data:";
   private final T renderable;
   private final RenderableInternalFilamentAssetData renderableData;
+  private final Uri sourceUri;
 
   LoadRenderableFromFilamentGltfTask(
       T renderable, Context context, Uri sourceUri, @Nullable Function<String, Uri> urlResolver) {
@@ -39,6 +58,7 @@ public class LoadRenderableFromFilamentGltfTask<T extends Renderable> {
     this.renderableData.urlResolver =
         missingPath -> getUriFromMissingResource(sourceUri, missingPath, urlResolver);
     this.renderableData.context = context.getApplicationContext();
+    this.sourceUri = sourceUri;
     this.renderable.getId().update();
   }
 
@@ -46,30 +66,140 @@ public class LoadRenderableFromFilamentGltfTask<T extends Renderable> {
   @SuppressWarnings({"AndroidApiChecker"})
   public CompletableFuture<T> downloadAndProcessRenderable(
       Callable<InputStream> inputStreamCreator) {
+    return downloadAndProcessRenderable(inputStreamCreator, null);
+  }
+
+  /**
+   * Returns {@link CompletableFuture} for a new {@link Renderable}.
+   *
+   * @param diskCache if not null, the model and its external resources are read from this cache
+   *     when present, and written to it after they are loaded from the source.
+   */
+  @SuppressWarnings({"AndroidApiChecker"})
+  public CompletableFuture<T> downloadAndProcessRenderable(
+      Callable<InputStream> inputStreamCreator, @Nullable GltfDiskCache diskCache) {
+    String sourceKey = sourceUri.toString();
 
     return CompletableFuture.supplyAsync(
-            // Download byte buffer via thread pool
+            // Download byte buffer and the resources it references via thread pool
             () -> {
-              try {
-                return SceneformBufferUtils.inputStreamCallableToByteArray(inputStreamCreator);
-              } catch (Exception e) {
-                throw new CompletionException(e);
+              if (diskCache == null) {
+                return new GltfDiskCache.Entry(
+                    readSource(inputStreamCreator), Collections.emptyMap());
+              }
+
+              GltfDiskCache.Entry cachedEntry = diskCache.read(sourceKey);
+              if (cachedEntry != null) {
+                return cachedEntry;
+              }
+
+              // The resources are only read ahead of time so that they can be cached with the
+              // model. Without the cache, they are read when the first instance is created.
+              ByteBuffer gltfByteBuffer = readSource(inputStreamCreator);
+              List<String> resourceUris = findExternalResourceUris(gltfByteBuffer);
+              Map<String, ByteBuffer> resources = resolveResources(resourceUris);
+              GltfDiskCache.Entry entry = new GltfDiskCache.Entry(gltfByteBuffer, resources);
+              // Only cache complete models, so that a cached model never needs the source.
+              if (resources.size() == resourceUris.size()) {
+                diskCache.write(sourceKey, entry);
               }
+              return entry;
             },
             ThreadPools.getThreadPoolExecutor())
         .thenApplyAsync(
-            gltfByteBuffer -> {
-              // Check for glb header
-              this.renderableData.isGltfBinary = gltfByteBuffer[0] == 0x67
-                      && gltfByteBuffer[1] == 0x6C
-                      && gltfByteBuffer[2] == 0x54
-                      && gltfByteBuffer[3] == 0x46;
-              this.renderableData.gltfByteBuffer = ByteBuffer.wrap(gltfByteBuffer);
+            entry -> {
+              this.renderableData.isGltfBinary = isGltfBinary(entry.gltf);
+              this.renderableData.gltfByteBuffer = entry.gltf;
+              this.renderableData.resolvedResources = entry.resources;
               return renderable;
             },
             ThreadPools.getMainExecutor());
   }
 
+  private static ByteBuffer readSource(Callable<InputStream> inputStreamCreator) {
+    try {
+      return ByteBuffer.wrap(
+          SceneformBufferUtils.inputStreamCallableToByteArray(inputStreamCreator));
+    } catch (Exception e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  private static boolean isGltfBinary(ByteBuffer gltf) {
+    // Check for glb header
+    return gltf.remaining() >= 4
+        && gltf.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(gltf.position()) == GLB_MAGIC;
+  }
+
+  /**
+   * Returns the uris of the buffers and images that a glTF model references outside of itself. Data
+   * uris are decoded by gltfio and aren't included.
+   */
+  private static List<String> findExternalResourceUris(ByteBuffer gltf) {
+    List<String> uris = new ArrayList<>();
+    try {
+      JSONObject root = new JSONObject(getJson(gltf));
+      addExternalUris(root.optJSONArray("buffers"), uris);
+      addExternalUris(root.optJSONArray("images"), uris);
+    } catch (JSONException | IllegalArgumentException e) {
+      // gltfio reports invalid models when the asset is created.
+      Log.w(TAG, "Unable to find the resources of the glTF model - " + e.getMessage());
+    }
+    return uris;
+  }
+
+  private static String getJson(ByteBuffer gltf) {
+    ByteBuffer data = gltf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (isGltfBinary(gltf)) {
+      int start = data.position() + GLB_HEADER_LENGTH;
+      if (data.limit() < start + 8 || data.getInt(start + 4) != GLB_JSON_CHUNK_TYPE) {
+        throw new IllegalArgumentException("Binary glTF doesn't start with a JSON chunk.");
+      }
+      int jsonLength = data.getInt(start);
+      data.position(start + 8);
+      data.limit(start + 8 + jsonLength);
+    }
+    return Charset.forName("UTF-8").decode(data).toString();
+  }
+
+  private static void addExternalUris(@Nullable JSONArray objects, List<String> uris) {
+    if (objects == null) {
+      return;
+    }
+
+    for (int i = 0; i < objects.length(); i++) {
+      JSONObject object = objects.optJSONObject(i);
+      String uri = object == null ? null : object.optString("uri", null);
+      if (uri != null && !uri.startsWith(DATA_URI_PREFIX) && !uris.contains(uri)) {
+        uris.add(uri);
+      }
+    }
+  }
+
+  /**
+   * Reads the external resources of the model. Resources that fail to load are left out, and
+   * loaded again when an instance of the renderable is created.
+   */
+  private Map<String, ByteBuffer> resolveResources(List<String> resourceUris) {
+    Map<String, ByteBuffer> resources = new HashMap<>();
+    Function<String, Uri> urlResolver = renderableData.urlResolver;
+    if (urlResolver == null) {
+      return resources;
+    }
+
+    for (String uri : resourceUris) {
+      try {
+        Uri dataUri = urlResolver.apply(uri);
+        Callable<InputStream> callable = LoadHelper.fromUri(renderableData.context, dataUri);
+        resources.put(
+            uri, ByteBuffer.wrap(SceneformBufferUtils.inputStreamCallableToByteArray(callable)));
+      } catch (Exception | AssertionError e) {
+        Log.w(TAG, "Failed to load the resource " + uri + " - " + e.getMessage());
+      }
+    }
+    return resources;
+  }
+
   @NonNull
   static Uri getUriFromMissingResource(
       @NonNull Uri parentUri,
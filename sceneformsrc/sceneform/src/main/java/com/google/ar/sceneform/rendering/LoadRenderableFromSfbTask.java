@@ -4,13 +4,18 @@ import android.net.Uri;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.google.android.filament.IndexBuffer;
 import com.google.android.filament.TextureSampler;
 import com.google.android.filament.VertexBuffer;
 
+import com.google.ar.sceneform.collision.Box;
+import com.google.ar.sceneform.collision.ConvexHull;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.rendering.SceneformBundle.VersionException;
+import com.google.ar.sceneform.resources.ResourceRegistry;
+import com.google.ar.sceneform.utilities.ContentHash;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
 import com.google.ar.schemas.lull.ModelDef;
@@ -35,17 +40,19 @@ import com.google.ar.schemas.sceneform.ParameterInitDef;
 import com.google.ar.schemas.sceneform.ParameterInitDefType;
 import com.google.ar.schemas.sceneform.SamplerDef;
 import com.google.ar.schemas.sceneform.SamplerInit;
+import com.google.ar.schemas.sceneform.SamplerParamsDef;
 import com.google.ar.schemas.sceneform.ScalarInit;
 import com.google.ar.schemas.sceneform.SceneformBundleDef;
 import com.google.ar.schemas.sceneform.TransformDef;
 import com.google.ar.schemas.sceneform.Vec2Init;
 import com.google.ar.schemas.sceneform.Vec3Init;
 import com.google.ar.schemas.sceneform.Vec4Init;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
@@ -64,10 +71,28 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     }
   }
 
+  /** The encoded image of a texture in the bundle, and how to upload it. */
+  private static class TextureSource {
+    final ByteBuffer data;
+    final Texture.Usage usage;
+    final Texture.Sampler sampler;
+
+    TextureSource(ByteBuffer data, Texture.Usage usage, Texture.Sampler sampler) {
+      this.data = data;
+      this.usage = usage;
+      this.sampler = sampler;
+    }
+  }
+
   private static final String TAG = LoadRenderableFromSfbTask.class.getSimpleName();
+  // Bounds the threads of the pool that decode the textures of one model, so that other loads can
+  // make progress at the same time.
+  private static final int MAX_PARALLEL_TEXTURE_DECODES =
+      Math.max(2, Math.min(Runtime.getRuntime().availableProcessors() - 1, 4));
   private final T renderable;
   private final RenderableInternalData renderableData;
   @Nullable private final Uri renderableUri;
+  private boolean isCollisionHullEnabled;
 
   private ModelDef modelDef;
   private ModelInstanceDef modelInstanceDef;
@@ -84,6 +109,9 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
   private ByteBuffer vertexBufferData;
   private ByteBuffer indexBufferData;
 
+  private ContentHash[] materialHashes = new ContentHash[0];
+  private ContentHash[] textureHashes = new ContentHash[0];
+
   private final ArrayList<ModelTexture> textures = new ArrayList<>();
   private final ArrayList<Material> compiledMaterials = new ArrayList<>();
   private final ArrayList<Integer> compiledMaterialIndex = new ArrayList<>();
@@ -105,26 +133,44 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     this.renderableUri = renderableUri;
   }
 
+  /**
+   * Sets whether the collision box suggested by the bundle is replaced with the convex hull of the
+   * vertices. Must be called before loading starts.
+   */
+  void setCollisionHullEnabled(boolean isCollisionHullEnabled) {
+    this.isCollisionHullEnabled = isCollisionHullEnabled;
+  }
+
   /**
    * @param inputStreamCreator supplies {@link Renderable} in serialized format
    * @return {@link CompletableFuture} for a new {@link Renderable}
    */
   public CompletableFuture<T> downloadAndProcessRenderable(
       Callable<InputStream> inputStreamCreator) {
+    return downloadAndProcessRenderable(inputStreamCreator, null);
+  }
+
+  /**
+   * @param inputStreamCreator supplies {@link Renderable} in serialized format
+   * @param mappedSourceCreator maps the serialized {@link Renderable} into memory, or returns null
+   *     if it can't be mapped. Tried before the input stream when not null.
+   * @return {@link CompletableFuture} for a new {@link Renderable}
+   */
+  public CompletableFuture<T> downloadAndProcessRenderable(
+      Callable<InputStream> inputStreamCreator,
+      @Nullable Callable<ByteBuffer> mappedSourceCreator) {
 
     CompletableFuture<T> result =
         CompletableFuture.supplyAsync(
                 // Download byte buffer via thread pool
                 () -> {
-                  ByteBuffer assetData =
-                      SceneformBufferUtils.inputStreamToByteBuffer(inputStreamCreator);
+                  ByteBuffer assetData = mapSource(mappedSourceCreator);
+                  if (assetData == null) {
+                    assetData = SceneformBufferUtils.inputStreamToByteBuffer(inputStreamCreator);
+                  }
 
                   // Parse byte buffer via thread pool
-                  SceneformBundleDef sfb = byteBufferToSfb(assetData);
-                  setCollisionShape(sfb);
-                  // Create sub-assets including material parameters, textures and geometry
-                  loadModel(sfb);
-                  return sfb;
+                  return parseSfb(assetData);
                 },
                 ThreadPools.getThreadPoolExecutor())
             .thenComposeAsync(
@@ -179,6 +225,58 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
 
 
 
+
+  /**
+   * Parses a serialized renderable and builds its geometry and collision shape. This is the part of
+   * loading that doesn't need Filament, and runs on the thread pool.
+   */
+  @VisibleForTesting
+  SceneformBundleDef parseSfb(ByteBuffer assetData) {
+    SceneformBundleDef sfb = byteBufferToSfb(assetData);
+    setCollisionShape(sfb);
+    // Create sub-assets including material parameters, textures and geometry
+    loadModel(sfb);
+    hashResources(sfb);
+    return sfb;
+  }
+
+  /**
+   * Hashes the compiled materials and the textures of the bundle, so that identical ones loaded
+   * from other bundles are found in the registries and shared instead of loaded again.
+   */
+  private void hashResources(SceneformBundleDef sfb) {
+    materialHashes = new ContentHash[sfb.compiledMaterialsLength()];
+    for (int i = 0; i < materialHashes.length; ++i) {
+      materialHashes[i] = ContentHash.of(sfb.compiledMaterials(i).compiledMaterialAsByteBuffer());
+    }
+
+    textureHashes = new ContentHash[sfb.samplersLength()];
+    for (int t = 0; t < textureHashes.length; ++t) {
+      SamplerDef samplerDef = sfb.samplers(t);
+      if (samplerDef.dataLength() != 0) {
+        textureHashes[t] = ContentHash.of(samplerDef.dataAsByteBuffer());
+      }
+    }
+  }
+
+  /**
+   * Maps the source into memory, so that the bundle and the geometry and materials sliced from it
+   * reference the file directly instead of copies on the heap. Returns null to fall back to reading
+   * the input stream.
+   */
+  @Nullable
+  private ByteBuffer mapSource(@Nullable Callable<ByteBuffer> mappedSourceCreator) {
+    if (mappedSourceCreator == null) {
+      return null;
+    }
+
+    try {
+      return mappedSourceCreator.call();
+    } catch (Exception e) {
+      Log.w(TAG, "Unable to map " + renderableUri + ", reading it instead - " + e.getMessage());
+      return null;
+    }
+  }
 
   private SceneformBundleDef byteBufferToSfb(ByteBuffer assetData) {
     try {
@@ -214,18 +312,112 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     // The data buffers for Geometry have to stick around anyway, so go ahead and load them
     // now. The Filament buffers will be created in createAssetFromBuffer()
     buildGeometry();
+    buildPackedGeometry();
+    if (isCollisionHullEnabled) {
+      buildCollisionHull();
+    }
     return sfb;
   }
 
+  /**
+   * Keeps the vertex and index data, so that the vertex positions and triangle indices can be read
+   * back to hit test the triangles of the model. They are only read when they are first needed.
+   */
+  private void buildPackedGeometry() {
+    // Find the positions in the interleaved vertex data.
+    int positionOffset = -1;
+    int byteOffset = 0;
+    int vertexAttributeCount = modelInstanceDef.vertexAttributesLength();
+    for (int i = 0; i < vertexAttributeCount; i++) {
+      VertexAttribute attribute = modelInstanceDef.vertexAttributes(i);
+      if (attribute.usage() == VertexAttributeUsage.Position
+          && attribute.type() == VertexAttributeType.Vec3f) {
+        positionOffset = byteOffset;
+        break;
+      }
+
+      byteOffset += getVertexAttributeTypeSizeInBytes(attribute.type());
+    }
+
+    if (positionOffset < 0) {
+      return;
+    }
+
+    renderableData.setPackedGeometry(
+        new RenderableInternalData.PackedGeometry(
+            vertexBufferData,
+            vertexCount,
+            vertexStride,
+            positionOffset,
+            indexBufferData,
+            indexCount,
+            indexType == IndexBuffer.Builder.IndexType.UINT));
+  }
+
+  /**
+   * Replaces the suggested collision box with the convex hull of the vertices, which fits the model
+   * much more closely. Only done when it was enabled on the builder. The hull is shared by all
+   * copies of the renderable.
+   */
+  private void buildCollisionHull() {
+    RenderableInternalData.PackedGeometry packedGeometry = renderableData.getPackedGeometry();
+    if (!(renderable.collisionShape instanceof Box) || packedGeometry == null || vertexCount < 4) {
+      return;
+    }
+
+    // The collision shape is in the space of the renderable, so apply the same scale and offset
+    // that is applied when rendering.
+    float scale = 1.0f;
+    float offsetX = 0.0f;
+    float offsetY = 0.0f;
+    float offsetZ = 0.0f;
+    // Finding a scale of 0 indicates a default-initialized (i.e. invalid) structure.
+    if (transformDef != null && transformDef.scale() != 0.0f) {
+      Vec3 modelOffset = transformDef.offset();
+      scale = transformDef.scale();
+      offsetX = modelOffset.x();
+      offsetY = modelOffset.y();
+      offsetZ = modelOffset.z();
+    }
+
+    FloatBuffer rawPositionBuffer = packedGeometry.readPositions();
+    float[] positions = new float[vertexCount * 3];
+    for (int i = 0; i < vertexCount; i++) {
+      positions[i * 3] = rawPositionBuffer.get(i * 3) * scale + offsetX;
+      positions[i * 3 + 1] = rawPositionBuffer.get(i * 3 + 1) * scale + offsetY;
+      positions[i * 3 + 2] = rawPositionBuffer.get(i * 3 + 2) * scale + offsetZ;
+    }
+
+    ConvexHull hull = ConvexHull.fromPoints(positions, vertexCount);
+    if (hull != null) {
+      renderable.collisionShape = hull;
+    }
+  }
+
   private T setupFilament(SceneformBundleDef sfb) {
     Preconditions.checkNotNull(sfb);
     setupFilamentGeometryBuffers();
     setupFilamentMaterials(sfb);
     setupRenderableData();
+    setupUploadedByteCount();
     renderable.getId().update();
     return renderable;
   }
 
+  /**
+   * Records the bytes uploaded for the renderable, used to budget the renderables kept by the
+   * registry. Textures shared with other renderables are counted for each of them.
+   */
+  private void setupUploadedByteCount() {
+    long uploadedByteCount = (long) vertexBufferData.remaining() + indexBufferData.remaining();
+    for (ModelTexture texture : textures) {
+      if (texture.data != null) {
+        uploadedByteCount += texture.data.getByteCountEstimate();
+      }
+    }
+    renderableData.setUploadedByteCount(uploadedByteCount);
+  }
+
   private void setupFilamentGeometryBuffers() {
     IEngine engine = EngineInstance.getEngine();
 
@@ -285,16 +477,22 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     for (int i = 0; i < compiledMaterialLength; ++i) {
       CompiledMaterialDef compiledMaterial = sfb.compiledMaterials(i);
 
-      // If the same material buffer exists in multiple places this will ensure we
-      // only load it into graphics memory once.
-      int materialId = compiledMaterial.compiledMaterialAsByteBuffer().hashCode();
-
-      // use the registry to get the material or create it if needed
-      ByteBuffer copy;
-      try {
-        copy = SceneformBufferUtils.copyByteBuffer(compiledMaterial.compiledMaterialAsByteBuffer());
-      } catch (IOException e) {
-        throw new CompletionException("Failed to create material", e);
+      // If the same material buffer exists in multiple places, even in other bundles, this will
+      // ensure we only load it into graphics memory once.
+      ContentHash materialId = materialHashes[i];
+
+      // use the registry to get the material or create it if needed. The source of a registered
+      // material isn't read, so it is only copied when the material is created. Peeking doesn't
+      // count as a lookup, the builder below does.
+      ByteBuffer copy = compiledMaterial.compiledMaterialAsByteBuffer().slice();
+      boolean isRegistered =
+          ResourceManager.getInstance().getMaterialRegistry().peek(materialId) != null;
+      if (!isRegistered && !copy.isDirect()) {
+        try {
+          copy = SceneformBufferUtils.copyByteBuffer(copy);
+        } catch (IOException e) {
+          throw new CompletionException("Failed to create material", e);
+        }
       }
 
       CompletableFuture<Material> materialFuture =
@@ -365,31 +563,26 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     int bytesPerVertex = LullModel.getByteCountPerVertex(modelInstanceDef);
     vertexCount = vertexDataCount / bytesPerVertex;
 
-    // TODO: Fix crash in filament when using flatbuffer buffers directly.
+    ByteBuffer indexData;
     if (modelInstanceDef.indices32Length() > 0) {
       // 32 bit indices
       indexCount = modelInstanceDef.indices32Length();
       indexType = IndexBuffer.Builder.IndexType.UINT;
-      indexBufferData = ByteBuffer.allocateDirect(indexCount * BYTES_PER_INT);
-      indexBufferData.put(modelInstanceDef.indices32AsByteBuffer());
+      indexData = modelInstanceDef.indices32AsByteBuffer();
     } else if (modelInstanceDef.indices16Length() > 0) {
       // 16 bit indices
       indexCount = modelInstanceDef.indices16Length();
       indexType = IndexBuffer.Builder.IndexType.USHORT;
-      indexBufferData = ByteBuffer.allocateDirect(indexCount * BYTES_PER_SHORT);
-      indexBufferData.put(modelInstanceDef.indices16AsByteBuffer());
+      indexData = modelInstanceDef.indices16AsByteBuffer();
     } else {
       throw new AssertionError(
           "Model Instance geometry data is invalid (model has no index data).");
     }
-    indexBufferData.flip();
 
-    vertexBufferData = ByteBuffer.allocateDirect(vertexData.remaining());
+    indexBufferData = toGeometryBuffer(indexData);
+    vertexBufferData = toGeometryBuffer(vertexData);
     Preconditions.checkNotNull(vertexBufferData, "Failed to allocate geometry for FilamentModel.");
 
-    vertexBufferData.put(vertexData);
-    vertexBufferData.flip();
-
     // Calculate vertex stride
     vertexStride = 0;
     int vertexAttributeCount = modelInstanceDef.vertexAttributesLength();
@@ -401,18 +594,34 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
     }
   }
 
-  // TODO: Return a future for all texture loads, use theComposeAsync to
-  // combine it in downloadAndProcessRenderable
+  /**
+   * Returns a direct buffer with the remaining bytes of a flatbuffer vector, starting at position 0
+   * as Filament expects. Vectors of a memory mapped bundle are sliced without copying them.
+   */
+  // TODO: Fix crash in filament when using heap flatbuffer buffers directly.
+  private static ByteBuffer toGeometryBuffer(ByteBuffer flatbufferData) {
+    if (flatbufferData.isDirect()) {
+      return flatbufferData.slice();
+    }
+
+    ByteBuffer copy = ByteBuffer.allocateDirect(flatbufferData.remaining());
+    copy.put(flatbufferData);
+    copy.flip();
+    return copy;
+  }
+
   private CompletableFuture<SceneformBundleDef> loadTexturesAsync(SceneformBundleDef sfb) {
     textureCount = sfb.samplersLength();
 
-    CompletableFuture<?>[] textureFutures = new CompletableFuture<?>[textureCount];
+    ResourceRegistry<Texture> registry = ResourceManager.getInstance().getTextureRegistry();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CompletableFuture<Texture>[] textureFutures = new CompletableFuture[textureCount];
+    ArrayList<TextureSource> sources = new ArrayList<>();
+    ArrayList<CompletableFuture<Texture>> decodedFutures = new ArrayList<>();
 
     for (int t = 0; t < textureCount; ++t) {
       final SamplerDef samplerDef = sfb.samplers(t);
-      ModelTexture texture = new ModelTexture(samplerDef.name());
-      textures.add(texture);
-      CompletableFuture<Texture> textureFuture = null;
+      textures.add(new ModelTexture(samplerDef.name()));
 
       int rawUsage = samplerDef.params().usageType();
       Texture.Usage[] usageValues = Texture.Usage.values();
@@ -421,44 +630,80 @@ class LoadRenderableFromSfbTask<T extends Renderable> {
       }
       Texture.Usage usage = usageValues[rawUsage];
 
-      if (samplerDef.dataLength() != 0) {
-        // loading texture from RCB
-        ByteBuffer data = samplerDef.dataAsByteBuffer();
-        // BUG(b/74619992): An extra copy to input stream is made here to avoid a JNI crash
-        ByteArrayInputStream wrappedInputStream =
-            new ByteArrayInputStream(data.array(), data.arrayOffset(), data.capacity());
-        // position the stream to the image buffer
-        boolean premultiplyAlpha = (usage == Texture.Usage.COLOR);
-        wrappedInputStream.skip(data.position());
-        // TODO: The registryId should be populated with a sha1sum
-
-        textureFuture =
-            Texture.builder()
-                .setUsage(usage)
-                .setSampler(samplerDefToSampler(samplerDef))
-                .setPremultiplied(premultiplyAlpha)
-                .setSource(
-                    () -> {
-                      Preconditions.checkNotNull(wrappedInputStream);
-                      return wrappedInputStream;
-                    })
-                .build();
-      } else {
+      if (samplerDef.dataLength() == 0) {
         throw new IllegalStateException("Unable to load texture, no sampler definition.");
       }
 
-      textureFutures[t] =
-          textureFuture
-              .thenAccept(textureData -> texture.data = textureData)
-              .exceptionally(
-                  throwable -> {
-                    throw new CompletionException("Texture Load Error", throwable);
-                  });
+      // Share a texture with the same contents and parameters that was loaded by any bundle.
+      Object registryId = textureRegistryId(textureHashes[t], samplerDef);
+      CompletableFuture<Texture> registeredTexture = registry.get(registryId);
+      if (registeredTexture != null) {
+        textureFutures[t] = registeredTexture;
+        continue;
+      }
+
+      // loading texture from RCB
+      sources.add(
+          new TextureSource(samplerDef.dataAsByteBuffer(), usage, samplerDefToSampler(samplerDef)));
+      CompletableFuture<Texture> decodedTexture = new CompletableFuture<>();
+      decodedFutures.add(decodedTexture);
+      textureFutures[t] = decodedTexture;
+      registry.register(registryId, decodedTexture);
     }
 
-    CompletableFuture<Void> allTexturesFuture = CompletableFuture.allOf(textureFutures);
+    if (!sources.isEmpty()) {
+      // Decode the new textures on the thread pool, then upload them in one task on the main
+      // thread.
+      TextureDecodeStage<TextureSource, Texture> decodeStage =
+          new TextureDecodeStage<>(
+              source -> Texture.decodePixels(source.data, source.usage == Texture.Usage.COLOR),
+              (source, image) -> Texture.fromPixels(image, source.sampler, source.usage),
+              ThreadPools.getThreadPoolExecutor(),
+              ThreadPools.getMainExecutor(),
+              MAX_PARALLEL_TEXTURE_DECODES);
+
+      decodeStage
+          .run(sources)
+          .whenComplete(
+              (loadedTextures, throwable) -> {
+                for (int i = 0; i < decodedFutures.size(); ++i) {
+                  if (throwable != null) {
+                    decodedFutures.get(i).completeExceptionally(throwable);
+                  } else {
+                    decodedFutures.get(i).complete(loadedTextures.get(i));
+                  }
+                }
+              });
+    }
+
+    return CompletableFuture.allOf(textureFutures)
+        .handle(
+            (unused, throwable) -> {
+              if (throwable != null) {
+                throw new CompletionException("Texture Load Error", throwable);
+              }
+
+              for (int t = 0; t < textureCount; ++t) {
+                textures.get(t).data = textureFutures[t].join();
+              }
+              return sfb;
+            });
+  }
 
-    return allTexturesFuture.thenApply((unused) -> sfb);
+  /**
+   * The same image is uploaded differently depending on its usage, and a texture holds its
+   * sampler, so both are part of the id of a texture.
+   */
+  private static Object textureRegistryId(ContentHash textureHash, SamplerDef samplerDef) {
+    SamplerParamsDef params = samplerDef.params();
+    return Arrays.asList(
+        textureHash,
+        params.usageType(),
+        params.minFilter(),
+        params.magFilter(),
+        params.wrapS(),
+        params.wrapT(),
+        params.wrapR());
   }
 
   private static Texture.Sampler samplerDefToSampler(SamplerDef samplerDef) {
@@ -10,14 +10,19 @@ import androidx.annotation.Nullable;
 
 import com.google.ar.sceneform.collision.Box;
 import com.google.ar.sceneform.collision.CollisionShape;
+import com.google.ar.sceneform.collision.TriangleBvh;
 import com.google.ar.sceneform.common.TransformProvider;
 import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.resources.ResourceRegistry;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.ChangeId;
 import com.google.ar.sceneform.utilities.LoadHelper;
 import com.google.ar.sceneform.utilities.Preconditions;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -43,6 +48,8 @@ public abstract class Renderable {
   private boolean isShadowCaster = true;
   private boolean isShadowReceiver = true;
   @Nullable protected CollisionShape collisionShape;
+  // Built on the first triangle hit test and shared with copies, since they share the mesh.
+  @Nullable private TriangleBvh triangleBvh;
 
   private final ChangeId changeId = new ChangeId();
 
@@ -94,6 +101,8 @@ public abstract class Renderable {
       collisionShape = other.collisionShape.makeCopy();
     }
 
+    triangleBvh = other.triangleBvh;
+
     changeId.update();
   }
 
@@ -217,6 +226,70 @@ public abstract class Renderable {
     definition.applyDefinitionToData(renderableData, materialBindings, materialNames);
 
     collisionShape = new Box(renderableData.getSizeAabb(), renderableData.getCenterAabb());
+    triangleBvh = null;
+  }
+
+  /**
+   * Get the tree used to hit test the triangles of this renderable, in the same space as its
+   * collision shape. The tree is built the first time this is called.
+   *
+   * @return the tree, or null if the renderable doesn't keep its triangle data
+   * @hide
+   */
+  @Nullable
+  public TriangleBvh getTriangleBvh() {
+    if (triangleBvh == null) {
+      triangleBvh = buildTriangleBvh();
+    }
+    return triangleBvh;
+  }
+
+  @Nullable
+  private TriangleBvh buildTriangleBvh() {
+    FloatBuffer rawPositionBuffer = renderableData.getRawPositionBuffer();
+    IntBuffer rawIndexBuffer = renderableData.getRawIndexBuffer();
+    if ((rawPositionBuffer == null || rawIndexBuffer == null)
+        && renderableData instanceof RenderableInternalData) {
+      // Models loaded from files only keep their packed vertex and index data, so the positions and
+      // indices are read from it here. They are only needed until the tree is built.
+      RenderableInternalData.PackedGeometry packedGeometry =
+          ((RenderableInternalData) renderableData).getPackedGeometry();
+      if (packedGeometry != null) {
+        rawPositionBuffer = packedGeometry.readPositions();
+        rawIndexBuffer = packedGeometry.readIndices();
+      }
+    }
+    if (rawPositionBuffer == null || rawIndexBuffer == null) {
+      return null;
+    }
+
+    // The buffers may be larger than the mesh, so only read the indices used by the submeshes.
+    int indexCount = 0;
+    for (RenderableInternalData.MeshData meshData : renderableData.getMeshes()) {
+      indexCount = Math.max(indexCount, meshData.indexEnd);
+    }
+    indexCount = Math.min(indexCount, rawIndexBuffer.capacity());
+
+    int vertexCount = rawPositionBuffer.capacity() / 3;
+    int[] indices = new int[indexCount - indexCount % 3];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = rawIndexBuffer.get(i);
+      if (indices[i] < 0 || indices[i] >= vertexCount) {
+        return null;
+      }
+    }
+
+    // Apply the same scale and offset that is applied when rendering.
+    float scale = renderableData.getTransformScale();
+    Vector3 offset = renderableData.getTransformOffset();
+    float[] positions = new float[vertexCount * 3];
+    for (int i = 0; i < vertexCount; i++) {
+      positions[i * 3] = rawPositionBuffer.get(i * 3) * scale + offset.x;
+      positions[i * 3 + 1] = rawPositionBuffer.get(i * 3 + 1) * scale + offset.y;
+      positions[i * 3 + 2] = rawPositionBuffer.get(i * 3 + 2) * scale + offset.z;
+    }
+
+    return new TriangleBvh(positions, indices, indices.length / 3);
   }
 
   /**
@@ -304,9 +377,13 @@ public abstract class Renderable {
 
     @Nullable private Uri sourceUri = null;
     @Nullable private Callable<InputStream> inputStreamCreator = null;
+    // Maps the source into memory when it is local, and is tried before the input stream.
+    @Nullable private Callable<ByteBuffer> mappedSourceCreator = null;
     @Nullable private RenderableDefinition definition = null;
     private boolean isGltf = false;
     private boolean isFilamentAsset = false;
+    private boolean isDiskCacheEnabled = false;
+    private boolean isCollisionHullEnabled = false;
     @Nullable private LoadGltfListener loadGltfListener;
     @Nullable private Function<String, Uri> uriResolver = null;
     @Nullable private byte[] materialsBytes = null;
@@ -318,6 +395,8 @@ public abstract class Renderable {
       Preconditions.checkNotNull(inputStreamCreator);
       this.sourceUri = new Uri.Builder().scheme(ContentResolver.SCHEME_FILE).build();
       this.inputStreamCreator = inputStreamCreator;
+      this.mappedSourceCreator = null;
+      this.isDiskCacheEnabled = false;
       this.context = context;
       return getSelf();
     }
@@ -326,6 +405,8 @@ public abstract class Renderable {
       Preconditions.checkNotNull(inputStreamCreator);
       this.sourceUri = sourceUri;
       this.inputStreamCreator = inputStreamCreator;
+      this.mappedSourceCreator = null;
+      this.isDiskCacheEnabled = false;
       this.context = context;
       return getSelf();
     }
@@ -341,6 +422,8 @@ public abstract class Renderable {
 
     public B setSource(Context context, int resource) {
       this.inputStreamCreator = LoadHelper.fromResource(context, resource);
+      this.mappedSourceCreator = LoadHelper.mappedFromResource(context, resource);
+      this.isDiskCacheEnabled = false;
       this.context = context;
 
       Uri uri = LoadHelper.resourceToUri(context, resource);
@@ -370,6 +453,20 @@ public abstract class Renderable {
 
 
 
+    /**
+     * Sets whether a model loaded from an sfb uses the convex hull of its vertices as its collision
+     * shape, instead of the box suggested by the sfb. The hull fits the model much more closely,
+     * but it's computed while the model loads, which takes longer for models with many vertices.
+     * Disabled by default.
+     *
+     * <p>Renderables that share a registry id share their collision shape, so this only applies to
+     * the first renderable loaded for an id.
+     */
+    public B setCollisionHullEnabled(boolean isCollisionHullEnabled) {
+      this.isCollisionHullEnabled = isCollisionHullEnabled;
+      return getSelf();
+    }
+
     public B setIsFilamentGltf(boolean isFilamentGltf) {
       this.isFilamentAsset = isFilamentGltf;
       return getSelf();
@@ -454,7 +551,8 @@ public abstract class Renderable {
       } else {
         LoadRenderableFromSfbTask<T> loader =
             new LoadRenderableFromSfbTask<>(renderable, sourceUri);
-        result = loader.downloadAndProcessRenderable(inputStreamCreator);
+        loader.setCollisionHullEnabled(isCollisionHullEnabled);
+        result = loader.downloadAndProcessRenderable(inputStreamCreator, mappedSourceCreator);
       }
 
       if (registryId != null) {
@@ -497,6 +595,9 @@ public abstract class Renderable {
       this.inputStreamCreator =
           LoadHelper.fromUri(
               context, Preconditions.checkNotNull(this.sourceUri), connectionProperties);
+      this.mappedSourceCreator = LoadHelper.mappedFromUri(context, sourceUri);
+      // Remote glTF models are also cached on disk together with their resources.
+      this.isDiskCacheEnabled = enableCaching && !LoadHelper.isFileAsset(sourceUri);
       return getSelf();
     }
 
@@ -515,7 +616,9 @@ public abstract class Renderable {
       LoadRenderableFromFilamentGltfTask<T> loader =
           new LoadRenderableFromFilamentGltfTask<>(
               renderable, context, Preconditions.checkNotNull(sourceUri), uriResolver);
-      return loader.downloadAndProcessRenderable(Preconditions.checkNotNull(inputStreamCreator));
+      GltfDiskCache diskCache = isDiskCacheEnabled ? GltfDiskCache.getInstance(context) : null;
+      return loader.downloadAndProcessRenderable(
+          Preconditions.checkNotNull(inputStreamCreator), diskCache);
     }
 
     
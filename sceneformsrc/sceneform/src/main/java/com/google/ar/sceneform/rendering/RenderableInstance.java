@@ -28,10 +28,12 @@ import com.google.ar.sceneform.utilities.LoadHelper;
 import com.google.ar.sceneform.utilities.Preconditions;
 import com.google.ar.sceneform.utilities.SceneformBufferUtils;
 import java.io.InputStream;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 
 import java.nio.IntBuffer;
+import java.util.Collections;
 import java.util.concurrent.Callable;
 import java.util.function.Function;
 
@@ -144,6 +146,17 @@ public class RenderableInstance {
 
       Function<String, Uri> urlResolver = renderableData.urlResolver;
       for (String uri : createdAsset.getResourceUris()) {
+        if (renderableData.loadedResourceUris.contains(uri)) {
+          continue;
+        }
+
+        Buffer resolvedResource = renderableData.resolvedResources.get(uri);
+        if (resolvedResource != null) {
+          renderableData.resourceLoader.addResourceData(uri, resolvedResource);
+          renderableData.loadedResourceUris.add(uri);
+          continue;
+        }
+
         if (urlResolver == null) {
           Log.e(TAG, "Failed to download uri " + uri + " no url resolver.");
           continue;
@@ -153,11 +166,14 @@ public class RenderableInstance {
           Callable<InputStream> callable = LoadHelper.fromUri(renderableData.context, dataUri);
           renderableData.resourceLoader.addResourceData(
               uri, ByteBuffer.wrap(SceneformBufferUtils.inputStreamCallableToByteArray(callable)));
+          renderableData.loadedResourceUris.add(uri);
         } catch (Exception e) {
           Log.e(TAG, "Failed to download data uri " + dataUri, e);
         }
       }
       renderableData.resourceLoader.loadResources(createdAsset);
+      // The resource loader holds the data now.
+      renderableData.resolvedResources = Collections.emptyMap();
 
       TransformManager transformManager = EngineInstance.getEngine().getTransformManager();
 
@@ -242,6 +258,16 @@ public class RenderableInstance {
     return renderable.getFinalModelMatrix(transformProvider.getWorldModelMatrix());
   }
 
+  /**
+   * Returns the world model matrix of the renderable, based on the transform frozen at the end of
+   * the last frame update.
+   *
+   * @hide
+   */
+  public Matrix getFrozenWorldModelMatrix() {
+    return renderable.getFinalModelMatrix(transformProvider.getFrozenWorldModelMatrix());
+  }
+
   public void setSkinningModifier(@Nullable SkinningModifier skinningModifier) {
     this.skinningModifier = skinningModifier;
   }
@@ -14,6 +14,9 @@ import com.google.android.filament.VertexBuffer;
 import com.google.ar.sceneform.math.Vector3;
 import com.google.ar.sceneform.utilities.AndroidPreconditions;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
@@ -37,6 +40,71 @@ class RenderableInternalData implements IRenderableInternalData {
     int indexEnd;
   }
 
+  /**
+   * The interleaved vertex data and the index data that a model was loaded from. They are kept so
+   * that the positions and indices can be read back when they are needed, instead of keeping copies
+   * of them on the heap.
+   */
+  static final class PackedGeometry {
+    private final ByteBuffer vertexData;
+    private final int vertexCount;
+    private final int vertexStride;
+    private final int positionOffset;
+    private final ByteBuffer indexData;
+    private final int indexCount;
+    private final boolean hasIntIndices;
+
+    /**
+     * @param positionOffset the offset of the 3 float position in the data of each vertex, in bytes
+     * @param hasIntIndices true if the indices are 32 bit ints, false if they are 16 bit shorts
+     */
+    PackedGeometry(
+        ByteBuffer vertexData,
+        int vertexCount,
+        int vertexStride,
+        int positionOffset,
+        ByteBuffer indexData,
+        int indexCount,
+        boolean hasIntIndices) {
+      this.vertexData = vertexData;
+      this.vertexCount = vertexCount;
+      this.vertexStride = vertexStride;
+      this.positionOffset = positionOffset;
+      this.indexData = indexData;
+      this.indexCount = indexCount;
+      this.hasIntIndices = hasIntIndices;
+    }
+
+    /** Reads the x, y, z of every vertex into a new buffer. */
+    FloatBuffer readPositions() {
+      ByteBuffer data = vertexData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      FloatBuffer positions = FloatBuffer.allocate(vertexCount * 3);
+      for (int i = 0; i < vertexCount; i++) {
+        int position = i * vertexStride + positionOffset;
+        positions.put(data.getFloat(position));
+        positions.put(data.getFloat(position + Float.BYTES));
+        positions.put(data.getFloat(position + 2 * Float.BYTES));
+      }
+      positions.rewind();
+      return positions;
+    }
+
+    /** Reads the triangle indices into a new buffer. */
+    IntBuffer readIndices() {
+      ByteBuffer data = indexData.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      IntBuffer indices = IntBuffer.allocate(indexCount);
+      for (int i = 0; i < indexCount; i++) {
+        if (hasIntIndices) {
+          indices.put(data.getInt(i * Integer.BYTES));
+        } else {
+          indices.put(data.getShort(i * Short.BYTES) & 0xFFFF);
+        }
+      }
+      indices.rewind();
+      return indices;
+    }
+  }
+
   // Geometry data.
   private final Vector3 centerAabb = Vector3.zero();
   private final Vector3 extentsAabb = Vector3.zero();
@@ -51,10 +119,12 @@ class RenderableInternalData implements IRenderableInternalData {
   @Nullable private FloatBuffer rawTangentsBuffer;
   @Nullable private FloatBuffer rawUvBuffer;
   @Nullable private FloatBuffer rawColorBuffer;
+  @Nullable private PackedGeometry packedGeometry;
 
   // Filament Geometry buffers.
   @Nullable private IndexBuffer indexBuffer;
   @Nullable private VertexBuffer vertexBuffer;
+  private long uploadedByteCount;
 
   // Represents the set of meshes to render.
   private final ArrayList<MeshData> meshes = new ArrayList<>();
@@ -190,6 +260,37 @@ class RenderableInternalData implements IRenderableInternalData {
     return rawColorBuffer;
   }
 
+  void setPackedGeometry(@Nullable PackedGeometry packedGeometry) {
+    this.packedGeometry = packedGeometry;
+  }
+
+  @Nullable
+  PackedGeometry getPackedGeometry() {
+    return packedGeometry;
+  }
+
+  @Override
+  public void setUploadedByteCount(long uploadedByteCount) {
+    this.uploadedByteCount = uploadedByteCount;
+  }
+
+  @Override
+  public long getByteCountEstimate() {
+    // The raw buffers are kept on the heap for collision and hit testing. The packed geometry holds
+    // the same bytes that were uploaded, so it's already part of the uploaded byte count.
+    return uploadedByteCount
+        + byteCount(rawIndexBuffer)
+        + byteCount(rawPositionBuffer)
+        + byteCount(rawTangentsBuffer)
+        + byteCount(rawUvBuffer)
+        + byteCount(rawColorBuffer);
+  }
+
+  private static long byteCount(@Nullable Buffer buffer) {
+    // Raw buffers hold 4 byte ints and floats.
+    return buffer == null ? 0 : buffer.capacity() * 4L;
+  }
+
   
   private void setupSkeleton(RenderableManager.Builder builder) {return ;}
 
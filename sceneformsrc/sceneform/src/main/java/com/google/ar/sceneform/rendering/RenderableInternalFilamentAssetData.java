@@ -18,8 +18,11 @@ import java.nio.Buffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
-
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import java.util.function.Function;
 
@@ -30,6 +33,12 @@ public class RenderableInternalFilamentAssetData implements IRenderableInternalD
   Context context;
   Buffer gltfByteBuffer;
   boolean isGltfBinary;
+  // The external resources of the model that were loaded with it, by the uri used in the model.
+  // Released once they are given to the resource loader.
+  Map<String, ? extends Buffer> resolvedResources = Collections.emptyMap();
+  // The uris of the resources that were given to the resource loader, which keeps their data for
+  // the assets of later instances.
+  final Set<String> loadedResourceUris = new HashSet<>();
   ResourceLoader resourceLoader;
   @Nullable Function<String, Uri> urlResolver;
   static MaterialProvider materialProvider;
@@ -185,6 +194,21 @@ public class RenderableInternalFilamentAssetData implements IRenderableInternalD
     return null;
   }
 
+  @Override
+  public void setUploadedByteCount(long uploadedByteCount) {
+    // Not Implemented
+  }
+
+  @Override
+  public long getByteCountEstimate() {
+    // Only counts the model and the resources that are held until the first instance is created.
+    long byteCount = gltfByteBuffer == null ? 0 : gltfByteBuffer.capacity();
+    for (Buffer resource : resolvedResources.values()) {
+      byteCount += resource.capacity();
+    }
+    return byteCount;
+  }
+
   @Override
   public void setAnimationNames(@NonNull List<String> animationNames) {
     // Not Implemented
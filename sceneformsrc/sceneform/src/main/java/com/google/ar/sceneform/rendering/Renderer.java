@@ -272,7 +272,7 @@ public class Renderer implements UiHelper.RendererCallback {
           cameraProjectionMatrix[i] = projectionMatrixData[i];
         }
 
-        camera.setModelMatrix(cameraProvider.getWorldModelMatrix().data);
+        camera.setModelMatrix(cameraProvider.getFrozenWorldModelMatrix().data);
         camera.setCustomProjection(
             cameraProjectionMatrix,
             cameraProvider.getNearClipPlane(),
@@ -597,7 +597,7 @@ public class Renderer implements UiHelper.RendererCallback {
     for (RenderableInstance renderableInstance : renderableInstances) {
       renderableInstance.prepareForDraw();
 
-      float[] transform = renderableInstance.getWorldModelMatrix().data;
+      float[] transform = renderableInstance.getFrozenWorldModelMatrix().data;
       renderableInstance.setModelMatrix(transformManager, transform);
     }
 
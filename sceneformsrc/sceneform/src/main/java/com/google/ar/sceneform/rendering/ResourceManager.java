@@ -20,7 +20,7 @@ public class ResourceManager {
   private final ResourceRegistry<Texture> textureRegistry = new ResourceRegistry<>();
   private final ResourceRegistry<Material> materialRegistry = new ResourceRegistry<>();
   private final ResourceRegistry<ModelRenderable> modelRenderableRegistry =
-      new ResourceRegistry<>();
+      new ResourceRegistry<>(renderable -> renderable.getRenderableData().getByteCountEstimate());
 
   
   private final ResourceRegistry<ViewRenderable> viewRenderableRegistry = new ResourceRegistry<>();
@@ -70,6 +70,20 @@ public class ResourceManager {
     return textureCleanupRegistry;
   }
 
+  /**
+   * Sets the budget, in estimated bytes of geometry and textures, of the most recently used model
+   * renderables that are kept loaded after they are no longer used, so that building them again
+   * doesn't reload them. The default budget is 0, which keeps none.
+   */
+  public void setModelRenderableRetentionBudget(long budgetBytes) {
+    modelRenderableRegistry.setRetentionBudget(budgetBytes);
+  }
+
+  /** Returns the hit, miss and eviction counters of the model renderable registry. */
+  public ResourceRegistry.Stats getModelRenderableStats() {
+    return modelRenderableRegistry.getStats();
+  }
+
   public long reclaimReleasedResources() {
     long resourcesInUse = 0;
     for (ResourceHolder registry : resourceHolders) {
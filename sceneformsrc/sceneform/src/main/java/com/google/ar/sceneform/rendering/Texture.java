@@ -17,6 +17,7 @@ import com.google.ar.sceneform.utilities.AndroidPreconditions;
 import com.google.ar.sceneform.utilities.LoadHelper;
 import com.google.ar.sceneform.utilities.Preconditions;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 
@@ -65,6 +66,11 @@ public class Texture {
     return Preconditions.checkNotNull(textureData).getSampler();
   }
 
+  /** Returns the estimated bytes of the texture on the GPU. */
+  long getByteCountEstimate() {
+    return Preconditions.checkNotNull(textureData).getByteCountEstimate();
+  }
+
   /**
    * Get engine data required to use the texture.
    *
@@ -91,6 +97,98 @@ public class Texture {
     return format;
   }
 
+  /**
+   * Decodes an encoded image into pixels that can be uploaded with {@link #fromPixels}. Called on a
+   * worker thread, so that the main thread only uploads the pixels.
+   */
+  static TextureDecodeStage.DecodedImage decodePixels(ByteBuffer encoded, boolean premultiplied) {
+    Preconditions.checkNotNull(encoded, "Parameter \"encoded\" was null.");
+
+    final BitmapFactory.Options options = new BitmapFactory.Options();
+    options.inScaled = false;
+    options.inPremultiplied = premultiplied;
+
+    Bitmap bitmap;
+    if (encoded.hasArray()) {
+      bitmap =
+          BitmapFactory.decodeByteArray(
+              encoded.array(),
+              encoded.arrayOffset() + encoded.position(),
+              encoded.remaining(),
+              options);
+    } else {
+      // A memory mapped source has no array, so copy just the encoded image out of it.
+      byte[] bytes = new byte[encoded.remaining()];
+      encoded.duplicate().get(bytes);
+      bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    if (bitmap == null) {
+      throw new IllegalStateException(
+          "Failed to decode the texture bitmap. The buffer was not a valid bitmap.");
+    }
+
+    if (bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+      throw new IllegalStateException("Texture must use ARGB8 format.");
+    }
+
+    // ARGB_8888 bitmaps store their pixels as RGBA bytes.
+    ByteBuffer pixels = ByteBuffer.allocateDirect(bitmap.getByteCount());
+    bitmap.copyPixelsToBuffer(pixels);
+    pixels.flip();
+
+    TextureDecodeStage.DecodedImage image =
+        new TextureDecodeStage.DecodedImage(bitmap.getWidth(), bitmap.getHeight(), pixels);
+    bitmap.recycle();
+    return image;
+  }
+
+  /**
+   * Creates a texture from pixels decoded by {@link #decodePixels}, and generates its mip levels.
+   * Must be called on the main thread.
+   */
+  static Texture fromPixels(TextureDecodeStage.DecodedImage image, Sampler sampler, Usage usage) {
+    AndroidPreconditions.checkUiThread();
+    Preconditions.checkNotNull(image, "Parameter \"image\" was null.");
+
+    IEngine engine = EngineInstance.getEngine();
+    com.google.android.filament.Texture filamentTexture =
+        createFilamentTexture(image.width, image.height, usage, MIP_LEVELS_TO_GENERATE);
+
+    filamentTexture.setImage(
+        engine.getFilamentEngine(),
+        0,
+        new com.google.android.filament.Texture.PixelBufferDescriptor(
+            image.pixels,
+            com.google.android.filament.Texture.Format.RGBA,
+            com.google.android.filament.Texture.Type.UBYTE));
+    filamentTexture.generateMipmaps(engine.getFilamentEngine());
+
+    return new Texture(new TextureInternalData(filamentTexture, sampler));
+  }
+
+  private static com.google.android.filament.Texture createFilamentTexture(
+      int width, int height, Usage usage, int mipLevels) {
+    IEngine engine = EngineInstance.getEngine();
+
+    // Due to fun ambiguities between Texture (RenderCore) and Texture (Filament)
+    // Texture references must be fully qualified giving rise to the following monstrosity
+    // of verbosity.
+    final com.google.android.filament.Texture.InternalFormat textureInternalFormat =
+        getInternalFormatForUsage(usage);
+    final com.google.android.filament.Texture.Sampler textureSampler =
+        com.google.android.filament.Texture.Sampler.SAMPLER_2D;
+
+    return new com.google.android.filament.Texture.Builder()
+        .width(width)
+        .height(height)
+        .depth(1)
+        .levels(mipLevels)
+        .sampler(textureSampler)
+        .format(textureInternalFormat)
+        .build(engine.getFilamentEngine());
+  }
+
   /** Factory class for {@link Texture} */
   public static final class Builder {
     /** The {@link Texture} will be constructed from the contents of this callable */
@@ -349,24 +447,8 @@ public class Texture {
     private static TextureInternalData makeTextureData(
         Bitmap bitmap, Sampler sampler, Usage usage, int mipLevels) {
       IEngine engine = EngineInstance.getEngine();
-
-      // Due to fun ambiguities between Texture (RenderCore) and Texture (Filament)
-      // Texture references must be fully qualified giving rise to the following monstrosity
-      // of verbosity.
-      final com.google.android.filament.Texture.InternalFormat textureInternalFormat =
-          getInternalFormatForUsage(usage);
-      final com.google.android.filament.Texture.Sampler textureSampler =
-          com.google.android.filament.Texture.Sampler.SAMPLER_2D;
-
       com.google.android.filament.Texture filamentTexture =
-          new com.google.android.filament.Texture.Builder()
-              .width(bitmap.getWidth())
-              .height(bitmap.getHeight())
-              .depth(1)
-              .levels(mipLevels)
-              .sampler(textureSampler)
-              .format(textureInternalFormat)
-              .build(engine.getFilamentEngine());
+          createFilamentTexture(bitmap.getWidth(), bitmap.getHeight(), usage, mipLevels);
 
       TextureHelper.setBitmap(engine.getFilamentEngine(), filamentTexture, 0, bitmap);
 
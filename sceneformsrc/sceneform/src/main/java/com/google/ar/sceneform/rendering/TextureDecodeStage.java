@@ -0,0 +1,128 @@
+package com.google.ar.sceneform.rendering;
+
+import com.google.ar.sceneform.utilities.Preconditions;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes a batch of textures in parallel on a worker pool, then uploads all of them in a single
+ * task on the upload executor, which is the main thread when loading renderables.
+ *
+ * <p>At most {@code maxParallelDecodes} textures are decoded at a time, so that a model with many
+ * textures doesn't take every thread of the pool. The upload only starts once every texture is
+ * decoded, so the decoded pixels of the whole batch are held until then, and each texture's pixels
+ * are released as soon as it is uploaded. The stage only depends on its decoder, sink and
+ * executors, so it runs on the JVM with fakes.
+ *
+ * @param <S> the source of a texture
+ * @param <T> the uploaded texture
+ */
+@SuppressWarnings("AndroidApiChecker") // CompletableFuture
+class TextureDecodeStage<S, T> {
+  /** Decodes the source of a texture into pixels. Called on a worker thread. */
+  interface Decoder<S> {
+    DecodedImage decode(S source) throws Exception;
+  }
+
+  /** Uploads decoded pixels. Called on the upload executor. */
+  interface UploadSink<S, T> {
+    T upload(S source, DecodedImage image);
+  }
+
+  /** Tightly packed RGBA pixels, 8 bits per channel. */
+  static final class DecodedImage {
+    final int width;
+    final int height;
+    final ByteBuffer pixels;
+
+    DecodedImage(int width, int height, ByteBuffer pixels) {
+      Preconditions.checkNotNull(pixels, "Parameter \"pixels\" was null.");
+      this.width = width;
+      this.height = height;
+      this.pixels = pixels;
+    }
+  }
+
+  private final Decoder<S> decoder;
+  private final UploadSink<S, T> sink;
+  private final Executor decodeExecutor;
+  private final Executor uploadExecutor;
+  private final int maxParallelDecodes;
+
+  TextureDecodeStage(
+      Decoder<S> decoder,
+      UploadSink<S, T> sink,
+      Executor decodeExecutor,
+      Executor uploadExecutor,
+      int maxParallelDecodes) {
+    Preconditions.checkNotNull(decoder, "Parameter \"decoder\" was null.");
+    Preconditions.checkNotNull(sink, "Parameter \"sink\" was null.");
+    Preconditions.checkNotNull(decodeExecutor, "Parameter \"decodeExecutor\" was null.");
+    Preconditions.checkNotNull(uploadExecutor, "Parameter \"uploadExecutor\" was null.");
+    if (maxParallelDecodes < 1) {
+      throw new IllegalArgumentException("maxParallelDecodes must be at least 1.");
+    }
+
+    this.decoder = decoder;
+    this.sink = sink;
+    this.decodeExecutor = decodeExecutor;
+    this.uploadExecutor = uploadExecutor;
+    this.maxParallelDecodes = maxParallelDecodes;
+  }
+
+  /**
+   * Decodes and uploads the sources. The returned future completes with the uploaded textures in
+   * the order of the sources, or exceptionally with the first decode or upload failure.
+   */
+  CompletableFuture<List<T>> run(List<S> sources) {
+    Preconditions.checkNotNull(sources, "Parameter \"sources\" was null.");
+
+    int count = sources.size();
+    DecodedImage[] decodedImages = new DecodedImage[count];
+    AtomicInteger nextIndex = new AtomicInteger();
+
+    // Each lane decodes the next undecoded source until none are left, which bounds the number of
+    // decodes in flight without a task per source.
+    int laneCount = Math.min(maxParallelDecodes, count);
+    CompletableFuture<?>[] lanes = new CompletableFuture<?>[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      lanes[i] =
+          CompletableFuture.runAsync(
+              () -> decodeLane(sources, decodedImages, nextIndex), decodeExecutor);
+    }
+
+    return CompletableFuture.allOf(lanes)
+        .thenApplyAsync(unused -> uploadAll(sources, decodedImages), uploadExecutor);
+  }
+
+  private void decodeLane(List<S> sources, DecodedImage[] decodedImages, AtomicInteger nextIndex) {
+    int count = sources.size();
+    int index;
+    while ((index = nextIndex.getAndIncrement()) < count) {
+      try {
+        decodedImages[index] = decoder.decode(sources.get(index));
+      } catch (Exception e) {
+        // Stop the other lanes, the batch fails anyway.
+        nextIndex.set(count);
+        throw new CompletionException(e);
+      }
+    }
+  }
+
+  private List<T> uploadAll(List<S> sources, DecodedImage[] decodedImages) {
+    List<T> uploaded = new ArrayList<>(decodedImages.length);
+    for (int i = 0; i < decodedImages.length; i++) {
+      DecodedImage image =
+          Preconditions.checkNotNull(decodedImages[i], "Texture " + i + " wasn't decoded.");
+      // Release the pixels as soon as they are uploaded.
+      decodedImages[i] = null;
+      uploaded.add(sink.upload(sources.get(i), image));
+    }
+    return uploaded;
+  }
+}
@@ -37,6 +37,24 @@ public class TextureInternalData extends SharedReference {
     return sampler;
   }
 
+  /**
+   * Returns the estimated bytes of all mip levels of the texture, assuming 4 bytes per texel like
+   * the formats of the textures Sceneform loads.
+   */
+  long getByteCountEstimate() {
+    com.google.android.filament.Texture filamentTexture = this.filamentTexture;
+    if (filamentTexture == null) {
+      return 0;
+    }
+
+    long byteCount = 0;
+    int levels = filamentTexture.getLevels();
+    for (int level = 0; level < levels; level++) {
+      byteCount += (long) filamentTexture.getWidth(level) * filamentTexture.getHeight(level) * 4;
+    }
+    return byteCount;
+  }
+
   @Override
   protected void onDispose() {
     AndroidPreconditions.checkUiThread();
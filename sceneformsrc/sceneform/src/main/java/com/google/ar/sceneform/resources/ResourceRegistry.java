@@ -5,9 +5,12 @@ import androidx.annotation.Nullable;
 
 import com.google.ar.sceneform.utilities.Preconditions;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -16,21 +19,131 @@ import java.util.concurrent.CompletableFuture;
  * loaded. The registry maintains only weak references and doesn't prevent resources from being
  * collected.
  *
+ * <p>Optionally, the registry also keeps the most recently used resources strongly reachable, up
+ * to a budget of estimated bytes, so that a resource released shortly before it is needed again
+ * isn't collected and loaded from scratch. See {@link #setRetentionBudget(long)}.
+ *
  * @hide
  */
-// TODO: Automatically prune dead WeakReferences from ResourceRegistry when the
-// ResourceRegistry becomes large.
 public class ResourceRegistry<T> implements ResourceHolder {
   private static final String TAG = ResourceRegistry.class.getSimpleName();
 
+  /** Estimates the bytes held by a resource, to account for it in the retention budget. */
+  public interface SizeEstimator<T> {
+    /** Returns the estimated bytes held by the resource, or 0 if unknown. */
+    long estimateByteCount(T resource);
+  }
+
+  /** A snapshot of the counters of a registry. */
+  public static final class Stats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long retainedByteCount;
+
+    Stats(long hitCount, long missCount, long evictionCount, long retainedByteCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.retainedByteCount = retainedByteCount;
+    }
+
+    /** The number of lookups that found a loaded or loading resource. */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /** The number of lookups that found nothing, so the resource had to be loaded. */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /** The number of resources released from the retention budget to make room for others. */
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    /** The estimated bytes of the resources currently kept by the retention budget. */
+    public long getRetainedByteCount() {
+      return retainedByteCount;
+    }
+  }
+
   private final Object lock = new Object();
 
+  @Nullable private final SizeEstimator<? super T> sizeEstimator;
+
   @GuardedBy("lock")
-  private final Map<Object, WeakReference<T>> registry = new HashMap<>();
+  private final Map<Object, IdReference<T>> registry = new HashMap<>();
 
   @GuardedBy("lock")
   private final Map<Object, CompletableFuture<T>> futureRegistry = new HashMap<>();
 
+  // Collected resources whose entries in the registry can be removed.
+  private final ReferenceQueue<T> collectedResources = new ReferenceQueue<>();
+
+  // Strong references to the most recently used resources, in access order.
+  @GuardedBy("lock")
+  private final LinkedHashMap<Object, Retained<T>> retained = new LinkedHashMap<>(16, 0.75f, true);
+
+  @GuardedBy("lock")
+  private long retentionBudget = 0;
+
+  @GuardedBy("lock")
+  private long retainedByteCount = 0;
+
+  @GuardedBy("lock")
+  private long hitCount = 0;
+
+  @GuardedBy("lock")
+  private long missCount = 0;
+
+  @GuardedBy("lock")
+  private long evictionCount = 0;
+
+  /** Creates a registry that only keeps weak references to its resources. */
+  public ResourceRegistry() {
+    this(null);
+  }
+
+  /**
+   * Creates a registry that can keep recently used resources up to a budget.
+   *
+   * @param sizeEstimator estimates the bytes held by a resource. Resources of unknown size are
+   *     never retained.
+   */
+  public ResourceRegistry(@Nullable SizeEstimator<? super T> sizeEstimator) {
+    this.sizeEstimator = sizeEstimator;
+  }
+
+  /**
+   * Sets the budget, in estimated bytes, of the most recently used resources that are kept loaded
+   * even when nothing else references them. The least recently used resources are released when
+   * the budget is exceeded. The default budget is 0, which keeps no resources.
+   *
+   * @throws IllegalStateException if the registry has no {@link SizeEstimator}
+   */
+  public void setRetentionBudget(long budgetBytes) {
+    if (budgetBytes < 0) {
+      throw new IllegalArgumentException("Parameter \"budgetBytes\" was negative.");
+    }
+    if (budgetBytes > 0 && sizeEstimator == null) {
+      throw new IllegalStateException("Registry can't retain resources without a size estimator.");
+    }
+
+    synchronized (lock) {
+      retentionBudget = budgetBytes;
+      evictOverBudget();
+    }
+  }
+
+  /** Returns a snapshot of the counters of the registry. */
+  public Stats getStats() {
+    synchronized (lock) {
+      return new Stats(hitCount, missCount, evictionCount, retainedByteCount);
+    }
+  }
+
   /**
    * Returns a future to a resource previously registered with the same id. If resource has not yet
    * been registered or was garbage collected, returns null. The future may be to a resource that
@@ -41,11 +154,15 @@ public class ResourceRegistry<T> implements ResourceHolder {
     Preconditions.checkNotNull(id, "Parameter 'id' was null.");
 
     synchronized (lock) {
+      pruneCollectedResources();
+
       // If the resource has already finished loading, return a completed future to that resource.
       WeakReference<T> reference = registry.get(id);
       if (reference != null) {
         T resource = reference.get();
         if (resource != null) {
+          hitCount++;
+          retain(id, resource);
           return CompletableFuture.completedFuture(resource);
         } else {
           registry.remove(id);
@@ -54,6 +171,38 @@ public class ResourceRegistry<T> implements ResourceHolder {
 
       // If the resource is in the process of loading, return the future directly.
       // If the id is not registered, this will be null.
+      CompletableFuture<T> futureResource = futureRegistry.get(id);
+      if (futureResource != null) {
+        hitCount++;
+      } else {
+        missCount++;
+      }
+      return futureResource;
+    }
+  }
+
+  /**
+   * Returns the same future as {@link #get(Object)}, without counting the lookup in the {@link
+   * Stats} or making the resource the most recently used one. Used to check if a resource is
+   * registered before deciding how to load it.
+   */
+  @Nullable
+  public CompletableFuture<T> peek(Object id) {
+    Preconditions.checkNotNull(id, "Parameter 'id' was null.");
+
+    synchronized (lock) {
+      pruneCollectedResources();
+
+      WeakReference<T> reference = registry.get(id);
+      if (reference != null) {
+        T resource = reference.get();
+        if (resource != null) {
+          return CompletableFuture.completedFuture(resource);
+        } else {
+          registry.remove(id);
+        }
+      }
+
       return futureRegistry.get(id);
     }
   }
@@ -79,7 +228,8 @@ public class ResourceRegistry<T> implements ResourceHolder {
       T resource = Preconditions.checkNotNull(futureResource.getNow(null));
 
       synchronized (lock) {
-        registry.put(id, new WeakReference<>(resource));
+        pruneCollectedResources();
+        putLoaded(id, resource);
 
         // If the id was previously registered in the futureRegistry, make sure it is removed.
         futureRegistry.remove(id);
@@ -89,10 +239,12 @@ public class ResourceRegistry<T> implements ResourceHolder {
     }
 
     synchronized (lock) {
+      pruneCollectedResources();
       futureRegistry.put(id, futureResource);
 
       // If the id was previously registered in the completed registry, make sure it is removed.
       registry.remove(id);
+      release(id);
     }
 
     @SuppressWarnings({"FutureReturnValueIgnored", "unused"})
@@ -108,7 +260,7 @@ public class ResourceRegistry<T> implements ResourceHolder {
                     futureRegistry.remove(id);
                     if (throwable == null) {
                       // Only add a reference if there was no exception.
-                      registry.put(id, new WeakReference<>(result));
+                      putLoaded(id, result);
                     }
                   }
                 }
@@ -136,6 +288,8 @@ public class ResourceRegistry<T> implements ResourceHolder {
       }
 
       registry.clear();
+      retained.clear();
+      retainedByteCount = 0;
     }
   }
 
@@ -146,4 +300,88 @@ public class ResourceRegistry<T> implements ResourceHolder {
     // counting in the other holders.
     return 0;
   }
+
+  @GuardedBy("lock")
+  private void putLoaded(Object id, T resource) {
+    registry.put(id, new IdReference<>(id, resource, collectedResources));
+    release(id);
+    retain(id, resource);
+  }
+
+  /** Keeps a resource as the most recently used one, if it fits in the retention budget. */
+  @GuardedBy("lock")
+  private void retain(Object id, T resource) {
+    if (retentionBudget == 0 || sizeEstimator == null) {
+      return;
+    }
+
+    Retained<T> entry = retained.get(id);
+    if (entry != null && entry.resource == resource) {
+      // Already retained, getting it made it the most recently used.
+      return;
+    }
+
+    release(id);
+    long byteCount = sizeEstimator.estimateByteCount(resource);
+    if (byteCount <= 0 || byteCount > retentionBudget) {
+      return;
+    }
+
+    retained.put(id, new Retained<>(resource, byteCount));
+    retainedByteCount += byteCount;
+    evictOverBudget();
+  }
+
+  @GuardedBy("lock")
+  private void release(Object id) {
+    Retained<T> entry = retained.remove(id);
+    if (entry != null) {
+      retainedByteCount -= entry.byteCount;
+    }
+  }
+
+  @GuardedBy("lock")
+  private void evictOverBudget() {
+    Iterator<Retained<T>> iterator = retained.values().iterator();
+    while (retainedByteCount > retentionBudget && iterator.hasNext()) {
+      Retained<T> entry = iterator.next();
+      iterator.remove();
+      retainedByteCount -= entry.byteCount;
+      evictionCount++;
+    }
+  }
+
+  /** Removes the entries of resources that were garbage collected. */
+  @GuardedBy("lock")
+  private void pruneCollectedResources() {
+    Reference<? extends T> reference;
+    while ((reference = collectedResources.poll()) != null) {
+      Object id = ((IdReference<?>) reference).id;
+      // The id may have been registered again since.
+      if (registry.get(id) == reference) {
+        registry.remove(id);
+      }
+    }
+  }
+
+  /** A weak reference to a loaded resource that remembers its id. */
+  private static final class IdReference<T> extends WeakReference<T> {
+    private final Object id;
+
+    IdReference(Object id, T resource, ReferenceQueue<? super T> queue) {
+      super(resource, queue);
+      this.id = id;
+    }
+  }
+
+  /** A resource kept by the retention budget. */
+  private static final class Retained<T> {
+    private final T resource;
+    private final long byteCount;
+
+    Retained(T resource, long byteCount) {
+      this.resource = resource;
+      this.byteCount = byteCount;
+    }
+  }
 }
@@ -0,0 +1,166 @@
+package com.google.ar.sceneform.utilities;
+
+import androidx.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A 128 bit hash of the contents of a buffer, used to identify identical resources loaded from
+ * different sources. Uses MurmurHash3 (x64, 128 bit), which is fast and not cryptographic: it must
+ * not be used where the contents can be chosen to collide on purpose.
+ *
+ * @hide
+ */
+public final class ContentHash {
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+  private static final int BLOCK_SIZE = 16;
+
+  private final long high;
+  private final long low;
+
+  private ContentHash(long high, long low) {
+    this.high = high;
+    this.low = low;
+  }
+
+  /** Hashes the remaining bytes of a buffer, without changing its position. */
+  public static ContentHash of(ByteBuffer buffer) {
+    return builder().append(buffer).build();
+  }
+
+  /** Returns a builder that hashes bytes appended in several parts. */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Hashes bytes that are appended in several parts, without holding them. The hash is the same as
+   * {@link ContentHash#of(ByteBuffer)} of all of the parts appended together.
+   */
+  public static final class Builder {
+    // Bytes of the last part that didn't fill a block, kept until the next part fills it.
+    private final ByteBuffer pending =
+        ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long h1;
+    private long h2;
+    private long length;
+
+    private Builder() {}
+
+    /** Appends the remaining bytes of a buffer, without changing its position. */
+    public Builder append(ByteBuffer buffer) {
+      Preconditions.checkNotNull(buffer, "Parameter \"buffer\" was null.");
+
+      ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      int position = data.position();
+      int limit = data.limit();
+      length += limit - position;
+
+      if (pending.position() > 0) {
+        while (pending.hasRemaining() && position < limit) {
+          pending.put(data.get(position++));
+        }
+        if (pending.hasRemaining()) {
+          return this;
+        }
+        mixBlock(pending.getLong(0), pending.getLong(8));
+        pending.clear();
+      }
+
+      int blockEnd = limit - (limit - position) % BLOCK_SIZE;
+      for (; position < blockEnd; position += BLOCK_SIZE) {
+        mixBlock(data.getLong(position), data.getLong(position + 8));
+      }
+      while (position < limit) {
+        pending.put(data.get(position++));
+      }
+      return this;
+    }
+
+    /** Returns the hash of all of the bytes appended so far. */
+    public ContentHash build() {
+      long h1 = this.h1;
+      long h2 = this.h2;
+
+      // The remaining 0 to 15 bytes, little endian.
+      long k1 = 0;
+      long k2 = 0;
+      int tailLength = pending.position();
+      for (int i = tailLength - 1; i >= 8; i--) {
+        k2 = (k2 << 8) | (pending.get(i) & 0xFF);
+      }
+      for (int i = Math.min(tailLength, 8) - 1; i >= 0; i--) {
+        k1 = (k1 << 8) | (pending.get(i) & 0xFF);
+      }
+      if (tailLength > 8) {
+        h2 ^= mixK2(k2);
+      }
+      if (tailLength > 0) {
+        h1 ^= mixK1(k1);
+      }
+
+      h1 ^= length;
+      h2 ^= length;
+      h1 += h2;
+      h2 += h1;
+      h1 = fmix64(h1);
+      h2 = fmix64(h2);
+      h1 += h2;
+      h2 += h1;
+
+      return new ContentHash(h1, h2);
+    }
+
+    private void mixBlock(long k1, long k2) {
+      h1 ^= mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27) + h2;
+      h1 = h1 * 5 + 0x52dce729;
+
+      h2 ^= mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31) + h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+  }
+
+  private static long mixK1(long k1) {
+    return Long.rotateLeft(k1 * C1, 31) * C2;
+  }
+
+  private static long mixK2(long k2) {
+    return Long.rotateLeft(k2 * C2, 33) * C1;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ContentHash)) {
+      return false;
+    }
+
+    ContentHash that = (ContentHash) other;
+    return high == that.high && low == that.low;
+  }
+
+  @Override
+  public int hashCode() {
+    // The bits are already well mixed.
+    return (int) high;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%016x%016x", high, low);
+  }
+}
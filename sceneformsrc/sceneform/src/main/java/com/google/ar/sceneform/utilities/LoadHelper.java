@@ -2,6 +2,7 @@ package com.google.ar.sceneform.utilities;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.net.Uri;
@@ -17,6 +18,7 @@ import androidx.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -24,6 +26,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
@@ -126,6 +129,69 @@ public class LoadHelper {
     return remoteUriToInputStreamCreator(sourceUri, requestProperty);
   }
 
+  /**
+   * Creates a source that maps an Android resource into memory instead of streaming it. The source
+   * returns null if the resource can't be mapped because it is compressed in the APK.
+   */
+  public static Callable<ByteBuffer> mappedFromResource(Context context, int resId) {
+    Preconditions.checkNotNull(context, "Parameter \"context\" was null.");
+
+    return () -> {
+      AssetFileDescriptor fileDescriptor;
+      try {
+        fileDescriptor = context.getResources().openRawResourceFd(resId);
+      } catch (Resources.NotFoundException e) {
+        // Compressed resources can't be opened as file descriptors.
+        return null;
+      }
+      return fileDescriptor == null
+          ? null
+          : SceneformBufferUtils.mapAssetFileDescriptor(fileDescriptor);
+    };
+  }
+
+  /**
+   * Creates a source that maps the contents of a local file, asset or Android resource Uri into
+   * memory instead of streaming it, or null for Uri's that are never local. The source returns null
+   * if the contents can't be mapped because they are compressed in the APK.
+   */
+  @Nullable
+  public static Callable<ByteBuffer> mappedFromUri(Context context, Uri sourceUri) {
+    Preconditions.checkNotNull(sourceUri, "Parameter \"sourceUri\" was null.");
+    Preconditions.checkNotNull(context, "Parameter \"context\" was null.");
+    if (isFileAsset(sourceUri)) {
+      AssetManager assetManager = context.getAssets();
+      String filename = fileUriToFilename(sourceUri);
+      String scrubbedFilename = removeAndroidAssetPath(filename);
+      return () -> {
+        if (assetExists(assetManager, scrubbedFilename)) {
+          try {
+            return SceneformBufferUtils.mapAssetFileDescriptor(
+                assetManager.openFd(scrubbedFilename));
+          } catch (FileNotFoundException e) {
+            // Compressed assets can't be opened as file descriptors.
+            return null;
+          }
+        }
+        return SceneformBufferUtils.mapFile(new File(filename));
+      };
+    } else if (isAndroidResource(sourceUri)) {
+      return () -> {
+        try {
+          AssetFileDescriptor fileDescriptor =
+              context.getContentResolver().openAssetFileDescriptor(sourceUri, "r");
+          return fileDescriptor == null
+              ? null
+              : SceneformBufferUtils.mapAssetFileDescriptor(fileDescriptor);
+        } catch (FileNotFoundException e) {
+          // Compressed resources can't be opened as file descriptors.
+          return null;
+        }
+      };
+    }
+    return null;
+  }
+
   /**
    * Generates a Uri from an Android resource.
    *
@@ -186,23 +252,11 @@ public class LoadHelper {
   }
 
   /** Creates an inputStream to read from asset file */
-  // TODO: Fix nullness violation: dereference of possibly-null reference
-  // sourceUri.getPath()
-  @SuppressWarnings("nullness:dereference.of.nullable")
   private static Callable<InputStream> fileUriToInputStreamCreator(Context context, Uri sourceUri) {
     AssetManager assetManager = context.getAssets();
-    String filename;
-    if (sourceUri.getAuthority() == null) {
-      filename = sourceUri.getPath();
-    } else if (sourceUri.getPath().isEmpty()) {
-      filename = sourceUri.getAuthority();
-    } else {
-      filename = sourceUri.getAuthority() + sourceUri.getPath();
-    }
+    String filename = fileUriToFilename(sourceUri);
 
     // Remove "android_asset/" from URI paths like "file:///android_asset/...".
-    // TODO: Fix nullness violation: incompatible types in argument.
-    @SuppressWarnings("nullness:argument.type.incompatible")
     String scrubbedFilename = removeAndroidAssetPath(filename);
 
     return () -> {
@@ -216,6 +270,19 @@ public class LoadHelper {
     };
   }
 
+  // TODO: Fix nullness violation: dereference of possibly-null reference
+  // sourceUri.getPath()
+  @SuppressWarnings({"nullness:dereference.of.nullable", "nullness:return.type.incompatible"})
+  private static String fileUriToFilename(Uri sourceUri) {
+    if (sourceUri.getAuthority() == null) {
+      return sourceUri.getPath();
+    } else if (sourceUri.getPath().isEmpty()) {
+      return sourceUri.getAuthority();
+    } else {
+      return sourceUri.getAuthority() + sourceUri.getPath();
+    }
+  }
+
   private static String removeAndroidAssetPath(String filename) {
     // Remove "android_asset/" from URI paths like "file:///android_asset/...".
     String scrubbedFilename = filename;
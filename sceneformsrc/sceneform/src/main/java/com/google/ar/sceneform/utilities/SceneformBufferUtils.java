@@ -1,15 +1,19 @@
 package com.google.ar.sceneform.utilities;
 
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionException;
 
@@ -115,6 +119,43 @@ public final class SceneformBufferUtils {
     return result;
   }
 
+  /**
+   * Maps a file into memory read-only instead of reading it onto the heap. The mapping stays valid
+   * after the file is closed and is released when the buffer is garbage collected.
+   */
+  public static ByteBuffer mapFile(File file) throws IOException {
+    Preconditions.checkNotNull(file, "Parameter \"file\" was null.");
+    try (FileInputStream inputStream = new FileInputStream(file)) {
+      FileChannel channel = inputStream.getChannel();
+      return map(channel, 0, channel.size());
+    }
+  }
+
+  /**
+   * Maps the range of a file described by an {@link AssetFileDescriptor} into memory read-only,
+   * such as an asset or raw resource stored uncompressed in the APK. The descriptor is closed.
+   */
+  public static ByteBuffer mapAssetFileDescriptor(AssetFileDescriptor fileDescriptor)
+      throws IOException {
+    Preconditions.checkNotNull(fileDescriptor, "Parameter \"fileDescriptor\" was null.");
+    try (FileInputStream inputStream = fileDescriptor.createInputStream()) {
+      FileChannel channel = inputStream.getChannel();
+      long offset = fileDescriptor.getStartOffset();
+      long length = fileDescriptor.getLength();
+      if (length == AssetFileDescriptor.UNKNOWN_LENGTH) {
+        length = channel.size() - offset;
+      }
+      return map(channel, offset, length);
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("File is too large to be mapped: " + length + " bytes");
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  }
+
   public static byte[] inputStreamCallableToByteArray(Callable<InputStream> inputStreamCreator)
       throws Exception {
     try (InputStream input = inputStreamCreator.call()) {
@@ -0,0 +1,126 @@
+package com.google.ar.sceneform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests that the node index keeps its buckets and the positions stored in the nodes in sync. */
+public class NodeIndexTest {
+  private final NodeIndex nodeIndex = new NodeIndex();
+
+  @Before
+  public void setUp() {
+    AndroidPreconditions.setUnderTesting(true);
+  }
+
+  @After
+  public void tearDown() {
+    AndroidPreconditions.setUnderTesting(false);
+  }
+
+  @Test
+  public void add_nodesWithNamesAndTags_indexesEveryKey() {
+    Node first = createNode("a", "red", "round");
+    Node second = createNode("a", "round");
+    Node third = createNode("b");
+    nodeIndex.add(first);
+    nodeIndex.add(second);
+    nodeIndex.add(third);
+
+    assertNames("a", first, second);
+    assertNames("b", third);
+    assertTags("red", first);
+    assertTags("round", first, second);
+    assertNull(nodeIndex.getNodesWithName("c"));
+    assertNull(nodeIndex.getNodesWithTag("blue"));
+  }
+
+  @Test
+  public void remove_firstNodeOfBucket_updatesPositionOfMovedNode() {
+    Node first = createNode("a", "red");
+    Node second = createNode("a", "red");
+    Node third = createNode("a", "blue", "red");
+    nodeIndex.add(first);
+    nodeIndex.add(second);
+    nodeIndex.add(third);
+
+    // The last node moves into the removed position, so removing it next must find it there.
+    nodeIndex.remove(first);
+    assertNames("a", second, third);
+    assertTags("red", second, third);
+    nodeIndex.remove(third);
+    assertNames("a", second);
+    assertTags("red", second);
+    assertNull(nodeIndex.getNodesWithTag("blue"));
+  }
+
+  @Test
+  public void remove_lastNodeWithKey_removesBucket() {
+    Node node = createNode("a", "red");
+    nodeIndex.add(node);
+
+    nodeIndex.remove(node);
+
+    assertNull(nodeIndex.getNodesWithName("a"));
+    assertNull(nodeIndex.getNodesWithTag("red"));
+    assertEquals(-1, node.nameIndexPosition);
+  }
+
+  @Test
+  public void setNameAndTags_nodeInScene_updatesSceneIndex() {
+    Scene scene = new Scene();
+    Node node = new Node();
+    node.setName("a");
+    node.setParent(scene);
+    NodeIndex sceneIndex = scene.getNodeIndex();
+
+    node.setName("b");
+    node.addTag("red");
+    node.addTag("round");
+    node.removeTag("red");
+
+    assertNull(sceneIndex.getNodesWithName("a"));
+    assertSame(node, sceneIndex.getNodesWithName("b").get(0));
+    assertNull(sceneIndex.getNodesWithTag("red"));
+    assertSame(node, sceneIndex.getNodesWithTag("round").get(0));
+    assertSame(node, scene.findByName("b"));
+
+    node.setParent(null);
+    assertNull(sceneIndex.getNodesWithName("b"));
+    assertNull(sceneIndex.getNodesWithTag("round"));
+  }
+
+  private static Node createNode(String name, String... tags) {
+    Node node = new Node();
+    node.setName(name);
+    for (String tag : tags) {
+      node.addTag(tag);
+    }
+    return node;
+  }
+
+  private void assertNames(String name, Node... expected) {
+    List<Node> bucket = nodeIndex.getNodesWithName(name);
+    assertEquals(expected.length, bucket.size());
+    for (Node node : expected) {
+      assertSame(node, bucket.get(node.nameIndexPosition));
+    }
+  }
+
+  private void assertTags(String tag, Node... expected) {
+    List<Node> bucket = nodeIndex.getNodesWithTag(tag);
+    assertEquals(expected.length, bucket.size());
+    for (Node node : expected) {
+      int tagIndex = node.getTags().indexOf(tag);
+      assertTrue(tagIndex >= 0);
+      assertSame(node, bucket.get(node.getTagIndexPosition(tagIndex)));
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.google.ar.sceneform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the children of a NodeParent. */
+public class NodeParentTest {
+  private Node parent;
+
+  @Before
+  public void setUp() {
+    AndroidPreconditions.setUnderTesting(true);
+    parent = new Node();
+  }
+
+  @After
+  public void tearDown() {
+    AndroidPreconditions.setUnderTesting(false);
+  }
+
+  @Test
+  public void getChildren_childRemovedWhileIterating_throws() {
+    addChildren(4);
+
+    try {
+      for (Node child : parent.getChildren()) {
+        child.setParent(null);
+      }
+      fail("Expected a ConcurrentModificationException.");
+    } catch (ConcurrentModificationException expected) {
+      // Removing a child must not silently skip the child after it.
+    }
+  }
+
+  @Test
+  public void getChildren_childAddedWhileIterating_throws() {
+    addChildren(2);
+
+    try {
+      for (Node unused : parent.getChildren()) {
+        new Node().setParent(parent);
+      }
+      fail("Expected a ConcurrentModificationException.");
+    } catch (ConcurrentModificationException expected) {
+      // Adding a child invalidates the iterator.
+    }
+  }
+
+  @Test
+  public void getChildren_iteratedAfterRemoval_visitsRemainingChildrenInOrder() {
+    List<Node> children = addChildren(5);
+    children.get(1).setParent(null);
+    children.get(3).setParent(null);
+
+    List<Node> visited = new ArrayList<>();
+    for (Node child : parent.getChildren()) {
+      visited.add(child);
+    }
+
+    assertEquals(3, visited.size());
+    assertSame(children.get(0), visited.get(0));
+    assertSame(children.get(2), visited.get(1));
+    assertSame(children.get(4), visited.get(2));
+  }
+
+  @Test
+  public void getChildren_removingByIndexInReverse_removesEveryChild() {
+    addChildren(6);
+
+    List<Node> children = parent.getChildren();
+    for (int i = children.size() - 1; i >= 0; i--) {
+      children.get(i).setParent(null);
+    }
+
+    assertEquals(0, parent.getChildren().size());
+  }
+
+  @Test
+  public void getChildren_readByIndexAfterRemovals_returnsRemainingChildrenInOrder() {
+    List<Node> children = addChildren(6);
+    children.get(0).setParent(null);
+    children.get(2).setParent(null);
+    children.get(5).setParent(null);
+
+    List<Node> remaining = parent.getChildren();
+    assertEquals(3, remaining.size());
+    assertSame(children.get(1), remaining.get(0));
+    assertSame(children.get(3), remaining.get(1));
+    assertSame(children.get(4), remaining.get(2));
+  }
+
+  @Test
+  public void addChild_afterRemovals_compactsHolesAndKeepsOrder() {
+    List<Node> children = addChildren(4);
+    children.get(1).setParent(null);
+    children.get(2).setParent(null);
+
+    // The slots are full, so adding compacts the holes left by the removed children.
+    List<Node> added = addChildren(2);
+
+    List<Node> expected = new ArrayList<>();
+    expected.add(children.get(0));
+    expected.add(children.get(3));
+    expected.addAll(added);
+    assertEquals(expected, parent.getChildren());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(i, expected.get(i).childSlot);
+    }
+  }
+
+  @Test
+  public void callOnHierarchy_childrenRemovedWhileTraversing_readsAroundHoles() {
+    List<Node> children = addChildren(4);
+    List<Node> visited = new ArrayList<>();
+    List<Node> firstChildDuringTraversal = new ArrayList<>();
+
+    parent.callOnHierarchy(
+        node -> {
+          if (node == parent) {
+            return;
+          }
+          visited.add(node);
+          // The holes can't be compacted while traversing, so this reads around them.
+          node.setParent(null);
+          if (!parent.getChildren().isEmpty()) {
+            firstChildDuringTraversal.add(parent.getChildren().get(0));
+          }
+        });
+
+    assertEquals(children, visited);
+    assertEquals(children.subList(1, 4), firstChildDuringTraversal);
+    assertEquals(0, parent.getChildren().size());
+  }
+
+  private List<Node> addChildren(int count) {
+    List<Node> children = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Node child = new Node();
+      child.setParent(parent);
+      children.add(child);
+    }
+    return children;
+  }
+}
@@ -0,0 +1,111 @@
+package com.google.ar.sceneform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.ar.sceneform.collision.Sphere;
+import com.google.ar.sceneform.math.Vector3;
+import com.google.ar.sceneform.utilities.AndroidPreconditions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests that deferred transform changes are applied before they are observed. */
+public class SceneTransformChangeTest {
+  private static final float EPSILON = 1e-5f;
+
+  private Scene scene;
+
+  @Before
+  public void setUp() {
+    AndroidPreconditions.setUnderTesting(true);
+    scene = new Scene();
+  }
+
+  @After
+  public void tearDown() {
+    AndroidPreconditions.setUnderTesting(false);
+  }
+
+  @Test
+  public void overlapTestAllPairs_afterMoveInSameFrame_usesNewPositions() {
+    Node first = createSphereNode(scene, new Vector3(0.0f, 0.0f, 0.0f));
+    Node second = createSphereNode(scene, new Vector3(10.0f, 0.0f, 0.0f));
+    assertEquals(0, scene.overlapTestAllPairs((a, b) -> {}));
+
+    second.setLocalPosition(new Vector3(0.5f, 0.0f, 0.0f));
+    assertEquals(1, scene.overlapTestAllPairs((a, b) -> {}));
+
+    first.setLocalPosition(new Vector3(-10.0f, 0.0f, 0.0f));
+    assertEquals(0, scene.overlapTestAllPairs((a, b) -> {}));
+  }
+
+  @Test
+  public void overlapTest_inactiveQueryNodeMovedInSameFrame_usesNewPosition() {
+    Node target = createSphereNode(scene, new Vector3(0.0f, 0.0f, 0.0f));
+    Node query = createSphereNode(scene, new Vector3(10.0f, 0.0f, 0.0f));
+    query.setEnabled(false);
+    assertNull(scene.overlapTest(query));
+
+    query.setLocalPosition(new Vector3(0.5f, 0.0f, 0.0f));
+    assertSame(target, scene.overlapTest(query));
+
+    query.setLocalPosition(new Vector3(10.0f, 0.0f, 0.0f));
+    assertNull(scene.overlapTest(query));
+  }
+
+  @Test
+  public void overlapTest_childOfMovedParent_usesNewPosition() {
+    Node target = createSphereNode(scene, new Vector3(0.0f, 0.0f, 0.0f));
+    Node parent = new Node();
+    parent.setParent(scene);
+    Node child = createSphereNode(parent, new Vector3(1.0f, 0.0f, 0.0f));
+    parent.setLocalPosition(new Vector3(10.0f, 0.0f, 0.0f));
+    assertNull(scene.overlapTest(child));
+
+    parent.setLocalPosition(new Vector3(-0.5f, 0.0f, 0.0f));
+    assertSame(target, scene.overlapTest(child));
+  }
+
+  @Test
+  public void getWorldPosition_afterMovingBetweenScenes_isCurrent() {
+    Scene otherScene = new Scene();
+    Node parent = new Node();
+    parent.setParent(scene);
+    parent.setLocalPosition(new Vector3(1.0f, 0.0f, 0.0f));
+    Node child = new Node();
+    child.setParent(parent);
+    child.setLocalPosition(new Vector3(0.0f, 1.0f, 0.0f));
+    assertVectorEquals(new Vector3(1.0f, 1.0f, 0.0f), child.getWorldPosition());
+
+    Node otherParent = new Node();
+    otherParent.setParent(otherScene);
+    otherParent.setLocalPosition(new Vector3(0.0f, 0.0f, 5.0f));
+    assertVectorEquals(new Vector3(0.0f, 0.0f, 5.0f), otherParent.getWorldPosition());
+
+    child.setParent(otherParent);
+    assertVectorEquals(new Vector3(0.0f, 1.0f, 5.0f), child.getWorldPosition());
+
+    // Moving a node in one scene doesn't affect the transforms of the other scene.
+    parent.setLocalPosition(new Vector3(2.0f, 0.0f, 0.0f));
+    assertVectorEquals(new Vector3(0.0f, 1.0f, 5.0f), child.getWorldPosition());
+
+    otherParent.setLocalPosition(new Vector3(0.0f, 0.0f, 6.0f));
+    assertVectorEquals(new Vector3(0.0f, 1.0f, 6.0f), child.getWorldPosition());
+  }
+
+  private static Node createSphereNode(NodeParent parent, Vector3 position) {
+    Node node = new Node();
+    node.setCollisionShape(new Sphere(1.0f));
+    node.setLocalPosition(position);
+    node.setParent(parent);
+    return node;
+  }
+
+  private static void assertVectorEquals(Vector3 expected, Vector3 actual) {
+    assertEquals(expected.x, actual.x, EPSILON);
+    assertEquals(expected.y, actual.y, EPSILON);
+    assertEquals(expected.z, actual.z, EPSILON);
+  }
+}
@@ -0,0 +1,148 @@
+package com.google.ar.sceneform.collision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.common.TransformProvider;
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests that the collision system only resolves the world shapes that queries touch. */
+public class CollisionSystemTest {
+  private static final float EPSILON = 1.0e-5f;
+
+  private final CollisionSystem collisionSystem = new CollisionSystem();
+
+  @Test
+  public void raycast_afterMovingColliders_onlyResolvesTouchedShapes() {
+    ArrayList<Transform> transforms = new ArrayList<>();
+    ArrayList<Collider> colliders = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      Transform transform = new Transform();
+      Collider collider = new Collider(transform, new Sphere(0.5f));
+      collider.setAttachedCollisionSystem(collisionSystem);
+      transforms.add(transform);
+      colliders.add(collider);
+    }
+    collisionSystem.resetWorldShapeCounters();
+
+    for (int i = 0; i < colliders.size(); i++) {
+      transforms.get(i).matrix.makeTranslation(new Vector3(i * 2.0f, 0.0f, 0.0f));
+      colliders.get(i).markWorldShapeDirty();
+    }
+    RayHit rayHit = new RayHit();
+    Collider hit =
+        collisionSystem.raycast(
+            new Ray(new Vector3(0.0f, 10.0f, 0.0f), new Vector3(0.0f, -1.0f, 0.0f)), rayHit);
+
+    assertSame(colliders.get(0), hit);
+    assertEquals(16, collisionSystem.getTransformInvalidationCount());
+    assertEquals(1, collisionSystem.getWorldShapeUpdateCount());
+    assertEquals(1, collisionSystem.getWorldShapeRequestCount());
+  }
+
+  @Test
+  public void intersectsAllPairs_scaledAndRotatedShapes_matchesNarrowPhase() {
+    Random random = new Random(7);
+    ArrayList<Collider> colliders = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      CollisionShape shape;
+      if (i % 3 == 0) {
+        shape = new Sphere(0.5f, new Vector3(0.2f, 0.0f, 0.0f));
+      } else if (i % 3 == 1) {
+        Box box = new Box(new Vector3(1.0f, 0.5f, 0.3f), new Vector3(0.0f, 0.1f, 0.0f));
+        box.setRotation(Quaternion.axisAngle(new Vector3(1.0f, 1.0f, 0.0f), 30.0f));
+        shape = box;
+      } else {
+        shape = new Capsule(0.2f, new Vector3(0.0f, -0.4f, 0.0f), new Vector3(0.1f, 0.4f, 0.0f));
+      }
+
+      Transform transform = new Transform();
+      Collider collider = new Collider(transform, shape);
+      collider.setAttachedCollisionSystem(collisionSystem);
+      Vector3 axis = new Vector3(random.nextFloat(), 1.0f, 0.0f);
+      transform.matrix.makeTrs(
+          new Vector3(random.nextFloat(), random.nextFloat(), random.nextFloat()).scaled(4.0f),
+          Quaternion.axisAngle(axis, random.nextFloat() * 360.0f),
+          new Vector3(0.5f + random.nextFloat(), 0.5f + random.nextFloat(), 1.0f));
+      collider.markWorldShapeDirty();
+      colliders.add(collider);
+    }
+
+    int expectedCount = 0;
+    for (int i = 0; i < colliders.size(); i++) {
+      Collider collider = colliders.get(i);
+      assertBoundsContainWorldShape(collider);
+      for (int j = i + 1; j < colliders.size(); j++) {
+        if (collider.getWorldShape().shapeIntersection(colliders.get(j).getWorldShape())) {
+          expectedCount++;
+        }
+      }
+    }
+
+    assertTrue(expectedCount > 0);
+    assertEquals(expectedCount, collisionSystem.intersectsAllPairs((lhs, rhs) -> {}));
+  }
+
+  @Test
+  public void intersects_queryColliderMoved_usesNewBounds() {
+    new Collider(new Transform(), new Sphere(0.5f)).setAttachedCollisionSystem(collisionSystem);
+    Transform transform = new Transform();
+    Collider probe = new Collider(transform, new Box(new Vector3(1.0f, 1.0f, 1.0f)));
+
+    transform.matrix.makeTranslation(new Vector3(5.0f, 0.0f, 0.0f));
+    probe.markWorldShapeDirty();
+    assertNull(collisionSystem.intersects(probe));
+
+    transform.matrix.makeTranslation(new Vector3(0.8f, 0.0f, 0.0f));
+    probe.markWorldShapeDirty();
+    assertNotNull(collisionSystem.intersects(probe));
+  }
+
+  @Test
+  public void removeCollider_dirtyColliderMovedToOtherSystem_isRefitInOtherSystem() {
+    CollisionSystem otherCollisionSystem = new CollisionSystem();
+    Transform transform = new Transform();
+    Collider collider = new Collider(transform, new Sphere(0.5f));
+    collider.setAttachedCollisionSystem(collisionSystem);
+    transform.matrix.makeTranslation(new Vector3(2.0f, 0.0f, 0.0f));
+    collider.markWorldShapeDirty();
+
+    collider.setAttachedCollisionSystem(otherCollisionSystem);
+    transform.matrix.makeTranslation(new Vector3(4.0f, 0.0f, 0.0f));
+    collider.markWorldShapeDirty();
+
+    Ray ray = new Ray(new Vector3(4.0f, 10.0f, 0.0f), new Vector3(0.0f, -1.0f, 0.0f));
+    assertSame(collider, otherCollisionSystem.raycast(ray, new RayHit()));
+    assertNull(collisionSystem.raycast(ray, new RayHit()));
+    assertBoundsContainWorldShape(collider);
+  }
+
+  private static void assertBoundsContainWorldShape(Collider collider) {
+    float[] bounds = new float[6];
+    float[] worldShapeBounds = new float[6];
+    collider.computeWorldAabb(bounds);
+    collider.getWorldShape().computeAabb(worldShapeBounds);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(bounds[i] <= worldShapeBounds[i] + EPSILON);
+      assertTrue(bounds[i + 3] >= worldShapeBounds[i + 3] - EPSILON);
+    }
+  }
+
+  /** A world transform that is set directly by the test. */
+  private static final class Transform implements TransformProvider {
+    private final Matrix matrix = new Matrix();
+
+    @Override
+    public Matrix getWorldModelMatrix() {
+      return matrix;
+    }
+  }
+}
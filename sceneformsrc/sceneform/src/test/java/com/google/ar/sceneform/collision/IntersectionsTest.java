@@ -0,0 +1,299 @@
+package com.google.ar.sceneform.collision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.math.Matrix;
+import com.google.ar.sceneform.math.Quaternion;
+import com.google.ar.sceneform.math.Vector3;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Compares the box intersection tests with a reference that projects the corners of each box onto
+ * the candidate separating axes, on a fixed corpus of random shapes.
+ */
+public class IntersectionsTest {
+  private static final long SEED = 20181031L;
+  private static final int CASE_COUNT = 100000;
+  // Cases where the shapes are closer than this to touching are skipped, since rounding can decide
+  // them either way.
+  private static final float TOUCHING_TOLERANCE = 1.0e-3f;
+  // Cross products shorter than this come from parallel edges and aren't separating axes.
+  private static final float PARALLEL_TOLERANCE = 1.0e-6f;
+
+  @Test
+  public void boxBoxIntersection_matchesVertexProjection() {
+    Random random = new Random(SEED);
+    int testedCount = 0;
+    int intersectingCount = 0;
+
+    for (int i = 0; i < CASE_COUNT; i++) {
+      Box box1 = randomBox(random);
+      Box box2 = randomBox(random);
+      float separation = boxBoxSeparation(box1, box2);
+      if (Math.abs(separation) < TOUCHING_TOLERANCE) {
+        continue;
+      }
+
+      boolean expected = separation < 0.0f;
+      assertEquals("Case " + i, expected, Intersections.boxBoxIntersection(box1, box2));
+      assertEquals("Case " + i, expected, Intersections.boxBoxIntersection(box2, box1));
+      testedCount++;
+      if (expected) {
+        intersectingCount++;
+      }
+    }
+
+    assertCorpusIsBalanced(testedCount, intersectingCount);
+  }
+
+  @Test
+  public void sphereBoxIntersection_matchesClosestPoint() {
+    Random random = new Random(SEED);
+    int testedCount = 0;
+    int intersectingCount = 0;
+
+    for (int i = 0; i < CASE_COUNT; i++) {
+      Box box = randomBox(random);
+      Sphere sphere = new Sphere(0.1f + random.nextFloat(), randomPoint(random));
+      float separation = sphereBoxSeparation(sphere, box);
+      if (Math.abs(separation) < TOUCHING_TOLERANCE) {
+        continue;
+      }
+
+      boolean expected = separation < 0.0f;
+      assertEquals("Case " + i, expected, Intersections.sphereBoxIntersection(sphere, box));
+      testedCount++;
+      if (expected) {
+        intersectingCount++;
+      }
+    }
+
+    assertCorpusIsBalanced(testedCount, intersectingCount);
+  }
+
+  @Test
+  public void boxBoxIntersection_edgeToEdge_isSeparated() {
+    // Two boxes rotated 45 degrees around different axes, placed so that only the cross product of
+    // their edges separates them.
+    Box box1 = new Box(new Vector3(1.0f, 1.0f, 1.0f));
+    box1.setRotation(Quaternion.axisAngle(Vector3.up(), 45.0f));
+    Box box2 = new Box(new Vector3(1.0f, 1.0f, 1.0f), new Vector3(0.0f, 0.0f, 1.5f));
+    box2.setRotation(Quaternion.axisAngle(Vector3.right(), 45.0f));
+
+    assertTrue(boxBoxSeparation(box1, box2) > 0.0f);
+    assertFalse(Intersections.boxBoxIntersection(box1, box2));
+  }
+
+  @Test
+  public void boxBoxIntersection_parallelBoxes_intersect() {
+    Box box1 = new Box(new Vector3(1.0f, 1.0f, 1.0f));
+    Box box2 = new Box(new Vector3(1.0f, 1.0f, 1.0f), new Vector3(0.5f, 0.5f, 0.0f));
+
+    assertTrue(Intersections.boxBoxIntersection(box1, box2));
+  }
+
+  @Test
+  public void sphereBoxIntersection_rotatedBox_usesRotationNotItsInverse() {
+    // A long thin box rotated around z. Its long axis is where the rotation takes the x axis, the
+    // inverse rotation would point it to the mirrored direction.
+    Quaternion rotation = Quaternion.axisAngle(Vector3.back(), 30.0f);
+    Box box = new Box(new Vector3(4.0f, 0.2f, 0.2f));
+    box.setRotation(rotation);
+    Vector3 longAxis = Quaternion.rotateVector(rotation, Vector3.right());
+    Vector3 inverseLongAxis = Quaternion.rotateVector(rotation.inverted(), Vector3.right());
+
+    assertTrue(Intersections.sphereBoxIntersection(new Sphere(0.05f, longAxis.scaled(1.8f)), box));
+    assertFalse(
+        Intersections.sphereBoxIntersection(new Sphere(0.05f, inverseLongAxis.scaled(1.8f)), box));
+  }
+
+  @Test
+  public void boxBoxIntersection_rotatedBox_usesRotationNotItsInverse() {
+    Quaternion rotation = Quaternion.axisAngle(Vector3.back(), 30.0f);
+    Box box = new Box(new Vector3(4.0f, 0.2f, 0.2f));
+    box.setRotation(rotation);
+    Vector3 longAxis = Quaternion.rotateVector(rotation, Vector3.right());
+    Vector3 inverseLongAxis = Quaternion.rotateVector(rotation.inverted(), Vector3.right());
+    Vector3 probeSize = new Vector3(0.1f, 0.1f, 0.1f);
+
+    assertTrue(Intersections.boxBoxIntersection(box, new Box(probeSize, longAxis.scaled(1.8f))));
+    assertFalse(
+        Intersections.boxBoxIntersection(box, new Box(probeSize, inverseLongAxis.scaled(1.8f))));
+  }
+
+  @Test
+  public void transform_rotatedBoxWithRotatedParent_appliesLocalRotationFirst() {
+    // Rotations that don't commute, so applying them in the wrong order moves the long axis.
+    Quaternion localRotation = Quaternion.axisAngle(Vector3.back(), 30.0f);
+    Quaternion worldRotation = Quaternion.axisAngle(Vector3.right(), 90.0f);
+    Box box = new Box(new Vector3(4.0f, 0.2f, 0.2f));
+    box.setRotation(localRotation);
+    Matrix modelMatrix = new Matrix();
+    modelMatrix.makeRotation(worldRotation);
+
+    Box worldBox = (Box) box.transform(() -> modelMatrix);
+
+    Vector3 longAxis =
+        Quaternion.rotateVector(
+            worldRotation, Quaternion.rotateVector(localRotation, Vector3.right()));
+    Vector3 swappedLongAxis =
+        Quaternion.rotateVector(
+            localRotation, Quaternion.rotateVector(worldRotation, Vector3.right()));
+    assertTrue(
+        Intersections.sphereBoxIntersection(new Sphere(0.05f, longAxis.scaled(1.8f)), worldBox));
+    assertFalse(
+        Intersections.sphereBoxIntersection(
+            new Sphere(0.05f, swappedLongAxis.scaled(1.8f)), worldBox));
+  }
+
+  private static void assertCorpusIsBalanced(int testedCount, int intersectingCount) {
+    // Guards against a corpus that only exercises one of the outcomes.
+    assertTrue(testedCount > CASE_COUNT * 9 / 10);
+    assertTrue(intersectingCount > testedCount / 10);
+    assertTrue(intersectingCount < testedCount * 9 / 10);
+  }
+
+  private static Box randomBox(Random random) {
+    Box box =
+        new Box(
+            new Vector3(
+                0.1f + random.nextFloat() * 2.0f,
+                0.1f + random.nextFloat() * 2.0f,
+                0.1f + random.nextFloat() * 2.0f),
+            randomPoint(random));
+    box.setRotation(
+        Quaternion.axisAngle(
+            new Vector3(
+                random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f),
+            random.nextFloat() * 360.0f));
+    return box;
+  }
+
+  private static Vector3 randomPoint(Random random) {
+    return new Vector3(
+        (random.nextFloat() - 0.5f) * 3.0f,
+        (random.nextFloat() - 0.5f) * 3.0f,
+        (random.nextFloat() - 0.5f) * 3.0f);
+  }
+
+  /**
+   * Returns the largest gap between the projections of the corners of the boxes onto the 15
+   * separating axes. The boxes are separated when it's positive.
+   */
+  private static float boxBoxSeparation(Box box1, Box box2) {
+    double[][] axes1 = axes(box1);
+    double[][] axes2 = axes(box2);
+    double[][] corners1 = corners(box1, axes1);
+    double[][] corners2 = corners(box2, axes2);
+
+    double separation = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < 3; i++) {
+      separation = Math.max(separation, gap(axes1[i], corners1, corners2));
+      separation = Math.max(separation, gap(axes2[i], corners1, corners2));
+      for (int j = 0; j < 3; j++) {
+        double[] axis = cross(axes1[i], axes2[j]);
+        double length = Math.sqrt(dot(axis, axis));
+        if (length < PARALLEL_TOLERANCE) {
+          continue;
+        }
+
+        for (int k = 0; k < 3; k++) {
+          axis[k] /= length;
+        }
+        separation = Math.max(separation, gap(axis, corners1, corners2));
+      }
+    }
+    return (float) separation;
+  }
+
+  /**
+   * Returns the distance from the sphere to the closest point of the box minus the radius of the
+   * sphere, or the negated depth of the center inside the box if the center is inside of it.
+   */
+  private static float sphereBoxSeparation(Sphere sphere, Box box) {
+    double[][] axes = axes(box);
+    Vector3 center = box.getRawCenter();
+    Vector3 size = box.getRawSize();
+    Vector3 sphereCenter = sphere.getRawCenter();
+    double[] extents = {size.x * 0.5, size.y * 0.5, size.z * 0.5};
+    double[] offset = {
+      sphereCenter.x - center.x, sphereCenter.y - center.y, sphereCenter.z - center.z
+    };
+
+    double outsideSquared = 0.0;
+    double insideDepth = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < 3; i++) {
+      double distance = dot(offset, axes[i]);
+      double excess = Math.abs(distance) - extents[i];
+      if (excess > 0.0) {
+        outsideSquared += excess * excess;
+      }
+      insideDepth = Math.min(insideDepth, -excess);
+    }
+
+    if (outsideSquared > 0.0) {
+      return (float) (Math.sqrt(outsideSquared) - sphere.getRadius());
+    }
+    return (float) (-insideDepth - sphere.getRadius());
+  }
+
+  /** Returns the gap between the projections of two sets of corners onto an axis. */
+  private static double gap(double[] axis, double[][] corners1, double[][] corners2) {
+    double min1 = Double.POSITIVE_INFINITY;
+    double max1 = Double.NEGATIVE_INFINITY;
+    double min2 = Double.POSITIVE_INFINITY;
+    double max2 = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < 8; i++) {
+      double projection1 = dot(axis, corners1[i]);
+      min1 = Math.min(min1, projection1);
+      max1 = Math.max(max1, projection1);
+      double projection2 = dot(axis, corners2[i]);
+      min2 = Math.min(min2, projection2);
+      max2 = Math.max(max2, projection2);
+    }
+    return Math.max(min2 - max1, min1 - max2);
+  }
+
+  /** Returns the axes of a box, which are the columns of its rotation matrix. */
+  private static double[][] axes(Box box) {
+    float[] data = box.getRawRotationMatrix().data;
+    double[][] axes = new double[3][];
+    for (int i = 0; i < 3; i++) {
+      axes[i] = new double[] {data[i * 4], data[i * 4 + 1], data[i * 4 + 2]};
+    }
+    return axes;
+  }
+
+  private static double[][] corners(Box box, double[][] axes) {
+    Vector3 center = box.getRawCenter();
+    Vector3 size = box.getRawSize();
+    double[] extents = {size.x * 0.5, size.y * 0.5, size.z * 0.5};
+    double[][] corners = new double[8][];
+    for (int i = 0; i < 8; i++) {
+      double[] corner = {center.x, center.y, center.z};
+      for (int axis = 0; axis < 3; axis++) {
+        double sign = (i & (1 << axis)) == 0 ? -1.0 : 1.0;
+        for (int k = 0; k < 3; k++) {
+          corner[k] += sign * extents[axis] * axes[axis][k];
+        }
+      }
+      corners[i] = corner;
+    }
+    return corners;
+  }
+
+  private static double dot(double[] lhs, double[] rhs) {
+    return lhs[0] * rhs[0] + lhs[1] * rhs[1] + lhs[2] * rhs[2];
+  }
+
+  private static double[] cross(double[] lhs, double[] rhs) {
+    return new double[] {
+      lhs[1] * rhs[2] - lhs[2] * rhs[1],
+      lhs[2] * rhs[0] - lhs[0] * rhs[2],
+      lhs[0] * rhs[1] - lhs[1] * rhs[0]
+    };
+  }
+}
@@ -0,0 +1,188 @@
+package com.google.ar.sceneform.collision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/** Compares the triangle tree with a test of every triangle, on a fixed corpus of random rays. */
+public class TriangleBvhTest {
+  private static final long SEED = 20181031L;
+  private static final int TRIANGLE_COUNT = 500;
+  private static final int RAY_COUNT = 2000;
+  private static final float EPSILON = 1.0e-4f;
+  // Rays that pass closer than this to an edge, or hit two triangles at distances closer than
+  // this, are skipped since rounding can decide them either way.
+  private static final double AMBIGUITY_TOLERANCE = 1.0e-3;
+  // Returned by the reference instead of a triangle index for the skipped rays.
+  private static final int AMBIGUOUS = -2;
+
+  @Test
+  public void raycast_randomRays_matchesEveryTriangleTest() {
+    Random random = new Random(SEED);
+    float[] positions = new float[TRIANGLE_COUNT * 9];
+    int[] indices = new int[TRIANGLE_COUNT * 3];
+    for (int i = 0; i < TRIANGLE_COUNT; i++) {
+      float centerX = (random.nextFloat() - 0.5f) * 10.0f;
+      float centerY = (random.nextFloat() - 0.5f) * 10.0f;
+      float centerZ = (random.nextFloat() - 0.5f) * 10.0f;
+      for (int j = 0; j < 9; j += 3) {
+        positions[i * 9 + j] = centerX + random.nextFloat() - 0.5f;
+        positions[i * 9 + j + 1] = centerY + random.nextFloat() - 0.5f;
+        positions[i * 9 + j + 2] = centerZ + random.nextFloat() - 0.5f;
+      }
+      indices[i * 3] = i * 3;
+      indices[i * 3 + 1] = i * 3 + 1;
+      indices[i * 3 + 2] = i * 3 + 2;
+    }
+    TriangleBvh bvh = new TriangleBvh(positions, indices, TRIANGLE_COUNT);
+
+    float[] result = new float[3];
+    double[] expected = new double[1];
+    int testedCount = 0;
+    int hitCount = 0;
+    for (int i = 0; i < RAY_COUNT; i++) {
+      float[] origin = {
+        (random.nextFloat() - 0.5f) * 20.0f,
+        (random.nextFloat() - 0.5f) * 20.0f,
+        (random.nextFloat() - 0.5f) * 20.0f
+      };
+      float[] direction = {
+        -origin[0] + random.nextFloat() - 0.5f,
+        -origin[1] + random.nextFloat() - 0.5f,
+        -origin[2] + random.nextFloat() - 0.5f
+      };
+      int expectedTriangle = raycastEveryTriangle(positions, origin, direction, expected);
+      if (expectedTriangle == AMBIGUOUS) {
+        continue;
+      }
+
+      int triangle =
+          bvh.raycast(
+              origin[0],
+              origin[1],
+              origin[2],
+              direction[0],
+              direction[1],
+              direction[2],
+              Float.MAX_VALUE,
+              result);
+      assertEquals("Ray " + i, expectedTriangle, triangle);
+      testedCount++;
+      if (triangle < 0) {
+        continue;
+      }
+
+      hitCount++;
+      assertEquals("Ray " + i, expected[0], result[0], EPSILON);
+      assertHitIsOnTriangle(positions, triangle, origin, direction, result);
+    }
+
+    // Guards against a corpus that only exercises one of the outcomes.
+    assertTrue(testedCount > RAY_COUNT * 9 / 10);
+    assertTrue(hitCount > testedCount / 10);
+    assertTrue(hitCount < testedCount * 9 / 10);
+  }
+
+  @Test
+  public void raycast_hitBeyondMaxDistance_misses() {
+    float[] positions = {-1.0f, -1.0f, 0.0f, 1.0f, -1.0f, 0.0f, 0.0f, 1.0f, 0.0f};
+    TriangleBvh bvh = new TriangleBvh(positions, new int[] {0, 1, 2}, 1);
+    float[] result = new float[3];
+
+    assertEquals(0, bvh.raycast(0.0f, 0.0f, 5.0f, 0.0f, 0.0f, -1.0f, 6.0f, result));
+    assertEquals(5.0f, result[0], EPSILON);
+    assertEquals(-1, bvh.raycast(0.0f, 0.0f, 5.0f, 0.0f, 0.0f, -1.0f, 4.0f, result));
+  }
+
+  @Test
+  public void raycast_noTriangles_misses() {
+    TriangleBvh bvh = new TriangleBvh(new float[0], new int[0], 0);
+
+    assertEquals(0, bvh.getTriangleCount());
+    assertEquals(
+        -1, bvh.raycast(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, Float.MAX_VALUE, new float[3]));
+  }
+
+  /**
+   * Returns the nearest triangle hit by the ray and writes its distance to result, or returns -1
+   * if no triangle is hit. Returns AMBIGUOUS if rounding could change the answer.
+   */
+  private static int raycastEveryTriangle(
+      float[] positions, float[] origin, float[] direction, double[] result) {
+    int nearestTriangle = -1;
+    double nearest = Double.POSITIVE_INFINITY;
+    double secondNearest = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < positions.length / 9; i++) {
+      double[] edge1 = new double[3];
+      double[] edge2 = new double[3];
+      double[] offset = new double[3];
+      for (int axis = 0; axis < 3; axis++) {
+        edge1[axis] = positions[i * 9 + 3 + axis] - positions[i * 9 + axis];
+        edge2[axis] = positions[i * 9 + 6 + axis] - positions[i * 9 + axis];
+        offset[axis] = origin[axis] - positions[i * 9 + axis];
+      }
+
+      // Solve origin + t * direction = v0 + u * edge1 + w * edge2 with Cramer's rule.
+      double[] negatedDirection = {-direction[0], -direction[1], -direction[2]};
+      double determinant = determinant(edge1, edge2, negatedDirection);
+      if (Math.abs(determinant) < 1.0e-9) {
+        continue;
+      }
+      double u = determinant(offset, edge2, negatedDirection) / determinant;
+      double w = determinant(edge1, offset, negatedDirection) / determinant;
+      double t = determinant(edge1, edge2, offset) / determinant;
+      double length =
+          Math.sqrt(dot(edge1, edge1))
+              + Math.sqrt(dot(edge2, edge2))
+              + Math.sqrt(dot(offset, offset));
+      double margin = Math.min(Math.min(u, w), 1.0 - u - w);
+      if (Math.abs(margin) * length < AMBIGUITY_TOLERANCE) {
+        return AMBIGUOUS;
+      }
+      if (margin < 0.0 || t < 0.0) {
+        continue;
+      }
+
+      if (t < nearest) {
+        secondNearest = nearest;
+        nearest = t;
+        nearestTriangle = i;
+      } else if (t < secondNearest) {
+        secondNearest = t;
+      }
+    }
+
+    if (secondNearest - nearest < AMBIGUITY_TOLERANCE) {
+      return nearestTriangle < 0 ? -1 : AMBIGUOUS;
+    }
+    result[0] = nearest;
+    return nearestTriangle;
+  }
+
+  private static void assertHitIsOnTriangle(
+      float[] positions, int triangle, float[] origin, float[] direction, float[] result) {
+    float u = result[1];
+    float w = result[2];
+    assertTrue(u >= -EPSILON && w >= -EPSILON && u + w <= 1.0f + EPSILON);
+    for (int axis = 0; axis < 3; axis++) {
+      float v0 = positions[triangle * 9 + axis];
+      float v1 = positions[triangle * 9 + 3 + axis];
+      float v2 = positions[triangle * 9 + 6 + axis];
+      float onTriangle = v0 + (v1 - v0) * u + (v2 - v0) * w;
+      float onRay = origin[axis] + direction[axis] * result[0];
+      assertEquals(onRay, onTriangle, EPSILON * 10.0f);
+    }
+  }
+
+  private static double determinant(double[] a, double[] b, double[] c) {
+    return a[0] * (b[1] * c[2] - b[2] * c[1])
+        - b[0] * (a[1] * c[2] - a[2] * c[1])
+        + c[0] * (a[1] * b[2] - a[2] * b[1]);
+  }
+
+  private static double dot(double[] a, double[] b) {
+    return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+  }
+}
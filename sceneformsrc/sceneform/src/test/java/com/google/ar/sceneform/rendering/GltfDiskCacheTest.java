@@ -0,0 +1,135 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.ar.sceneform.utilities.ContentHash;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Tests the glTF disk cache in a temporary directory. */
+public class GltfDiskCacheTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final int RESOURCE_SIZE = 1000;
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("gltf_disk_cache").toFile();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void read_afterWrite_returnsEntryContents() {
+    GltfDiskCache cache = new GltfDiskCache(directory, MAX_AGE_MILLIS, Long.MAX_VALUE);
+    GltfDiskCache.Entry entry = createEntry(RESOURCE_SIZE);
+
+    cache.write("model", entry);
+    GltfDiskCache.Entry cached = cache.read("model");
+
+    assertNotNull(cached);
+    assertEquals(entry.gltf, cached.gltf);
+    assertEquals(entry.resources, cached.resources);
+    assertNull(cache.read("other"));
+  }
+
+  @Test
+  public void write_overMaxSize_deletesLeastRecentlyUsedEntries() {
+    long entrySize = measureEntrySize();
+    // Room for two entries, but not three.
+    GltfDiskCache cache = new GltfDiskCache(directory, MAX_AGE_MILLIS, entrySize * 5 / 2);
+    cache.write("first", createEntry(RESOURCE_SIZE));
+    cache.write("second", createEntry(RESOURCE_SIZE));
+    long now = System.currentTimeMillis();
+    assertTrue(fileFor("first").setLastModified(now - TimeUnit.HOURS.toMillis(2)));
+    assertTrue(fileFor("second").setLastModified(now - TimeUnit.HOURS.toMillis(1)));
+    // Reading the first entry makes it the most recently used.
+    assertNotNull(cache.read("first"));
+
+    cache.write("third", createEntry(RESOURCE_SIZE));
+
+    assertNotNull(cache.read("first"));
+    assertNull(cache.read("second"));
+    assertNotNull(cache.read("third"));
+    assertTrue(directorySize() <= entrySize * 5 / 2);
+  }
+
+  @Test
+  public void write_entryLargerThanMaxSize_isSkippedAndReplacesPreviousEntry() {
+    long entrySize = measureEntrySize();
+    GltfDiskCache cache = new GltfDiskCache(directory, MAX_AGE_MILLIS, entrySize * 3 / 2);
+    cache.write("model", createEntry(RESOURCE_SIZE));
+    cache.write("other", createEntry(RESOURCE_SIZE / 4));
+    assertNotNull(cache.read("model"));
+
+    cache.write("model", createEntry(RESOURCE_SIZE * 2));
+
+    // The larger entry isn't written, and it doesn't push out the other entry.
+    assertNull(cache.read("model"));
+    assertNotNull(cache.read("other"));
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void read_entryOlderThanMaxAge_returnsNullAndDeletesIt() {
+    new GltfDiskCache(directory, MAX_AGE_MILLIS, Long.MAX_VALUE)
+        .write("model", createEntry(RESOURCE_SIZE));
+    GltfDiskCache expiringCache = new GltfDiskCache(directory, -1, Long.MAX_VALUE);
+
+    assertNull(expiringCache.read("model"));
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  /** Returns the size of the file of an entry created by {@link #createEntry(int)}. */
+  private long measureEntrySize() {
+    GltfDiskCache cache = new GltfDiskCache(directory, MAX_AGE_MILLIS, Long.MAX_VALUE);
+    cache.write("measured", createEntry(RESOURCE_SIZE));
+    File file = fileFor("measured");
+    long size = file.length();
+    assertTrue(file.delete());
+    return size;
+  }
+
+  private File fileFor(String sourceKey) {
+    return new File(directory, ContentHash.of(ByteBuffer.wrap(sourceKey.getBytes(UTF_8))) + ".bin");
+  }
+
+  private long directorySize() {
+    long size = 0;
+    for (File file : directory.listFiles()) {
+      size += file.length();
+    }
+    return size;
+  }
+
+  private static GltfDiskCache.Entry createEntry(int resourceSize) {
+    ByteBuffer gltf = ByteBuffer.wrap("{\"asset\":{}}".getBytes(UTF_8));
+    ByteBuffer resource = ByteBuffer.allocate(resourceSize);
+    for (int i = 0; i < resourceSize; i++) {
+      resource.put(i, (byte) i);
+    }
+    return new GltfDiskCache.Entry(gltf, Collections.singletonMap("buffer.bin", resource));
+  }
+}
@@ -0,0 +1,178 @@
+package com.google.ar.sceneform.rendering;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+/** Tests the texture decode stage with a fake decoder, sink and executors. */
+public class TextureDecodeStageTest {
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private final ExecutorService pool = Executors.newFixedThreadPool(8);
+  private final CountingExecutor decodeExecutor = new CountingExecutor(pool);
+  private final ExecutorService uploadThread = Executors.newSingleThreadExecutor();
+  private final List<String> uploadedSources = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+    uploadThread.shutdownNow();
+  }
+
+  @Test
+  public void run_texturesDecodedOutOfOrder_uploadsInSourceOrder() throws Exception {
+    // Earlier sources take longer to decode, so they finish after the later ones.
+    List<String> sources = Arrays.asList("a", "b", "c", "d", "e", "f");
+    TextureDecodeStage<String, String> stage =
+        createStage(
+            source -> {
+              Thread.sleep(('f' - source.charAt(0)) * 5L);
+              return createImage();
+            },
+            4);
+
+    List<String> uploaded = get(stage.run(sources));
+
+    assertEquals(Arrays.asList("a!", "b!", "c!", "d!", "e!", "f!"), uploaded);
+    assertEquals(sources, uploadedSources);
+  }
+
+  @Test
+  public void run_moreSourcesThanLanes_boundsParallelDecodes() throws Exception {
+    AtomicInteger decodesInFlight = new AtomicInteger();
+    AtomicInteger maxDecodesInFlight = new AtomicInteger();
+    TextureDecodeStage<String, String> stage =
+        createStage(
+            source -> {
+              int inFlight = decodesInFlight.incrementAndGet();
+              maxDecodesInFlight.accumulateAndGet(inFlight, Math::max);
+              Thread.sleep(10);
+              decodesInFlight.decrementAndGet();
+              return createImage();
+            },
+            2);
+
+    List<String> uploaded = get(stage.run(Arrays.asList("a", "b", "c", "d", "e", "f", "g", "h")));
+
+    assertEquals(8, uploaded.size());
+    assertEquals(2, decodeExecutor.taskCount.get());
+    assertTrue(maxDecodesInFlight.get() <= 2);
+  }
+
+  @Test
+  public void run_fewerSourcesThanLanes_startsOneLanePerSource() throws Exception {
+    TextureDecodeStage<String, String> stage = createStage(source -> createImage(), 4);
+
+    get(stage.run(Arrays.asList("a", "b")));
+
+    assertEquals(2, decodeExecutor.taskCount.get());
+  }
+
+  @Test
+  public void run_decodeFails_completesWithFailureAndUploadsNothing() throws Exception {
+    Exception failure = new IllegalStateException("Corrupt texture");
+    TextureDecodeStage<String, String> stage =
+        createStage(
+            source -> {
+              if (source.equals("c")) {
+                throw failure;
+              }
+              return createImage();
+            },
+            2);
+
+    CompletableFuture<List<String>> result = stage.run(Arrays.asList("a", "b", "c", "d"));
+
+    try {
+      get(result);
+      fail("Expected the decode failure.");
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+    assertTrue(uploadedSources.isEmpty());
+  }
+
+  @Test
+  public void run_uploadFails_completesWithFailure() throws Exception {
+    RuntimeException failure = new IllegalStateException("Out of memory");
+    TextureDecodeStage<String, String> stage =
+        new TextureDecodeStage<>(
+            source -> createImage(),
+            (source, image) -> {
+              throw failure;
+            },
+            decodeExecutor,
+            uploadThread,
+            2);
+
+    try {
+      get(stage.run(Arrays.asList("a", "b")));
+      fail("Expected the upload failure.");
+    } catch (ExecutionException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void run_noSources_completesWithEmptyListWithoutDecoding() throws Exception {
+    TextureDecodeStage<String, String> stage = createStage(source -> createImage(), 4);
+
+    List<String> uploaded = get(stage.run(Collections.emptyList()));
+
+    assertTrue(uploaded.isEmpty());
+    assertEquals(0, decodeExecutor.taskCount.get());
+  }
+
+  private TextureDecodeStage<String, String> createStage(
+      TextureDecodeStage.Decoder<String> decoder, int maxParallelDecodes) {
+    return new TextureDecodeStage<>(
+        decoder,
+        (source, image) -> {
+          uploadedSources.add(source);
+          return source + "!";
+        },
+        decodeExecutor,
+        uploadThread,
+        maxParallelDecodes);
+  }
+
+  private static TextureDecodeStage.DecodedImage createImage() {
+    return new TextureDecodeStage.DecodedImage(1, 1, ByteBuffer.allocateDirect(4));
+  }
+
+  private static <T> T get(CompletableFuture<T> future) throws Exception {
+    return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /** Runs tasks on another executor and counts them. */
+  private static final class CountingExecutor implements Executor {
+    private final Executor executor;
+    private final AtomicInteger taskCount = new AtomicInteger();
+
+    CountingExecutor(Executor executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+      taskCount.incrementAndGet();
+      executor.execute(runnable);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.google.ar.sceneform.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+/** Tests the retention budget of the registry, with resources sized by their length. */
+public class ResourceRegistryTest {
+  private final ResourceRegistry<byte[]> registry =
+      new ResourceRegistry<>(resource -> resource.length);
+
+  @Test
+  public void register_overBudget_evictsLeastRecentlyUsed() {
+    registry.setRetentionBudget(100);
+    registerLoaded("a", 40);
+    registerLoaded("b", 30);
+    assertNotNull(registry.get("a"));
+
+    registerLoaded("c", 40);
+
+    // Getting a made b the least recently used, so b is evicted.
+    ResourceRegistry.Stats stats = registry.getStats();
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(80, stats.getRetainedByteCount());
+    // Nothing else references the resources, so only the retained ones are sure to survive.
+    System.gc();
+    assertNotNull(registry.get("a"));
+    assertNotNull(registry.get("c"));
+  }
+
+  @Test
+  public void peek_doesNotMakeResourceMostRecentlyUsed() {
+    registry.setRetentionBudget(100);
+    registerLoaded("a", 40);
+    registerLoaded("b", 30);
+    assertNotNull(registry.peek("a"));
+
+    registerLoaded("c", 40);
+
+    // a is still the least recently used, so it's evicted instead of b.
+    ResourceRegistry.Stats stats = registry.getStats();
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(70, stats.getRetainedByteCount());
+    assertEquals(0, stats.getHitCount());
+  }
+
+  @Test
+  public void register_resourceLargerThanBudget_isNotRetained() {
+    registry.setRetentionBudget(100);
+    registerLoaded("a", 40);
+
+    registerLoaded("b", 101);
+
+    ResourceRegistry.Stats stats = registry.getStats();
+    assertEquals(0, stats.getEvictionCount());
+    assertEquals(40, stats.getRetainedByteCount());
+  }
+
+  @Test
+  public void register_sameIdAgain_replacesRetainedResource() {
+    registry.setRetentionBudget(100);
+    registerLoaded("a", 40);
+
+    registerLoaded("a", 60);
+
+    ResourceRegistry.Stats stats = registry.getStats();
+    assertEquals(0, stats.getEvictionCount());
+    assertEquals(60, stats.getRetainedByteCount());
+    assertEquals(60, registry.get("a").getNow(null).length);
+  }
+
+  @Test
+  public void setRetentionBudget_lowered_evictsUntilUnderBudget() {
+    registry.setRetentionBudget(100);
+    registerLoaded("a", 30);
+    registerLoaded("b", 30);
+    registerLoaded("c", 30);
+
+    registry.setRetentionBudget(50);
+
+    ResourceRegistry.Stats stats = registry.getStats();
+    assertEquals(2, stats.getEvictionCount());
+    assertEquals(30, stats.getRetainedByteCount());
+  }
+
+  @Test
+  public void get_countsHitsAndMisses() {
+    registerLoaded("a", 40);
+
+    assertNotNull(registry.get("a"));
+    assertNull(registry.get("b"));
+
+    ResourceRegistry.Stats stats = registry.getStats();
+    assertEquals(1, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+  }
+
+  @Test
+  public void destroyAllResources_releasesRetainedResources() {
+    registry.setRetentionBudget(100);
+    registerLoaded("a", 40);
+
+    registry.destroyAllResources();
+
+    assertEquals(0, registry.getStats().getRetainedByteCount());
+    assertNull(registry.get("a"));
+  }
+
+  @Test
+  public void setRetentionBudget_withoutSizeEstimator_throws() {
+    ResourceRegistry<byte[]> unsizedRegistry = new ResourceRegistry<>();
+
+    try {
+      unsizedRegistry.setRetentionBudget(100);
+      fail("Expected an IllegalStateException.");
+    } catch (IllegalStateException expected) {
+      // Resources of unknown size can't be accounted for.
+    }
+  }
+
+  private void registerLoaded(String id, int byteCount) {
+    registry.register(id, CompletableFuture.completedFuture(new byte[byteCount]));
+  }
+}
@@ -0,0 +1,70 @@
+package com.google.ar.sceneform.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+import org.junit.Test;
+
+/** Tests the content hash against reference MurmurHash3 x64 128 values, with a seed of 0. */
+public class ContentHashTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Test
+  public void of_emptyBuffer_matchesReference() {
+    assertEquals("00000000000000000000000000000000", hash(""));
+  }
+
+  @Test
+  public void of_partialBlock_matchesReference() {
+    assertEquals("629942693e10f86792db0b82baeb5347", hash("hell"));
+  }
+
+  @Test
+  public void of_severalBlocksAndTail_matchesReference() {
+    assertEquals(
+        "e34bbc7bbc071b6c7a433ca9c49a9347", hash("The quick brown fox jumps over the lazy dog"));
+  }
+
+  @Test
+  public void of_slicedBuffer_hashesRemainingBytesWithoutMovingPosition() {
+    ByteBuffer buffer = ByteBuffer.wrap("xxhellxx".getBytes(UTF_8));
+    buffer.position(2);
+    buffer.limit(6);
+
+    assertEquals("629942693e10f86792db0b82baeb5347", ContentHash.of(buffer).toString());
+    assertEquals(2, buffer.position());
+  }
+
+  @Test
+  public void builder_partsOfAnyLength_matchesWholeBuffer() {
+    Random random = new Random(7);
+    for (int i = 0; i < 200; i++) {
+      byte[] bytes = new byte[random.nextInt(100)];
+      random.nextBytes(bytes);
+
+      ContentHash.Builder builder = ContentHash.builder();
+      int position = 0;
+      while (position < bytes.length) {
+        int partLength = Math.min(random.nextInt(20), bytes.length - position);
+        builder.append(ByteBuffer.wrap(bytes, position, partLength));
+        position += partLength;
+      }
+
+      assertEquals(ContentHash.of(ByteBuffer.wrap(bytes)), builder.build());
+    }
+  }
+
+  @Test
+  public void of_differentLengthsOfZeros_differ() {
+    // The length is mixed in, so trailing zero bytes change the hash.
+    assertNotEquals(
+        ContentHash.of(ByteBuffer.allocate(16)), ContentHash.of(ByteBuffer.allocate(17)));
+  }
+
+  private static String hash(String text) {
+    return ContentHash.of(ByteBuffer.wrap(text.getBytes(UTF_8))).toString();
+  }
+}
@@ -48,6 +48,9 @@ public class TranslationController extends BaseTransformationController<DragGest
   @Nullable private Quaternion desiredLocalRotation;
 
   private final Vector3 initialForwardInLocal = new Vector3();
+  // Reused by updatePosition, which runs every frame while the node interpolates.
+  private final Vector3 currentLocalPosition = new Vector3();
+  private final Vector3 positionDifference = new Vector3();
 
   private EnumSet<Plane.Type> allowedPlaneTypes = EnumSet.allOf(Plane.Type.class);
 
@@ -220,11 +223,13 @@ public class TranslationController extends BaseTransformationController<DragGest
       return;
     }
 
-    Vector3 localPosition = getTransformableNode().getLocalPosition();
+    Vector3 localPosition = getTransformableNode().getLocalPosition(currentLocalPosition);
     float lerpFactor = MathHelper.clamp(frameTime.getDeltaSeconds() * LERP_SPEED, 0, 1);
-    localPosition = Vector3.lerp(localPosition, desiredLocalPosition, lerpFactor);
+    Vector3.lerp(localPosition, desiredLocalPosition, lerpFactor, localPosition);
 
-    float lengthDiff = Math.abs(Vector3.subtract(desiredLocalPosition, localPosition).length());
+    float lengthDiff =
+        Math.abs(
+            Vector3.subtract(desiredLocalPosition, localPosition, positionDifference).length());
     if (lengthDiff <= POSITION_LENGTH_THRESHOLD) {
       localPosition = desiredLocalPosition;
       this.desiredLocalPosition = null;